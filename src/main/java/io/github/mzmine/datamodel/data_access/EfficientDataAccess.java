@@ -23,6 +23,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
@@ -60,6 +61,22 @@ public class EfficientDataAccess {
     return new FilteredScanDataAccess(dataFile, type, selection);
   }
 
+  /**
+   * The intended use of this memory access is to loop over all selected scans in a {@link
+   * RawDataFile} and access data points via {@link ScanDataAccess#getMzValue(int)} and {@link
+   * ScanDataAccess#getIntensityValue(int)}. The data of the next scans is loaded in the
+   * background, while the current scan is processed.
+   *
+   * @param dataFile      target data file to loop over all scans or mass lists
+   * @param type          processed or raw data
+   * @param selection     scan selection (null for all scans)
+   * @param prefetchScans number of scans that are loaded in advance
+   */
+  public static ScanDataAccess of(RawDataFile dataFile, ScanDataType type,
+      ScanSelection selection, int prefetchScans) {
+    return new PrefetchScanDataAccess(dataFile, type, selection, prefetchScans);
+  }
+
   /**
    * The intended use of this memory access is to loop over all selected scans in a {@link
    * RawDataFile} and access data points via {@link ScanDataAccess#getMzValue(int)} and {@link
@@ -102,6 +119,23 @@ public class EfficientDataAccess {
     };
   }
 
+  /**
+   * Access the chromatographic data of the features in a subset of the rows of a feature list.
+   * Multiple threads can process a feature list with one data access for each subset of rows.
+   *
+   * @param flist    target feature list
+   * @param type     defines the data accession type
+   * @param dataFile define the data file in an aligned feature list
+   * @param rows     the rows to loop through
+   */
+  public static FeatureDataAccess of(FeatureList flist, FeatureDataType type,
+      RawDataFile dataFile, List<FeatureListRow> rows) {
+    return switch (type) {
+      case ONLY_DETECTED -> new FeatureDetectedDataAccess(flist, dataFile, rows);
+      case INCLUDE_ZEROS -> new FeatureFullDataAccess(flist, dataFile, rows);
+    };
+  }
+
   public static MobilogramDataAccess of(final IonMobilogramTimeSeries ionTrace,
       final MobilogramAccessType accessType) {
     return new MobilogramDataAccess(ionTrace, accessType);
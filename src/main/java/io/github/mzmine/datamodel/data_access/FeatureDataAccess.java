@@ -83,12 +83,24 @@ public abstract class FeatureDataAccess implements IonTimeSeries<Scan> {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
+    this(flist, dataFile, flist.getRows());
+  }
+
+  /**
+   * Access the chromatographic data of features in a subset of the rows of a feature list, e.g., to
+   * split the rows between multiple threads with one data access each.
+   *
+   * @param flist    target feature list
+   * @param dataFile define the data file in an aligned feature list
+   * @param allRows  the rows of the feature list to loop through
+   */
+  protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      List<FeatureListRow> allRows) {
     this.flist = flist;
     this.dataFile = dataFile;
 
     // set rows and number of features
     int totalFeatures = 0;
-    List<FeatureListRow> allRows = flist.getRows();
     // handle aligned flist
     if (flist.getNumberOfRawDataFiles() > 1) {
       if (dataFile != null) {
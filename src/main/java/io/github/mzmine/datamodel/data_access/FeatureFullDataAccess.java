@@ -22,6 +22,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import java.util.Arrays;
 import java.util.List;
 import org.jetbrains.annotations.Nullable;
@@ -71,7 +72,20 @@ public class FeatureFullDataAccess extends FeatureDataAccess {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
-    super(flist, dataFile);
+    this(flist, dataFile, flist.getRows());
+  }
+
+  /**
+   * Full data access to the features of a subset of the feature list rows, e.g., to split the rows
+   * between multiple threads with one data access each.
+   *
+   * @param flist    target feature list
+   * @param dataFile define the data file in an aligned feature list
+   * @param rows     the rows of the feature list to loop through
+   */
+  protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      List<FeatureListRow> rows) {
+    super(flist, dataFile, rows);
 
     // return all scans that were used to create the chromatograms in the first place
     int max = 0;
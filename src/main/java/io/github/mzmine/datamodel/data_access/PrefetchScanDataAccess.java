@@ -0,0 +1,159 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.data_access;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.util.exceptions.MissingMassListException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link FilteredScanDataAccess} that loads the data of the next scans in a background thread,
+ * while the current scan is processed. Reading the data from the memory mapped mass lists (or
+ * scans) therefore overlaps with the processing. The data is loaded into a ring of buffers and
+ * copied to the data access when the scan is selected by {@link #nextScan()}.
+ * <p>
+ * Sequential access benefits from prefetching, jumps to another scan load the data directly and
+ * restart the prefetching from there.
+ * <p>
+ * All data accesses share one executor with a thread per core. The number of queued and running
+ * prefetch jobs of all data accesses is limited, so many concurrent data accesses do not create more
+ * threads or unbounded work. Scans that are not prefetched are loaded directly.
+ */
+public class PrefetchScanDataAccess extends FilteredScanDataAccess {
+
+  private static final int PREFETCH_THREADS = Runtime.getRuntime().availableProcessors();
+  /**
+   * Maximum number of prefetch jobs of all data accesses that are queued or running. Scans that
+   * cannot be prefetched are loaded directly when they are accessed.
+   */
+  private static final int MAX_PREFETCH_JOBS = PREFETCH_THREADS * 4;
+  private static final Semaphore prefetchJobs = new Semaphore(MAX_PREFETCH_JOBS);
+  private static final AtomicInteger threadCounter = new AtomicInteger(0);
+  private static final ThreadPoolExecutor prefetchExecutor = new ThreadPoolExecutor(
+      PREFETCH_THREADS, PREFETCH_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+    final Thread thread = new Thread(r, "Scan prefetch thread " + threadCounter.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  static {
+    prefetchExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  private final PrefetchedScan[] slots;
+
+  /**
+   * @param dataFile      target data file to loop over all scans or mass lists
+   * @param type          processed or raw data
+   * @param selection     scan selection
+   * @param prefetchScans number of scans that are loaded in advance
+   */
+  protected PrefetchScanDataAccess(RawDataFile dataFile, ScanDataType type,
+      @NotNull ScanSelection selection, int prefetchScans) {
+    super(dataFile, type, selection);
+    slots = new PrefetchedScan[Math.max(prefetchScans, 1)];
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = new PrefetchedScan(mzs.length);
+    }
+  }
+
+  @Override
+  protected void loadScanData(Scan scan) throws MissingMassListException {
+    final PrefetchedScan slot = slots[scanIndex % slots.length];
+    if (slot.scanIndex == scanIndex && slot.future != null) {
+      try {
+        slot.future.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException re) {
+          throw re;
+        }
+        throw e;
+      }
+      System.arraycopy(slot.mzs, 0, mzs, 0, slot.numberOfDataPoints);
+      System.arraycopy(slot.intensities, 0, intensities, 0, slot.numberOfDataPoints);
+      currentNumberOfDataPoints = slot.numberOfDataPoints;
+      // load the next scan into the free slot
+      prefetch(slot, scanIndex + slots.length);
+    } else {
+      // first access, jump to another scan or the scan was not prefetched
+      super.loadScanData(scan);
+      for (int i = 1; i <= slots.length; i++) {
+        final int index = scanIndex + i;
+        final PrefetchedScan next = slots[index % slots.length];
+        if (next.scanIndex != index || next.future == null) {
+          prefetch(next, index);
+        }
+      }
+    }
+  }
+
+  private void prefetch(PrefetchedScan slot, int index) {
+    // the slot arrays may still be written by a previous prefetch
+    slot.awaitQuietly();
+    slot.future = null;
+    slot.scanIndex = -1;
+    // without a free prefetch job, the scan is loaded directly when it is accessed
+    if (index >= totalScans || !prefetchJobs.tryAcquire()) {
+      return;
+    }
+    slot.scanIndex = index;
+    final Scan scan = dataFile.getScan(filteredScanIndexesInFile.get(index));
+    slot.future = CompletableFuture.runAsync(() -> {
+      try {
+        slot.numberOfDataPoints = loadScanData(scan, type, slot.mzs, slot.intensities);
+      } finally {
+        prefetchJobs.release();
+      }
+    }, prefetchExecutor);
+  }
+
+  private static class PrefetchedScan {
+
+    private final double[] mzs;
+    private final double[] intensities;
+    private volatile int numberOfDataPoints;
+    private int scanIndex = -1;
+    private CompletableFuture<Void> future;
+
+    private PrefetchedScan(int length) {
+      mzs = new double[length];
+      intensities = new double[length];
+    }
+
+    private void awaitQuietly() {
+      if (future != null) {
+        try {
+          future.join();
+        } catch (CompletionException e) {
+          // error is thrown when the scan is accessed
+        }
+      }
+    }
+  }
+}
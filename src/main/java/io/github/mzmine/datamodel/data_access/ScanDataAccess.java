@@ -191,18 +191,35 @@ public abstract class ScanDataAccess implements Scan {
    *                                  detection first
    */
   protected void loadScanData(Scan scan) throws MissingMassListException {
+    currentNumberOfDataPoints = loadScanData(scan, type, mzs, intensities);
+    assert currentNumberOfDataPoints <= mzs.length;
+  }
+
+  /**
+   * Load scan data into the arrays
+   *
+   * @param scan        target scan to load data from
+   * @param type        processed or raw data
+   * @param mzs         destination array of m/z values
+   * @param intensities destination array of intensities
+   * @return the number of loaded data points
+   * @throws MissingMassListException if mass list values were accessed but not available. Run Mass
+   *                                  detection first
+   */
+  protected static int loadScanData(Scan scan, ScanDataType type, double[] mzs,
+      double[] intensities) throws MissingMassListException {
     switch (type) {
       case RAW -> {
         try {
           scan.getMzValues(mzs);
           scan.getIntensityValues(intensities);
-          currentNumberOfDataPoints = scan.getNumberOfDataPoints();
+          return scan.getNumberOfDataPoints();
         } catch (NullPointerException e) {
           // in case mass detection is performed on an IMS raw data file imported from mzml,
           // no mz values have been set.
           Arrays.fill(mzs, 0d);
           Arrays.fill(intensities, 0d);
-          currentNumberOfDataPoints = 0;
+          return 0;
         }
       }
       case CENTROID -> {
@@ -212,10 +229,10 @@ public abstract class ScanDataAccess implements Scan {
         }
         masses.getMzValues(mzs);
         masses.getIntensityValues(intensities);
-        currentNumberOfDataPoints = masses.getNumberOfDataPoints();
+        return masses.getNumberOfDataPoints();
       }
+      default -> throw new IllegalStateException("Unexpected value: " + type);
     }
-    assert currentNumberOfDataPoints <= mzs.length;
   }
 
   /**
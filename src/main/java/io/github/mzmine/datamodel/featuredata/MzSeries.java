@@ -19,8 +19,8 @@
 package io.github.mzmine.datamodel.featuredata;
 
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamWriter;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
-import io.github.mzmine.util.ParsingUtils;
 import java.nio.DoubleBuffer;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -38,7 +38,7 @@ public interface MzSeries extends SeriesValueCount {
   static void saveMzValuesToXML(XMLStreamWriter writer, MzSeries series) throws XMLStreamException {
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
     writer.writeAttribute(CONST.XML_NUM_VALUES_ATTR, String.valueOf(series.getNumberOfValues()));
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(series.getMZValueBuffer()));
+    BlockXMLStreamWriter.writeDoubles(writer, series.getMZValueBuffer());
     writer.writeEndElement();
   }
 
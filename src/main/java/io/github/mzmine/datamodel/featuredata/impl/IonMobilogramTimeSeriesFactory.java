@@ -25,6 +25,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.modules.io.projectload.CachedIMSFrame;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamReader;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.ParsingUtils;
@@ -191,13 +192,12 @@ public class IonMobilogramTimeSeriesFactory {
           mobilograms.add(SimpleIonMobilitySeries.loadFromXML(reader, null, file));
         }
         case CONST.XML_SCAN_LIST_ELEMENT -> {
-          int[] indices = ParsingUtils.stringToIntArray(reader.getElementText());
+          int[] indices = BlockXMLStreamReader.readInts(reader);
           scans = ParsingUtils.getSublistFromIndices((List<Frame>) file.getFrames(), indices);
         }
-        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
-        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
+        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = BlockXMLStreamReader.readDoubles(reader);
+        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities = BlockXMLStreamReader.readDoubles(
+            reader);
         case SummedIntensityMobilitySeries.XML_ELEMENT -> summedMobilogram = SummedIntensityMobilitySeries.loadFromXML(
             reader, storage);
       }
@@ -26,6 +26,7 @@ import io.github.mzmine.datamodel.featuredata.IonSpectrumSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.MzSeries;
 import io.github.mzmine.modules.io.projectload.CachedIMSFrame;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamReader;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
@@ -80,8 +81,8 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       RawDataFile file) throws XMLStreamException {
 
     List<Scan> scans = null;
-    double[] mzs = null;
-    double[] intensities = null;
+    DoubleBuffer mzs = null;
+    DoubleBuffer intensities = null;
 
     while (reader.hasNext()) {
       if (reader.isEndElement() && reader.getLocalName().equals(SimpleIonTimeSeries.XML_ELEMENT)) {
@@ -94,7 +95,7 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       }
       switch (reader.getLocalName()) {
         case CONST.XML_SCAN_LIST_ELEMENT -> {
-          int[] indices = ParsingUtils.stringToIntArray(reader.getElementText());
+          int[] indices = BlockXMLStreamReader.readInts(reader);
           scans = ParsingUtils.getSublistFromIndices(file.getScans(), indices); // use all scans
 
           // if the scans were CachedFrames, we have to replace them when storing them to the series,
@@ -104,14 +105,34 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
                 .map(f -> (Scan) f).toList();
           }
         }
-        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
-        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
+        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = BlockXMLStreamReader.readDoubleBuffer(reader);
+        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities =
+            BlockXMLStreamReader.readDoubleBuffer(reader);
       }
     }
 
-    return new SimpleIonTimeSeries(storage, mzs, intensities, scans);
+    if (mzs == null || intensities == null || scans == null) {
+      throw new XMLStreamException("Incomplete " + XML_ELEMENT + " element.");
+    }
+    // values of uncompressed blocks are views of the mapped project file, others are stored
+    if (mzs.hasArray()) {
+      return new SimpleIonTimeSeries(storage, mzs.array(), intensities.array(), scans);
+    }
+    return new SimpleIonTimeSeries(mzs, intensities, scans);
+  }
+
+  /**
+   * Uses the buffers without copying them. Used for series loaded from a mapped project file.
+   */
+  private SimpleIonTimeSeries(@NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues, @NotNull List<Scan> scans) {
+    if (mzValues.capacity() != intensityValues.capacity()
+        || mzValues.capacity() != scans.size()) {
+      throw new IllegalArgumentException("Length of mz, intensity and/or scans does not match.");
+    }
+    this.scans = scans;
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
   }
 
   @Override
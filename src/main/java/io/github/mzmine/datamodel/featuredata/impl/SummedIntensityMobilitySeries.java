@@ -25,11 +25,12 @@ import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.featuredata.IntensitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.MobilitySeries;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamReader;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamWriter;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.IonMobilityUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.ParsingUtils;
 import java.nio.DoubleBuffer;
 import java.util.List;
 import java.util.Map;
@@ -181,7 +182,7 @@ public class SummedIntensityMobilitySeries implements IntensitySeries, MobilityS
     writer.writeStartElement(CONST.XML_MOBILITY_VALUES_ELEMENT);
     writer
         .writeAttribute(CONST.XML_NUM_VALUES_ATTR, String.valueOf(getNumberOfValues()));
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(getMobilityValues()));
+    BlockXMLStreamWriter.writeDoubles(writer, getMobilityValues());
     writer.writeEndElement();
 
     IntensitySeries.saveIntensityValuesToXML(writer, this);
@@ -205,10 +206,10 @@ public class SummedIntensityMobilitySeries implements IntensitySeries, MobilityS
         continue;
       }
       switch (reader.getLocalName()) {
-        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities = ParsingUtils
-            .stringToDoubleArray(reader.getElementText());
-        case CONST.XML_MOBILITY_VALUES_ELEMENT -> mobilities = ParsingUtils
-            .stringToDoubleArray(reader.getElementText());
+        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities = BlockXMLStreamReader
+            .readDoubles(reader);
+        case CONST.XML_MOBILITY_VALUES_ELEMENT -> mobilities = BlockXMLStreamReader
+            .readDoubles(reader);
       }
     }
     return new SummedIntensityMobilitySeries(storage, mobilities, intensities);
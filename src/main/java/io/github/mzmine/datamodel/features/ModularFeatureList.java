@@ -31,6 +31,8 @@ import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.annotations.ManualAnnotationType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.CachedIMSFrame;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
@@ -39,6 +41,8 @@ import io.github.mzmine.util.CorrelationGroupingUtils;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -54,10 +58,13 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import org.jetbrains.annotations.NotNull;
@@ -100,6 +107,12 @@ public class ModularFeatureList implements FeatureList {
   // grouping
   private List<RowGroup> groups;
 
+  // lazy indices for range and id queries, invalidated on changes of the rows or values
+  private final LazyIndex<MzRtIndex<FeatureListRow>> rowIndex = new LazyIndex<>();
+  private final LazyIndex<Map<RawDataFile, MzRtIndex<ModularFeature>>> featureIndex =
+      new LazyIndex<>();
+  private final LazyIndex<Int2ObjectMap<FeatureListRow>> idIndex = new LazyIndex<>();
+
 
   public ModularFeatureList(String name, @Nullable MemoryMapStorage storage,
       @NotNull RawDataFile... dataFiles) {
@@ -115,6 +128,9 @@ public class ModularFeatureList implements FeatureList {
     dateCreated = DATA_FORMAT.format(new Date());
     selectedScans = FXCollections.observableMap(new HashMap<>());
     this.memoryMapStorage = storage;
+    if (storage != null) {
+      storage.registerOwner(this);
+    }
 
     // only a few standard types
     addRowType(new IDType());
@@ -127,6 +143,23 @@ public class ModularFeatureList implements FeatureList {
       // check feature data for graphical columns
       DataTypeUtils.applyFeatureSpecificGraphicalTypes((ModularFeature) dataModel);
     });
+
+    // invalidate the indices on changes
+    featureListRows.addListener((ListChangeListener<FeatureListRow>) change -> {
+      rowIndex.invalidate();
+      featureIndex.invalidate();
+      idIndex.invalidate();
+    });
+    addRowTypeListener(new MZType(),
+        (dataModel, type, oldValue, newValue) -> rowIndex.invalidate());
+    addRowTypeListener(new RTType(),
+        (dataModel, type, oldValue, newValue) -> rowIndex.invalidate());
+    addRowTypeListener(new IDType(),
+        (dataModel, type, oldValue, newValue) -> idIndex.invalidate());
+    addFeatureTypeListener(new MZType(),
+        (dataModel, type, oldValue, newValue) -> featureIndex.invalidate());
+    addFeatureTypeListener(new RTType(),
+        (dataModel, type, oldValue, newValue) -> featureIndex.invalidate());
   }
 
   @Override
@@ -490,9 +523,14 @@ public class ModularFeatureList implements FeatureList {
   @Override
   public List<FeatureListRow> getRowsInsideScanAndMZRange(Range<Float> rtRange,
       Range<Double> mzRange) {
-    // TODO handle if mz or rt is not present
-    return modularStream().filter(
-            row -> rtRange.contains(row.getAverageRT()) && mzRange.contains(row.getAverageMZ()))
+    final MzRtIndex<FeatureListRow> index = rowIndex.get(
+        () -> MzRtIndex.build(featureListRows, FeatureListRow::getAverageMZ,
+            FeatureListRow::getAverageRT));
+    if (index != null) {
+      return index.getInsideRange(rtRange, mzRange);
+    }
+    return modularStream().filter(row -> row.getAverageRT() != null && row.getAverageMZ() != null
+            && rtRange.contains(row.getAverageRT()) && mzRange.contains(row.getAverageMZ()))
         .collect(Collectors.toCollection(FXCollections::observableArrayList));
   }
 
@@ -546,10 +584,19 @@ public class ModularFeatureList implements FeatureList {
   @Override
   public List<Feature> getFeaturesInsideScanAndMZRange(RawDataFile raw, Range<Float> rtRange,
       Range<Double> mzRange) {
-    // TODO solve with bindings and check for rt or mz presence in row
+    final Map<RawDataFile, MzRtIndex<ModularFeature>> indices = featureIndex.get(
+        ConcurrentHashMap::new);
+    if (indices != null) {
+      // same features as the linear search, including features with an unknown status
+      return indices.computeIfAbsent(raw, file -> MzRtIndex.build(
+              modularStream().map(row -> row.getFilesFeatures().get(file)).toList(),
+              ModularFeature::getMZ, ModularFeature::getRT))
+          .getInsideRange(rtRange, mzRange);
+    }
     return modularStream().map(ModularFeatureListRow::getFilesFeatures).map(map -> map.get(raw))
         .filter(Objects::nonNull)
-        .filter(f -> rtRange.contains(f.getRT()) && mzRange.contains(f.getMZ()))
+        .filter(f -> f.getRT() != null && f.getMZ() != null && rtRange.contains(f.getRT())
+            && mzRange.contains(f.getMZ()))
         .collect(Collectors.toCollection(FXCollections::observableArrayList));
   }
 
@@ -641,11 +688,23 @@ public class ModularFeatureList implements FeatureList {
 
   @Override
   public FeatureListRow getFeatureRow(Feature feature) {
+    // the feature knows its row, check that the row is still part of this list
+    if (feature instanceof ModularFeature modularFeature) {
+      final FeatureListRow row = modularFeature.getRow();
+      if (row != null && row.hasFeature(feature) && findRowByID(row.getID()) == row) {
+        return row;
+      }
+    }
     return stream().filter(row -> row.hasFeature(feature)).findFirst().orElse(null);
   }
 
   @Override
   public FeatureListRow findRowByID(int id) {
+    final Int2ObjectMap<FeatureListRow> index = idIndex.get(this::buildIdIndex);
+    if (index != null) {
+      return index.get(id);
+    }
+
     List<FeatureListRow> featureListRows = stream().filter(r -> r.getID() == id).toList();
     if (featureListRows.isEmpty()) {
       return null;
@@ -658,6 +717,32 @@ public class ModularFeatureList implements FeatureList {
     return featureListRows.get(0);
   }
 
+  private Int2ObjectMap<FeatureListRow> buildIdIndex() {
+    final Int2ObjectMap<FeatureListRow> index = new Int2ObjectOpenHashMap<>(
+        featureListRows.size());
+    for (FeatureListRow row : featureListRows) {
+      // keep the first row for duplicate ids
+      if (index.putIfAbsent((int) row.getID(), row) != null) {
+        logger.info("more than one row with id " + row.getID());
+      }
+    }
+    return index;
+  }
+
+  @Override
+  public void fireFeatureChangedEvent(FeatureListRow row, Feature newFeature, RawDataFile raw,
+      boolean updateByRowBindings) {
+    featureIndex.invalidate();
+    FeatureList.super.fireFeatureChangedEvent(row, newFeature, raw, updateByRowBindings);
+  }
+
+  /**
+   * Invalidates the feature index after a feature was removed from a row.
+   */
+  void onFeatureRemoved() {
+    featureIndex.invalidate();
+  }
+
   @Override
   public void addDescriptionOfAppliedTask(FeatureListAppliedMethod appliedMethod) {
     descriptionOfAppliedTasks.add(appliedMethod);
@@ -830,4 +915,52 @@ public class ModularFeatureList implements FeatureList {
       }
     }
   }
+
+  /**
+   * An index that is built on demand and invalidated on changes. The index is only built for
+   * repeated queries after a change, the first query after a change falls back to a linear search.
+   * This avoids rebuilding the index when changes and queries alternate.
+   *
+   * @param <T> the index type
+   */
+  private static class LazyIndex<T> {
+
+    private final AtomicInteger version = new AtomicInteger(0);
+    private final AtomicInteger queriesSinceChange = new AtomicInteger(0);
+    private volatile VersionedIndex<T> index;
+
+    private void invalidate() {
+      version.incrementAndGet();
+      queriesSinceChange.set(0);
+    }
+
+    /**
+     * @param builder creates a new index
+     * @return the current index or null if the caller should fall back to a linear search
+     */
+    @Nullable
+    private T get(Supplier<T> builder) {
+      final int currentVersion = version.get();
+      VersionedIndex<T> current = index;
+      if (current != null && current.version == currentVersion) {
+        return current.index;
+      }
+      if (queriesSinceChange.incrementAndGet() < 2) {
+        return null;
+      }
+      synchronized (this) {
+        current = index;
+        if (current == null || current.version != currentVersion) {
+          // an index built during a change has an old version and is rebuilt on the next query
+          current = new VersionedIndex<>(currentVersion, builder.get());
+          index = current;
+        }
+        return current.index;
+      }
+    }
+  }
+
+  private record VersionedIndex<T>(int version, T index) {
+
+  }
 }
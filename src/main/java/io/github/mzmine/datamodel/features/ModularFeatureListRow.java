@@ -301,7 +301,9 @@ public class ModularFeatureListRow implements FeatureListRow {
 
   @Override
   public void removeFeature(RawDataFile file) {
-    this.features.remove(file);
+    if (this.features.remove(file) != null) {
+      flist.onFeatureRemoved();
+    }
   }
 
   @Override
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.List;
+import java.util.function.Function;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable m/z and retention time index over the rows (or features) of a feature list. The items
+ * are sorted by m/z in primitive arrays, a range query performs a binary search for the m/z range
+ * and checks the retention time of the candidates. Query results keep the order of the items in
+ * the original list.
+ * <p>
+ * Items without m/z or retention time are not indexed and never match a range.
+ *
+ * @param <T> the item type
+ */
+final class MzRtIndex<T> {
+
+  private final Object[] items;
+  private final double[] mzs;
+  private final float[] rts;
+  /**
+   * the position of the item in the original list
+   */
+  private final int[] positions;
+
+  private MzRtIndex(Object[] items, double[] mzs, float[] rts, int[] positions) {
+    this.items = items;
+    this.mzs = mzs;
+    this.rts = rts;
+    this.positions = positions;
+  }
+
+  /**
+   * @param items the items, may contain null values which are skipped
+   * @param mz    extracts the m/z of an item
+   * @param rt    extracts the retention time of an item
+   * @return the index
+   */
+  static <T> MzRtIndex<T> build(@NotNull List<? extends T> items,
+      @NotNull Function<? super T, Double> mz, @NotNull Function<? super T, Float> rt) {
+    final int size = items.size();
+    final Object[] itemArray = items.toArray();
+    final double[] itemMzs = new double[size];
+    final float[] itemRts = new float[size];
+    final IntArrayList indexed = new IntArrayList(size);
+    for (int i = 0; i < size; i++) {
+      final T item = items.get(i);
+      if (item == null) {
+        continue;
+      }
+      final Double itemMz = mz.apply(item);
+      final Float itemRt = rt.apply(item);
+      if (itemMz == null || itemRt == null) {
+        continue;
+      }
+      itemMzs[i] = itemMz;
+      itemRts[i] = itemRt;
+      indexed.add(i);
+    }
+
+    final int[] sorted = indexed.toIntArray();
+    IntArrays.quickSort(sorted, (a, b) -> {
+      final int result = Double.compare(itemMzs[a], itemMzs[b]);
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+
+    final double[] sortedMzs = new double[sorted.length];
+    final float[] sortedRts = new float[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      sortedMzs[i] = itemMzs[sorted[i]];
+      sortedRts[i] = itemRts[sorted[i]];
+    }
+    return new MzRtIndex<>(itemArray, sortedMzs, sortedRts, sorted);
+  }
+
+  /**
+   * @param rtRange retention time range
+   * @param mzRange m/z range
+   * @return all items within both ranges in the order of the original list
+   */
+  @SuppressWarnings("unchecked")
+  <R> ObservableList<R> getInsideRange(@NotNull Range<Float> rtRange,
+      @NotNull Range<Double> mzRange) {
+    int from = 0;
+    if (mzRange.hasLowerBound()) {
+      from = firstIndexNotBelow(mzRange.lowerEndpoint());
+    }
+    int to = mzs.length;
+    if (mzRange.hasUpperBound()) {
+      to = firstIndexAbove(mzRange.upperEndpoint());
+    }
+
+    final IntArrayList matches = new IntArrayList();
+    for (int i = from; i < to; i++) {
+      if (rtRange.contains(rts[i]) && (isClosed(mzRange) || mzRange.contains(mzs[i]))) {
+        matches.add(positions[i]);
+      }
+    }
+
+    final int[] sortedMatches = matches.toIntArray();
+    IntArrays.quickSort(sortedMatches);
+    final ObservableList<R> result = FXCollections.observableArrayList();
+    for (int position : sortedMatches) {
+      result.add((R) items[position]);
+    }
+    return result;
+  }
+
+  /**
+   * @return true if the candidates between the binary search results are all within the range
+   */
+  private static boolean isClosed(Range<Double> range) {
+    return (!range.hasLowerBound() || range.lowerBoundType() == BoundType.CLOSED) && (
+        !range.hasUpperBound() || range.upperBoundType() == BoundType.CLOSED);
+  }
+
+  /**
+   * @return the first index with an m/z >= mz
+   */
+  private int firstIndexNotBelow(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the first index with an m/z > mz
+   */
+  private int firstIndexAbove(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] <= mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
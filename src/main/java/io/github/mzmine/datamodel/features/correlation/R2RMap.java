@@ -19,28 +19,62 @@
 package io.github.mzmine.datamodel.features.correlation;
 
 import io.github.mzmine.datamodel.features.FeatureListRow;
-import io.github.mzmine.util.MathUtils;
-import java.util.concurrent.ConcurrentHashMap;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
 
 /**
- * Map an object to two rows
+ * Map an object to two rows. The pair of row IDs is stored as an undirected 64 bit key (lower ID in
+ * the upper 32 bits), so any pair of int IDs has a unique key. The map is split into segments of
+ * open addressing hash tables with primitive long keys, each segment is guarded by its own lock.
+ * Null values are not permitted.
  *
  * @author Robin Schmid
  */
-public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
+public class R2RMap<T> {
+
+  private static final int NUM_SEGMENTS = 64;
+  private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(NUM_SEGMENTS);
+
+  private final Segment[] segments = new Segment[NUM_SEGMENTS];
+  // created on demand, see getPartners
+  private volatile Adjacency adjacency;
 
   public R2RMap() {
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      segments[i] = new Segment();
+    }
   }
 
   /**
    * A unique undirected key is computed from the two row.getIDs
    *
-   * @param a Feature list row with getID >=0
-   * @param b Feature list row with getID >=0
+   * @param a Feature list row
+   * @param b Feature list row
+   * @return unique undirected ID
+   */
+  public static long toKey(FeatureListRow a, FeatureListRow b) {
+    return toKey(a.getID(), b.getID());
+  }
+
+  /**
+   * A unique undirected key is computed from the two IDs
+   *
    * @return unique undirected ID
    */
-  public static int toKey(FeatureListRow a, FeatureListRow b) {
-    return MathUtils.undirectedPairing(a.getID(), b.getID());
+  public static long toKey(int idA, int idB) {
+    final int lower = Math.min(idA, idB);
+    final int upper = Math.max(idA, idB);
+    return ((long) lower << 32) | (upper & 0xFFFFFFFFL);
+  }
+
+  private Segment segmentFor(long key) {
+    return segments[(int) (HashCommon.mix(key) >>> SEGMENT_SHIFT)];
   }
 
   /**
@@ -50,7 +84,7 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param value values is mapped to the pair of FeatureListRows a and b
    */
   public void add(FeatureListRow a, FeatureListRow b, T value) {
-    this.put(toKey(a, b), value);
+    put(a, b, value);
   }
 
   /**
@@ -60,7 +94,22 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param value values is mapped to the pair of FeatureListRows a and b
    */
   public void put(FeatureListRow a, FeatureListRow b, T value) {
-    super.put(toKey(a, b), value);
+    put(toKey(a, b), value);
+  }
+
+  /**
+   * Maps a value to the undirected key of two rows
+   *
+   * @param key   undirected key, see {@link #toKey(int, int)}
+   * @param value the value
+   * @return the previous value or null
+   */
+  @SuppressWarnings("unchecked")
+  public T put(long key, @NotNull T value) {
+    if (value == null) {
+      throw new NullPointerException("Null values are not permitted");
+    }
+    return (T) segmentFor(key).put(key, value);
   }
 
   /**
@@ -72,4 +121,311 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
     return get(toKey(a, b));
   }
 
+  /**
+   * @param key undirected key, see {@link #toKey(int, int)}
+   * @return the value mapped to the key or null if no mapping exists
+   */
+  @SuppressWarnings("unchecked")
+  public T get(long key) {
+    return (T) segmentFor(key).get(key);
+  }
+
+  /**
+   * Removes the mapping of a and b (== b and a)
+   *
+   * @return the removed value or null
+   */
+  public T remove(FeatureListRow a, FeatureListRow b) {
+    return remove(toKey(a, b));
+  }
+
+  /**
+   * @param key undirected key, see {@link #toKey(int, int)}
+   * @return the removed value or null
+   */
+  @SuppressWarnings("unchecked")
+  public T remove(long key) {
+    return (T) segmentFor(key).remove(key);
+  }
+
+  /**
+   * Adds all mappings of the other map
+   *
+   * @param map the source map
+   */
+  public void putAll(@NotNull R2RMap<? extends T> map) {
+    for (Segment segment : map.segments) {
+      final long[] keys;
+      final Object[] values;
+      synchronized (segment) {
+        keys = Arrays.copyOf(segment.keys, segment.keys.length);
+        values = Arrays.copyOf(segment.values, segment.values.length);
+      }
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          segmentFor(keys[i]).put(keys[i], values[i]);
+        }
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * @return a snapshot of all values
+   */
+  @SuppressWarnings("unchecked")
+  @NotNull
+  public List<T> values() {
+    final List<T> values = new ArrayList<>();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        for (Object value : segment.values) {
+          if (value != null) {
+            values.add((T) value);
+          }
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * All rows that are mapped to the given row. The adjacency is created on first access and
+   * recreated after the map was changed.
+   *
+   * @param rowID the row ID
+   * @return the IDs of all partner rows, sorted ascending
+   */
+  @NotNull
+  public int[] getPartners(int rowID) {
+    Adjacency current = adjacency;
+    if (current == null || !current.isValid(segments)) {
+      synchronized (this) {
+        current = adjacency;
+        if (current == null || !current.isValid(segments)) {
+          current = new Adjacency(segments);
+          adjacency = current;
+        }
+      }
+    }
+    return current.getPartners(rowID);
+  }
+
+  /**
+   * @param row the row
+   * @return the IDs of all partner rows, sorted ascending
+   * @see #getPartners(int)
+   */
+  @NotNull
+  public int[] getPartners(FeatureListRow row) {
+    return getPartners(row.getID());
+  }
+
+  /**
+   * The memory used by the keys and value references of this map (and the adjacency index if it
+   * was created). The values themselves are not included. Assumes compressed object references.
+   *
+   * @return the estimated memory usage in bytes
+   */
+  public long getMemoryUsage() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        bytes += (long) segment.keys.length * Long.BYTES
+                 + (long) segment.values.length * Integer.BYTES;
+      }
+    }
+    final Adjacency current = adjacency;
+    if (current != null) {
+      bytes += current.getMemoryUsage();
+    }
+    return bytes;
+  }
+
+  /**
+   * Open addressing hash table with linear probing. Empty slots have a null value.
+   */
+  private static final class Segment {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys = new long[16];
+    private Object[] values = new Object[16];
+    private int size = 0;
+    private int modCount = 0;
+
+    private synchronized Object get(long key) {
+      final int mask = keys.length - 1;
+      int pos = (int) HashCommon.mix(key) & mask;
+      while (values[pos] != null) {
+        if (keys[pos] == key) {
+          return values[pos];
+        }
+        pos = (pos + 1) & mask;
+      }
+      return null;
+    }
+
+    private synchronized Object put(long key, Object value) {
+      final int mask = keys.length - 1;
+      int pos = (int) HashCommon.mix(key) & mask;
+      while (values[pos] != null) {
+        if (keys[pos] == key) {
+          final Object old = values[pos];
+          values[pos] = value;
+          return old;
+        }
+        pos = (pos + 1) & mask;
+      }
+      keys[pos] = key;
+      values[pos] = value;
+      size++;
+      modCount++;
+      if (size > keys.length * LOAD_FACTOR) {
+        rehash(keys.length * 2);
+      }
+      return null;
+    }
+
+    private synchronized Object remove(long key) {
+      final int mask = keys.length - 1;
+      int pos = (int) HashCommon.mix(key) & mask;
+      while (values[pos] != null) {
+        if (keys[pos] == key) {
+          final Object old = values[pos];
+          shiftKeys(pos);
+          size--;
+          modCount++;
+          return old;
+        }
+        pos = (pos + 1) & mask;
+      }
+      return null;
+    }
+
+    /**
+     * Closes the gap at pos by shifting the following entries of the probe sequence
+     */
+    private void shiftKeys(int pos) {
+      final int mask = keys.length - 1;
+      while (true) {
+        final int last = pos;
+        pos = (pos + 1) & mask;
+        long key;
+        while (true) {
+          if (values[pos] == null) {
+            values[last] = null;
+            return;
+          }
+          key = keys[pos];
+          final int slot = (int) HashCommon.mix(key) & mask;
+          // move the entry if its home slot is not within (last, pos]
+          if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+            break;
+          }
+          pos = (pos + 1) & mask;
+        }
+        keys[last] = key;
+        values[last] = values[pos];
+      }
+    }
+
+    private void rehash(int capacity) {
+      final long[] oldKeys = keys;
+      final Object[] oldValues = values;
+      keys = new long[capacity];
+      values = new Object[capacity];
+      final int mask = capacity - 1;
+      for (int i = 0; i < oldValues.length; i++) {
+        if (oldValues[i] != null) {
+          int pos = (int) HashCommon.mix(oldKeys[i]) & mask;
+          while (values[pos] != null) {
+            pos = (pos + 1) & mask;
+          }
+          keys[pos] = oldKeys[i];
+          values[pos] = oldValues[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Partner IDs of each row ID, created from a snapshot of all keys.
+   */
+  private static final class Adjacency {
+
+    private final int[] modCounts;
+    private final Int2ObjectMap<int[]> partners;
+    private final long memoryUsage;
+
+    private Adjacency(Segment[] segments) {
+      modCounts = new int[segments.length];
+      final Int2ObjectMap<IntArrayList> lists = new Int2ObjectOpenHashMap<>();
+      for (int s = 0; s < segments.length; s++) {
+        final Segment segment = segments[s];
+        synchronized (segment) {
+          modCounts[s] = segment.modCount;
+          for (int i = 0; i < segment.values.length; i++) {
+            if (segment.values[i] != null) {
+              final int a = (int) (segment.keys[i] >> 32);
+              final int b = (int) segment.keys[i];
+              lists.computeIfAbsent(a, k -> new IntArrayList()).add(b);
+              if (a != b) {
+                lists.computeIfAbsent(b, k -> new IntArrayList()).add(a);
+              }
+            }
+          }
+        }
+      }
+
+      partners = new Int2ObjectOpenHashMap<>(lists.size());
+      long bytes = 0;
+      for (Int2ObjectMap.Entry<IntArrayList> e : lists.int2ObjectEntrySet()) {
+        final int[] ids = e.getValue().toIntArray();
+        Arrays.sort(ids);
+        partners.put(e.getIntKey(), ids);
+        // array header and the map entry (key and reference)
+        bytes += 16L + (long) ids.length * Integer.BYTES + Integer.BYTES * 2;
+      }
+      memoryUsage = bytes;
+    }
+
+    private boolean isValid(Segment[] segments) {
+      for (int s = 0; s < segments.length; s++) {
+        synchronized (segments[s]) {
+          if (segments[s].modCount != modCounts[s]) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    private int[] getPartners(int rowID) {
+      final int[] ids = partners.get(rowID);
+      return ids == null ? new int[0] : ids.clone();
+    }
+
+    private long getMemoryUsage() {
+      return memoryUsage;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "R2RMap{size=" + size() + "}";
+  }
 }
@@ -20,17 +20,14 @@ package io.github.mzmine.datamodel.features.types;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
-import io.github.mzmine.datamodel.features.types.graphicalnodes.FeatureShapeChart;
-import io.github.mzmine.datamodel.features.types.tasks.FeaturesGraphicalNodeTask;
+import io.github.mzmine.datamodel.features.types.graphicalnodes.SparklinePainter;
+import io.github.mzmine.datamodel.features.types.graphicalnodes.ThumbnailRenderer;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.visualization.chromatogram.ChromatogramVisualizerModule;
-import io.github.mzmine.taskcontrol.Task;
-import io.github.mzmine.taskcontrol.TaskPriority;
 import java.util.List;
 import javafx.scene.Node;
 import javafx.scene.control.TreeTableCell;
 import javafx.scene.control.TreeTableColumn;
-import javafx.scene.layout.StackPane;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -63,21 +60,11 @@ public class FeatureShapeType extends LinkedGraphicalType {
       return null;
     }
 
-    // get existing buffered node from row (for column name)
-    // TODO listen to changes in features data
-    Node node = row.getBufferedColChart(coll.getText());
-    if (node != null) {
-      return node;
-    }
-
-    StackPane pane = new StackPane();
-
-    // TODO stop task if new task is started
-    Task task = new FeaturesGraphicalNodeTask(FeatureShapeChart.class, pane, row, coll.getText());
-    // TODO change to TaskPriority.LOW priority
-    MZmineCore.getTaskController().addTask(task, TaskPriority.HIGH);
-
-    return pane;
+    // painted on a renderer thread and cached as an image until the features data changes
+    return ThumbnailRenderer.getInstance().getThumbnail(row, coll.getText(),
+        ThumbnailRenderer.getFeatureDataVersion(row),
+        () -> SparklinePainter.paintChromatograms(row, DEFAULT_GRAPHICAL_CELL_WIDTH,
+            DEFAULT_GRAPHICAL_CELL_HEIGHT));
   }
 
 
@@ -74,35 +74,47 @@ public class FeatureShapeChart extends StackPane {
     chart.getChart().setBackgroundPaint((new Color(0, 0, 0, 0)));
     chart.getXYPlot().setBackgroundPaint((new Color(0, 0, 0, 0)));
 
+    final org.jfree.data.Range defaultRange = getDefaultRTRange(row);
+
+    setPrefHeight(GraphicalColumType.DEFAULT_GRAPHICAL_CELL_HEIGHT);
+    Platform.runLater(() -> {
+      getChildren().add(chart);
+      chart.addDatasets(datasets);
+
+      chart.getXYPlot().getDomainAxis().setRange(defaultRange);
+      chart.getXYPlot().getDomainAxis().setDefaultAutoRange(defaultRange);
+    });
+  }
+
+  /**
+   * The RT range around the best feature of the row
+   *
+   * @param row the row
+   * @return the RT range that is shown by default
+   */
+  @NotNull
+  public static Range getDefaultRTRange(@NotNull ModularFeatureListRow row) {
     final ModularFeature bestFeature = row.getBestFeature();
-    final org.jfree.data.Range defaultRange;
+    final Range defaultRange;
     if (bestFeature != null) {
       final Float rt = bestFeature.getRT();
 
       if (bestFeature.getFWHM() != null && !Float.isNaN(bestFeature.getFWHM())
           && bestFeature.getFWHM() > 0f) {
         final Float fwhm = bestFeature.getFWHM();
-        defaultRange = new org.jfree.data.Range(Math.max(rt - 5 * fwhm, 0),
+        defaultRange = new Range(Math.max(rt - 5 * fwhm, 0),
             Math.min(rt + 5 * fwhm, bestFeature.getRawDataFile().getDataRTRange().upperEndpoint()));
 
       } else {
         final Float length = Math.max(RangeUtils.rangeLength(bestFeature.getRawDataPointsRTRange()),
             0.001f);
-        defaultRange = new org.jfree.data.Range(Math.max(rt - 3 * length, 0),
+        defaultRange = new Range(Math.max(rt - 3 * length, 0),
             Math.min(rt + 3 * length,
                 bestFeature.getRawDataFile().getDataRTRange().upperEndpoint()));
       }
     } else {
       defaultRange = new Range(0, 1);
     }
-
-    setPrefHeight(GraphicalColumType.DEFAULT_GRAPHICAL_CELL_HEIGHT);
-    Platform.runLater(() -> {
-      getChildren().add(chart);
-      chart.addDatasets(datasets);
-
-      chart.getXYPlot().getDomainAxis().setRange(defaultRange);
-      chart.getXYPlot().getDomainAxis().setDefaultAutoRange(defaultRange);
-    });
+    return defaultRange;
   }
 }
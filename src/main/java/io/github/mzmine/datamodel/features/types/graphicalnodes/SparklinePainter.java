@@ -0,0 +1,173 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.features.types.graphicalnodes;
+
+import io.github.mzmine.datamodel.ImagingRawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SummedIntensityMobilitySeries;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jfree.data.Range;
+
+/**
+ * Paints the chromatograms or mobilograms of all features of a row as lines into a small image. A
+ * light weight alternative to the charts of the feature table.
+ */
+public class SparklinePainter {
+
+  private static final float LINE_WIDTH = 1.2f;
+  private static final int PADDING = 2;
+
+  private SparklinePainter() {
+  }
+
+  /**
+   * Paints the chromatograms of all features within the default RT range of the row
+   *
+   * @return the image or null if there are no chromatograms
+   * @see FeatureShapeChart#getDefaultRTRange(ModularFeatureListRow)
+   */
+  @Nullable
+  public static BufferedImage paintChromatograms(@NotNull ModularFeatureListRow row, int width,
+      int height) {
+    final List<Line> lines = new ArrayList<>();
+    for (ModularFeature f : row.getFeatures()) {
+      if (f.getRawDataFile() instanceof ImagingRawDataFile) {
+        continue;
+      }
+      final IonTimeSeries<? extends Scan> series = f.getFeatureData();
+      if (series == null || series.getNumberOfValues() == 0) {
+        continue;
+      }
+      final int n = series.getNumberOfValues();
+      final double[] x = new double[n];
+      final double[] y = new double[n];
+      for (int i = 0; i < n; i++) {
+        x[i] = series.getRetentionTime(i);
+        y[i] = series.getIntensity(i);
+      }
+      lines.add(new Line(x, y, f.getRawDataFile().getColorAWT()));
+    }
+    return paint(lines, FeatureShapeChart.getDefaultRTRange(row), width, height);
+  }
+
+  /**
+   * Paints the summed mobilograms of all features
+   *
+   * @return the image or null if there are no mobilograms
+   */
+  @Nullable
+  public static BufferedImage paintMobilograms(@NotNull ModularFeatureListRow row, int width,
+      int height) {
+    final List<Line> lines = new ArrayList<>();
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (ModularFeature f : row.getFeatures()) {
+      if (!(f.getFeatureData() instanceof IonMobilogramTimeSeries series)) {
+        continue;
+      }
+      final SummedIntensityMobilitySeries mobilogram = series.getSummedMobilogram();
+      final int n = mobilogram.getNumberOfValues();
+      if (n == 0) {
+        continue;
+      }
+      final double[] x = new double[n];
+      final double[] y = new double[n];
+      for (int i = 0; i < n; i++) {
+        x[i] = mobilogram.getMobility(i);
+        y[i] = mobilogram.getIntensity(i);
+        min = Math.min(min, x[i]);
+        max = Math.max(max, x[i]);
+      }
+      lines.add(new Line(x, y, f.getRawDataFile().getColorAWT()));
+    }
+    if (lines.isEmpty()) {
+      return null;
+    }
+    return paint(lines, new Range(min, max), width, height);
+  }
+
+  /**
+   * Paints the lines scaled to the domain range and the maximum y value within this range
+   */
+  @Nullable
+  private static BufferedImage paint(List<Line> lines, Range domain, int width, int height) {
+    if (lines.isEmpty() || width <= 2 * PADDING || height <= 2 * PADDING) {
+      return null;
+    }
+    double maxY = 0;
+    for (Line line : lines) {
+      for (int i = 0; i < line.x.length; i++) {
+        if (domain.contains(line.x[i])) {
+          maxY = Math.max(maxY, line.y[i]);
+        }
+      }
+    }
+    if (maxY <= 0) {
+      maxY = 1;
+    }
+
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setStroke(new BasicStroke(LINE_WIDTH));
+      // clip to the domain range like the chart
+      g.clipRect(PADDING, 0, width - 2 * PADDING, height);
+
+      final double plotWidth = width - 2d * PADDING;
+      final double plotHeight = height - 2d * PADDING;
+      final double domainLength = Math.max(domain.getLength(), Double.MIN_NORMAL);
+      final double domainStart = domain.getLowerBound();
+      for (Line line : lines) {
+        final Path2D.Double path = new Path2D.Double();
+        for (int i = 0; i < line.x.length; i++) {
+          final double px = PADDING + (line.x[i] - domainStart) / domainLength * plotWidth;
+          final double py = PADDING + plotHeight - line.y[i] / maxY * plotHeight;
+          if (i == 0) {
+            path.moveTo(px, py);
+          } else {
+            path.lineTo(px, py);
+          }
+        }
+        g.setColor(line.color);
+        g.draw(path);
+      }
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  private record Line(double[] x, double[] y, Color color) {
+
+  }
+}
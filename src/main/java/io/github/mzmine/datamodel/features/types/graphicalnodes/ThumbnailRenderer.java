@@ -0,0 +1,323 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.features.types.graphicalnodes;
+
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.modifiers.GraphicalColumType;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Renders thumbnail images for graphical columns of the feature table. The images are painted by a
+ * fixed number of threads, the most recently requested cells first. Requests of cells that were
+ * scrolled out of view before painting started are dropped. Painted images are kept in a least
+ * recently used cache with a memory limit. Each image keeps the data version of its source and is
+ * painted again once the version changed.
+ */
+public class ThumbnailRenderer {
+
+  private static final Logger logger = Logger.getLogger(ThumbnailRenderer.class.getName());
+
+  private static final long DEFAULT_MAX_CACHE_BYTES = 64L << 20;
+  private static final ThumbnailRenderer INSTANCE = new ThumbnailRenderer(
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)),
+      DEFAULT_MAX_CACHE_BYTES);
+
+  // newest requests at the head
+  private final LinkedBlockingDeque<Request> queue = new LinkedBlockingDeque<>();
+  // guarded by itself, also guards the targets of all requests
+  private final Map<Key, Request> pending = new HashMap<>();
+  // guarded by itself, access ordered
+  private final LinkedHashMap<Key, Thumbnail> cache = new LinkedHashMap<>(256, 0.75f, true);
+  private final long maxCacheBytes;
+  private long cacheBytes = 0;
+  private final List<Thread> threads = new ArrayList<>();
+  private volatile boolean shutdown = false;
+
+  /**
+   * Use the shared {@link #getInstance()} for the feature table. Other instances need to be
+   * {@link #shutdown()} once they are no longer used.
+   *
+   * @param threads       number of painting threads
+   * @param maxCacheBytes memory limit of all cached images
+   */
+  public ThumbnailRenderer(int threads, long maxCacheBytes) {
+    this.maxCacheBytes = maxCacheBytes;
+    for (int i = 0; i < threads; i++) {
+      final Thread thread = new Thread(this::paintRequests, "Thumbnail renderer " + i);
+      thread.setDaemon(true);
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+      this.threads.add(thread);
+      thread.start();
+    }
+  }
+
+  public static ThumbnailRenderer getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Creates the node of a table cell. Needs to be called on the JavaFX thread.
+   *
+   * @param source  the row or feature of the cell
+   * @param column  the column of the cell
+   * @param version the version of the painted data, e.g., {@link #getFeatureDataVersion(
+   *                ModularFeatureListRow)}. Cached images of other versions are painted again.
+   * @param painter paints the image on a renderer thread, may return null if there is nothing to
+   *                show
+   * @return an image view of the cached image or a pane that shows the image once it is painted
+   */
+  @NotNull
+  public Node getThumbnail(@NotNull Object source, @NotNull String column, int version,
+      @NotNull Supplier<@Nullable BufferedImage> painter) {
+    final Key key = new Key(source, column);
+    final Image cached = getCached(key, version);
+    if (cached != null) {
+      return new ImageView(cached);
+    }
+
+    final StackPane pane = new StackPane();
+    pane.setMinHeight(GraphicalColumType.DEFAULT_GRAPHICAL_CELL_HEIGHT);
+    final Request request;
+    synchronized (pending) {
+      Request existing = pending.get(key);
+      if (existing == null || existing.version != version) {
+        // a request of an old version still paints for its own cells
+        existing = new Request(key, version, painter);
+        pending.put(key, existing);
+        queue.offerFirst(existing);
+      } else if (!existing.started && queue.remove(existing)) {
+        // visible again, paint next
+        queue.offerFirst(existing);
+      }
+      existing.targets.add(pane);
+      request = existing;
+    }
+
+    // the cell shows another row or was removed
+    pane.parentProperty().addListener((observable, oldParent, newParent) -> {
+      if (oldParent != null && newParent == null) {
+        synchronized (pending) {
+          request.targets.remove(pane);
+        }
+      }
+    });
+    return pane;
+  }
+
+  /**
+   * Removes all cached images of rows or features
+   *
+   * @param sources the rows or features
+   */
+  public void invalidate(@NotNull Collection<?> sources) {
+    final Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    removed.addAll(sources);
+    synchronized (cache) {
+      final Iterator<Map.Entry<Key, Thumbnail>> it = cache.entrySet().iterator();
+      while (it.hasNext()) {
+        final Map.Entry<Key, Thumbnail> entry = it.next();
+        if (removed.contains(entry.getKey().source())) {
+          cacheBytes -= getBytes(entry.getValue().image());
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all cached images
+   */
+  public void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+      cacheBytes = 0;
+    }
+  }
+
+  /**
+   * Identifies changes of the painted feature data of a row: features that were added, removed or
+   * replaced and new feature data of a feature
+   *
+   * @return the data version of the row
+   */
+  public static int getFeatureDataVersion(@NotNull ModularFeatureListRow row) {
+    int version = 1;
+    for (ModularFeature feature : row.getFeatures()) {
+      version = 31 * version + System.identityHashCode(feature);
+      version = 31 * version + System.identityHashCode(feature.getFeatureData());
+    }
+    return version;
+  }
+
+  /**
+   * @return the cached image of this version or null. Images of other versions are removed.
+   */
+  @Nullable
+  private Image getCached(Key key, int version) {
+    synchronized (cache) {
+      final Thumbnail cached = cache.get(key);
+      if (cached == null) {
+        return null;
+      }
+      if (cached.version() != version) {
+        cache.remove(key);
+        cacheBytes -= getBytes(cached.image());
+        return null;
+      }
+      return cached.image();
+    }
+  }
+
+  private void putCached(Key key, int version, Image image) {
+    synchronized (cache) {
+      final Thumbnail old = cache.put(key, new Thumbnail(version, image));
+      if (old != null) {
+        cacheBytes -= getBytes(old.image());
+      }
+      cacheBytes += getBytes(image);
+      // remove least recently used
+      final Iterator<Thumbnail> it = cache.values().iterator();
+      while (cacheBytes > maxCacheBytes && it.hasNext()) {
+        cacheBytes -= getBytes(it.next().image());
+        it.remove();
+      }
+    }
+  }
+
+  private static long getBytes(Image image) {
+    return (long) image.getWidth() * (long) image.getHeight() * Integer.BYTES;
+  }
+
+  /**
+   * Stops the painting threads. Requests that were not painted yet are dropped.
+   */
+  public void shutdown() {
+    shutdown = true;
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    queue.clear();
+  }
+
+  private void paintRequests() {
+    while (!shutdown) {
+      final Request request;
+      try {
+        request = queue.takeFirst();
+      } catch (InterruptedException e) {
+        return;
+      }
+      synchronized (pending) {
+        // all cells were scrolled out of view
+        if (request.targets.isEmpty()) {
+          pending.remove(request.key, request);
+          continue;
+        }
+        request.started = true;
+      }
+
+      Image image = null;
+      try {
+        final BufferedImage painted = request.painter.get();
+        if (painted != null) {
+          image = SwingFXUtils.toFXImage(painted, null);
+          putCached(request.key, request.version, image);
+        }
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Cannot paint thumbnail for " + request.key, e);
+      }
+
+      final List<StackPane> targets;
+      synchronized (pending) {
+        pending.remove(request.key, request);
+        targets = new ArrayList<>(request.targets);
+      }
+      if (image != null) {
+        final Image finalImage = image;
+        Platform.runLater(() -> {
+          for (StackPane pane : targets) {
+            pane.getChildren().add(new ImageView(finalImage));
+          }
+        });
+      }
+    }
+  }
+
+  private record Key(Object source, String column) {
+
+    @Override
+    public boolean equals(Object o) {
+      // rows and features are identified by identity
+      return o instanceof Key key && source == key.source && column.equals(key.column);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(source) + column.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return column + " of " + source;
+    }
+  }
+
+  private record Thumbnail(int version, Image image) {
+
+  }
+
+  private static class Request {
+
+    private final Key key;
+    private final int version;
+    private final Supplier<BufferedImage> painter;
+    // cells that show this image, guarded by the pending map
+    private final List<StackPane> targets = new ArrayList<>(1);
+    private boolean started = false;
+
+    private Request(Key key, int version, Supplier<BufferedImage> painter) {
+      this.key = key;
+      this.version = version;
+      this.painter = painter;
+    }
+  }
+}
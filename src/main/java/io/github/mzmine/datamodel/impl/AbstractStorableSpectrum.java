@@ -18,16 +18,21 @@
 
 package io.github.mzmine.datamodel.impl;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
 import java.nio.DoubleBuffer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * An implementation of MassSpectrum that stores the data points in a MemoryMapStorage.
+ * An implementation of MassSpectrum that stores the data points in a MemoryMapStorage. If the
+ * storage is set to compress spectra ({@link MemoryMapStorage#isCompressSpectra()}), the data
+ * points are stored as {@link CompressedSpectrumValues}.
  */
 public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
 
@@ -36,6 +41,10 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
 
   protected DoubleBuffer mzValues;
   protected DoubleBuffer intensityValues;
+  /**
+   * Set instead of the m/z and intensity buffers, if the values were compressed
+   */
+  protected CompressedSpectrumValues compressedValues;
 
   /**
    * Note: mz and intensity values for a scan shall only be set once and are enforced to be
@@ -55,6 +64,29 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     setDataPoints(storage, mzValues, intensityValues);
   }
 
+  /**
+   * Uses the buffers without copying them, e.g. views of a mapped project file. The values are not
+   * read, so a mapped file is only paged in once the data points are accessed.
+   *
+   * @param mzValues        the m/z values sorted in ascending order
+   * @param intensityValues the intensity values
+   * @param mzRange         the m/z range of the data points or null if there are none
+   * @param basePeakIndex   the index of the most intense data point or null if there are none
+   * @param totalIonCurrent the sum of all intensities
+   */
+  public AbstractStorableSpectrum(@NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues, @Nullable Range<Double> mzRange,
+      @Nullable Integer basePeakIndex, double totalIonCurrent) {
+    if (mzValues.capacity() != intensityValues.capacity()) {
+      throw new IllegalArgumentException("Length of mz and intensity values does not match.");
+    }
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
+    this.mzRange = mzRange;
+    this.basePeakIndex = basePeakIndex;
+    this.totalIonCurrent = totalIonCurrent;
+  }
+
   protected synchronized void setDataPoints(@Nullable MemoryMapStorage storage,
       @Nullable double[] mzValues,
       @Nullable double[] intensityValues) {
@@ -77,8 +109,22 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
       }
     }
 
-    this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzValues);
-    this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensityValues);
+    this.compressedValues = null;
+    if (storage != null && storage.isCompressSpectra()) {
+      try {
+        compressedValues = CompressedSpectrumValues.encode(storage, mzValues, intensityValues);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot store compressed spectrum. " + e.getMessage(), e);
+      }
+    }
+
+    if (compressedValues != null) {
+      this.mzValues = null;
+      this.intensityValues = null;
+    } else {
+      this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzValues);
+      this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensityValues);
+    }
     updateMzRangeAndTICValues();
   }
 
@@ -98,28 +144,58 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     }
   }
 
+  @Override
+  public int getNumberOfDataPoints() {
+    final CompressedSpectrumValues compressed = compressedValues;
+    return compressed != null ? compressed.getNumberOfValues() : super.getNumberOfDataPoints();
+  }
+
+  @Override
+  public double getMzValue(int index) {
+    final CompressedSpectrumValues compressed = compressedValues;
+    return compressed != null ? compressed.getMzValue(index) : super.getMzValue(index);
+  }
+
+  @Override
+  public double getIntensityValue(int index) {
+    final CompressedSpectrumValues compressed = compressedValues;
+    return compressed != null ? compressed.getIntensityValue(index)
+        : super.getIntensityValue(index);
+  }
+
   @Override
   public double[] getMzValues(@NotNull double[] dst) {
-    if (mzValues == null) {
+    final CompressedSpectrumValues compressed = compressedValues;
+    if (mzValues == null && compressed == null) {
       return new double[0];
     }
     if (dst.length < getNumberOfDataPoints()) {
       dst = new double[getNumberOfDataPoints()];
     }
-    mzValues.get(0, dst, 0, getNumberOfDataPoints());
+    if (compressed != null) {
+      // decode directly into the destination array
+      compressed.getMzValues(dst);
+    } else {
+      mzValues.get(0, dst, 0, getNumberOfDataPoints());
+    }
     return dst;
   }
 
   @Override
   public double[] getIntensityValues(@NotNull double[] dst) {
-    if (intensityValues == null) {
+    final CompressedSpectrumValues compressed = compressedValues;
+    if (intensityValues == null && compressed == null) {
       return new double[0];
     }
 
     if (dst.length < getNumberOfDataPoints()) {
       dst = new double[getNumberOfDataPoints()];
     }
-    intensityValues.get(0, dst, 0, getNumberOfDataPoints());
+    if (compressed != null) {
+      compressed.getIntensityValues(dst);
+    } else {
+      intensityValues.get(0, dst, 0, getNumberOfDataPoints());
+    }
     return dst;
   }
 
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lossy compressed m/z and intensity values of a spectrum. Each m/z value is stored as an unsigned
+ * 32 bit fixed point offset to the lowest m/z of the spectrum, intensities are stored as floats.
+ * This halves the size of a spectrum and keeps random access in constant time, which is required
+ * by {@link io.github.mzmine.datamodel.MassSpectrum#getMzValue(int)} and binary searches.
+ * <p>
+ * The fixed point scaling factor is chosen for each spectrum to use the full 32 bit range for its
+ * m/z span. Spectra that would exceed the maximum m/z error of {@link #MAX_MZ_ERROR} (m/z spans >
+ * ~8500) are not compressed, see {@link #encode(MemoryMapStorage, double[], double[])}.
+ */
+public final class CompressedSpectrumValues {
+
+  /**
+   * Maximum absolute error of an m/z value.
+   */
+  public static final double MAX_MZ_ERROR = 1E-6;
+
+  private static final double MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+
+  private final double mzOffset;
+  private final double mzScale;
+  private final IntBuffer mzValues;
+  private final FloatBuffer intensityValues;
+
+  private CompressedSpectrumValues(double mzOffset, double mzScale, IntBuffer mzValues,
+      FloatBuffer intensityValues) {
+    this.mzOffset = mzOffset;
+    this.mzScale = mzScale;
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
+  }
+
+  /**
+   * Compresses the values and stores them in the storage.
+   *
+   * @param storage         the storage
+   * @param mzValues        sorted m/z values
+   * @param intensityValues the intensity values
+   * @return the compressed values or null, if the values cannot be compressed within the maximum
+   * m/z error. The size is counted for the compression ratio of the storage in both cases.
+   */
+  @Nullable
+  public static CompressedSpectrumValues encode(@NotNull MemoryMapStorage storage,
+      @NotNull double[] mzValues, @NotNull double[] intensityValues) throws IOException {
+    final int n = mzValues.length;
+    if (n == 0) {
+      return null;
+    }
+
+    final long uncompressedBytes = (long) n * Double.BYTES * 2;
+    final double mzOffset = mzValues[0];
+    final double span = mzValues[n - 1] - mzOffset;
+    // use the full range of the unsigned int for the fixed point values
+    final double mzScale = span > 0 ? MAX_UNSIGNED_INT / span : 1d;
+    if (0.5d / mzScale > MAX_MZ_ERROR) {
+      // stored uncompressed
+      storage.addSpectrumBytes(uncompressedBytes, uncompressedBytes);
+      return null;
+    }
+
+    final int[] fixedMzs = new int[n];
+    final float[] floatIntensities = new float[n];
+    for (int i = 0; i < n; i++) {
+      // cast to long first, values > Integer.MAX_VALUE are stored as unsigned int
+      fixedMzs[i] = (int) Math.min(Math.round((mzValues[i] - mzOffset) * mzScale),
+          (long) MAX_UNSIGNED_INT);
+      floatIntensities[i] = (float) intensityValues[i];
+    }
+
+    storage.addSpectrumBytes(uncompressedBytes, (long) n * (Integer.BYTES + Float.BYTES));
+
+    return new CompressedSpectrumValues(mzOffset, mzScale, storage.storeData(fixedMzs),
+        storage.storeData(floatIntensities));
+  }
+
+  public int getNumberOfValues() {
+    return mzValues.capacity();
+  }
+
+  public double getMzValue(int index) {
+    return mzOffset + Integer.toUnsignedLong(mzValues.get(index)) / mzScale;
+  }
+
+  public double getIntensityValue(int index) {
+    return intensityValues.get(index);
+  }
+
+  /**
+   * Decodes the m/z values into the destination array
+   *
+   * @param dst destination array, length >= {@link #getNumberOfValues()}
+   */
+  public void getMzValues(@NotNull double[] dst) {
+    final int n = getNumberOfValues();
+    for (int i = 0; i < n; i++) {
+      dst[i] = mzOffset + Integer.toUnsignedLong(mzValues.get(i)) / mzScale;
+    }
+  }
+
+  /**
+   * Decodes the intensity values into the destination array
+   *
+   * @param dst destination array, length >= {@link #getNumberOfValues()}
+   */
+  public void getIntensityValues(@NotNull double[] dst) {
+    final int n = getNumberOfValues();
+    for (int i = 0; i < n; i++) {
+      dst[i] = intensityValues.get(i);
+    }
+  }
+}
@@ -24,6 +24,8 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.IsotopePattern;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamReader;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamWriter;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.ParsingUtils;
 import io.github.mzmine.util.scans.ScanUtils;
@@ -127,10 +129,9 @@ public class SimpleIsotopePattern implements IsotopePattern {
       }
 
       switch (reader.getLocalName()) {
-        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
-        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
+        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = BlockXMLStreamReader.readDoubles(reader);
+        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities = BlockXMLStreamReader.readDoubles(
+            reader);
         case XML_DESCRIPTION_ELEMENT -> desc = reader.getElementText();
         case XML_COMPOSITION_ELEMENT -> {
           if (!reader.getElementText().trim().isEmpty()) {
@@ -302,12 +303,11 @@ public class SimpleIsotopePattern implements IsotopePattern {
     writer.writeStartElement(XML_ELEMENT);
 
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
-    writer.writeCharacters(ParsingUtils.doubleArrayToString(mzValues, mzValues.length));
+    BlockXMLStreamWriter.writeDoubles(writer, mzValues);
     writer.writeEndElement();
 
     writer.writeStartElement(CONST.XML_INTENSITY_VALUES_ELEMENT);
-    writer.writeCharacters(
-        ParsingUtils.doubleArrayToString(intensityValues, intensityValues.length));
+    BlockXMLStreamWriter.writeDoubles(writer, intensityValues);
     writer.writeEndElement();
 
     writer.writeStartElement(XML_DESCRIPTION_ELEMENT);
@@ -24,6 +24,8 @@ import io.github.mzmine.datamodel.MergedMsMsSpectrum;
 import io.github.mzmine.datamodel.MobilityScan;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamReader;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamWriter;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.ParsingUtils;
@@ -104,10 +106,9 @@ public class SimpleMergedMsMsSpectrum extends SimpleMergedMassSpectrum implement
         continue;
       }
       switch (reader.getLocalName()) {
-        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
-        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensties = ParsingUtils.stringToDoubleArray(
-            reader.getElementText());
+        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = BlockXMLStreamReader.readDoubles(reader);
+        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensties = BlockXMLStreamReader.readDoubles(
+            reader);
         case CONST.XML_SCAN_LIST_ELEMENT -> scans = ParsingUtils.stringToMobilityScanList(
             reader.getElementText(), file);
         case MsMsInfo.XML_ELEMENT -> info = MsMsInfo.loadFromXML(reader, file);
@@ -134,11 +135,11 @@ public class SimpleMergedMsMsSpectrum extends SimpleMergedMassSpectrum implement
     }
 
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(getMzValues()));
+    BlockXMLStreamWriter.writeDoubles(writer, getMzValues());
     writer.writeEndElement();
 
     writer.writeStartElement(CONST.XML_INTENSITY_VALUES_ELEMENT);
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(getIntensityValues()));
+    BlockXMLStreamWriter.writeDoubles(writer, getIntensityValues());
     writer.writeEndElement();
 
     List<MobilityScan> mobilityScans = getSourceSpectra().stream()
@@ -26,6 +26,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.util.scans.ScanUtils;
+import java.nio.DoubleBuffer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -80,6 +81,30 @@ public class SimpleScan extends AbstractStorableSpectrum implements Scan {
     setMsMsInfo(msMsInfo);
   }
 
+  /**
+   * Constructor for a scan that uses the given buffers without copying them, e.g. views of a
+   * mapped project file. The m/z range, base peak and TIC of the data points are passed in, so the
+   * values are not read.
+   */
+  public SimpleScan(@NotNull RawDataFile dataFile, int scanNumber, int msLevel, float retentionTime,
+      @Nullable MsMsInfo msMsInfo, @NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues, @Nullable Range<Double> dataPointMZRange,
+      @Nullable Integer basePeakIndex, double totalIonCurrent, MassSpectrumType spectrumType,
+      PolarityType polarity, String scanDefinition, Range<Double> scanMZRange) {
+
+    super(mzValues, intensityValues, dataPointMZRange, basePeakIndex, totalIonCurrent);
+
+    this.dataFile = dataFile;
+    this.scanNumber = scanNumber;
+    this.msLevel = msLevel;
+    this.retentionTime = retentionTime;
+    this.polarity = polarity;
+    this.scanDefinition = scanDefinition;
+    this.scanMZRange = scanMZRange;
+    setSpectrumType(spectrumType);
+    setMsMsInfo(msMsInfo);
+  }
+
 
   /**
    * @see io.github.mzmine.datamodel.Scan#getScanNumber()
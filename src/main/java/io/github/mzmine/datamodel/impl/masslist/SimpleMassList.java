@@ -17,12 +17,14 @@
 
 package io.github.mzmine.datamodel.impl.masslist;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MassList;
 import io.github.mzmine.datamodel.impl.AbstractStorableSpectrum;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.DoubleBuffer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -36,6 +38,15 @@ public class SimpleMassList extends AbstractStorableSpectrum implements MassList
     super(storage, mzValues, intensityValues);
   }
 
+  /**
+   * Uses the buffers without copying them, e.g. views of a mapped project file. The m/z range, base
+   * peak and TIC of the data points are passed in, so the values are not read.
+   */
+  public SimpleMassList(@NotNull DoubleBuffer mzValues, @NotNull DoubleBuffer intensityValues,
+      @Nullable Range<Double> mzRange, @Nullable Integer basePeakIndex, double totalIonCurrent) {
+    super(mzValues, intensityValues, mzRange, basePeakIndex, totalIonCurrent);
+  }
+
   /**
    * Use mzValues and intensityValues constructor
    *
@@ -18,8 +18,10 @@
 
 package io.github.mzmine.gui.preferences;
 
+import io.github.mzmine.datamodel.impl.CompressedSpectrumValues;
 import io.github.mzmine.gui.chartbasics.chartthemes.ChartThemeParameters;
 import io.github.mzmine.main.KeepInMemory;
+import io.github.mzmine.main.SpectraCompression;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.ParameterSet;
@@ -37,6 +39,7 @@ import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileSelectionType;
 import io.github.mzmine.parameters.parametertypes.paintscale.PaintScalePaletteParameter;
 import io.github.mzmine.parameters.parametertypes.submodules.OptionalModuleParameter;
+import io.github.mzmine.taskcontrol.TaskSchedulerMode;
 import io.github.mzmine.util.ExitCode;
 import java.text.DecimalFormat;
 import java.util.Map;
@@ -86,6 +89,14 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public static final NumOfThreadsParameter numOfThreads = new NumOfThreadsParameter();
 
+  public static final ComboParameter<TaskSchedulerMode> taskSchedulerMode = new ComboParameter<>(
+      "Task scheduler", String.format(
+      "Defines how tasks are started. %s checks the task queue periodically and starts a new "
+      + "thread for each task. %s starts tasks as soon as they are submitted or a thread becomes "
+      + "available and reuses threads, which reduces the overhead of many short tasks.",
+      TaskSchedulerMode.POLLING, TaskSchedulerMode.WORK_STEALING), TaskSchedulerMode.values(),
+      TaskSchedulerMode.POLLING);
+
   public static final OptionalModuleParameter proxySettings = new OptionalModuleParameter(
       "Use proxy", "Use proxy for internet connection?", new ProxySettings(), false);
 
@@ -146,6 +157,14 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final ComboParameter<SpectraCompression> spectraCompression = new ComboParameter<>(
+      "Compress spectra", String.format(
+      "Specifies the spectra that are compressed in the temp files to reduce the required disk "
+      + "space by half. m/z values are stored as fixed point values (max. error %.0E) and "
+      + "intensities as single precision floats. Does not apply to spectra that are kept in "
+      + "memory. Only applies to new data.", CompressedSpectrumValues.MAX_MZ_ERROR),
+      SpectraCompression.values(), SpectraCompression.NONE);
+
   public static final BooleanParameter showPrecursorWindow = new BooleanParameter(
       "Show precursor windows", "Show the isolation window instead of just the precursor m/z.",
       false);
@@ -154,7 +173,8 @@ public class MZminePreferences extends SimpleParameterSet {
   public MZminePreferences() {
     super(new Parameter[]{
         // start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath, sendStatistics,
+        numOfThreads, taskSchedulerMode, memoryOption, spectraCompression, tempDirectory,
+        proxySettings, rExecPath, sendStatistics,
         // visuals
         // number formats
         mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat, scoreFormat, percentFormat,
@@ -172,8 +192,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath,
-            sendStatistics});
+        new Parameter[]{numOfThreads, taskSchedulerMode, memoryOption, spectraCompression,
+            tempDirectory, proxySettings, rExecPath, sendStatistics});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
             scoreFormat, unitFormat});
@@ -197,6 +217,8 @@ public class MZminePreferences extends SimpleParameterSet {
       final KeepInMemory keepInMemory = MZmineCore.getConfiguration().getPreferences()
           .getParameter(MZminePreferences.memoryOption).getValue();
       keepInMemory.enforceToMemoryMapping();
+      MZmineCore.getConfiguration().getPreferences()
+          .getParameter(MZminePreferences.spectraCompression).getValue().enforceToMemoryMapping();
 
       // Repaint windows to update number formats
       // MZmineCore.getDesktop().getMainWindow().repaint();
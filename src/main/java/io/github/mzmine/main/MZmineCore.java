@@ -178,6 +178,8 @@ public final class MZmineCore {
 
       // apply memory management option
       keepInMemory.enforceToMemoryMapping();
+      getInstance().configuration.getPreferences()
+          .getParameter(MZminePreferences.spectraCompression).getValue().enforceToMemoryMapping();
 
       // batch mode defined by command line argument
       File batchFile = argsParser.getBatchFile();
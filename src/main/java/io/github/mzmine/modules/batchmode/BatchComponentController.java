@@ -48,6 +48,7 @@ import java.util.logging.Logger;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceDialog;
 import javafx.scene.control.ListView;
 import javafx.scene.control.SelectionMode;
@@ -101,6 +102,8 @@ public class BatchComponentController implements LastFilesComponent {
   public Button btnClear;
   @FXML
   public TextField searchField;
+  @FXML
+  public CheckBox cbPerFilePipeline;
 
   private BatchQueue batchQueue;
 
@@ -109,6 +112,9 @@ public class BatchComponentController implements LastFilesComponent {
     batchQueue = new BatchQueue();
     setValue(batchQueue);
 
+    cbPerFilePipeline.selectedProperty()
+        .addListener((obs, old, selected) -> batchQueue.setPerFilePipeline(selected));
+
     btnLoadLast.setChangeListener(file -> {
       try {
         loadBatchSteps(file);
@@ -370,6 +376,7 @@ public class BatchComponentController implements LastFilesComponent {
 
     batchQueue = newValue;
     currentStepsList.setItems(batchQueue);
+    cbPerFilePipeline.setSelected(batchQueue.isPerFilePipeline());
     selectStep(0);
   }
 
@@ -461,6 +468,7 @@ public class BatchComponentController implements LastFilesComponent {
         index = 0;
         batchQueue.clear();
         batchQueue.addAll(queue);
+        cbPerFilePipeline.setSelected(queue.isPerFilePipeline());
         break;
       case Prepend:
         index = 0;
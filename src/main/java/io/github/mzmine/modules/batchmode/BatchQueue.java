@@ -46,10 +46,28 @@ public class BatchQueue extends ArrayObservableList<MZmineProcessingStep<MZmineP
   // Method element name.
   private static final String METHOD_ELEMENT = "method";
 
+  // Attribute for the per-file pipeline option.
+  private static final String PER_FILE_PIPELINE_ATTRIBUTE = "perFilePipeline";
+
+  /**
+   * Consecutive steps that process each raw data file independently are run back-to-back for each
+   * file instead of waiting for all files after each step. See {@link PerFileBatchPipeline}.
+   */
+  private boolean perFilePipeline = false;
+
+  public boolean isPerFilePipeline() {
+    return perFilePipeline;
+  }
+
+  public void setPerFilePipeline(boolean perFilePipeline) {
+    this.perFilePipeline = perFilePipeline;
+  }
+
   @Override
   public BatchQueue clone() {
     // Clone the parameters.
     final BatchQueue clonedQueue = new BatchQueue();
+    clonedQueue.setPerFilePipeline(perFilePipeline);
     for (final MZmineProcessingStep<MZmineProcessingModule> step : this) {
       final ParameterSet parameters = step.getParameterSet();
       final MZmineProcessingStepImpl<MZmineProcessingModule> stepCopy =
@@ -77,6 +95,8 @@ public class BatchQueue extends ArrayObservableList<MZmineProcessingStep<MZmineP
 
     // Create an empty queue.
     final BatchQueue queue = new BatchQueue();
+    queue.setPerFilePipeline(
+        Boolean.parseBoolean(xmlElement.getAttribute(PER_FILE_PIPELINE_ATTRIBUTE)));
 
     // Get the loaded modules.
     final Collection<MZmineModule> allModules = MZmineCore.getAllModules();
@@ -133,6 +153,10 @@ public class BatchQueue extends ArrayObservableList<MZmineProcessingStep<MZmineP
 
     final Document document = xmlElement.getOwnerDocument();
 
+    if (perFilePipeline) {
+      xmlElement.setAttribute(PER_FILE_PIPELINE_ATTRIBUTE, String.valueOf(true));
+    }
+
     // Process each step.
     for (final MZmineProcessingStep<?> step : this) {
 
@@ -41,6 +41,8 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
@@ -55,6 +57,9 @@ public class BatchTask extends AbstractTask {
   private MZmineProject project;
   private List<RawDataFile> createdDataFiles, previousCreatedDataFiles, startDataFiles;
   private List<FeatureList> createdFeatureLists, previousCreatedFeatureLists, startFeatureLists;
+  // currently running per-file pipeline and its number of steps for the progress
+  private PerFileBatchPipeline currentPipeline;
+  private int currentPipelineSteps;
 
   BatchTask(MZmineProject project, ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // we don't create any new data here, date is irrelevant, too.
@@ -80,8 +85,16 @@ public class BatchTask extends AbstractTask {
     // Process individual batch steps
     for (int i = 0; i < totalSteps; i++) {
 
-      processQueueStep(i);
-      processedSteps++;
+      // consecutive per file steps are processed back-to-back for each raw data file
+      final int pipelineEnd =
+          queue.isPerFilePipeline() ? PerFileBatchPipeline.findPipelineEnd(queue, i) : i;
+      if (pipelineEnd - i > 1 && processPerFilePipeline(i, pipelineEnd)) {
+        processedSteps += pipelineEnd - i;
+        i = pipelineEnd - 1;
+      } else {
+        processQueueStep(i);
+        processedSteps++;
+      }
 
       // If we are canceled or ran into error, stop here
       if (isCanceled() || (getStatus() == TaskStatus.ERROR)) {
@@ -116,24 +129,8 @@ public class BatchTask extends AbstractTask {
       createdFeatureLists = previousCreatedFeatureLists;
     }
 
-    // Update the RawDataFilesParameter parameters to reflect the current
-    // state of the batch
-    for (Parameter<?> p : batchStepParameters.getParameters()) {
-      if (p instanceof RawDataFilesParameter) {
-        RawDataFilesParameter rdp = (RawDataFilesParameter) p;
-        RawDataFile createdFiles[] = createdDataFiles.toArray(new RawDataFile[0]);
-        final RawDataFilesSelection selectedFiles = rdp.getValue();
-        if (selectedFiles == null) {
-          setStatus(TaskStatus.ERROR);
-          setErrorMessage("Invalid parameter settings for module " + method.getName() + ": "
-                          + "Missing parameter value for " + p.getName());
-          return;
-        }
-        selectedFiles.setBatchLastFiles(createdFiles);
-      }
-    }
-
-    if (!setBatchlastFeatureListsToParamSet(method, batchStepParameters)) {
+    if (!setBatchLastDataFilesToParamSet(method, batchStepParameters)
+        || !setBatchlastFeatureListsToParamSet(method, batchStepParameters)) {
       return;
     }
 
@@ -186,6 +183,14 @@ public class BatchTask extends AbstractTask {
 
       for (WrappedTask stepTask : currentStepWrappedTasks) {
 
+        // the task threw an unhandled exception
+        if (stepTask.getCompletionFuture().isCompletedExceptionally()) {
+          setStatus(TaskStatus.ERROR);
+          setErrorMessage(stepTask.getActualTask().getTaskDescription()
+                          + ": Unhandled exception in task");
+          return;
+        }
+
         TaskStatus stepStatus = stepTask.getActualTask().getStatus();
 
         // If any of them is not finished, keep checking
@@ -214,15 +219,9 @@ public class BatchTask extends AbstractTask {
 
       }
 
-      // Wait 1s before checking the tasks again
+      // Wait until the next task completes or this batch is canceled
       if (!allTasksFinished) {
-        synchronized (this) {
-          try {
-            this.wait(1000);
-          } catch (InterruptedException e) {
-            // ignore
-          }
-        }
+        awaitNextCompletion(currentStepWrappedTasks);
       }
     }
 
@@ -240,6 +239,124 @@ public class BatchTask extends AbstractTask {
     }
   }
 
+  /**
+   * Runs consecutive steps as a {@link PerFileBatchPipeline}
+   *
+   * @param start first step
+   * @param end   exclusive end step
+   * @return false if the steps cannot be processed per raw data file and need to be processed one
+   * by one instead
+   */
+  private boolean processPerFilePipeline(int start, int end) {
+    logger.info("Starting steps # " + (start + 1) + " to " + end + " as per-file pipeline");
+
+    MZmineProcessingStep<MZmineProcessingModule> firstStep = queue.get(start);
+    ParameterSet firstStepParameters = firstStep.getParameterSet();
+
+    // same as in processQueueStep
+    if (createdDataFiles.isEmpty()) {
+      createdDataFiles = previousCreatedDataFiles;
+    }
+    if (createdFeatureLists.isEmpty()) {
+      createdFeatureLists = previousCreatedFeatureLists;
+    }
+    if (!setBatchLastDataFilesToParamSet(firstStep.getModule(), firstStepParameters)
+        || !setBatchlastFeatureListsToParamSet(firstStep.getModule(), firstStepParameters)) {
+      // error was set
+      return true;
+    }
+
+    final PerFileBatchPipeline pipeline = new PerFileBatchPipeline(project,
+        queue.subList(start, end));
+    final CompletableFuture<Void> pipelineFuture = pipeline.start();
+    if (pipelineFuture == null) {
+      logger.info("Cannot process steps per raw data file. Processing steps one by one.");
+      return false;
+    }
+    currentPipelineSteps = end - start;
+    currentPipeline = pipeline;
+
+    // wait for all files or the cancellation of this batch
+    while (!pipelineFuture.isDone()) {
+      if (isCanceled()) {
+        pipeline.cancel();
+        return true;
+      }
+      try {
+        CompletableFuture.anyOf(pipelineFuture, getCompletionFuture()).get();
+      } catch (InterruptedException | ExecutionException e) {
+        // ignore, the result is checked afterwards
+      }
+    }
+
+    currentPipeline = null;
+    if (pipeline.getErrorMessage() != null) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage(pipeline.getErrorMessage());
+      return true;
+    }
+    if (pipelineFuture.isCompletedExceptionally()) {
+      setStatus(TaskStatus.CANCELED);
+      return true;
+    }
+
+    // the pipeline steps do not create raw data files
+    createdDataFiles = new ArrayList<>();
+    createdFeatureLists = new ArrayList<>(pipeline.getCreatedFeatureLists());
+    if (!createdFeatureLists.isEmpty()) {
+      previousCreatedFeatureLists = createdFeatureLists;
+    }
+    return true;
+  }
+
+  /**
+   * Blocks until one of the not yet completed tasks reaches a final status (finished, error,
+   * canceled) or this batch task is canceled.
+   *
+   * @param stepTasks the tasks of the current step
+   */
+  private void awaitNextCompletion(WrappedTask[] stepTasks) {
+    List<CompletableFuture<?>> pending = new ArrayList<>();
+    pending.add(getCompletionFuture());
+    for (WrappedTask stepTask : stepTasks) {
+      final CompletableFuture<TaskStatus> completion = stepTask.getCompletionFuture();
+      if (!completion.isDone()) {
+        pending.add(completion);
+      }
+    }
+    try {
+      CompletableFuture.anyOf(pending.toArray(CompletableFuture[]::new)).get();
+    } catch (InterruptedException | ExecutionException e) {
+      // ignore, the status of all tasks is checked afterwards
+    }
+  }
+
+  /**
+   * Sets the raw data files created by the last batch step to the parameters
+   *
+   * @return false on error
+   */
+  private boolean setBatchLastDataFilesToParamSet(MZmineProcessingModule method,
+      ParameterSet batchStepParameters) {
+    // Update the RawDataFilesParameter parameters to reflect the current
+    // state of the batch
+    for (Parameter<?> p : batchStepParameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter) {
+        RawDataFilesParameter rdp = (RawDataFilesParameter) p;
+        RawDataFile createdFiles[] = createdDataFiles.toArray(new RawDataFile[0]);
+        final RawDataFilesSelection selectedFiles = rdp.getValue();
+        if (selectedFiles == null) {
+          setStatus(TaskStatus.ERROR);
+          setErrorMessage("Invalid parameter settings for module " + method.getName() + ": "
+                          + "Missing parameter value for " + p.getName());
+          return false;
+        }
+        selectedFiles.setBatchLastFiles(createdFiles);
+      }
+    }
+    return true;
+  }
+
   /**
    * Recursively sets the last feature lists to the parameters since there might be embedded
    * parameters.
@@ -283,7 +400,10 @@ public class BatchTask extends AbstractTask {
     if (totalSteps == 0) {
       return 0;
     }
-    return (double) processedSteps / totalSteps;
+    final PerFileBatchPipeline pipeline = currentPipeline;
+    final double pipelineSteps =
+        pipeline == null ? 0 : pipeline.getFinishedPercentage() * currentPipelineSteps;
+    return (processedSteps + pipelineSteps) / totalSteps;
   }
 
   @Override
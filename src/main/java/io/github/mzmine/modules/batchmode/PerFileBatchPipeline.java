@@ -0,0 +1,412 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ADAPpeakpicking.AdapResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.baseline.BaselineFeatureResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.noiseamplitude.NoiseAmplitudeResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.savitzkygolay.SavitzkyGolayResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionModule;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingModule;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperModule;
+import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.EmbeddedParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.impl.WrappedTask;
+import io.github.mzmine.util.ExitCode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs consecutive batch steps that process each raw data file independently (mass detection,
+ * chromatogram building, smoothing, resolving, isotope grouping) back-to-back for each raw data
+ * file. Files do not wait for each other between these steps, the batch only synchronizes after
+ * the last step of the pipeline (e.g., before alignment or gap filling).
+ * <p>
+ * Each step of a file is called with a copy of the step parameters and the batch last files and
+ * feature lists of this file. The feature lists are therefore the same as in the default mode,
+ * where each step is finished for all files before the next step starts.
+ */
+class PerFileBatchPipeline {
+
+  private static final Logger logger = Logger.getLogger(PerFileBatchPipeline.class.getName());
+
+  /**
+   * Modules that create independent tasks and results for each raw data file or for feature lists
+   * of a single raw data file.
+   */
+  private static final Set<Class<? extends MZmineProcessingModule>> PER_FILE_MODULES = Set.of(
+      MassDetectionModule.class, ModularADAPChromatogramBuilderModule.class,
+      SmoothingModule.class, MinimumSearchFeatureResolverModule.class, AdapResolverModule.class,
+      SavitzkyGolayResolverModule.class, BaselineFeatureResolverModule.class,
+      NoiseAmplitudeResolverModule.class, IsotopeGrouperModule.class);
+
+  private final MZmineProject project;
+  private final List<MZmineProcessingStep<MZmineProcessingModule>> steps;
+  private final AtomicReferenceArray<Instant> moduleCallDates;
+  private final Set<WrappedTask> runningTasks = ConcurrentHashMap.newKeySet();
+  private final AtomicReference<String> errorMessage = new AtomicReference<>();
+  private final AtomicInteger finishedFiles = new AtomicInteger(0);
+  private volatile boolean canceled = false;
+  // in the order of the raw data files selected by the first step
+  private volatile List<FileState> files = List.of();
+
+  /**
+   * @param project the current project
+   * @param steps   consecutive per-file steps, see {@link #findPipelineEnd(BatchQueue, int)}
+   */
+  PerFileBatchPipeline(@NotNull MZmineProject project,
+      @NotNull List<MZmineProcessingStep<MZmineProcessingModule>> steps) {
+    this.project = project;
+    this.steps = steps;
+    // one call date per step (set by the first file) - same as in the default batch mode
+    moduleCallDates = new AtomicReferenceArray<>(steps.size());
+  }
+
+  /**
+   * Finds consecutive steps that can be processed per raw data file, starting at a step index. The
+   * first step may use any file or feature list selection. All other steps need to use the batch
+   * last files and feature lists, which are replaced by the results of the same raw data file.
+   *
+   * @param queue the batch queue
+   * @param start the first step
+   * @return the exclusive end index of the pipeline. Equals start if the first step cannot be
+   * processed per file.
+   */
+  static int findPipelineEnd(@NotNull BatchQueue queue, int start) {
+    int end = start;
+    while (end < queue.size() && isPerFileStep(queue.get(end), end == start)) {
+      end++;
+    }
+    return end;
+  }
+
+  private static boolean isPerFileStep(@NotNull MZmineProcessingStep<?> step, boolean first) {
+    if (!PER_FILE_MODULES.contains(step.getModule().getClass())) {
+      return false;
+    }
+    return first || usesOnlyBatchLastSelections(step.getParameterSet());
+  }
+
+  private static boolean usesOnlyBatchLastSelections(@Nullable ParameterSet parameters) {
+    if (parameters == null) {
+      return true;
+    }
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rfp && (rfp.getValue() == null
+          || rfp.getValue().getSelectionType() != RawDataFilesSelectionType.BATCH_LAST_FILES)) {
+        return false;
+      } else if (p instanceof FeatureListsParameter flp && (flp.getValue() == null
+          || flp.getValue().getSelectionType()
+             != FeatureListsSelectionType.BATCH_LAST_FEATURELISTS)) {
+        return false;
+      } else if (p instanceof EmbeddedParameterSet embedded && !usesOnlyBatchLastSelections(
+          embedded.getEmbeddedParameters())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Starts the pipeline for all raw data files selected by the first step. The batch last files and
+   * feature lists need to be set to the parameters of the first step.
+   *
+   * @return a future that completes when all files passed all steps or completes exceptionally on
+   * error or cancel. Null if the selection of the first step cannot be split into single raw data
+   * files (e.g., feature lists with multiple raw data files).
+   */
+  @Nullable
+  CompletableFuture<Void> start() {
+    final List<FileState> files = createFileStates(steps.get(0).getParameterSet());
+    if (files == null) {
+      return null;
+    }
+    this.files = files;
+    logger.info(() -> String.format("Starting per-file pipeline of %d steps for %d raw data files",
+        steps.size(), files.size()));
+
+    final CompletableFuture<?>[] futures = new CompletableFuture[files.size()];
+    for (int i = 0; i < files.size(); i++) {
+      futures[i] = processStep(files.get(i), 0);
+    }
+    return CompletableFuture.allOf(futures);
+  }
+
+  /**
+   * @return the state of each raw data file or null if the selected feature lists contain more
+   * than one raw data file
+   */
+  @Nullable
+  private List<FileState> createFileStates(ParameterSet firstParameters) {
+    final List<FileState> files = new ArrayList<>();
+    for (Parameter<?> p : firstParameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rfp) {
+        for (RawDataFile file : rfp.getValue().getMatchingRawDataFiles()) {
+          files.add(new FileState(file, List.of()));
+        }
+        return files;
+      }
+    }
+    for (Parameter<?> p : firstParameters.getParameters()) {
+      if (p instanceof FeatureListsParameter flp) {
+        for (FeatureList flist : flp.getValue().getMatchingFeatureLists()) {
+          if (flist.getNumberOfRawDataFiles() != 1) {
+            return null;
+          }
+          files.add(new FileState(flist.getRawDataFile(0), List.of(flist)));
+        }
+        return files;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs a step for a single raw data file and chains the next step when all tasks of this file
+   * are finished.
+   */
+  private CompletableFuture<Void> processStep(FileState file, int stepIndex) {
+    if (stepIndex >= steps.size()) {
+      finishedFiles.incrementAndGet();
+      return CompletableFuture.completedFuture(null);
+    }
+    if (canceled) {
+      return CompletableFuture.failedFuture(new CancellationException());
+    }
+
+    final WrappedTask[] tasks;
+    final List<FeatureList> before;
+    try {
+      before = project.getCurrentFeatureLists();
+      tasks = submitStep(file, stepIndex);
+    } catch (RuntimeException e) {
+      fail(e.getMessage());
+      return CompletableFuture.failedFuture(e);
+    }
+
+    final CompletableFuture<?>[] completions = Arrays.stream(tasks)
+        .map(WrappedTask::getCompletionFuture).toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(completions).handle((v, ex) -> {
+      for (WrappedTask task : tasks) {
+        runningTasks.remove(task);
+      }
+      checkTaskResults(tasks);
+      updateFeatureLists(file, before);
+      return file;
+    }).thenComposeAsync(f -> processStep(f, stepIndex + 1));
+  }
+
+  /**
+   * Calls the module with the batch last files and feature lists of this raw data file
+   *
+   * @return the submitted tasks
+   */
+  private WrappedTask[] submitStep(FileState file, int stepIndex) {
+    final MZmineProcessingStep<MZmineProcessingModule> step = steps.get(stepIndex);
+    final MZmineProcessingModule module = step.getModule();
+    final ParameterSet parameters = step.getParameterSet().cloneParameterSet();
+    setFileToParameters(parameters, file);
+
+    List<String> messages = new ArrayList<>();
+    if (!parameters.checkParameterValues(messages)) {
+      throw new IllegalStateException(
+          "Invalid parameter settings for module " + module.getName() + ": " + Arrays.toString(
+              messages.toArray()));
+    }
+
+    List<Task> tasks = new ArrayList<>();
+    moduleCallDates.compareAndSet(stepIndex, null, Instant.now());
+    ExitCode exitCode = module.runModule(project, parameters, tasks,
+        moduleCallDates.get(stepIndex));
+    if (exitCode != ExitCode.OK) {
+      throw new IllegalStateException("Could not start batch step " + module.getName());
+    }
+
+    final WrappedTask[] wrappedTasks = MZmineCore.getTaskController()
+        .addTasks(tasks.toArray(Task[]::new));
+    runningTasks.addAll(Arrays.asList(wrappedTasks));
+    // the pipeline may have been canceled meanwhile
+    if (canceled) {
+      cancelRunningTasks();
+    }
+    return wrappedTasks;
+  }
+
+  /**
+   * Replaces the file and feature list selections by the batch last files and feature lists of this
+   * raw data file. The first step may select files or feature lists in any other way, the selection
+   * is already split into single raw data files by {@link #createFileStates(ParameterSet)}.
+   */
+  private void setFileToParameters(ParameterSet parameters, FileState file) {
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rfp) {
+        final RawDataFilesSelection selection = new RawDataFilesSelection(
+            RawDataFilesSelectionType.BATCH_LAST_FILES);
+        selection.setBatchLastFiles(new RawDataFile[]{file.file});
+        rfp.setValue(selection);
+      } else if (p instanceof FeatureListsParameter flp) {
+        final FeatureListsSelection selection = new FeatureListsSelection(
+            FeatureListsSelectionType.BATCH_LAST_FEATURELISTS);
+        selection.setBatchLastFeatureLists(file.featureLists.toArray(FeatureList[]::new));
+        flp.setValue(selection);
+      } else if (p instanceof EmbeddedParameterSet embedded) {
+        setFileToParameters(embedded.getEmbeddedParameters(), file);
+      }
+    }
+  }
+
+  /**
+   * @throws CompletionException if a task did not finish
+   */
+  private void checkTaskResults(WrappedTask[] tasks) {
+    for (WrappedTask task : tasks) {
+      if (task.getCompletionFuture().isCompletedExceptionally()) {
+        fail(task.getActualTask().getTaskDescription() + ": Unhandled exception in task");
+        throw new CompletionException(new IllegalStateException(errorMessage.get()));
+      }
+      final TaskStatus status = task.getActualTask().getStatus();
+      if (status == TaskStatus.ERROR) {
+        fail(task.getActualTask().getTaskDescription() + ": " + task.getActualTask()
+            .getErrorMessage());
+        throw new CompletionException(new IllegalStateException(errorMessage.get()));
+      }
+      if (status != TaskStatus.FINISHED) {
+        cancel();
+        throw new CancellationException();
+      }
+    }
+  }
+
+  /**
+   * Feature lists that were created by the last step for this raw data file replace the batch last
+   * feature lists of this file. If no feature list was created, the previous ones are kept.
+   */
+  private void updateFeatureLists(FileState file, List<FeatureList> before) {
+    final Set<FeatureList> previous = new HashSet<>(before);
+    final List<FeatureList> created = new ArrayList<>();
+    for (FeatureList flist : project.getCurrentFeatureLists()) {
+      if (!previous.contains(flist) && flist.getNumberOfRawDataFiles() == 1
+          && flist.getRawDataFile(0).equals(file.file)) {
+        created.add(flist);
+      }
+    }
+    if (!created.isEmpty()) {
+      file.featureLists = created;
+      file.createdInPipeline = true;
+    }
+  }
+
+  private void fail(String message) {
+    errorMessage.compareAndSet(null, message);
+    cancel();
+  }
+
+  /**
+   * Cancels all running tasks of the pipeline. No new steps are started.
+   */
+  void cancel() {
+    canceled = true;
+    cancelRunningTasks();
+  }
+
+  private void cancelRunningTasks() {
+    for (WrappedTask task : runningTasks) {
+      task.getActualTask().cancel();
+    }
+  }
+
+  /**
+   * @return the first error message or null
+   */
+  @Nullable
+  String getErrorMessage() {
+    return errorMessage.get();
+  }
+
+  /**
+   * The lists are sorted by the order of the raw data files, not by the time the files finished, so
+   * that the input of the next (cross-file) step does not depend on timing.
+   *
+   * @return the last feature lists created for each raw data file. Call after all files passed all
+   * steps.
+   */
+  List<FeatureList> getCreatedFeatureLists() {
+    final List<FeatureList> created = new ArrayList<>();
+    for (FileState file : files) {
+      if (file.createdInPipeline) {
+        created.addAll(file.featureLists);
+      }
+    }
+    return created;
+  }
+
+  /**
+   * @return progress as the fraction of files that passed all steps
+   */
+  double getFinishedPercentage() {
+    final int totalFiles = files.size();
+    return totalFiles == 0 ? 0 : finishedFiles.get() / (double) totalFiles;
+  }
+
+  /**
+   * The current batch last feature lists of a raw data file in the pipeline
+   */
+  private static class FileState {
+
+    private final RawDataFile file;
+    private volatile List<FeatureList> featureLists;
+    private volatile boolean createdInPipeline = false;
+
+    private FileState(RawDataFile file, List<FeatureList> featureLists) {
+      this.file = file;
+      this.featureLists = featureLists;
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+
+package io.github.mzmine.modules.dataanalysis.heatmaps;
+
+import io.github.mzmine.modules.dataanalysis.heatmaps.HierarchicalClustering.Dendrogram;
+import io.github.mzmine.util.interpolatinglookuppaintscale.InterpolatingLookupPaintScale;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Paint;
+import java.awt.Stroke;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.annotations.XYLineAnnotation;
+import org.jfree.chart.annotations.XYTextAnnotation;
+import org.jfree.chart.axis.AxisLocation;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.SymbolAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.PaintScale;
+import org.jfree.chart.renderer.xy.XYBlockRenderer;
+import org.jfree.chart.title.PaintScaleLegend;
+import org.jfree.chart.ui.RectangleEdge;
+import org.jfree.data.xy.DefaultXYZDataset;
+
+/**
+ * Draws the clustered heat map like heatmap.2 of gplots: blue to red cells (white at 0, grey for
+ * missing values), the row dendrogram on the left and the column dendrogram on top. The
+ * dendrograms are drawn as annotations next to the cells in the same plot.
+ */
+class HeatMapChart {
+
+  /**
+   * more row labels are not readable
+   */
+  private static final int MAX_ROW_LABELS = 200;
+  private static final Color MISSING_COLOR = Color.GRAY;
+  private static final Stroke DENDROGRAM_STROKE = new BasicStroke(0.5f);
+
+  private HeatMapChart() {
+  }
+
+  /**
+   * @param data      the values [column][row]
+   * @param rowNames  the row names
+   * @param colNames  the column names
+   * @param stars     the p-value stars [column][row] or null
+   * @param rowTree   the clustered rows
+   * @param colTree   the clustered columns
+   * @param starSize  the font size of the stars
+   * @return the chart
+   */
+  @NotNull
+  static JFreeChart createChart(@NotNull double[][] data, @NotNull String[] rowNames,
+      @NotNull String[] colNames, @Nullable String[][] stars, @NotNull Dendrogram rowTree,
+      @NotNull Dendrogram colTree, int starSize) {
+    final int numRows = rowTree.size();
+    final int numCols = colTree.size();
+
+    // cells in the order of the dendrogram leaves
+    final double[][] xyz = new double[3][numRows * numCols];
+    final String[] orderedRowNames = new String[numRows];
+    final String[] orderedColNames = new String[numCols];
+    double min = 0;
+    double max = 0;
+    for (int c = 0; c < numCols; c++) {
+      final int column = colTree.order()[c];
+      orderedColNames[c] = colNames[column];
+      for (int r = 0; r < numRows; r++) {
+        final int row = rowTree.order()[r];
+        final double value = data[column][row];
+        final int i = c * numRows + r;
+        xyz[0][i] = c;
+        xyz[1][i] = r;
+        xyz[2][i] = Double.isFinite(value) ? value : Double.NaN;
+        if (Double.isFinite(value)) {
+          min = Math.min(min, value);
+          max = Math.max(max, value);
+        }
+      }
+    }
+    for (int r = 0; r < numRows; r++) {
+      orderedRowNames[r] = rowNames[rowTree.order()[r]];
+    }
+
+    final DefaultXYZDataset dataset = new DefaultXYZDataset();
+    dataset.addSeries("Heat map", xyz);
+
+    final PaintScale scale = createPaintScale(min, max);
+    final XYBlockRenderer renderer = new XYBlockRenderer();
+    renderer.setPaintScale(scale);
+    renderer.setBlockWidth(1);
+    renderer.setBlockHeight(1);
+
+    // space for the dendrograms left of and above the cells
+    final double rowTreeWidth = Math.max(2, numCols * 0.25);
+    final double colTreeHeight = Math.max(2, numRows * 0.25);
+
+    final SymbolAxis colAxis = new SymbolAxis(null, orderedColNames);
+    colAxis.setGridBandsVisible(false);
+    colAxis.setVerticalTickLabels(true);
+    colAxis.setRange(-0.5 - rowTreeWidth, numCols - 0.5);
+    final SymbolAxis rowAxis = new SymbolAxis(null, orderedRowNames);
+    rowAxis.setGridBandsVisible(false);
+    rowAxis.setTickLabelsVisible(numRows <= MAX_ROW_LABELS);
+    rowAxis.setTickMarksVisible(numRows <= MAX_ROW_LABELS);
+    rowAxis.setRange(-0.5, numRows - 0.5 + colTreeHeight);
+
+    final XYPlot plot = new XYPlot(dataset, colAxis, rowAxis, renderer);
+    plot.setRangeAxisLocation(AxisLocation.BOTTOM_OR_RIGHT);
+    plot.setDomainGridlinesVisible(false);
+    plot.setRangeGridlinesVisible(false);
+    plot.setOutlineVisible(false);
+    plot.setBackgroundPaint(Color.WHITE);
+
+    addDendrogram(plot, rowTree, rowTreeWidth, true, numRows);
+    addDendrogram(plot, colTree, colTreeHeight, false, numRows);
+
+    if (stars != null) {
+      final Font font = new Font("SansSerif", Font.PLAIN, Math.max(1, starSize * 2));
+      for (int c = 0; c < numCols; c++) {
+        for (int r = 0; r < numRows; r++) {
+          final String star = stars[colTree.order()[c]][rowTree.order()[r]];
+          if (star != null && !star.isEmpty()) {
+            final XYTextAnnotation annotation = new XYTextAnnotation(star, c, r);
+            annotation.setFont(font);
+            plot.addAnnotation(annotation, false);
+          }
+        }
+      }
+    }
+
+    final JFreeChart chart = new JFreeChart(null, JFreeChart.DEFAULT_TITLE_FONT, plot, false);
+    chart.setBackgroundPaint(Color.WHITE);
+
+    final NumberAxis scaleAxis = new NumberAxis(null);
+    scaleAxis.setRange(scale.getLowerBound(), scale.getUpperBound());
+    final PaintScaleLegend legend = new PaintScaleLegend(scale, scaleAxis);
+    legend.setStripOutlineVisible(false);
+    legend.setAxisLocation(AxisLocation.BOTTOM_OR_LEFT);
+    legend.setAxisOffset(5.0);
+    legend.setSubdivisionCount(512);
+    legend.setPosition(RectangleEdge.TOP);
+    chart.addSubtitle(legend);
+    return chart;
+  }
+
+  /**
+   * Blue for the minimum, white for 0 and red for the maximum, grey for missing values
+   */
+  private static PaintScale createPaintScale(double min, double max) {
+    final InterpolatingLookupPaintScale blueRed = new InterpolatingLookupPaintScale();
+    blueRed.add(min, Color.BLUE);
+    blueRed.add(0, Color.WHITE);
+    blueRed.add(max, Color.RED);
+    final double lower = min < 0 ? min : -1;
+    final double upper = max > 0 ? max : 1;
+    return new PaintScale() {
+      @Override
+      public double getLowerBound() {
+        return lower;
+      }
+
+      @Override
+      public double getUpperBound() {
+        return upper;
+      }
+
+      @Override
+      public Paint getPaint(double value) {
+        return Double.isNaN(value) ? MISSING_COLOR : blueRed.getPaint(value);
+      }
+    };
+  }
+
+  /**
+   * Adds the dendrogram as lines next to the cells.
+   *
+   * @param size          the width (rows) or height (columns) of the dendrogram
+   * @param rowDendrogram true to draw left of the rows, false to draw above the columns
+   */
+  private static void addDendrogram(XYPlot plot, Dendrogram tree, double size,
+      boolean rowDendrogram, int numRows) {
+    final int n = tree.size();
+    if (n < 2) {
+      return;
+    }
+    final double maxHeight = tree.heights()[n - 2];
+    final double scale = maxHeight > 0 ? size / maxHeight : 0;
+
+    // leaf positions, then the centers of the merged clusters
+    final double[] positions = new double[2 * n - 1];
+    final double[] heights = new double[2 * n - 1];
+    for (int i = 0; i < n; i++) {
+      positions[tree.order()[i]] = i;
+    }
+    for (int k = 0; k < n - 1; k++) {
+      final int left = tree.left()[k];
+      final int right = tree.right()[k];
+      final double height = tree.heights()[k] * scale;
+      positions[n + k] = (positions[left] + positions[right]) / 2;
+      heights[n + k] = height;
+
+      addLine(plot, rowDendrogram, numRows, positions[left], heights[left], positions[left],
+          height);
+      addLine(plot, rowDendrogram, numRows, positions[right], heights[right], positions[right],
+          height);
+      addLine(plot, rowDendrogram, numRows, positions[left], height, positions[right], height);
+    }
+  }
+
+  private static void addLine(XYPlot plot, boolean rowDendrogram, int numRows, double position1,
+      double height1, double position2, double height2) {
+    final XYLineAnnotation line;
+    if (rowDendrogram) {
+      line = new XYLineAnnotation(-0.5 - height1, position1, -0.5 - height2, position2,
+          DENDROGRAM_STROKE, Color.BLACK);
+    } else {
+      line = new XYLineAnnotation(position1, numRows - 0.5 + height1, position2,
+          numRows - 0.5 + height2, DENDROGRAM_STROKE, Color.BLACK);
+    }
+    plot.addAnnotation(line, false);
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+
+package io.github.mzmine.modules.dataanalysis.heatmaps;
+
+/**
+ * Linkage of the hierarchical clustering of the heat map rows and columns. Ward uses the squared
+ * euclidean distances and reports the merge heights as distances, like ward.D2 in R.
+ */
+public enum HeatMapLinkage {
+
+  COMPLETE("Complete", "complete"), AVERAGE("Average", "average"), WARD("Ward", "ward.D2");
+
+  private final String name;
+  private final String rMethod;
+
+  HeatMapLinkage(String name, String rMethod) {
+    this.name = name;
+    this.rMethod = rMethod;
+  }
+
+  /**
+   * @return the method of hclust in R
+   */
+  public String getRMethod() {
+    return rMethod;
+  }
+
+  public String toString() {
+    return this.name;
+  }
+
+}
@@ -93,6 +93,14 @@ public class HeatMapParameters extends SimpleParameterSet {
   public static final IntegerParameter rowMargin =
       new IntegerParameter("Row margin", "Row margin of the heat map", 10);
 
+  public static final ComboParameter<HeatMapEngine> engine = new ComboParameter<>("Engine",
+      "Cluster and draw the heat map in MZmine or with gplots in R. The file type \"fig\" needs R.",
+      HeatMapEngine.values(), HeatMapEngine.JAVA);
+
+  public static final ComboParameter<HeatMapLinkage> linkage = new ComboParameter<>("Linkage",
+      "Linkage of the hierarchical clustering of rows and columns (euclidean distances)",
+      HeatMapLinkage.values(), HeatMapLinkage.COMPLETE);
+
   /**
    * R engine type.
    */
@@ -103,7 +111,7 @@ public class HeatMapParameters extends SimpleParameterSet {
   public HeatMapParameters() {
     super(new Parameter[] {featureLists, fileName, fileTypeSelection, selectionData, referenceGroup,
         useIdenfiedRows, useFeatureArea, scale, log, showControlSamples, plegend, star, height, width,
-        columnMargin, rowMargin, RENGINE_TYPE});
+        columnMargin, rowMargin, engine, linkage, RENGINE_TYPE});
   }
 
   @Override
@@ -23,6 +23,11 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.gui.chartbasics.graphicsexport.ChartExportUtil;
+import io.github.mzmine.gui.chartbasics.gui.javafx.EChartViewer;
+import io.github.mzmine.gui.mainwindow.SimpleTab;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataanalysis.heatmaps.HierarchicalClustering.Dendrogram;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -31,16 +36,19 @@ import io.github.mzmine.util.R.REngineType;
 import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 import io.github.mzmine.util.R.Rsession.Rsession;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.math.MathException;
 import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math.stat.inference.TTestImpl;
 import org.jetbrains.annotations.NotNull;
+import org.jfree.chart.JFreeChart;
 
 public class HeatMapTask extends AbstractTask {
 
@@ -51,6 +59,8 @@ public class HeatMapTask extends AbstractTask {
 
   private final MZmineProject project;
   private final REngineType rEngineType;
+  private final HeatMapEngine engine;
+  private final HeatMapLinkage linkage;
   private final String outputType;
   private final boolean log, rcontrol, scale, plegend, area, onlyIdentified;
   private final int height, width, columnMargin, rowMargin, starSize;
@@ -71,6 +81,8 @@ public class HeatMapTask extends AbstractTask {
 
     // Parameters
     rEngineType = parameters.getParameter(HeatMapParameters.RENGINE_TYPE).getValue();
+    engine = parameters.getParameter(HeatMapParameters.engine).getValue();
+    linkage = parameters.getParameter(HeatMapParameters.linkage).getValue();
     outputFile = parameters.getParameter(HeatMapParameters.fileName).getValue();
     outputType = parameters.getParameter(HeatMapParameters.fileTypeSelection).getValue();
     selectedParameter = parameters.getParameter(HeatMapParameters.selectionData).getValue();
@@ -132,6 +144,21 @@ public class HeatMapTask extends AbstractTask {
       return;
     }
 
+    if (outputType.contains("png")) {
+      if (height < 500 || width < 500) {
+
+        setStatus(TaskStatus.ERROR);
+        setErrorMessage(
+            "Figure height or width is too small. " + "Minimun height and width is 500.");
+        return;
+      }
+    }
+
+    if (engine == HeatMapEngine.JAVA) {
+      createHeatMap();
+      return;
+    }
+
     try {
 
       // Load gplots library
@@ -142,52 +169,31 @@ public class HeatMapTask extends AbstractTask {
 
       finishedPercentage = 0.3f;
 
-      if (outputType.contains("png")) {
-        if (height < 500 || width < 500) {
-
-          setStatus(TaskStatus.ERROR);
-          setErrorMessage(
-              "Figure height or width is too small. " + "Minimun height and width is 500.");
-          return;
+      // transfer the matrix at once, R fills matrices column by column
+      final int numRows = newFeatureList[0].length;
+      final int numColumns = newFeatureList.length;
+      final double[] values = new double[numRows * numColumns];
+      final String[] stars = plegend ? new String[values.length] : null;
+      for (int column = 0; column < numColumns; column++) {
+        for (int row = 0; row < numRows; row++) {
+          final double value = newFeatureList[column][row];
+          values[column * numRows + row] = Double.isFinite(value) ? value : Double.NaN;
+        }
+        if (plegend) {
+          System.arraycopy(pValueMatrix[column], 0, stars, column * numRows, numRows);
         }
       }
-
-      rSession.eval("dataset<- matrix(\"\",nrow =" + newFeatureList[0].length + ",ncol="
-          + newFeatureList.length + ")");
+      rSession.assign("values", values);
+      rSession.eval("dataset <- matrix(values, nrow=" + numRows + ", ncol=" + numColumns + ")");
+      rSession.eval("dataset[!is.finite(dataset)] <- NA");
 
       if (plegend) {
-        rSession.eval("stars<- matrix(\"\",nrow =" + newFeatureList[0].length + ",ncol="
-            + newFeatureList.length + ")");
-      }
-
-      // assing the values to the matrix
-      for (int row = 0; row < newFeatureList[0].length; row++) {
-
-        for (int column = 0; column < newFeatureList.length; column++) {
-
-          int r = row + 1;
-          int c = column + 1;
-
-          double value = newFeatureList[column][row];
-
-          if (plegend) {
-            String pValue = pValueMatrix[column][row];
-            rSession.eval("stars[" + r + "," + c + "] = \"" + pValue + "\"");
-          }
-
-          if (!Double.isInfinite(value) && !Double.isNaN(value)) {
-
-            rSession.eval("dataset[" + r + "," + c + "] = " + value);
-          } else {
-
-            rSession.eval("dataset[" + r + "," + c + "] = NA");
-          }
-        }
+        rSession.assign("starValues", stars);
+        rSession.eval(
+            "stars <- matrix(starValues, nrow=" + numRows + ", ncol=" + numColumns + ")");
       }
       finishedPercentage = 0.4f;
 
-      rSession.eval("dataset <- apply(dataset, 2, as.numeric)");
-
       // Assign row names to the data set
       rSession.assign("rowNames", rowNames);
       rSession.eval("rownames(dataset)<-rowNames");
@@ -209,6 +215,8 @@ public class HeatMapTask extends AbstractTask {
       finishedPercentage = 0.8f;
 
       String marginParameter = "margins = c(" + columnMargin + "," + rowMargin + ")";
+      String hclustParameter =
+          "hclustfun = function(x) hclust(x, method=\"" + linkage.getRMethod() + "\")";
       rSession.eval("br<-c(seq(from=min(dataset,na.rm=T),to=0,length.out=256),"
           + "seq(from=0.00001,to=max(dataset,na.rm=T),length.out=256))", false);
 
@@ -242,13 +250,13 @@ public class HeatMapTask extends AbstractTask {
         rSession.eval(
             "heatmap.2(dataset," + marginParameter + ", trace=\"none\", col=bluered(length(br)-1),"
                 + " breaks=br, cellnote=stars, notecol=\"black\"" + ", notecex=" + starSize
-                + ", na.color=\"grey\")",
+                + ", na.color=\"grey\", " + hclustParameter + ")",
             false);
       } else {
 
         rSession.eval("heatmap.2(dataset," + marginParameter
-            + ", trace=\"none\", col=bluered(length(br)-1)," + " breaks=br, na.color=\"grey\")",
-            false);
+            + ", trace=\"none\", col=bluered(length(br)-1)," + " breaks=br, na.color=\"grey\", "
+            + hclustParameter + ")", false);
       }
 
       rSession.eval("dev.off()", false);
@@ -299,6 +307,134 @@ public class HeatMapTask extends AbstractTask {
     }
   }
 
+  /**
+   * Clusters and draws the heat map without R. The rows and columns are clustered by their
+   * euclidean distances and drawn like heatmap.2 of gplots.
+   */
+  private void createHeatMap() {
+    if (outputType.contains("fig")) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("The file type \"fig\" is only supported by the R engine.");
+      return;
+    }
+
+    // rows as vectors of the columns
+    int numRows = newFeatureList[0].length;
+    final int numColumns = newFeatureList.length;
+    double[][] rows = new double[numRows][numColumns];
+    for (int column = 0; column < numColumns; column++) {
+      for (int row = 0; row < numRows; row++) {
+        rows[row][column] = newFeatureList[column][row];
+      }
+    }
+    if (numRows > HierarchicalClustering.MAX_OBJECTS) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("Cannot cluster more than " + HierarchicalClustering.MAX_OBJECTS
+          + " rows. Use only identified rows or filter the feature list.");
+      return;
+    }
+    float[] rowDistances = HierarchicalClustering.euclideanDistances(rows);
+    finishedPercentage = 0.3;
+    if (isCanceled()) {
+      return;
+    }
+
+    // Remove the rows with too many NA's. The distances between
+    // rows can't be calculated if the rows don't have
+    // at least one sample in common.
+    final IntArrayList keptRows = new IntArrayList(numRows);
+    for (int row = 0; row < numRows; row++) {
+      boolean keep = true;
+      for (int previous = 0; previous < row && keep; previous++) {
+        keep = !Float.isNaN(rowDistances[HierarchicalClustering.index(numRows, previous, row)]);
+      }
+      if (keep) {
+        keptRows.add(row);
+      }
+    }
+    double[][] data = newFeatureList;
+    String[] names = rowNames;
+    String[][] stars = plegend ? pValueMatrix : null;
+    if (keptRows.size() < numRows) {
+      logger.info("Removed " + (numRows - keptRows.size())
+          + " rows without values in common with other rows from the heat map");
+      final double[][] allRows = rows;
+      rows = keptRows.intStream().mapToObj(i -> allRows[i]).toArray(double[][]::new);
+      names = keptRows.intStream().mapToObj(i -> rowNames[i]).toArray(String[]::new);
+      data = new double[numColumns][];
+      for (int column = 0; column < numColumns; column++) {
+        final double[] values = newFeatureList[column];
+        data[column] = keptRows.intStream().mapToDouble(i -> values[i]).toArray();
+      }
+      if (stars != null) {
+        stars = new String[numColumns][];
+        for (int column = 0; column < numColumns; column++) {
+          final String[] values = pValueMatrix[column];
+          stars[column] = keptRows.intStream().mapToObj(i -> values[i]).toArray(String[]::new);
+        }
+      }
+      numRows = keptRows.size();
+      rowDistances = HierarchicalClustering.euclideanDistances(rows);
+    }
+
+    final Dendrogram rowTree = HierarchicalClustering.cluster(replaceMissing(rowDistances),
+        numRows, linkage);
+    finishedPercentage = 0.6;
+    final Dendrogram columnTree = HierarchicalClustering.cluster(
+        replaceMissing(HierarchicalClustering.euclideanDistances(data)), numColumns, linkage);
+    finishedPercentage = 0.7;
+    if (isCanceled()) {
+      return;
+    }
+
+    final JFreeChart chart = HeatMapChart.createChart(data, names, colNames, stars, rowTree,
+        columnTree, starSize);
+    try {
+      // pdf and svg sizes are given in inches like in R, png in pixels
+      if (outputType.contains("pdf")) {
+        ChartExportUtil.writeChartToPDF(chart, width * 72, height * 72, outputFile);
+      } else if (outputType.contains("svg")) {
+        ChartExportUtil.writeChartToSVG(chart, width * 72, height * 72, outputFile);
+      } else if (outputType.contains("png")) {
+        ChartExportUtil.writeChartToPNG(chart, null, width, height, outputFile);
+      }
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Cannot write heat map to " + outputFile, e);
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("Cannot write heat map to " + outputFile + ": " + e.getMessage());
+      return;
+    }
+    finishedPercentage = 1.0;
+
+    if (!MZmineCore.isHeadLessMode()) {
+      MZmineCore.runLater(() -> {
+        final SimpleTab tab = new SimpleTab("Heat map " + featureList.getName());
+        tab.setContent(new EChartViewer(chart));
+        MZmineCore.getDesktop().addTab(tab);
+      });
+    }
+    setStatus(TaskStatus.FINISHED);
+  }
+
+  /**
+   * Objects without a common value (only possible for the first row or for columns) get the
+   * largest distance
+   */
+  private static float[] replaceMissing(float[] distances) {
+    float max = 0;
+    for (float d : distances) {
+      if (!Float.isNaN(d)) {
+        max = Math.max(max, d);
+      }
+    }
+    for (int i = 0; i < distances.length; i++) {
+      if (Float.isNaN(distances[i])) {
+        distances[i] = max;
+      }
+    }
+    return distances;
+  }
+
   private double[][] modifySimpleDataset(UserParameter<?, ?> selectedParameter,
       String referenceGroup) {
 
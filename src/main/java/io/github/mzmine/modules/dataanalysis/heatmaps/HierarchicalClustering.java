@@ -0,0 +1,320 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+
+package io.github.mzmine.modules.dataanalysis.heatmaps;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Euclidean distances and agglomerative hierarchical clustering of the heat map rows and columns.
+ * Distances are stored in a condensed upper triangle of floats. The clustering uses the nearest
+ * neighbor chain algorithm, which needs O(n^2) time for the reducible linkages of
+ * {@link HeatMapLinkage}.
+ */
+public class HierarchicalClustering {
+
+  /**
+   * rows per block of the distance matrix
+   */
+  private static final int BLOCK_SIZE = 64;
+  /**
+   * the condensed matrix of more objects does not fit into an array
+   */
+  public static final int MAX_OBJECTS = 65536;
+
+  private HierarchicalClustering() {
+  }
+
+  /**
+   * Euclidean distances like dist in R: missing (NaN or infinite) values are skipped and the sum
+   * is scaled up by the ratio of all to used dimensions. Two objects without a common value have a
+   * NaN distance. Blocks of rows are computed in parallel.
+   *
+   * @param objects the vectors of all objects, same length
+   * @return the condensed upper triangle, see {@link #index(int, int, int)}
+   */
+  @NotNull
+  public static float[] euclideanDistances(@NotNull double[][] objects) {
+    final int n = objects.length;
+    if (n > MAX_OBJECTS) {
+      throw new IllegalArgumentException(
+          "Cannot cluster more than " + MAX_OBJECTS + " objects, found " + n);
+    }
+    final float[] distances = new float[(int) ((long) n * (n - 1) / 2)];
+    final boolean[] missing = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      for (double v : objects[i]) {
+        if (!Double.isFinite(v)) {
+          missing[i] = true;
+          break;
+        }
+      }
+    }
+
+    // upper triangle of blocks, each block pair is one unit of work
+    final int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final int[] blockRows = new int[blocks * (blocks + 1) / 2];
+    final int[] blockCols = new int[blockRows.length];
+    for (int bi = 0, t = 0; bi < blocks; bi++) {
+      for (int bj = bi; bj < blocks; bj++, t++) {
+        blockRows[t] = bi;
+        blockCols[t] = bj;
+      }
+    }
+
+    IntStream.range(0, blockRows.length).parallel().forEach(t -> {
+      final int rowEnd = Math.min(n, (blockRows[t] + 1) * BLOCK_SIZE);
+      final int colStart = blockCols[t] * BLOCK_SIZE;
+      final int colEnd = Math.min(n, colStart + BLOCK_SIZE);
+      for (int i = blockRows[t] * BLOCK_SIZE; i < rowEnd; i++) {
+        final double[] a = objects[i];
+        for (int j = Math.max(colStart, i + 1); j < colEnd; j++) {
+          distances[index(n, i, j)] = missing[i] || missing[j] ? distanceWithMissing(a, objects[j])
+              : distance(a, objects[j]);
+        }
+      }
+    });
+    return distances;
+  }
+
+  private static float distance(double[] a, double[] b) {
+    double sum = 0;
+    for (int d = 0; d < a.length; d++) {
+      final double diff = a[d] - b[d];
+      sum += diff * diff;
+    }
+    return (float) Math.sqrt(sum);
+  }
+
+  private static float distanceWithMissing(double[] a, double[] b) {
+    double sum = 0;
+    int used = 0;
+    for (int d = 0; d < a.length; d++) {
+      if (Double.isFinite(a[d]) && Double.isFinite(b[d])) {
+        final double diff = a[d] - b[d];
+        sum += diff * diff;
+        used++;
+      }
+    }
+    return used == 0 ? Float.NaN : (float) Math.sqrt(sum * a.length / used);
+  }
+
+  /**
+   * @return the index of the distance between i and j (i < j) in the condensed triangle of n
+   * objects
+   */
+  public static int index(int n, int i, int j) {
+    return (int) ((long) i * n - (long) i * (i + 1) / 2 + j - i - 1);
+  }
+
+  /**
+   * Clusters the objects of the distance matrix.
+   *
+   * @param distances the condensed distances, without NaN values. This array is overwritten.
+   * @param n         the number of objects
+   * @param linkage   the linkage
+   * @return the dendrogram
+   */
+  @NotNull
+  public static Dendrogram cluster(@NotNull float[] distances, int n,
+      @NotNull HeatMapLinkage linkage) {
+    if (n < 2) {
+      return new Dendrogram(new int[0], new int[0], new double[0], n == 1 ? new int[]{0}
+          : new int[0]);
+    }
+    if (linkage == HeatMapLinkage.WARD) {
+      for (int i = 0; i < distances.length; i++) {
+        distances[i] *= distances[i];
+      }
+    }
+
+    final int[] size = new int[n];
+    // doubly linked list of the active clusters, n is the end
+    final int[] next = new int[n + 1];
+    final int[] previous = new int[n + 1];
+    for (int i = 0; i < n; i++) {
+      size[i] = 1;
+      next[i] = i + 1;
+      previous[i + 1] = i;
+    }
+    int first = 0;
+
+    // merges of the clusters, each cluster is represented by one of its objects
+    final int[] mergedA = new int[n - 1];
+    final int[] mergedB = new int[n - 1];
+    final double[] mergeHeights = new double[n - 1];
+
+    final int[] chain = new int[n];
+    int chainSize = 0;
+    for (int merge = 0; merge < n - 1; merge++) {
+      if (chainSize == 0) {
+        chain[chainSize++] = first;
+      }
+      int a;
+      int b;
+      float minDistance;
+      while (true) {
+        a = chain[chainSize - 1];
+        // on ties prefer the previous cluster of the chain to guarantee the termination
+        if (chainSize > 1) {
+          b = chain[chainSize - 2];
+          minDistance = distances[a < b ? index(n, a, b) : index(n, b, a)];
+        } else {
+          b = -1;
+          minDistance = Float.POSITIVE_INFINITY;
+        }
+        for (int k = first; k < n; k = next[k]) {
+          if (k == a) {
+            continue;
+          }
+          final float d = distances[a < k ? index(n, a, k) : index(n, k, a)];
+          if (d < minDistance || b == -1) {
+            minDistance = d;
+            b = k;
+          }
+        }
+        if (chainSize > 1 && b == chain[chainSize - 2]) {
+          break;
+        }
+        chain[chainSize++] = b;
+      }
+      chainSize -= 2;
+
+      // merge a into b, b keeps the distances to the new cluster
+      if (a > b) {
+        final int tmp = a;
+        a = b;
+        b = tmp;
+      }
+      mergedA[merge] = a;
+      mergedB[merge] = b;
+      mergeHeights[merge] = linkage == HeatMapLinkage.WARD ? Math.sqrt(minDistance) : minDistance;
+
+      final int sizeA = size[a];
+      final int sizeB = size[b];
+      for (int k = first; k < n; k = next[k]) {
+        if (k == a || k == b) {
+          continue;
+        }
+        final int ak = a < k ? index(n, a, k) : index(n, k, a);
+        final int bk = b < k ? index(n, b, k) : index(n, k, b);
+        distances[bk] = switch (linkage) {
+          case COMPLETE -> Math.max(distances[ak], distances[bk]);
+          case AVERAGE -> (sizeA * distances[ak] + sizeB * distances[bk]) / (sizeA + sizeB);
+          case WARD -> ((sizeA + size[k]) * distances[ak] + (sizeB + size[k]) * distances[bk]
+              - size[k] * minDistance) / (sizeA + sizeB + size[k]);
+        };
+      }
+      size[b] = sizeA + sizeB;
+
+      // remove a from the active clusters
+      if (a == first) {
+        first = next[a];
+      } else {
+        next[previous[a]] = next[a];
+      }
+      previous[next[a]] = previous[a];
+    }
+
+    return Dendrogram.fromMerges(n, mergedA, mergedB, mergeHeights);
+  }
+
+  /**
+   * The result of the clustering. Like the merge matrix of hclust in R, objects have the ids 0 to
+   * n-1 and the cluster of merge k has the id n+k. Merges are sorted by height.
+   *
+   * @param left    the first merged id
+   * @param right   the second merged id
+   * @param heights the distance of the merged clusters
+   * @param order   the objects in the order of the dendrogram leaves
+   */
+  public record Dendrogram(int[] left, int[] right, double[] heights, int[] order) {
+
+    /**
+     * @return the number of clustered objects
+     */
+    public int size() {
+      return order.length;
+    }
+
+    /**
+     * Labels the merges of the clusters (represented by one object each) in the order of their
+     * heights.
+     */
+    private static Dendrogram fromMerges(int n, int[] mergedA, int[] mergedB, double[] heights) {
+      final Integer[] sorted = new Integer[n - 1];
+      for (int i = 0; i < sorted.length; i++) {
+        sorted[i] = i;
+      }
+      // stable, keeps merges of the same height in the order they were found
+      Arrays.sort(sorted, (x, y) -> Double.compare(heights[x], heights[y]));
+
+      // union find of the object ids to the current cluster ids
+      final int[] parent = new int[2 * n - 1];
+      for (int i = 0; i < parent.length; i++) {
+        parent[i] = i;
+      }
+      final int[] left = new int[n - 1];
+      final int[] right = new int[n - 1];
+      final double[] sortedHeights = new double[n - 1];
+      for (int k = 0; k < sorted.length; k++) {
+        final int merge = sorted[k];
+        final int a = find(parent, mergedA[merge]);
+        final int b = find(parent, mergedB[merge]);
+        left[k] = Math.min(a, b);
+        right[k] = Math.max(a, b);
+        sortedHeights[k] = heights[merge];
+        parent[a] = n + k;
+        parent[b] = n + k;
+      }
+
+      // leaves from left to right
+      final int[] order = new int[n];
+      final int[] stack = new int[n];
+      int stackSize = 0;
+      int leaves = 0;
+      stack[stackSize++] = 2 * n - 2;
+      while (stackSize > 0) {
+        final int id = stack[--stackSize];
+        if (id < n) {
+          order[leaves++] = id;
+        } else {
+          stack[stackSize++] = right[id - n];
+          stack[stackSize++] = left[id - n];
+        }
+      }
+      return new Dendrogram(left, right, sortedHeights, order);
+    }
+
+    private static int find(int[] parent, int id) {
+      int root = id;
+      while (parent[root] != root) {
+        root = parent[root];
+      }
+      while (parent[id] != root) {
+        final int next = parent[id];
+        parent[id] = root;
+        id = next;
+      }
+      return root;
+    }
+  }
+}
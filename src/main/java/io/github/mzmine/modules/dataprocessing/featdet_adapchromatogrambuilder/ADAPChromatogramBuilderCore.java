@@ -0,0 +1,294 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Builds ADAP chromatograms from primitive arrays. All centroids of a file are collected in
+ * parallel m/z, intensity and scan index arrays and sorted by an index sort. The started
+ * chromatograms are tracked as primitive m/z intervals ({@link SortedMzIntervals}) and {@link
+ * ADAPChromatogram}s are only created for the final chromatograms. Independent m/z bands are
+ * processed in parallel.
+ * <p>
+ * The results equal the results of the original algorithm that sorted {@link ExpandedDataPoint}s
+ * by intensity and mapped the chromatograms in a {@link com.google.common.collect.RangeMap}.
+ */
+public class ADAPChromatogramBuilderCore {
+
+  private final MZTolerance mzTolerance;
+  private final double minHighestPoint;
+
+  private final DoubleArrayList mzs;
+  private final DoubleArrayList intensities;
+  private final IntArrayList scanIndices;
+
+  /**
+   * @param mzTolerance     scan to scan m/z tolerance
+   * @param minHighestPoint minimum intensity to start a new chromatogram
+   * @param expectedPoints  expected number of data points to initialize the arrays
+   */
+  public ADAPChromatogramBuilderCore(@NotNull MZTolerance mzTolerance, double minHighestPoint,
+      int expectedPoints) {
+    this.mzTolerance = mzTolerance;
+    this.minHighestPoint = minHighestPoint;
+    mzs = new DoubleArrayList(expectedPoints);
+    intensities = new DoubleArrayList(expectedPoints);
+    scanIndices = new IntArrayList(expectedPoints);
+  }
+
+  /**
+   * Adds a data point. Data points with NaN values are skipped.
+   *
+   * @param scanIndex the index of the scan in the scans array passed to {@link
+   *                  #buildChromatograms(Scan[], BooleanSupplier)}
+   * @param mz        the m/z
+   * @param intensity the intensity
+   */
+  public void addDataPoint(int scanIndex, double mz, double intensity) {
+    if (Double.isNaN(mz) || Double.isNaN(intensity)) {
+      return;
+    }
+    mzs.add(mz);
+    intensities.add(intensity);
+    scanIndices.add(scanIndex);
+  }
+
+  /**
+   * @return the number of collected data points
+   */
+  public int getNumberOfDataPoints() {
+    return mzs.size();
+  }
+
+  /**
+   * Builds the chromatograms. The m/z axis is split into bands at gaps without data points that
+   * are wider than the m/z tolerance. Chromatograms cannot span such a gap, therefore, the bands
+   * are processed independently and in parallel with the same results as a single band.
+   *
+   * @param scans    the scans, accessed by the scan index of the data points
+   * @param canceled checked during processing
+   * @return the chromatograms sorted by m/z or null if canceled
+   */
+  @Nullable
+  public List<ADAPChromatogram> buildChromatograms(@NotNull Scan[] scans,
+      @NotNull BooleanSupplier canceled) {
+    final int numPoints = mzs.size();
+    final double[] mz = mzs.elements();
+
+    final double[] bandBounds = findBandBounds(Runtime.getRuntime().availableProcessors() * 2);
+    final int numBands = bandBounds.length + 1;
+
+    // distribute the data points to the bands, keep the insertion order
+    final int[] band = new int[numPoints];
+    final int[] bandStart = new int[numBands + 1];
+    for (int i = 0; i < numPoints; i++) {
+      band[i] = bandOf(bandBounds, mz[i]);
+      bandStart[band[i] + 1]++;
+    }
+    for (int b = 0; b < numBands; b++) {
+      bandStart[b + 1] += bandStart[b];
+    }
+    final int[] points = new int[numPoints];
+    final int[] fill = new int[numBands];
+    for (int i = 0; i < numPoints; i++) {
+      points[bandStart[band[i]] + fill[band[i]]++] = i;
+    }
+
+    final List<List<ADAPChromatogram>> bandChromatograms = IntStream.range(0, numBands).parallel()
+        .mapToObj(b -> buildChromatograms(scans, points, bandStart[b], bandStart[b + 1],
+            numBands == 1, canceled)).toList();
+
+    final List<ADAPChromatogram> chromatograms = new ArrayList<>();
+    for (List<ADAPChromatogram> chroms : bandChromatograms) {
+      if (chroms == null) {
+        return null;
+      }
+      chromatograms.addAll(chroms);
+    }
+    return chromatograms;
+  }
+
+  /**
+   * Builds the chromatograms of one m/z band
+   *
+   * @param points data point indices (sorted by insertion) of all bands
+   * @param from   first index of this band in points
+   * @param to     last index (exclusive) of this band in points
+   * @return the chromatograms sorted by m/z or null if canceled
+   */
+  @Nullable
+  private List<ADAPChromatogram> buildChromatograms(@NotNull Scan[] scans, int[] points, int from,
+      int to, boolean parallelSort, @NotNull BooleanSupplier canceled) {
+    final double[] mz = mzs.elements();
+    final double[] intensity = intensities.elements();
+    final int[] scanIndex = scanIndices.elements();
+    final int numPoints = to - from;
+
+    // sort by intensity descending, m/z descending and keep the insertion order otherwise
+    final int[] order = Arrays.copyOfRange(points, from, to);
+    final IntComparator sorter = (a, b) -> {
+      int result = Double.compare(intensity[b], intensity[a]);
+      if (result == 0) {
+        result = Double.compare(mz[b], mz[a]);
+      }
+      return result != 0 ? result : Integer.compare(a, b);
+    };
+    if (parallelSort) {
+      IntArrays.parallelQuickSort(order, sorter);
+    } else {
+      IntArrays.quickSort(order, sorter);
+    }
+
+    if (canceled.getAsBoolean()) {
+      return null;
+    }
+
+    // assign each data point to a chromatogram (interval id) or -1
+    final SortedMzIntervals intervals = new SortedMzIntervals();
+    final int[] assigned = new int[numPoints];
+    for (int i = 0; i < numPoints; i++) {
+      final int p = order[i];
+      int id = intervals.find(mz[p]);
+      if (id == -1 && intensity[p] >= minHighestPoint) {
+        id = startNewChromatogramLimitMzRanges(intervals, mz[p]);
+      }
+      assigned[i] = id;
+
+      if ((i & 0xFFFF) == 0 && canceled.getAsBoolean()) {
+        return null;
+      }
+    }
+
+    // group the data points by chromatogram, keep the processing order within each group
+    final int numIntervals = intervals.getNumberOfIds();
+    final int[] groupStart = new int[numIntervals + 1];
+    for (int id : assigned) {
+      if (id >= 0) {
+        groupStart[id + 1]++;
+      }
+    }
+    for (int id = 0; id < numIntervals; id++) {
+      groupStart[id + 1] += groupStart[id];
+    }
+    final int[] grouped = new int[groupStart[numIntervals]];
+    final int[] fill = new int[numIntervals];
+    for (int i = 0; i < numPoints; i++) {
+      final int id = assigned[i];
+      if (id >= 0) {
+        grouped[groupStart[id] + fill[id]++] = order[i];
+      }
+    }
+
+    // only create the remaining chromatograms
+    final IntArrayList sortedIds = intervals.getSortedIds();
+    final List<ADAPChromatogram> chromatograms = new ArrayList<>(sortedIds.size());
+    for (int id : sortedIds) {
+      final ADAPChromatogram chromatogram = new ADAPChromatogram();
+      for (int j = groupStart[id]; j < groupStart[id + 1]; j++) {
+        final int p = grouped[j];
+        final Scan scan = scans[scanIndex[p]];
+        chromatogram.addMzFeature(scan, new ExpandedDataPoint(mz[p], intensity[p], scan));
+      }
+      chromatograms.add(chromatogram);
+    }
+    return chromatograms;
+  }
+
+  /**
+   * Splits the m/z axis into bands of about the same number of data points. Bands are only split
+   * at gaps where the m/z tolerance ranges of the data points on both sides do not overlap, so
+   * that no chromatogram (and no m/z range of a chromatogram) can reach into the next band.
+   *
+   * @param targetBands the targeted number of bands
+   * @return the m/z bounds between the bands, sorted ascending. Empty for a single band.
+   */
+  private double[] findBandBounds(int targetBands) {
+    final int numPoints = mzs.size();
+    if (targetBands <= 1 || numPoints < targetBands * 1000) {
+      return new double[0];
+    }
+    final double[] sorted = Arrays.copyOf(mzs.elements(), numPoints);
+    Arrays.parallelSort(sorted);
+
+    final DoubleArrayList bounds = new DoubleArrayList();
+    final int pointsPerBand = numPoints / targetBands;
+    for (int i = pointsPerBand; i < numPoints - 1; i++) {
+      final double upperLeft = mzTolerance.getToleranceRange(sorted[i]).upperEndpoint();
+      final double lowerRight = mzTolerance.getToleranceRange(sorted[i + 1]).lowerEndpoint();
+      if (upperLeft < lowerRight) {
+        bounds.add(sorted[i + 1]);
+        i += pointsPerBand;
+      }
+    }
+    return bounds.toDoubleArray();
+  }
+
+  /**
+   * @return the band index of the m/z. Band i contains all m/z < bounds[i]
+   */
+  private static int bandOf(double[] bounds, double mz) {
+    int band = Arrays.binarySearch(bounds, mz);
+    // m/z equal to a bound belongs to the upper band
+    return band >= 0 ? band + 1 : -band - 1;
+  }
+
+  /**
+   * Starts a new chromatogram and limits its range so that it does not overlap with existing m/z
+   * ranges
+   *
+   * @return the id of the chromatogram the data point was added to or -1
+   */
+  private int startNewChromatogramLimitMzRanges(SortedMzIntervals intervals, double mz) {
+    final Range<Double> toleranceRange = mzTolerance.getToleranceRange(mz);
+    final double lowerTolerance = toleranceRange.lowerEndpoint();
+    final double upperTolerance = toleranceRange.upperEndpoint();
+
+    // limit the new range to the bounds of the neighbouring ranges
+    final int minusRange = intervals.find(lowerTolerance);
+    final int plusRange = intervals.find(upperTolerance);
+    final double toBeLowerBound =
+        minusRange == -1 ? lowerTolerance : intervals.getUpperBound(minusRange);
+    final double toBeUpperBound =
+        plusRange == -1 ? upperTolerance : intervals.getLowerBound(plusRange);
+
+    if (toBeLowerBound < toBeUpperBound) {
+      return intervals.add(toBeLowerBound, toBeUpperBound);
+    } else if (toBeLowerBound == toBeUpperBound && plusRange != -1) {
+      return plusRange;
+    } else {
+      throw new IllegalStateException(
+          String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
+              mz));
+    }
+  }
+}
@@ -19,9 +19,6 @@
 package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
 
 
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
@@ -40,20 +37,14 @@ import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.DataPointSorter;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.SortingDirection;
-import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -64,6 +55,11 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
   private static final Logger logger = Logger.getLogger(
       ModularADAPChromatogramBuilderTask.class.getName());
 
+  /**
+   * Number of mass lists that are loaded in advance
+   */
+  private static final int PREFETCH_SCANS = 8;
+
   private final MZmineProject project;
   private final RawDataFile dataFile;
   private final ScanSelection scanSelection;
@@ -119,7 +115,6 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     return dataFile;
   }
 
-  @SuppressWarnings("UnstableApiUsage")
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
@@ -164,21 +159,16 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
       }
     }
 
-    // make a list of all the data points
-    // sort data points by intensity
-    // loop through list
-    // add data point to chromatogrm or make new one
-    // update mz avg and other stuff
-    //
-
-    // map the mz tolerance to chromatograms
-    RangeMap<Double, ADAPChromatogram> rangeToChromMap = TreeRangeMap.create();
-
-    // make a list of all the data points
-    List<ExpandedDataPoint> allMzValues = new ArrayList<>();
+    // collect all data points in primitive arrays, sort them by intensity and add them to
+    // existing chromatograms or start new ones
+    final ADAPChromatogramBuilderCore builder = new ADAPChromatogramBuilderCore(mzTolerance,
+        minHighestPoint, scans.length);
 
+    // mass lists of the next scans are loaded in the background
     ScanDataAccess scanData = EfficientDataAccess.of(dataFile, ScanDataType.CENTROID,
-        scanSelection);
+        scanSelection, PREFETCH_SCANS);
+    final Scan[] accessedScans = new Scan[scanData.getNumberOfScans()];
+    int scanIndex = 0;
 
     while (scanData.hasNextScan()) {
       if (isCanceled()) {
@@ -204,54 +194,25 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
         return;
       }
 
+      accessedScans[scanIndex] = scan;
       int dps = scanData.getNumberOfDataPoints();
       for (int i = 0; i < dps; i++) {
-        ExpandedDataPoint curDatP = new ExpandedDataPoint(scanData.getMzValue(i),
-            scanData.getIntensityValue(i), scan);
-        allMzValues.add(curDatP);
+        builder.addDataPoint(scanIndex, scanData.getMzValue(i), scanData.getIntensityValue(i));
       }
+      scanIndex++;
     }
+    progress = 0.25;
 
-    // sort data points by intensity
-    allMzValues.sort(new DataPointSorter(SortingProperty.Intensity, SortingDirection.Descending));
-
-    // count starts at 1 since we already have added one with a single point.
-    progress = 0.0;
-    double progressStep = (allMzValues.size() > 0) ? 0.5 / allMzValues.size() : 0.0;
-
-    for (ExpandedDataPoint mzFeature : allMzValues) {
-
-      progress += progressStep;
-
-      if (isCanceled()) {
-        return;
-      }
-
-      if (mzFeature == null || Double.isNaN(mzFeature.getMZ()) || Double.isNaN(
-          mzFeature.getIntensity())) {
-        continue;
-      }
-
-      final Entry<Range<Double>, ADAPChromatogram> existing = rangeToChromMap.getEntry(
-          mzFeature.getMZ());
-      if (existing != null) {
-        // add data point to chromatogram
-        existing.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
-      } else {
-        // skip it entierly if the intensity is not high enough
-        if (mzFeature.getIntensity() < minHighestPoint) {
-          continue;
-        }
-        // add a new chromatogram to the range map - limit ranges to avoid overlap
-        startNewChromatogramLimitMzRanges(rangeToChromMap, mzFeature);
-      }
+    // chromatograms sorted by m/z
+    final List<ADAPChromatogram> chromatograms = builder.buildChromatograms(accessedScans,
+        this::isCanceled);
+    if (chromatograms == null) {
+      return;
     }
+    progress = 0.5;
 
-    // finish chromatograms sorted by m/z
-    final Map<Range<Double>, ADAPChromatogram> finalRangeMap = rangeToChromMap.asMapOfRanges();
-
-    int numChromatograms = finalRangeMap.size();
-    progressStep = numChromatograms > 0 ? 0.5 / numChromatograms : 0.0;
+    int numChromatograms = chromatograms.size();
+    double progressStep = numChromatograms > 0 ? 0.5 / numChromatograms : 0.0;
 
     // Create new feature list
     newFeatureList = new ModularFeatureList(dataFile + " " + suffix, getMemoryMapStorage(),
@@ -261,7 +222,7 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
     int newFeatureID = 1;
     // add chromatograms that match criteria
-    for (ADAPChromatogram chromatogram : finalRangeMap.values()) {
+    for (ADAPChromatogram chromatogram : chromatograms) {
       if (isCanceled()) {
         return;
       }
@@ -306,51 +267,5 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     logger.info(() -> "Finished chromatogram builder on " + dataFile);
   }
 
-  /**
-   * Starts a new chromatogram and limits its range so that it does not overlap with existing m/z
-   * ranges
-   *
-   * @param rangeToChromMap started chromatograms with their non overlapping m/z range
-   * @param mzFeature       current tested data point
-   */
-  @SuppressWarnings("UnstableApiUsage")
-  private void startNewChromatogramLimitMzRanges(RangeMap<Double, ADAPChromatogram> rangeToChromMap,
-      ExpandedDataPoint mzFeature) {
-    // start new chromatogram and create new range (subract overlapping existing ranges)
-    Range<Double> toleranceRange = mzTolerance.getToleranceRange(mzFeature.getMZ());
-
-    // look +- mz tolerance to see if ther is a range near by.
-    // If there is use the proper boundry of that range for the
-    // new range to insure than NON OF THE RANGES OVERLAP.
-    final Entry<Range<Double>, ADAPChromatogram> minusRange = rangeToChromMap.getEntry(
-        toleranceRange.lowerEndpoint());
-    final Entry<Range<Double>, ADAPChromatogram> plusRange = rangeToChromMap.getEntry(
-        toleranceRange.upperEndpoint());
-
-    // If both of the above ranges are null then we make the new range spaning the full
-    // mz tolerance range.
-    // If one or both are not null we need to properly modify the range of the new
-    // chromatogram so that none of the points are overlapping.
-    Double toBeLowerBound =
-        minusRange == null ? toleranceRange.lowerEndpoint() : minusRange.getKey().upperEndpoint();
-    Double toBeUpperBound =
-        plusRange == null ? toleranceRange.upperEndpoint() : plusRange.getKey().lowerEndpoint();
-
-    if (toBeLowerBound < toBeUpperBound) {
-      // use closed open so that every value may be captured by rangeMap
-      Range<Double> newRange = Range.closedOpen(toBeLowerBound, toBeUpperBound);
-      ADAPChromatogram newChrom = new ADAPChromatogram();
-      newChrom.addMzFeature(mzFeature.getScan(), mzFeature);
-
-      rangeToChromMap.put(newRange, newChrom);
-    } else if (toBeLowerBound.equals(toBeUpperBound) && plusRange != null) {
-      plusRange.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
-    } else {
-      throw new IllegalStateException(
-          String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
-              mzFeature.getMZ()));
-    }
-  }
-
 }
 
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non overlapping, closed-open m/z intervals [lower, upper) with an int id, sorted by their lower
+ * bound. The lower bounds are stored in blocks of sorted primitive arrays to keep lookups
+ * allocation free and inserts cheap. Ids are assigned consecutively starting at 0.
+ * <p>
+ * Adding an interval removes all intervals that start within the new interval, which equals the
+ * behaviour of {@link com.google.common.collect.RangeMap#put} for the intervals created by the
+ * ADAP chromatogram builder (the new interval never cuts an existing interval).
+ */
+class SortedMzIntervals {
+
+  private static final int BLOCK_SIZE = 512;
+
+  private final List<Block> blocks = new ArrayList<>();
+  /**
+   * The lowest lower bound of each block
+   */
+  private double[] blockStarts = new double[16];
+
+  private final DoubleArrayList lowerBounds = new DoubleArrayList();
+  private final DoubleArrayList upperBounds = new DoubleArrayList();
+
+  /**
+   * @param mz the m/z
+   * @return the id of the interval that contains the m/z or -1
+   */
+  int find(double mz) {
+    final int b = floorBlock(mz);
+    if (b < 0) {
+      return -1;
+    }
+    final Block block = blocks.get(b);
+    // block start <= mz, so there is always a floor entry
+    final int i = block.floorIndex(mz);
+    final int id = block.ids[i];
+    return mz < upperBounds.getDouble(id) ? id : -1;
+  }
+
+  /**
+   * Adds a new interval and removes all intervals that start within [lower, upper).
+   *
+   * @return the id of the new interval
+   */
+  int add(double lower, double upper) {
+    removeStartingWithin(lower, upper);
+
+    final int id = lowerBounds.size();
+    lowerBounds.add(lower);
+    upperBounds.add(upper);
+
+    if (blocks.isEmpty()) {
+      blocks.add(new Block());
+    }
+    final int b = Math.max(floorBlock(lower), 0);
+    final Block block = blocks.get(b);
+    final int index = block.floorIndex(lower) + 1;
+    block.insert(index, lower, id);
+    if (index == 0) {
+      blockStarts[b] = lower;
+    }
+
+    if (block.size == BLOCK_SIZE) {
+      splitBlock(b);
+    }
+    return id;
+  }
+
+  /**
+   * @return the number of ids assigned so far, including removed intervals
+   */
+  int getNumberOfIds() {
+    return lowerBounds.size();
+  }
+
+  double getLowerBound(int id) {
+    return lowerBounds.getDouble(id);
+  }
+
+  double getUpperBound(int id) {
+    return upperBounds.getDouble(id);
+  }
+
+  /**
+   * @return the ids of all intervals sorted by m/z
+   */
+  IntArrayList getSortedIds() {
+    final IntArrayList ids = new IntArrayList();
+    for (Block block : blocks) {
+      ids.addElements(ids.size(), block.ids, 0, block.size);
+    }
+    return ids;
+  }
+
+  private void removeStartingWithin(double lower, double upper) {
+    int b = Math.max(floorBlock(lower), 0);
+    while (b < blocks.size()) {
+      final Block block = blocks.get(b);
+      // first index with a lower bound >= lower
+      int index = block.floorIndex(lower);
+      if (index < 0 || block.lowerBounds[index] < lower) {
+        index++;
+      }
+      if (index >= block.size) {
+        b++;
+        continue;
+      }
+      if (block.lowerBounds[index] >= upper) {
+        return;
+      }
+
+      block.remove(index);
+      if (block.size == 0) {
+        removeBlock(b);
+      } else if (index == 0) {
+        blockStarts[b] = block.lowerBounds[0];
+      }
+    }
+  }
+
+  /**
+   * @return the index of the last block with a start <= mz or -1
+   */
+  private int floorBlock(double mz) {
+    int low = 0;
+    int high = blocks.size() - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (blockStarts[mid] <= mz) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  private void splitBlock(int b) {
+    final Block block = blocks.get(b);
+    final Block upperHalf = new Block();
+    final int half = block.size / 2;
+    upperHalf.size = block.size - half;
+    System.arraycopy(block.lowerBounds, half, upperHalf.lowerBounds, 0, upperHalf.size);
+    System.arraycopy(block.ids, half, upperHalf.ids, 0, upperHalf.size);
+    block.size = half;
+
+    blocks.add(b + 1, upperHalf);
+    if (blockStarts.length < blocks.size()) {
+      final double[] starts = new double[blockStarts.length * 2];
+      System.arraycopy(blockStarts, 0, starts, 0, blockStarts.length);
+      blockStarts = starts;
+    }
+    System.arraycopy(blockStarts, b + 1, blockStarts, b + 2, blocks.size() - b - 2);
+    blockStarts[b + 1] = upperHalf.lowerBounds[0];
+  }
+
+  private void removeBlock(int b) {
+    blocks.remove(b);
+    System.arraycopy(blockStarts, b + 1, blockStarts, b, blocks.size() - b);
+  }
+
+  private static class Block {
+
+    private final double[] lowerBounds = new double[BLOCK_SIZE];
+    private final int[] ids = new int[BLOCK_SIZE];
+    private int size = 0;
+
+    /**
+     * @return the index of the last entry <= mz or -1
+     */
+    private int floorIndex(double mz) {
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        if (lowerBounds[mid] <= mz) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return high;
+    }
+
+    private void insert(int index, double lower, int id) {
+      System.arraycopy(lowerBounds, index, lowerBounds, index + 1, size - index);
+      System.arraycopy(ids, index, ids, index + 1, size - index);
+      lowerBounds[index] = lower;
+      ids[index] = id;
+      size++;
+    }
+
+    private void remove(int index) {
+      System.arraycopy(lowerBounds, index + 1, lowerBounds, index, size - index - 1);
+      System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+      size--;
+    }
+  }
+}
@@ -73,7 +73,9 @@ public abstract class AbstractResolver implements Resolver {
   protected AbstractResolver(@NotNull final ParameterSet parameters,
       @NotNull final ModularFeatureList flist) {
     this.generalParameters = parameters;
-    dimension = parameters.getParameter(GeneralResolverParameters.dimension).getValue();
+    // resolvers that only resolve the rt dimension do not add the parameter
+    dimension = parameters.hasParameter(GeneralResolverParameters.dimension) ? parameters.getValue(
+        GeneralResolverParameters.dimension) : ResolvingDimension.RETENTION_TIME;
     this.flist = flist;
     file = flist.getRawDataFile(0);
   }
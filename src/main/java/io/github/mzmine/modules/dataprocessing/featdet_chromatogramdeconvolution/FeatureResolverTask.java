@@ -50,9 +50,12 @@ import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 import io.github.mzmine.util.maths.CenterFunction;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 
 public class FeatureResolverTask extends AbstractTask {
@@ -350,21 +353,44 @@ public class FeatureResolverTask extends AbstractTask {
     final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
     final ModularFeatureList resolvedFeatureList = createNewFeatureList(originalFeatureList);
 
-    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
-        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile);
-
+    final List<FeatureListRow> rows = new ArrayList<>(originalFeatureList.getRows());
     processedRows = 0;
-    totalRows = originalFeatureList.getNumberOfRows();
-    int peakId = 1;
+    totalRows = rows.size();
+
+    // the data access and the resolver keep buffers of the current feature. Every block of rows is
+    // resolved by its own instances, the resolved features are added in the order of the rows.
+    final int numBlocks = Math.min(rows.size(),
+        resolver.isParallelizable() ? Runtime.getRuntime().availableProcessors() * 4 : 1);
+    final AtomicInteger resolvedRows = new AtomicInteger();
+    final List<List<ResolvedSeries>> blocks = IntStream.range(0, numBlocks).parallel()
+        .mapToObj(block -> {
+          final List<FeatureListRow> blockRows = rows.subList(
+              (int) ((long) rows.size() * block / numBlocks),
+              (int) ((long) rows.size() * (block + 1) / numBlocks));
+          final Resolver blockResolver = block == 0 ? resolver
+              : ((GeneralResolverParameters) parameters).getResolver(parameters,
+                  originalFeatureList);
+          final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
+              EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile, blockRows);
+
+          final List<ResolvedSeries> resolved = new ArrayList<>();
+          while (access.hasNextFeature() && !isCanceled()) {
+            final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
+            for (IonTimeSeries<? extends Scan> series : blockResolver.resolve(access,
+                getMemoryMapStorage())) {
+              resolved.add(new ResolvedSeries(originalFeature, series));
+            }
+            processedRows = resolvedRows.incrementAndGet();
+          }
+          return resolved;
+        }).toList();
 
+    int peakId = 1;
     int c = 0;
-
-    while (access.hasNextFeature()) {
-      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
-      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
-          getMemoryMapStorage());
-
-      for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
+    for (List<ResolvedSeries> block : blocks) {
+      for (ResolvedSeries resolvedSeries : block) {
+        final ModularFeature originalFeature = resolvedSeries.originalFeature();
+        final IonTimeSeries<? extends Scan> resolved = resolvedSeries.series();
         final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
             peakId++);
         final ModularFeature f = new ModularFeature(resolvedFeatureList,
@@ -382,7 +408,6 @@ public class FeatureResolverTask extends AbstractTask {
           c++;
         }
       }
-      processedRows++;
     }
     logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
         + " have less than 4 scans (frames for IMS data)");
@@ -395,6 +420,14 @@ public class FeatureResolverTask extends AbstractTask {
     newPeakList = resolvedFeatureList;
   }
 
+  /**
+   * A resolved feature before it is added to the new feature list
+   */
+  private record ResolvedSeries(ModularFeature originalFeature,
+                                IonTimeSeries<? extends Scan> series) {
+
+  }
+
   @Override
   public void cancel() {
     super.cancel();
@@ -72,4 +72,15 @@ public interface Resolver {
   public RawDataFile getRawDataFile();
 
   @NotNull Class<? extends MZmineModule> getModuleClass();
+
+  /**
+   * The feature resolver task resolves blocks of rows in parallel with a new resolver instance for
+   * every block. Only resolvers that were verified to produce the same features as on a single
+   * thread should return true.
+   *
+   * @return true if multiple instances of this resolver can resolve features in parallel
+   */
+  default boolean isParallelizable() {
+    return false;
+  }
 }
@@ -0,0 +1,896 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
+
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.INTEGRATION_METHOD;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.MIN_NUMBER_OF_DATAPOINTS;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PEAK_DURATION;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PEAK_SCALES;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.SN_THRESHOLD;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.AbstractResolver;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PeakIntegrationMethod;
+import io.github.mzmine.parameters.ParameterSet;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The centWave algorithm of XCMS (Tautenhahn et al., BMC Bioinformatics 2008, 9:504) without R.
+ * Every run of non-zero intensities of a chromatogram is a region of interest (ROI), as in the ROIs
+ * that {@link CentWaveResolver} passes to findPeaks.centWave. The continuous wavelet transform of
+ * each ROI with Mexican hat wavelets finds the peaks on ridges of local maxima over the wavelet
+ * scales. Baseline, noise, the best scale and the peak boundaries are determined as in
+ * findPeaks.centWave.
+ * <p>
+ * The wavelet transforms, their buffers and the Fourier transforms of the wavelets are reused for
+ * all chromatograms. Therefore, an instance must only be used by one thread at a time.
+ */
+public class CentWaveFeatureResolver extends AbstractResolver {
+
+  // defaults of findPeaks.centWave and the MassSpecWavelet functions it uses
+  private static final int MIN_WINDOW_SIZE = 5;
+  private static final int RIDGE_GAP_THRESHOLD = 3;
+  private static final double NOISE_TRIM = 0.05;
+  // the Mexican hat wavelet is sampled in [-8, 8] times the scale
+  private static final int WAVELET_HALF_WIDTH = 8;
+  private static final double MEXICAN_HAT_NORM = 2 / Math.sqrt(3) * Math.pow(Math.PI, -0.25);
+
+  private final double snThreshold;
+  private final Range<Double> peakWidth;
+  private final Range<Double> peakDuration;
+  private final PeakIntegrationMethod integrationMethod;
+  private final int minDataPoints;
+
+  // Fourier transforms of the wavelets by transform length and scale
+  private final Long2ObjectOpenHashMap<double[]> waveletSpectra = new Long2ObjectOpenHashMap<>();
+
+  // buffers of the current chromatogram
+  private double[] signalReal = new double[0];
+  private double[] signalImag = new double[0];
+  private double[] real = new double[0];
+  private double[] imag = new double[0];
+  private double[][] coefficients = new double[0][];
+  private boolean[][] localMaxima = new boolean[0][];
+  private double[] values = new double[0];
+  private int[] indices = new int[0];
+  // noise of the whole chromatogram, only estimated for long ROIs
+  private double chromatogramNoise;
+
+  public CentWaveFeatureResolver(ParameterSet parameters, ModularFeatureList flist) {
+    super(parameters, flist);
+    snThreshold = parameters.getParameter(SN_THRESHOLD).getValue();
+    peakWidth = parameters.getParameter(PEAK_SCALES).getValue();
+    peakDuration = parameters.getParameter(PEAK_DURATION).getValue();
+    integrationMethod = parameters.getParameter(INTEGRATION_METHOD).getValue();
+    minDataPoints = parameters.getParameter(MIN_NUMBER_OF_DATAPOINTS).getValue();
+  }
+
+  @Override
+  public Class<? extends MZmineProcessingModule> getModuleClass() {
+    return CentWaveResolverModule.class;
+  }
+
+  @Override
+  public boolean isParallelizable() {
+    // instances share no state
+    return true;
+  }
+
+  /**
+   * @param x retention times in minutes, strictly monotonically increasing
+   * @param y intensities, missing data points are represented by 0
+   * @return the rt range of each peak
+   */
+  @Override
+  @NotNull
+  public List<Range<Double>> resolve(double[] x, double[] y) {
+    // the buffers of the data access may be longer than the chromatogram
+    int numValues = Math.min(x.length, y.length);
+    for (int i = 1; i < numValues; i++) {
+      if (x[i] < x[i - 1]) {
+        numValues = i;
+      }
+    }
+    if (numValues < 2) {
+      return List.of();
+    }
+
+    final int[] scales = getScales(x, numValues);
+    if (scales.length == 0) {
+      return List.of();
+    }
+
+    chromatogramNoise = Double.NaN;
+    final List<CentWavePeak> peaks = new ArrayList<>();
+    for (int start = 0; start < numValues; start++) {
+      if (y[start] > 0) {
+        int end = start;
+        while (end + 1 < numValues && y[end + 1] > 0) {
+          end++;
+        }
+        detectPeaks(x, y, numValues, start, end, scales, peaks);
+        start = end;
+      }
+    }
+    return createRanges(x, y, removeOverlappingPeaks(peaks));
+  }
+
+  /**
+   * The scales are half of the peak widths in scans, every second scale between the smallest and
+   * the largest is used.
+   */
+  private int[] getScales(double[] x, int numValues) {
+    final double meanScanTime = (x[numValues - 1] - x[0]) / (numValues - 1);
+    if (!(meanScanTime > 0)) {
+      return new int[0];
+    }
+    // R rounds half to even
+    final int largest = (int) Math.rint(peakWidth.upperEndpoint() / meanScanTime / 2);
+    final int smallest = Math.max(1,
+        (int) Math.rint(peakWidth.lowerEndpoint() / meanScanTime / 2));
+    if (largest < smallest) {
+      return largest < 1 ? new int[0] : new int[]{largest};
+    }
+    final int[] scales = new int[(largest - smallest) / 2 + 1];
+    for (int i = 0; i < scales.length; i++) {
+      scales[i] = smallest + 2 * i;
+    }
+    return scales;
+  }
+
+  /**
+   * Detects the peaks of one ROI.
+   *
+   * @param roiStart first index of the ROI
+   * @param roiEnd   last index of the ROI (inclusive)
+   * @param peaks    the detected peaks are added to this list
+   */
+  private void detectPeaks(double[] x, double[] y, int numValues, int roiStart, int roiEnd,
+      int[] scales, List<CentWavePeak> peaks) {
+    final int minPeakWidth = scales[0];
+    final int scanRangeTolerance = minPeakWidth / 2;
+    final int minPointsAboveBaseline = Math.max(4, minPeakWidth - 2);
+    final int noiseRange = 3 * scales[scales.length - 1];
+
+    // the ROI is transformed with the noise range on both sides, all following indices are
+    // relative to start
+    final int start = Math.max(0, roiStart - noiseRange);
+    final int end = Math.min(numValues - 1, roiEnd + noiseRange);
+    final int length = end - start + 1;
+    final int roiLeft = Math.max(start, roiStart - scanRangeTolerance) - start;
+    final int roiRight = Math.min(end, roiEnd + scanRangeTolerance) - start;
+
+    // first baseline guess, the whole chromatogram is used for long ROIs
+    final double noise;
+    if (roiEnd - roiStart + 1 >= 10 * minPeakWidth) {
+      if (Double.isNaN(chromatogramNoise)) {
+        chromatogramNoise = estimateChromatogramNoise(y, 0, numValues, 3 * minPeakWidth);
+      }
+      noise = chromatogramNoise;
+    } else {
+      noise = estimateChromatogramNoise(y, start, length, 3 * minPeakWidth);
+    }
+    if (!hasContinuousPointsAbove(y, start + roiLeft, start + roiRight, noise,
+        minPointsAboveBaseline)) {
+      return;
+    }
+
+    // second estimate next to the ROI
+    final double[] localNoise = estimateLocalNoise(y, start, length, roiLeft, roiRight,
+        3 * minPeakWidth, numValues, noise, minPointsAboveBaseline);
+    final double baseline = Math.max(1, Math.min(localNoise[0], noise));
+    final double sdNoise = Math.max(1, localNoise[1]);
+    final double sdThreshold = sdNoise * snThreshold;
+    boolean aboveThreshold = false;
+    for (int i = roiLeft; i <= roiRight && !aboveThreshold; i++) {
+      aboveThreshold = y[start + i] - baseline >= sdThreshold;
+    }
+    if (!aboveThreshold) {
+      return;
+    }
+
+    final int numScales = transform(y, start, length, scales);
+    aboveThreshold = false;
+    for (int s = 0; s < numScales && !aboveThreshold; s++) {
+      for (int i = 0; i < length && !aboveThreshold; i++) {
+        aboveThreshold = coefficients[s][i] - baseline >= sdThreshold;
+      }
+    }
+    if (!aboveThreshold) {
+      return;
+    }
+    if (end == numValues - 1 && length > 1) {
+      // no maximum at the last scan, as in findPeaks.centWave
+      for (int s = 0; s < numScales; s++) {
+        coefficients[s][length - 1] = coefficients[s][length - 2] * 0.99;
+      }
+    }
+
+    findLocalMaxima(numScales, length, scales);
+    final int intensityRange = (scales[0] + 1) / 2;
+    for (Ridge ridge : findRidges(numScales, length, scales)) {
+      // the coefficients of the smallest scale and the data within the ROI must exceed the noise
+      boolean coefficientAbove = false;
+      boolean intensityAbove = false;
+      final int lowest = ridge.getLowestColumn();
+      for (int column = lowest; column <= ridge.top; column++) {
+        final int position = ridge.getPosition(column);
+        coefficientAbove |= coefficients[0][position] - baseline >= sdThreshold;
+        intensityAbove |= position >= roiLeft && position <= roiRight
+            && y[start + position] - baseline >= sdThreshold;
+      }
+      if (!coefficientAbove || !intensityAbove) {
+        continue;
+      }
+
+      // the scale with the highest intensity around the ridge describes the peak best
+      int bestColumn = -1;
+      double bestIntensity = 0;
+      for (int column = lowest; column <= ridge.top; column++) {
+        final int position = ridge.getPosition(column);
+        double intensity = 0;
+        for (int i = Math.max(0, position - intensityRange);
+            i <= Math.min(length - 1, position + intensityRange); i++) {
+          intensity += y[start + i];
+        }
+        if (bestColumn == -1 || intensity > bestIntensity || (intensity == bestIntensity
+            && coefficients[column][position] > coefficients[bestColumn][ridge.getPosition(
+            bestColumn)])) {
+          bestColumn = column;
+          bestIntensity = intensity;
+        }
+      }
+      final int bestScale = scales[bestColumn];
+      final int bestPosition = ridge.getPosition(bestColumn);
+      final int left = Math.max(0, bestPosition - bestScale);
+      final int right = Math.min(length - 1, bestPosition + bestScale);
+
+      final CentWavePeak peak = findBoundaries(x, y, start, length, bestColumn, bestPosition,
+          left, right, scanRangeTolerance);
+      if (peak != null) {
+        peaks.add(peak);
+      }
+    }
+  }
+
+  /**
+   * Finds the peak boundaries by descending from the best wavelet coefficient or from the best
+   * scale window in the raw data.
+   *
+   * @return the peak or null if it has no intensities
+   */
+  private CentWavePeak findBoundaries(double[] x, double[] y, int start, int length,
+      int bestColumn, int bestPosition, int left, int right, int maxDescOutlier) {
+    int lower = -1;
+    int upper = -1;
+    if (integrationMethod == PeakIntegrationMethod.UseSmoothedData) {
+      final double[] smoothed = coefficients[bestColumn];
+      lower = bestPosition;
+      while (lower > 0 && smoothed[lower - 1] < smoothed[lower]) {
+        lower--;
+      }
+      upper = bestPosition;
+      while (upper < length - 1 && smoothed[upper + 1] < smoothed[upper]) {
+        upper++;
+      }
+      boolean gap = true;
+      for (int i = lower; i <= upper && gap; i++) {
+        gap = y[start + i] == 0;
+      }
+      if (lower == upper || gap) {
+        // stuck in a gap, use the raw data
+        lower = -1;
+      }
+    }
+    if (lower == -1) {
+      lower = descendLeft(y, start, left, maxDescOutlier);
+      upper = descendRight(y, start, length, right, maxDescOutlier);
+    }
+
+    // skip the zeros at the borders but one
+    int first = lower;
+    while (first <= upper && y[start + first] < 1) {
+      first++;
+    }
+    if (first > upper) {
+      return null;
+    }
+    int last = upper;
+    while (y[start + last] < 1) {
+      last--;
+    }
+    lower = Math.max(lower, first - 1);
+    upper = Math.min(upper, last + 1);
+
+    double area = 0;
+    for (int i = lower; i <= upper; i++) {
+      area += y[start + i];
+    }
+    if (upper > lower) {
+      area *= (x[start + upper] - x[start + lower]) / (upper - lower);
+    }
+    return new CentWavePeak(start + lower, start + upper, area);
+  }
+
+  /**
+   * Descends to the left while the intensities decrease, allowing up to maxDescOutlier higher
+   * intensities in a row, like descendMinTol of XCMS.
+   *
+   * @return the index of the minimum relative to start
+   */
+  private static int descendLeft(double[] y, int start, int position, int maxDescOutlier) {
+    int minPosition = position;
+    int outliers = 0;
+    for (int i = position - 1; i >= 0 && outliers <= maxDescOutlier; i--) {
+      if (y[start + i] <= y[start + minPosition]) {
+        minPosition = i;
+        outliers = 0;
+      } else {
+        outliers++;
+      }
+    }
+    return minPosition;
+  }
+
+  /**
+   * @return the index of the minimum relative to start
+   * @see #descendLeft(double[], int, int, int)
+   */
+  private static int descendRight(double[] y, int start, int length, int position,
+      int maxDescOutlier) {
+    int minPosition = position;
+    int outliers = 0;
+    for (int i = position + 1; i < length && outliers <= maxDescOutlier; i++) {
+      if (y[start + i] <= y[start + minPosition]) {
+        minPosition = i;
+        outliers = 0;
+      } else {
+        outliers++;
+      }
+    }
+    return minPosition;
+  }
+
+  /**
+   * Removes the peaks that overlap a peak with a larger area, the shared border scan of adjacent
+   * peaks is no overlap.
+   */
+  private static List<CentWavePeak> removeOverlappingPeaks(List<CentWavePeak> peaks) {
+    if (peaks.size() < 2) {
+      return peaks;
+    }
+    final List<CentWavePeak> byArea = new ArrayList<>(peaks);
+    byArea.sort(Comparator.comparingDouble(CentWavePeak::area).reversed());
+    final List<CentWavePeak> unique = new ArrayList<>();
+    for (CentWavePeak peak : byArea) {
+      boolean overlaps = false;
+      for (int i = 0; i < unique.size() && !overlaps; i++) {
+        final CentWavePeak other = unique.get(i);
+        overlaps = peak.left() < other.right() && peak.right() > other.left();
+      }
+      if (!overlaps) {
+        unique.add(peak);
+      }
+    }
+    return unique;
+  }
+
+  /**
+   * Splits the peaks at missing data points, like {@link CentWaveResolver} does with the peaks of
+   * XCMS, and filters them by duration and number of data points.
+   */
+  private List<Range<Double>> createRanges(double[] x, double[] y, List<CentWavePeak> peaks) {
+    final List<CentWavePeak> sorted = new ArrayList<>(peaks);
+    sorted.sort(Comparator.comparingInt(CentWavePeak::left));
+    final List<Range<Double>> ranges = new ArrayList<>();
+    for (CentWavePeak peak : sorted) {
+      for (int start = peak.left(); start < peak.right(); start++) {
+        if (y[start] != 0) {
+          int end = start;
+          while (end < peak.right() && y[end + 1] != 0) {
+            end++;
+          }
+          if (end > start && end - start + 1 >= minDataPoints && peakDuration.contains(
+              x[end] - x[start])) {
+            ranges.add(Range.closed(x[start], x[end]));
+          }
+          start = end;
+        }
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * The trimmed mean of the positive intensities or the mean of all intensities if there are less
+   * than minPoints positive values, like estimateChromNoise of XCMS.
+   */
+  private double estimateChromatogramNoise(double[] y, int start, int length, int minPoints) {
+    final double[] positive = getValues(length);
+    int count = 0;
+    double sum = 0;
+    for (int i = start; i < start + length; i++) {
+      sum += y[i];
+      if (y[i] > 0) {
+        positive[count++] = y[i];
+      }
+    }
+    if (count < minPoints) {
+      return sum / length;
+    }
+    Arrays.sort(positive, 0, count);
+    final int trimmed = (int) Math.floor(count * NOISE_TRIM);
+    return mean(positive, trimmed, count - trimmed);
+  }
+
+  /**
+   * The baseline and noise next to the ROI without continuous signals above the threshold, like
+   * getLocalNoiseEstimate of XCMS. The noise is estimated in the whole noise range and in the
+   * narrow range next to the ROI.
+   *
+   * @return the baseline and the standard deviation of the noise
+   */
+  private double[] estimateLocalNoise(double[] y, int start, int length, int roiLeft,
+      int roiRight, int narrowRange, int numValues, double threshold, int minPoints) {
+    // the narrow range counts a single point ROI twice
+    final double[] noise = getValues(length + 1);
+    if (length < numValues) {
+      int count = 0;
+      for (int i = 0; i < length; i++) {
+        if (i < roiLeft || i > roiRight) {
+          noise[count++] = y[start + i];
+        }
+      }
+      count = removeContinuousPointsAbove(noise, count, threshold, minPoints);
+      final double wideBaseline = count > 1 ? mean(noise, 0, count) : 1;
+      final double wideSd = count > 1 ? sd(noise, 0, count) : 1;
+
+      // the narrow range includes the ROI borders
+      count = 0;
+      for (int i = Math.max(0, roiLeft - narrowRange); i <= roiLeft; i++) {
+        noise[count++] = y[start + i];
+      }
+      for (int i = roiRight; i <= Math.min(length - 1, roiRight + narrowRange); i++) {
+        noise[count++] = y[start + i];
+      }
+      count = removeContinuousPointsAbove(noise, count, threshold, minPoints);
+      final double narrowBaseline = count > 1 ? mean(noise, 0, count) : 1;
+      final double narrowSd = count > 1 ? sd(noise, 0, count) : 1;
+      return new double[]{Math.min(wideBaseline, narrowBaseline), Math.min(wideSd, narrowSd)};
+    }
+
+    // the ROI covers the chromatogram, use the 5 to 95 % quantile
+    final int count = length;
+    System.arraycopy(y, start, noise, 0, length);
+    Arrays.sort(noise, 0, count);
+    final int from = (int) Math.rint(count * NOISE_TRIM + 1) - 1;
+    final int to = (int) Math.rint(count * (1 - NOISE_TRIM));
+    if (to - from < 2) {
+      return new double[]{1, 1};
+    }
+    return new double[]{mean(noise, from, to), sd(noise, from, to)};
+  }
+
+  /**
+   * Removes all runs of at least minPoints values above the threshold.
+   *
+   * @return the number of remaining values
+   */
+  private static int removeContinuousPointsAbove(double[] values, int count, double threshold,
+      int minPoints) {
+    int remaining = 0;
+    int i = 0;
+    while (i < count) {
+      if (values[i] > threshold) {
+        int end = i;
+        while (end < count && values[end] > threshold) {
+          end++;
+        }
+        if (end - i < minPoints) {
+          System.arraycopy(values, i, values, remaining, end - i);
+          remaining += end - i;
+        }
+        i = end;
+      } else {
+        values[remaining++] = values[i++];
+      }
+    }
+    return remaining;
+  }
+
+  private static boolean hasContinuousPointsAbove(double[] y, int from, int to, double threshold,
+      int minPoints) {
+    int points = 0;
+    for (int i = from; i <= to; i++) {
+      points = y[i] > threshold ? points + 1 : 0;
+      if (points >= minPoints) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param to exclusive
+   */
+  private static double mean(double[] values, int from, int to) {
+    double sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += values[i];
+    }
+    return sum / (to - from);
+  }
+
+  /**
+   * @param to exclusive
+   * @return the sample standard deviation
+   */
+  private static double sd(double[] values, int from, int to) {
+    final double mean = mean(values, from, to);
+    double sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += (values[i] - mean) * (values[i] - mean);
+    }
+    return Math.sqrt(sum / (to - from - 1));
+  }
+
+  private double[] getValues(int length) {
+    if (values.length < length) {
+      values = new double[length];
+    }
+    return values;
+  }
+
+  /**
+   * The continuous wavelet transform like MSW.cwt. The data is extended by its reflection to the
+   * next power of two and convolved with the wavelets in the frequency domain. The coefficients
+   * are written to {@link #coefficients}.
+   *
+   * @return the number of scales whose wavelets fit into the extended data, larger scales are not
+   * transformed
+   */
+  private int transform(double[] y, int start, int length, int[] scales) {
+    final int size = Integer.highestOneBit(length) == length ? length
+        : Integer.highestOneBit(length) << 1;
+    if (signalReal.length < size) {
+      signalReal = new double[size];
+      signalImag = new double[size];
+      real = new double[size];
+      imag = new double[size];
+    }
+    if (coefficients.length < scales.length || coefficients[0].length < length) {
+      final int columns = Math.max(length, coefficients.length > 0 ? coefficients[0].length : 0);
+      coefficients = new double[Math.max(scales.length, coefficients.length)][columns];
+      localMaxima = new boolean[coefficients.length][columns];
+    }
+
+    System.arraycopy(y, start, signalReal, 0, length);
+    for (int i = length; i < size; i++) {
+      signalReal[i] = y[start + 2 * length - 2 - i];
+    }
+    Arrays.fill(signalImag, 0, size, 0d);
+    fft(signalReal, signalImag, size, false);
+
+    int numScales = 0;
+    for (; numScales < scales.length
+        && 2 * WAVELET_HALF_WIDTH * scales[numScales] + 1 <= size; numScales++) {
+      final double[] spectrum = getWaveletSpectrum(scales[numScales], size);
+      for (int f = 0; f < size; f++) {
+        final double factor = spectrum[f <= size / 2 ? f : size - f];
+        real[f] = signalReal[f] * factor;
+        imag[f] = signalImag[f] * factor;
+      }
+      fft(real, imag, size, true);
+      System.arraycopy(real, 0, coefficients[numScales], 0, length);
+    }
+    return numScales;
+  }
+
+  /**
+   * The Fourier transform of the Mexican hat wavelet, centered at index 0 of a cyclic array of the
+   * given size, with zero mean and scaled by 1 / sqrt(scale). The wavelet is symmetric, therefore,
+   * the transform is real and symmetric.
+   *
+   * @return the first size / 2 + 1 values of the transform
+   */
+  private double[] getWaveletSpectrum(int scale, int size) {
+    final long key = ((long) size << 32) | scale;
+    double[] spectrum = waveletSpectra.get(key);
+    if (spectrum != null) {
+      return spectrum;
+    }
+
+    final int halfWidth = WAVELET_HALF_WIDTH * scale;
+    final double[] wavelet = new double[2 * halfWidth + 1];
+    double mean = 0;
+    for (int t = -halfWidth; t <= halfWidth; t++) {
+      final double u = (double) t / scale;
+      wavelet[t + halfWidth] = MEXICAN_HAT_NORM * (1 - u * u) * Math.exp(-u * u / 2);
+      mean += wavelet[t + halfWidth];
+    }
+    mean /= wavelet.length;
+
+    final double[] waveletReal = new double[size];
+    final double[] waveletImag = new double[size];
+    final double norm = 1 / Math.sqrt(scale);
+    for (int t = -halfWidth; t <= halfWidth; t++) {
+      waveletReal[(t + size) % size] = (wavelet[t + halfWidth] - mean) * norm;
+    }
+    fft(waveletReal, waveletImag, size, false);
+    spectrum = Arrays.copyOf(waveletReal, size / 2 + 1);
+    waveletSpectra.put(key, spectrum);
+    return spectrum;
+  }
+
+  /**
+   * In-place radix-2 fast Fourier transform.
+   *
+   * @param size a power of two
+   */
+  private static void fft(double[] re, double[] im, int size, boolean inverse) {
+    for (int i = 1, j = 0; i < size; i++) {
+      int bit = size >> 1;
+      for (; (j & bit) != 0; bit >>= 1) {
+        j ^= bit;
+      }
+      j ^= bit;
+      if (i < j) {
+        final double tmpRe = re[i];
+        re[i] = re[j];
+        re[j] = tmpRe;
+        final double tmpIm = im[i];
+        im[i] = im[j];
+        im[j] = tmpIm;
+      }
+    }
+
+    for (int length = 2; length <= size; length <<= 1) {
+      final double angle = (inverse ? 2 : -2) * Math.PI / length;
+      final double stepRe = Math.cos(angle);
+      final double stepIm = Math.sin(angle);
+      final int half = length / 2;
+      for (int i = 0; i < size; i += length) {
+        double wRe = 1;
+        double wIm = 0;
+        for (int k = 0; k < half; k++) {
+          final int a = i + k;
+          final int b = a + half;
+          final double tRe = re[b] * wRe - im[b] * wIm;
+          final double tIm = re[b] * wIm + im[b] * wRe;
+          re[b] = re[a] - tRe;
+          im[b] = im[a] - tIm;
+          re[a] += tRe;
+          im[a] += tIm;
+          final double nextRe = wRe * stepRe - wIm * stepIm;
+          wIm = wRe * stepIm + wIm * stepRe;
+          wRe = nextRe;
+        }
+      }
+    }
+
+    if (inverse) {
+      for (int i = 0; i < size; i++) {
+        re[i] /= size;
+        im[i] /= size;
+      }
+    }
+  }
+
+  /**
+   * Local maxima of the coefficients of each scale, like MSW.getLocalMaximumCWT. Negative
+   * coefficients are no maxima.
+   */
+  private void findLocalMaxima(int numScales, int length, int[] scales) {
+    if (indices.length < length) {
+      indices = new int[length];
+    }
+    for (int s = 0; s < numScales; s++) {
+      final double[] values = coefficients[s];
+      final boolean[] maxima = localMaxima[s];
+      Arrays.fill(maxima, 0, length, false);
+      final int window = Math.max(2 * scales[s] + 1, MIN_WINDOW_SIZE);
+      markWindowMaxima(values, length, window, 0, maxima);
+      markWindowMaxima(values, length, window, window / 2, maxima);
+
+      // of two maxima within one window, only the higher one is kept
+      int count = 0;
+      for (int i = 0; i < length; i++) {
+        if (maxima[i]) {
+          indices[count++] = i;
+        }
+      }
+      for (int k = 0; k + 1 < count; k++) {
+        final int a = indices[k];
+        final int b = indices[k + 1];
+        if (b - a < window) {
+          if (values[a] <= values[b]) {
+            maxima[a] = false;
+          } else {
+            maxima[b] = false;
+          }
+        }
+      }
+      for (int i = 0; i < length; i++) {
+        maxima[i] &= values[i] >= 0;
+      }
+    }
+  }
+
+  /**
+   * Marks the maximum of each window if it is higher than the window borders. The values are
+   * padded with the first value on the left by shift and with the last value on the right.
+   */
+  private static void markWindowMaxima(double[] values, int length, int window, int shift,
+      boolean[] maxima) {
+    final int windows = (length + shift + window - 1) / window;
+    for (int w = 0; w < windows; w++) {
+      int maxIndex = 0;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int j = 0; j < window; j++) {
+        final double value = values[Math.min(length - 1, Math.max(0, w * window + j - shift))];
+        if (value > max) {
+          max = value;
+          maxIndex = j;
+        }
+      }
+      final double first = values[Math.min(length - 1, Math.max(0, w * window - shift))];
+      final double last = values[Math.min(length - 1,
+          Math.max(0, w * window + window - 1 - shift))];
+      if (max > first && max > last) {
+        maxima[w * window + maxIndex - shift] = true;
+      }
+    }
+  }
+
+  /**
+   * Connects the local maxima from the largest to the smallest scale, like MSW.getRidge. A ridge
+   * ends after more than {@link #RIDGE_GAP_THRESHOLD} scales without a maximum. Of joining ridges,
+   * the longest is continued.
+   */
+  private List<Ridge> findRidges(int numScales, int length, int[] scales) {
+    final List<Ridge> ridges = new ArrayList<>();
+    List<Ridge> active = new ArrayList<>();
+    addRidges(active, localMaxima[numScales - 1], length, numScales - 1, null);
+
+    for (int column = numScales - 2; column >= 0; column--) {
+      final boolean[] maxima = localMaxima[column];
+      if (active.isEmpty()) {
+        addRidges(active, maxima, length, column, null);
+        continue;
+      }
+
+      final int scale = scales[column];
+      final int window = Math.max(2 * scale + 1, MIN_WINDOW_SIZE);
+      final Int2ObjectOpenHashMap<Ridge> byPosition = new Int2ObjectOpenHashMap<>();
+      final List<Ridge> next = new ArrayList<>(active.size());
+      for (Ridge ridge : active) {
+        final int position = ridge.getLast();
+        final int found = findNearestMaximum(maxima, length, position, window);
+        if (found == -1) {
+          if (ridge.gaps > RIDGE_GAP_THRESHOLD && scale >= 2) {
+            // the ridge ended, remove the gap
+            ridge.positions.size(ridge.positions.size() - ridge.gaps);
+            ridges.add(ridge);
+            continue;
+          }
+          ridge.gaps++;
+          ridge.positions.add(position);
+        } else {
+          ridge.gaps = 0;
+          ridge.positions.add(found);
+        }
+
+        final Ridge other = byPosition.get(ridge.getLast());
+        if (other == null) {
+          byPosition.put(ridge.getLast(), ridge);
+          next.add(ridge);
+        } else {
+          // joining ridges, the shorter one ends at the previous scale
+          final Ridge longer =
+              ridge.positions.size() > other.positions.size() ? ridge : other;
+          final Ridge shorter = longer == ridge ? other : ridge;
+          if (longer == ridge) {
+            next.set(next.indexOf(other), ridge);
+            byPosition.put(ridge.getLast(), ridge);
+          }
+          shorter.positions.removeInt(shorter.positions.size() - 1);
+          ridges.add(shorter);
+        }
+      }
+      active = next;
+      if (scale >= 2) {
+        addRidges(active, maxima, length, column, byPosition);
+      }
+    }
+    ridges.addAll(active);
+    return ridges;
+  }
+
+  /**
+   * Starts a ridge at every maximum of the column that does not continue a ridge.
+   */
+  private static void addRidges(List<Ridge> ridges, boolean[] maxima, int length, int column,
+      Int2ObjectOpenHashMap<Ridge> continued) {
+    for (int i = 0; i < length; i++) {
+      if (maxima[i] && (continued == null || !continued.containsKey(i))) {
+        final Ridge ridge = new Ridge(column);
+        ridge.positions.add(i);
+        ridges.add(ridge);
+      }
+    }
+  }
+
+  /**
+   * @return the maximum closest to the position within the window or -1
+   */
+  private static int findNearestMaximum(boolean[] maxima, int length, int position, int window) {
+    int nearest = -1;
+    for (int i = Math.max(0, position - window); i <= Math.min(length - 1, position + window);
+        i++) {
+      if (maxima[i] && (nearest == -1 || Math.abs(i - position) < Math.abs(nearest - position))) {
+        nearest = i;
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * The positions of a ridge from the top column (largest scale) to smaller scales
+   */
+  private static class Ridge {
+
+    private final int top;
+    private final IntArrayList positions = new IntArrayList();
+    private int gaps;
+
+    private Ridge(int top) {
+      this.top = top;
+    }
+
+    private int getLast() {
+      return positions.getInt(positions.size() - 1);
+    }
+
+    private int getLowestColumn() {
+      return top - positions.size() + 1;
+    }
+
+    private int getPosition(int column) {
+      return positions.getInt(top - column);
+    }
+  }
+
+  /**
+   * @param left  first index of the peak
+   * @param right last index of the peak (inclusive)
+   * @param area  the area to select the larger of overlapping peaks
+   */
+  private record CentWavePeak(int left, int right, double area) {
+
+  }
+}
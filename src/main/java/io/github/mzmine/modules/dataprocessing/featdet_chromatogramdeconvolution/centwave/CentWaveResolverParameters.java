@@ -19,11 +19,14 @@
 package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
 
 import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolver;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolverSetupDialog;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.GeneralResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.Resolver;
 import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.parameters.parametertypes.ranges.DoubleRangeParameter;
@@ -85,10 +88,15 @@ public class CentWaveResolverParameters extends GeneralResolverParameters {
           "Method used to determine RT extents of detected peaks", PeakIntegrationMethod.values(),
           PeakIntegrationMethod.UseSmoothedData);
 
+  public static final ComboParameter<CentWaveEngine> ENGINE = new ComboParameter<>("Engine",
+      "Detect the peaks in MZmine or with findPeaks.centWave of the XCMS package in R",
+      CentWaveEngine.values(), CentWaveEngine.JAVA);
+
   public CentWaveResolverParameters() {
 
     super(new Parameter[]{PEAK_LISTS, SUFFIX, handleOriginal, groupMS2Parameters, SN_THRESHOLD,
-        PEAK_SCALES, PEAK_DURATION, INTEGRATION_METHOD, RENGINE_TYPE, MIN_NUMBER_OF_DATAPOINTS});
+        PEAK_SCALES, PEAK_DURATION, INTEGRATION_METHOD, ENGINE, RENGINE_TYPE,
+        MIN_NUMBER_OF_DATAPOINTS});
   }
 
   @Override
@@ -104,4 +112,11 @@ public class CentWaveResolverParameters extends GeneralResolverParameters {
   public FeatureResolver getResolver() {
     return new CentWaveResolver();
   }
+
+  @Override
+  public Resolver getResolver(ParameterSet parameterSet, ModularFeatureList flist) {
+    // the R engine uses the legacy resolver
+    return parameterSet.getValue(ENGINE) == CentWaveEngine.JAVA ? new CentWaveFeatureResolver(
+        parameterSet, flist) : null;
+  }
 }
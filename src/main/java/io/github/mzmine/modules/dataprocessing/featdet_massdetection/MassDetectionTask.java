@@ -70,6 +70,10 @@ public class MassDetectionTask extends AbstractTask {
     super(storageMemoryMap, moduleCallDate);
 
     this.dataFile = dataFile;
+    if (storageMemoryMap != null) {
+      // mass lists are released with the data file
+      storageMemoryMap.registerOwner(dataFile);
+    }
 
     this.massDetector = parameters.getParameter(MassDetectionParameters.massDetector).getValue();
 
@@ -315,6 +319,11 @@ public class MassDetectionTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
 
     logger.info("Finished mass detector on " + dataFile);
+    if (getMemoryMapStorage() != null) {
+      // the storage is shared by all files of the module call
+      getMemoryMapStorage().logSpectraCompression(
+          "mass lists (" + dataFile.getName() + " finished)");
+    }
 
   }
 }
@@ -124,6 +124,14 @@ public class BaselineCorrectionParameters extends SimpleParameterSet {
       new BooleanParameter("Remove source file after baseline correction",
           "If checked, original file will be replaced by the corrected version", true);
 
+  /**
+   * Baseline computation in MZmine or R.
+   */
+  public static final ComboParameter<BaselineCorrectionEngine> ENGINE =
+      new ComboParameter<BaselineCorrectionEngine>("Engine",
+          "Compute the baselines in MZmine, in parallel for all m/z bins, or with the R package of the correction method.",
+          BaselineCorrectionEngine.values(), BaselineCorrectionEngine.JAVA);
+
   /**
    * R engine type.
    */
@@ -136,7 +144,7 @@ public class BaselineCorrectionParameters extends SimpleParameterSet {
    */
   public BaselineCorrectionParameters() {
     super(new Parameter[] {dataFiles, SUFFIX, CHROMOTAGRAM_TYPE, MS_LEVEL, USE_MZ_BINS,
-        MZ_BIN_WIDTH, BASELINE_CORRECTORS, RENGINE_TYPE, REMOVE_ORIGINAL});
+        MZ_BIN_WIDTH, BASELINE_CORRECTORS, ENGINE, RENGINE_TYPE, REMOVE_ORIGINAL});
     thisParameters = null;
   }
 
@@ -74,6 +74,7 @@ public class BaselineCorrectionTask extends AbstractTask {
   private String errorMsg;
 
   private REngineType rEngineType;
+  private final BaselineCorrectionEngine engine;
 
   /**
    * Creates the task.
@@ -96,6 +97,7 @@ public class BaselineCorrectionTask extends AbstractTask {
 
     this.rEngineType =
         parameters.getParameter(BaselineCorrectionParameters.RENGINE_TYPE).getValue();
+    this.engine = parameters.getParameter(BaselineCorrectionParameters.ENGINE).getValue();
 
     this.commonParameters = parameters;
   }
@@ -120,12 +122,14 @@ public class BaselineCorrectionTask extends AbstractTask {
 
     try {
 
-      // Check R availability, by trying to open the connection.
-      String[] reqPackages = this.baselineCorrectorProcStep.getModule().getRequiredRPackages();
-      String callerFeatureName = this.baselineCorrectorProcStep.getModule().getName();
-      this.rSession = new RSessionWrapper(rEngineType, callerFeatureName, reqPackages, null);
+      // Check R availability, by trying to open the connection. Java needs no session.
+      if (engine == BaselineCorrectionEngine.R) {
+        String[] reqPackages = this.baselineCorrectorProcStep.getModule().getRequiredRPackages();
+        String callerFeatureName = this.baselineCorrectorProcStep.getModule().getName();
+        this.rSession = new RSessionWrapper(rEngineType, callerFeatureName, reqPackages, null);
 
-      this.rSession.open();
+        this.rSession.open();
+      }
 
       this.baselineCorrectorProcStep.getModule().initProgress(origDataFile);
 
@@ -157,7 +161,7 @@ public class BaselineCorrectionTask extends AbstractTask {
         logger.info("Baseline corrected " + origDataFile.getName());
       }
       // Turn off R instance, once task ended gracefully.
-      if (!isCanceled())
+      if (!isCanceled() && this.rSession != null)
         this.rSession.close(false);
 
     } catch (IOException | RSessionWrapperException e) {
@@ -174,7 +178,7 @@ public class BaselineCorrectionTask extends AbstractTask {
 
     // Turn off R instance, once task ended UNgracefully.
     try {
-      if (!isCanceled())
+      if (!isCanceled() && this.rSession != null)
         this.rSession.close(isCanceled());
     } catch (RSessionWrapperException e) {
       if (!isCanceled()) {
@@ -20,23 +20,21 @@ package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection;
 
 import io.github.mzmine.util.MemoryMapStorage;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import com.google.common.collect.Range;
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.datamodel.impl.SimpleScan;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.parameters.ParameterSet;
-import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.R.REngineType;
 import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 import io.github.mzmine.util.RangeUtils;
-import io.github.mzmine.util.scans.ScanUtils;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -60,6 +58,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
 
   // General parameters (common to all baseline correction methods).
   private REngineType rEgineType;
+  private BaselineCorrectionEngine engine;
   private ChromatogramType chromatogramType;
   private double binWidth;
   private boolean useBins;
@@ -94,6 +93,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Get common parameters.
     rEgineType =
         generalParameters.getParameter(BaselineCorrectionParameters.RENGINE_TYPE).getValue();
+    engine = generalParameters.getParameter(BaselineCorrectionParameters.ENGINE).getValue();
     suffix = generalParameters.getParameter(BaselineCorrectionParameters.SUFFIX).getValue();
     chromatogramType =
         generalParameters.getParameter(BaselineCorrectionParameters.CHROMOTAGRAM_TYPE).getValue();
@@ -102,11 +102,17 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     msLevel = generalParameters.getParameter(BaselineCorrectionParameters.MS_LEVEL).getValue();
   }
 
-  public final RawDataFile correctDatafile(final RSessionWrapper rSession,
+  /**
+   * Corrects the baselines of a data file.
+   *
+   * @param rSession the running R session or null to compute the baselines in Java
+   * @return the corrected data file or null if the correction was aborted
+   */
+  public final RawDataFile correctDatafile(@Nullable final RSessionWrapper rSession,
       final RawDataFile dataFile, final ParameterSet parameters,
       final ParameterSet commonParameters, @Nullable MemoryMapStorage storage) throws IOException, RSessionWrapperException {
 
-    if (isAborted(dataFile) || !rSession.isSessionRunning())
+    if (isAborted(dataFile) || (rSession != null && !rSession.isSessionRunning()))
       return null;
     // Get very last information from root module setup
     // this.setGeneralParameters(MZmineCore.getConfiguration().getModuleParameters(BaselineCorrectionModule.class));
@@ -199,19 +205,10 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       // Get original scan.
       final Scan origScan = scanNumbers[scanIndex];
 
-      // Get data points (m/z and intensity pairs) of the original scan
-      final DataPoint[] origDataPoints = ScanUtils.extractDataPoints(origScan);
-      final DataPoint[] newDataPoints = new DataPoint[origDataPoints.length];
-
-      // Copy original data points.
-      int i = 0;
-      for (final DataPoint dp : origDataPoints) {
-        newDataPoints[i++] = new SimpleDataPoint(dp);
-      }
-
       // Create new copied scan.
-      double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(newDataPoints);
-      final SimpleScan newScan = new SimpleScan(writer, origScan, dp[0], dp[1]);
+      final SimpleScan newScan = new SimpleScan(writer, origScan,
+          origScan.getMzValues(new double[origScan.getNumberOfDataPoints()]),
+          origScan.getIntensityValues(new double[origScan.getNumberOfDataPoints()]));
       writer.addScan(newScan);
       progressMap.get(origDataFile)[0]++;
     }
@@ -244,29 +241,11 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Calculate baselines: done in-place, i.e. overwrite chromatograms to
     // save memory.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-      baseChrom[binIndex] =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
-      progressMap.get(origDataFile)[0]++;
-    }
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, false);
 
     // Subtract baselines.
     logger.finest("Subtracting baselines.");
-    for (int scanIndex = 0; !isAborted(origDataFile) && scanIndex < numScans; scanIndex++) {
-
-      // Get original scan.
-      final Scan origScan = scanNumbers[scanIndex];
-
-      // Get data points (m/z and intensity pairs) of the original scan
-      final DataPoint[] origDataPoints = ScanUtils.extractDataPoints(origScan);
-
-      // Create and write new corrected scan.
-      double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(
-          subtractBasePeakBaselines(origDataFile, origDataPoints, baseChrom, numBins, scanIndex));
-      final SimpleScan newScan = new SimpleScan(writer, origScan, dp[0], dp[1]);
-      writer.addScan(newScan);
-      progressMap.get(origDataFile)[0]++;
-    }
+    subtractBaselines(origDataFile, writer, scanNumbers, baseChrom, numBins, false);
   }
 
   /**
@@ -295,41 +274,66 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Calculate baselines: done in-place, i.e. overwrite chromatograms to
     // save memory.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-
-      // Calculate baseline.
-      // final double[] baseline = asymBaseline(baseChrom[binIndex]);
-      final double[] baseline =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
-
-      // Normalize the baseline w.r.t. chromatogram (TIC).
-      for (int scanIndex = 0; !isAborted(origDataFile) && scanIndex < numScans; scanIndex++) {
-        final double bc = baseChrom[binIndex][scanIndex];
-        if (bc != 0.0) {
-          baseChrom[binIndex][scanIndex] = baseline[scanIndex] / bc;
-        }
-      }
-      progressMap.get(origDataFile)[0]++;
-    }
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, true);
 
     // Subtract baselines.
     logger.finest("Subtracting baselines.");
-    for (int scanIndex = 0; !isAborted(origDataFile) && scanIndex < numScans; scanIndex++) {
+    subtractBaselines(origDataFile, writer, scanNumbers, baseChrom, numBins, true);
+  }
 
-      // Get original scan.
-      final Scan origScan = scanNumbers[scanIndex];
+  /**
+   * Replaces each chromatogram by its baseline, or by the ratio of the baseline to the TIC. R
+   * computes one chromatogram after the other, Java computes the m/z bins in parallel.
+   *
+   * @param rSession       the R session or null to compute the baselines in Java
+   * @param chromatograms  the chromatograms as double[number of bins][number of scans]
+   * @param parameters     parameters specific to the actual method for baseline computing.
+   * @param ticChromatogram true to normalize the baselines by the TIC chromatograms
+   */
+  private void computeBaselines(@Nullable final RSessionWrapper rSession,
+      final RawDataFile origDataFile, final double[][] chromatograms,
+      final ParameterSet parameters, final boolean ticChromatogram)
+      throws RSessionWrapperException {
+
+    final int[] progress = progressMap.get(origDataFile);
+    if (rSession != null) {
+      for (int binIndex = 0; !isAborted(origDataFile) && binIndex < chromatograms.length;
+          binIndex++) {
+        final double[] baseline =
+            computeBaseline(rSession, origDataFile, chromatograms[binIndex], parameters);
+        chromatograms[binIndex] = toCorrection(chromatograms[binIndex], baseline, ticChromatogram);
+        progress[0]++;
+      }
+      return;
+    }
 
-      // Get data points (m/z and intensity pairs) of the original scan
-      final DataPoint[] origDataPoints = ScanUtils.extractDataPoints(origScan);
+    IntStream.range(0, chromatograms.length).parallel().forEach(binIndex -> {
+      if (isAborted(origDataFile)) {
+        return;
+      }
+      final double[] baseline = computeBaseline(chromatograms[binIndex], parameters);
+      chromatograms[binIndex] = toCorrection(chromatograms[binIndex], baseline, ticChromatogram);
+      synchronized (progress) {
+        progress[0]++;
+      }
+    });
+  }
 
-      // Create and write new corrected scan.
-      double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(
-          subtractTICBaselines(origDataFile, origDataPoints, baseChrom, numBins, scanIndex));
-      final SimpleScan newScan = new SimpleScan(writer, origScan, dp[0], dp[1]);
-      writer.addScan(newScan);
-      progressMap.get(origDataFile)[0]++;
+  /**
+   * @return the baseline, or for TIC chromatograms the ratio of the baseline to the chromatogram
+   *         (0 where the chromatogram is 0)
+   */
+  private static double[] toCorrection(final double[] chromatogram, final double[] baseline,
+      final boolean ticChromatogram) {
+    if (!ticChromatogram) {
+      return baseline;
     }
-
+    // Normalize the baseline w.r.t. chromatogram (TIC).
+    for (int scanIndex = 0; scanIndex < chromatogram.length; scanIndex++) {
+      final double bc = chromatogram[scanIndex];
+      baseline[scanIndex] = bc != 0.0 ? baseline[scanIndex] / bc : 0.0;
+    }
+    return baseline;
   }
 
   /**
@@ -359,10 +363,10 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       final Scan scan = scanNumbers[scanIndex];
 
       // Process data points.
-      for (final DataPoint dataPoint : scan) {
-        final int bin = RangeUtils.binNumber(mzRange, numBins, dataPoint.getMZ());
+      for (int i = 0; i < scan.getNumberOfDataPoints(); i++) {
+        final int bin = binNumber(mzRange, numBins, scan.getMzValue(i));
         final double value = chromatograms[bin][scanIndex];
-        chromatograms[bin][scanIndex] = Math.max(value, dataPoint.getIntensity());
+        chromatograms[bin][scanIndex] = Math.max(value, scan.getIntensityValue(i));
       }
       progressMap.get(origDataFile)[0]++;
     }
@@ -397,10 +401,9 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       final Scan scan = scanNumbers[scanIndex];
 
       // Process data points.
-      for (final DataPoint dataPoint : scan) {
-
-        final int bin = RangeUtils.binNumber(mzRange, numBins, dataPoint.getMZ());
-        chromatograms[bin][scanIndex] += dataPoint.getIntensity();
+      for (int i = 0; i < scan.getNumberOfDataPoints(); i++) {
+        final int bin = binNumber(mzRange, numBins, scan.getMzValue(i));
+        chromatograms[bin][scanIndex] += scan.getIntensityValue(i);
       }
       progressMap.get(origDataFile)[0]++;
     }
@@ -409,75 +412,64 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
   }
 
   /**
-   * Perform baseline correction in bins (base peak).
+   * Subtracts the baselines from the scans and writes the corrected scans to the new file. The
+   * intensities are stored in the memory map storage of the new file.
    *
-   * @param origDataFile dataFile of concern.
-   * @param dataPoints input data points to correct.
-   * @param baselines the baselines - one per m/z bin.
-   * @param numBins the number of m/z bins.
-   * @param scanIndex the current scan index that these data points come from.
-   * @return the corrected data points.
+   * @param origDataFile    dataFile of concern.
+   * @param writer          data file writer.
+   * @param scans           the scans of the MS level.
+   * @param baselines       the baselines - one per m/z bin. For TIC chromatograms, the ratio of the
+   *                        baseline to the TIC.
+   * @param numBins         the number of m/z bins.
+   * @param ticChromatogram true to scale the intensities by the baseline ratio, false to subtract
+   *                        the baseline
    */
-  private DataPoint[] subtractBasePeakBaselines(final RawDataFile origDataFile,
-      final DataPoint[] dataPoints, final double[][] baselines, final int numBins,
-      final int scanIndex) {
-
-    // Create an ArrayList for new data points.
-    final DataPoint[] newDataPoints = new DataPoint[dataPoints.length];
+  private void subtractBaselines(final RawDataFile origDataFile, final RawDataFile writer,
+      final Scan[] scans, final double[][] baselines, final int numBins,
+      final boolean ticChromatogram) throws IOException {
 
     // Determine MZ range.
     final Range<Double> mzRange = origDataFile.getDataMZRange();
 
-    // Loop through all original data points.
-    int i = 0;
-    for (final DataPoint dp : dataPoints) {
+    double[] mzs = new double[0];
+    double[] intensities = new double[0];
+    for (int scanIndex = 0; !isAborted(origDataFile) && scanIndex < scans.length; scanIndex++) {
+
+      // Get original scan.
+      final Scan origScan = scans[scanIndex];
+      final int numDataPoints = origScan.getNumberOfDataPoints();
+      if (mzs.length < numDataPoints) {
+        mzs = new double[numDataPoints];
+        intensities = new double[numDataPoints];
+      }
+      origScan.getMzValues(mzs);
+      origScan.getIntensityValues(intensities);
 
       // Subtract baseline.
-      final double mz = dp.getMZ();
-      final int bin = RangeUtils.binNumber(mzRange, numBins, mz);
-      final double baselineIntenstity = baselines[bin][scanIndex];
-      newDataPoints[i++] = baselineIntenstity <= 0.0 ? new SimpleDataPoint(dp)
-          : new SimpleDataPoint(mz, Math.max(0.0, dp.getIntensity() - baselineIntenstity));
-    }
+      for (int i = 0; i < numDataPoints; i++) {
+        final int bin = binNumber(mzRange, numBins, mzs[i]);
+        final double baselineIntenstity = baselines[bin][scanIndex];
+        if (baselineIntenstity > 0.0) {
+          intensities[i] = Math.max(0.0,
+              ticChromatogram ? intensities[i] * (1.0 - baselineIntenstity)
+                  : intensities[i] - baselineIntenstity);
+        }
+      }
 
-    // Return the new data points.
-    return newDataPoints;
+      // Create and write new corrected scan. Without storage, the scan keeps the arrays.
+      final SimpleScan newScan = new SimpleScan(writer, origScan,
+          Arrays.copyOf(mzs, numDataPoints), Arrays.copyOf(intensities, numDataPoints));
+      writer.addScan(newScan);
+      progressMap.get(origDataFile)[0]++;
+    }
   }
 
   /**
-   * Perform baseline correction in bins (TIC).
-   *
-   * @param origDataFile dataFile of concern.
-   * @param dataPoints input data points to correct.
-   * @param baselines the baselines - one per m/z bin.
-   * @param numBins the number of m/z bins.
-   * @param scanIndex the current scan index that these data points come from.
-   * @return the corrected data points.
+   * Same as {@link RangeUtils#binNumber(Range, int, Number)} without boxing.
    */
-  private DataPoint[] subtractTICBaselines(final RawDataFile origDataFile,
-      final DataPoint[] dataPoints, final double[][] baselines, final int numBins,
-      final int scanIndex) {
-
-    // Create an ArrayList for new data points.
-    final DataPoint[] newDataPoints = new DataPoint[dataPoints.length];
-
-    // Determine MZ range.
-    final Range<Double> mzRange = origDataFile.getDataMZRange();
-
-    // Loop through all original data points.
-    int i = 0;
-    for (final DataPoint dp : dataPoints) {
-
-      // Subtract baseline.
-      final double mz = dp.getMZ();
-      final int bin = RangeUtils.binNumber(mzRange, numBins, mz);
-      final double baselineIntenstity = baselines[bin][scanIndex];
-      newDataPoints[i++] = baselineIntenstity <= 0.0 ? new SimpleDataPoint(dp)
-          : new SimpleDataPoint(mz, Math.max(0.0, dp.getIntensity() * (1.0 - baselineIntenstity)));
-    }
-
-    // Return the new data points.
-    return newDataPoints;
+  private static int binNumber(final Range<Double> range, final int numBins, final double mz) {
+    final double lower = range.lowerEndpoint();
+    return (int) Math.round((mz - lower) / (range.upperEndpoint() - lower) * (numBins - 1));
   }
 
   // Correction progress stuffs (to be called from mother Task)
@@ -541,6 +533,10 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     return this.rEgineType;
   }
 
+  public BaselineCorrectionEngine getEngine() {
+    return this.engine;
+  }
+
   // Chromatogram type
   public ChromatogramType getChromatogramType() {
     // return
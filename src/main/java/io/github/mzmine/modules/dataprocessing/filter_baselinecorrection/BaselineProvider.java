@@ -42,4 +42,10 @@ public interface BaselineProvider {
   public double[] computeBaseline(final RSessionWrapper rSession, final RawDataFile origDataFile,
       final double[] chromatogram, ParameterSet parameters) throws RSessionWrapperException;
 
+  /**
+   * Returns a baseline for correcting the given chromatogram in Java. Called for multiple
+   * chromatograms in parallel, therefore the chromatogram must not be changed.
+   */
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters);
+
 }
@@ -18,6 +18,7 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
+import java.util.Arrays;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.datamodel.RawDataFile;
@@ -34,6 +35,9 @@ import io.github.mzmine.util.R.RSessionWrapperException;
  */
 public class AsymmetryCorrector extends BaselineCorrector {
 
+  // maximum number of weight updates, as in asysm
+  private static final int MAX_ITERATIONS = 25;
+
   @Override
   public String[] getRequiredRPackages() {
     return new String[] { /* "rJava", "Rserve", */"ptw"};
@@ -74,6 +78,53 @@ public class AsymmetryCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  /**
+   * Asymmetric least squares as in asysm: the smoothed trend with second order differences is
+   * solved as a banded system, the weights of the points above and below the trend are updated until
+   * they do not change anymore.
+   */
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    final double smoothing =
+        parameters.getParameter(AsymmetryCorrectorParameters.SMOOTHING).getValue();
+    final double asymmetry =
+        parameters.getParameter(AsymmetryCorrectorParameters.ASYMMETRY).getValue();
+    final int n = chromatogram.length;
+
+    // D'D of the second order differences D, a band matrix with bandwidth 2
+    final double[][] penalty = BaselineFunctions.secondDifferencePenalty(n);
+
+    final double[] weights = new double[n];
+    Arrays.fill(weights, 1);
+    final double[][] band = new double[3][n];
+    final double[] baseline = new double[n];
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      // (W + smoothing * D'D) z = W y
+      for (int k = 0; k < 3; k++) {
+        for (int i = 0; i < n; i++) {
+          band[k][i] = smoothing * penalty[k][i];
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        band[0][i] += weights[i];
+        baseline[i] = weights[i] * chromatogram[i];
+      }
+      BaselineFunctions.solveBanded(band, baseline, n);
+
+      boolean changed = false;
+      for (int i = 0; i < n; i++) {
+        final double weight = chromatogram[i] > baseline[i] ? asymmetry : 1 - asymmetry;
+        changed |= weight != weights[i];
+        weights[i] = weight;
+      }
+      if (!changed) {
+        break;
+      }
+    }
+    return baseline;
+  }
+
   @Override
   public @NotNull String getName() {
     return "Asymmetric baseline corrector";
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import java.util.Arrays;
+
+/**
+ * Primitive building blocks of the Java baseline correctors: a banded solver for symmetric positive
+ * definite systems, sliding window minimum, maximum, mean and median, and interpolation and
+ * smoothing of support points. All functions are stateless and can be called by multiple threads.
+ */
+final class BaselineFunctions {
+
+  // range of the smoothing of the smoothing spline, log10
+  private static final double MIN_LOG_LAMBDA = -4;
+  private static final double MAX_LOG_LAMBDA = 12;
+
+  private BaselineFunctions() {
+  }
+
+  /**
+   * Solves A x = b for a symmetric positive definite band matrix by an LDL^T decomposition in
+   * O(n * bandwidth^2).
+   *
+   * @param band the band of A, band[k][i] = A[i][i + k] for k = 0..bandwidth. Overwritten by the
+   *             decomposition.
+   * @param rhs  the right hand side b, overwritten by the solution x
+   * @param n    the size of the system
+   */
+  static void solveBanded(double[][] band, double[] rhs, int n) {
+    decomposeBanded(band, n);
+    solveDecomposed(band, rhs, n);
+  }
+
+  /**
+   * LDL^T decomposition of a symmetric positive definite band matrix in place: band[0][i] = D[i][i]
+   * and band[k][i] = L[i + k][i].
+   */
+  private static void decomposeBanded(double[][] band, int n) {
+    final int bandwidth = band.length - 1;
+    for (int i = 0; i < n; i++) {
+      // d_i
+      double d = band[0][i];
+      for (int k = Math.max(0, i - bandwidth); k < i; k++) {
+        final double l = band[i - k][k];
+        d -= l * l * band[0][k];
+      }
+      band[0][i] = d;
+      // column i of L
+      for (int j = i + 1; j <= Math.min(n - 1, i + bandwidth); j++) {
+        double a = band[j - i][i];
+        for (int k = Math.max(0, j - bandwidth); k < i; k++) {
+          a -= band[j - k][k] * band[i - k][k] * band[0][k];
+        }
+        band[j - i][i] = a / d;
+      }
+    }
+  }
+
+  private static void solveDecomposed(double[][] band, double[] rhs, int n) {
+    final int bandwidth = band.length - 1;
+    for (int i = 0; i < n; i++) {
+      double z = rhs[i];
+      for (int k = Math.max(0, i - bandwidth); k < i; k++) {
+        z -= band[i - k][k] * rhs[k];
+      }
+      rhs[i] = z;
+    }
+    for (int i = 0; i < n; i++) {
+      rhs[i] /= band[0][i];
+    }
+    for (int i = n - 1; i >= 0; i--) {
+      double x = rhs[i];
+      for (int j = i + 1; j <= Math.min(n - 1, i + bandwidth); j++) {
+        x -= band[j - i][i] * rhs[j];
+      }
+      rhs[i] = x;
+    }
+  }
+
+  /**
+   * The diagonal of the inverse of a decomposed band matrix by the recursion of Hutchinson and de
+   * Hoog, which only needs the elements of the inverse within the band.
+   *
+   * @param decomposed the result of {@link #decomposeBanded(double[][], int)}
+   * @param diagonal   the diagonal of the inverse
+   */
+  private static void diagonalOfInverse(double[][] decomposed, double[] diagonal, int n) {
+    final int bandwidth = decomposed.length - 1;
+    // inverse[m][i] = inverse(A)[i][i + m]
+    final double[][] inverse = new double[bandwidth + 1][n];
+    for (int i = n - 1; i >= 0; i--) {
+      final int last = Math.min(n - 1, i + bandwidth);
+      for (int j = last; j >= i; j--) {
+        double value = j == i ? 1 / decomposed[0][i] : 0;
+        for (int k = i + 1; k <= last; k++) {
+          value -= decomposed[k - i][i] * inverse[Math.abs(k - j)][Math.min(k, j)];
+        }
+        inverse[j - i][i] = value;
+      }
+      diagonal[i] = inverse[0][i];
+    }
+  }
+
+  /**
+   * Minimum of the window [i - halfWidth, i + halfWidth] for every i, clipped at the borders. O(n)
+   * by a queue of ascending candidates.
+   */
+  static void slidingMinimum(double[] values, double[] result, int n, int halfWidth) {
+    slidingExtreme(values, result, n, halfWidth, false);
+  }
+
+  /**
+   * Maximum of the window [i - halfWidth, i + halfWidth] for every i, clipped at the borders.
+   */
+  static void slidingMaximum(double[] values, double[] result, int n, int halfWidth) {
+    slidingExtreme(values, result, n, halfWidth, true);
+  }
+
+  private static void slidingExtreme(double[] values, double[] result, int n, int halfWidth,
+      boolean maximum) {
+    final int[] queue = new int[n];
+    int head = 0;
+    int tail = 0;
+    int next = 0;
+    for (int i = 0; i < n; i++) {
+      // add the values up to the right end of the window
+      for (; next < n && next <= i + halfWidth; next++) {
+        final double value = values[next];
+        while (tail > head && (maximum ? values[queue[tail - 1]] <= value
+            : values[queue[tail - 1]] >= value)) {
+          tail--;
+        }
+        queue[tail++] = next;
+      }
+      // remove the values left of the window
+      while (queue[head] < i - halfWidth) {
+        head++;
+      }
+      result[i] = values[queue[head]];
+    }
+  }
+
+  /**
+   * Mean of the window [i - halfWidth, i + halfWidth] for every i, clipped at the borders.
+   */
+  static void slidingMean(double[] values, double[] result, int n, int halfWidth) {
+    final double[] sums = new double[n + 1];
+    for (int i = 0; i < n; i++) {
+      sums[i + 1] = sums[i] + values[i];
+    }
+    for (int i = 0; i < n; i++) {
+      final int from = Math.max(0, i - halfWidth);
+      final int to = Math.min(n, i + halfWidth + 1);
+      result[i] = (sums[to] - sums[from]) / (to - from);
+    }
+  }
+
+  /**
+   * Median of the window [i - halfWidth, i + halfWidth] for every i, clipped at the borders. The
+   * window is kept sorted, so every step is a binary search and an array copy of the window.
+   */
+  static void slidingMedian(double[] values, double[] result, int n, int halfWidth) {
+    final double[] window = new double[Math.min(n, 2 * halfWidth + 1)];
+    int size = 0;
+    int next = 0;
+    for (int i = 0; i < n; i++) {
+      final int removed = i - halfWidth - 1;
+      if (removed >= 0) {
+        final int position = Arrays.binarySearch(window, 0, size, values[removed]);
+        System.arraycopy(window, position + 1, window, position, size - position - 1);
+        size--;
+      }
+      for (; next < n && next <= i + halfWidth; next++) {
+        int position = Arrays.binarySearch(window, 0, size, values[next]);
+        position = position < 0 ? -position - 1 : position;
+        System.arraycopy(window, position, window, position + 1, size - position);
+        window[position] = values[next];
+        size++;
+      }
+      result[i] = size % 2 == 1 ? window[size / 2]
+          : (window[size / 2 - 1] + window[size / 2]) / 2;
+    }
+  }
+
+  /**
+   * Linear interpolation between support points, constant beyond the first and last point.
+   *
+   * @param x     the ascending scan indices of the support points
+   * @param y     the values of the support points
+   * @param count the number of support points, at least 1
+   * @param n     the number of values of the result
+   */
+  static void interpolateLinear(int[] x, double[] y, int count, double[] result, int n) {
+    int segment = 0;
+    for (int i = 0; i < n; i++) {
+      if (i <= x[0]) {
+        result[i] = y[0];
+      } else if (i >= x[count - 1]) {
+        result[i] = y[count - 1];
+      } else {
+        while (x[segment + 1] < i) {
+          segment++;
+        }
+        final double t = (double) (i - x[segment]) / (x[segment + 1] - x[segment]);
+        result[i] = y[segment] + t * (y[segment + 1] - y[segment]);
+      }
+    }
+  }
+
+  /**
+   * Smoothing of the support points with a second order difference penalty on all scans, the
+   * discrete counterpart of a cubic smoothing spline. The smoothing is chosen to reach df equivalent
+   * degrees of freedom (trace of the smoother matrix), like smooth.spline in R. If df is not larger
+   * than 1, the smoothing with the lowest generalized cross-validation score is used. If df is at
+   * least the number of support points, the support points are interpolated.
+   *
+   * @param x     the ascending scan indices of the support points
+   * @param y     the values of the support points
+   * @param count the number of support points, at least 1
+   * @param df    the equivalent degrees of freedom
+   * @param n     the number of values of the result
+   */
+  static void smoothingSpline(int[] x, double[] y, int count, double df, double[] result, int n) {
+    if (count < 3) {
+      interpolateLinear(x, y, count, result, n);
+      return;
+    }
+    final double[] weights = new double[n];
+    final double[] weightedValues = new double[n];
+    for (int k = 0; k < count; k++) {
+      weights[x[k]] = 1;
+      weightedValues[x[k]] = y[k];
+    }
+    final SplineFit fit = new SplineFit(weights, weightedValues, n);
+
+    final double logLambda;
+    if (df >= count) {
+      logLambda = MIN_LOG_LAMBDA;
+    } else if (df > 1) {
+      // the degrees of freedom decrease with the smoothing
+      double low = MIN_LOG_LAMBDA;
+      double high = MAX_LOG_LAMBDA;
+      for (int iteration = 0; iteration < 30; iteration++) {
+        final double mid = (low + high) / 2;
+        if (fit.fit(Math.pow(10, mid), result, true) > df) {
+          low = mid;
+        } else {
+          high = mid;
+        }
+      }
+      logLambda = (low + high) / 2;
+    } else {
+      double best = MIN_LOG_LAMBDA;
+      double bestScore = Double.POSITIVE_INFINITY;
+      for (double candidate = MIN_LOG_LAMBDA; candidate <= MAX_LOG_LAMBDA; candidate += 0.5) {
+        final double trace = fit.fit(Math.pow(10, candidate), result, true);
+        double rss = 0;
+        for (int k = 0; k < count; k++) {
+          rss += (y[k] - result[x[k]]) * (y[k] - result[x[k]]);
+        }
+        final double score = count * rss / ((count - trace) * (count - trace));
+        if (score < bestScore) {
+          bestScore = score;
+          best = candidate;
+        }
+      }
+      logLambda = best;
+    }
+    fit.fit(Math.pow(10, logLambda), result, false);
+  }
+
+  /**
+   * Solves (W + lambda * D'D) z = W y for the second order differences D and keeps the buffers for
+   * multiple lambdas.
+   */
+  private static class SplineFit {
+
+    private final double[] weights;
+    private final double[] weightedValues;
+    private final int n;
+    private final double[][] penalty;
+    private final double[][] band;
+    private final double[] diagonal;
+
+    private SplineFit(double[] weights, double[] weightedValues, int n) {
+      this.weights = weights;
+      this.weightedValues = weightedValues;
+      this.n = n;
+      penalty = secondDifferencePenalty(n);
+      band = new double[3][n];
+      diagonal = new double[n];
+    }
+
+    /**
+     * @param result the smoothed values
+     * @param trace  true to compute the trace of the smoother matrix
+     * @return the trace of the smoother matrix or 0
+     */
+    private double fit(double lambda, double[] result, boolean trace) {
+      for (int k = 0; k < 3; k++) {
+        for (int i = 0; i < n; i++) {
+          band[k][i] = lambda * penalty[k][i];
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        band[0][i] += weights[i];
+        result[i] = weightedValues[i];
+      }
+      decomposeBanded(band, n);
+      solveDecomposed(band, result, n);
+      if (!trace) {
+        return 0;
+      }
+      diagonalOfInverse(band, diagonal, n);
+      double sum = 0;
+      for (int i = 0; i < n; i++) {
+        sum += weights[i] * diagonal[i];
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * @return D'D of the second order differences D as band with bandwidth 2, band[k][i] = (D'D)[i][i
+   * + k]
+   */
+  static double[][] secondDifferencePenalty(int n) {
+    final double[] difference = {1, -2, 1};
+    final double[][] penalty = new double[3][n];
+    for (int row = 0; row + 2 < n; row++) {
+      for (int a = 0; a < 3; a++) {
+        for (int b = a; b < 3; b++) {
+          penalty[b - a][row + a] += difference[a] * difference[b];
+        }
+      }
+    }
+    return penalty;
+  }
+}
@@ -18,6 +18,7 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
+import java.util.Arrays;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.datamodel.RawDataFile;
@@ -35,6 +36,7 @@ import io.github.mzmine.util.R.RSessionWrapperException;
 public class LocMinLoessCorrector extends BaselineCorrector {
 
   private static final double BW_MIN_VAL = 0.001d;
+  private static final int MIN_LOESS_POINTS = 3;
 
   @Override
   public String[] getRequiredRPackages() {
@@ -79,6 +81,122 @@ public class LocMinLoessCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  /**
+   * Local minima as in bslnoff: the breaks are equally spaced on the log scale of the scan numbers.
+   * The minimum of each interval, or all scans below the qntl quantile of the interval, are the
+   * support points of the baseline. The baseline is a local linear regression (loess) with the
+   * bandwidth as span or the linear interpolation of the support points.
+   */
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    String method = parameters.getParameter(LocMinLoessCorrectorParameters.METHOD).getValue();
+    double bw = parameters.getParameter(LocMinLoessCorrectorParameters.BW).getValue();
+    int breaks = parameters.getParameter(LocMinLoessCorrectorParameters.BREAKS).getValue();
+    int breaks_width =
+        parameters.getParameter(LocMinLoessCorrectorParameters.BREAK_WIDTH).getValue();
+    double qntl = parameters.getParameter(LocMinLoessCorrectorParameters.QNTL).getValue();
+    final int n = chromatogram.length;
+    if (n < 2) {
+      return chromatogram.clone();
+    }
+
+    final int numBreaks = Math.max(2,
+        breaks_width > 0 ? (int) Math.round((double) (n - 1) / breaks_width) : breaks);
+    final int[] supportScans = new int[n];
+    final double[] supportValues = new double[n];
+    final double[] sorted = new double[n];
+    int count = 0;
+    int scan = 0;
+    for (int b = 1; b < numBreaks; b++) {
+      // scan numbers start at 1, the first interval includes its lower end
+      final double upper = b == numBreaks - 1 ? n : Math.exp(Math.log(n) * b / (numBreaks - 1));
+      final int from = scan;
+      while (scan < n && scan + 1 <= upper) {
+        scan++;
+      }
+      if (from == scan) {
+        continue;
+      }
+
+      if (qntl == 0) {
+        int minimum = from;
+        for (int i = from + 1; i < scan; i++) {
+          if (chromatogram[i] < chromatogram[minimum]) {
+            minimum = i;
+          }
+        }
+        supportScans[count] = minimum;
+        supportValues[count++] = chromatogram[minimum];
+      } else {
+        final int size = scan - from;
+        System.arraycopy(chromatogram, from, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+        final double h = (size - 1) * qntl;
+        final int lower = (int) Math.floor(h);
+        final double quantile = lower + 1 < size ? sorted[lower] + (h - lower) * (sorted[lower + 1]
+            - sorted[lower]) : sorted[lower];
+        for (int i = from; i < scan; i++) {
+          if (chromatogram[i] <= quantile) {
+            supportScans[count] = i;
+            supportValues[count++] = chromatogram[i];
+          }
+        }
+      }
+    }
+
+    final double[] baseline = new double[n];
+    if (method.equals("approx")) {
+      BaselineFunctions.interpolateLinear(supportScans, supportValues, count, baseline, n);
+    } else {
+      loess(supportScans, supportValues, count, Math.max(bw, BW_MIN_VAL), baseline, n);
+    }
+    return baseline;
+  }
+
+  /**
+   * Local linear regression with tricube weights of the nearest span * count support points, like
+   * loess with degree 1. At least {@link #MIN_LOESS_POINTS} support points are used.
+   */
+  private static void loess(int[] x, double[] y, int count, double span, double[] result, int n) {
+    final int numPoints = Math.min(count, Math.max(MIN_LOESS_POINTS, (int) (span * count)));
+    int from = 0;
+    for (int i = 0; i < n; i++) {
+      // move the window of the nearest support points
+      while (from + numPoints < count && x[from + numPoints] - i < i - x[from]) {
+        from++;
+      }
+      final double maxDistance =
+          Math.max(i - x[from], x[from + numPoints - 1] - i) * Math.max(1, span);
+
+      double sumW = 0;
+      double sumWX = 0;
+      double sumWY = 0;
+      double sumWXX = 0;
+      double sumWXY = 0;
+      for (int k = from; k < from + numPoints; k++) {
+        // centered at the scan
+        final double dx = x[k] - i;
+        final double distance = maxDistance > 0 ? Math.abs(dx) / maxDistance : 0;
+        final double tricube = distance < 1 ? Math.pow(1 - distance * distance * distance, 3) : 0;
+        sumW += tricube;
+        sumWX += tricube * dx;
+        sumWY += tricube * y[k];
+        sumWXX += tricube * dx * dx;
+        sumWXY += tricube * dx * y[k];
+      }
+      final double determinant = sumW * sumWXX - sumWX * sumWX;
+      if (sumW == 0) {
+        result[i] = y[from];
+      } else if (Math.abs(determinant) <= 1E-12 * sumW * sumWXX) {
+        // all weight on a single scan
+        result[i] = sumWY / sumW;
+      } else {
+        result[i] = (sumWY * sumWXX - sumWX * sumWXY) / determinant;
+      }
+    }
+  }
+
   @Override
   public @NotNull String getName() {
     return "Local minima + LOESS baseline corrector";
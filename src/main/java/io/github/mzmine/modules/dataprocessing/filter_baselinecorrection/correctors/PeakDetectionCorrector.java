@@ -18,6 +18,7 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
+import java.util.Arrays;
 import org.jetbrains.annotations.NotNull;
 
 import io.github.mzmine.datamodel.RawDataFile;
@@ -37,6 +38,9 @@ import io.github.mzmine.util.R.RSessionWrapperException;
  */
 public class PeakDetectionCorrector extends BaselineCorrector {
 
+  // scales the median absolute deviation to the standard deviation of a normal distribution
+  private static final double MAD_SCALE = 1.4826;
+
   @Override
   public String[] getRequiredRPackages() {
     return new String[] { /* "rJava", "Rserve", */"baseline"};
@@ -90,6 +94,79 @@ public class PeakDetectionCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  /**
+   * Peak detection in the style of the peakDetection method of the baseline package. A scan
+   * belongs to a peak if it exceeds the minimum within any peak window by snminimum times the noise.
+   * The peak windows grow from left to right scans by the multiplier. The noise is the robust
+   * standard deviation of the differences of neighbouring scans. The peaks are bridged by linear
+   * interpolation, and the baseline is the median within rwin of the minima within lwin. If mono > 0
+   * the baseline is forced to decrease monotonically.
+   */
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    final int left = parameters.getParameter(PeakDetectionCorrectorParameters.LEFT).getValue();
+    final int right = parameters.getParameter(PeakDetectionCorrectorParameters.RIGHT).getValue();
+    final int lwin = parameters.getParameter(PeakDetectionCorrectorParameters.LWIN).getValue();
+    final int rwin = parameters.getParameter(PeakDetectionCorrectorParameters.RWIN).getValue();
+    final double snminimum =
+        parameters.getParameter(PeakDetectionCorrectorParameters.SNMINIMUM).getValue();
+    final double mono = parameters.getParameter(PeakDetectionCorrectorParameters.MONO).getValue();
+    final double multiplier =
+        parameters.getParameter(PeakDetectionCorrectorParameters.MULTIPLIER).getValue();
+    final int n = chromatogram.length;
+    if (n == 0) {
+      return new double[0];
+    }
+
+    // robust noise: MAD of the differences, scaled to the standard deviation of a single scan
+    final double[] buffer = new double[n];
+    for (int i = 1; i < n; i++) {
+      buffer[i - 1] = Math.abs(chromatogram[i] - chromatogram[i - 1]);
+    }
+    Arrays.sort(buffer, 0, n - 1);
+    final double medianDifference = n < 2 ? 0
+        : (n - 1) % 2 == 1 ? buffer[(n - 1) / 2]
+            : (buffer[(n - 1) / 2 - 1] + buffer[(n - 1) / 2]) / 2;
+    final double threshold = snminimum * MAD_SCALE * medianDifference / Math.sqrt(2);
+
+    final boolean[] peak = new boolean[n];
+    for (int window = Math.max(1, left); window <= Math.max(left, right);
+        window = Math.max(window + 1, (int) Math.ceil(window * multiplier))) {
+      BaselineFunctions.slidingMinimum(chromatogram, buffer, n, window);
+      for (int i = 0; i < n; i++) {
+        peak[i] |= chromatogram[i] - buffer[i] > threshold;
+      }
+    }
+
+    // bridge the peaks
+    final int[] supportScans = new int[n];
+    final double[] supportValues = new double[n];
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      if (!peak[i]) {
+        supportScans[count] = i;
+        supportValues[count++] = chromatogram[i];
+      }
+    }
+    final double[] bridged = new double[n];
+    if (count > 0) {
+      BaselineFunctions.interpolateLinear(supportScans, supportValues, count, bridged, n);
+    } else {
+      BaselineFunctions.slidingMinimum(chromatogram, bridged, n, n);
+    }
+
+    final double[] baseline = new double[n];
+    BaselineFunctions.slidingMinimum(bridged, buffer, n, lwin);
+    BaselineFunctions.slidingMedian(buffer, baseline, n, rwin);
+    if (mono > 0) {
+      for (int i = 1; i < n; i++) {
+        baseline[i] = Math.min(baseline[i], baseline[i - 1]);
+      }
+    }
+    return baseline;
+  }
+
   @Override
   public @NotNull String getName() {
     return "PeakDetection baseline corrector";
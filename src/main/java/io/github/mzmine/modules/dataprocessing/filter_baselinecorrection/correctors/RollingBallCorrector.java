@@ -82,6 +82,27 @@ public class RollingBallCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  /**
+   * Rolling ball as in the baseline package: the minima within wm, the maxima of these minima within
+   * wm and the mean of the maxima within ws. The windows reach wm and ws scans to each side and are
+   * clipped at the borders.
+   */
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    final int wm = parameters.getParameter(RollingBallCorrectorParameters.MIN_MAX_WIDTH).getValue();
+    final int ws = parameters.getParameter(RollingBallCorrectorParameters.SMOOTHING).getValue();
+    final int n = chromatogram.length;
+
+    final double[] minima = new double[n];
+    final double[] maxima = new double[n];
+    BaselineFunctions.slidingMinimum(chromatogram, minima, n, wm);
+    BaselineFunctions.slidingMaximum(minima, maxima, n, wm);
+    // reuse the minima for the baseline
+    BaselineFunctions.slidingMean(maxima, minima, n, ws);
+    return minima;
+  }
+
   @Override
   public @NotNull String getName() {
     return "RollingBall baseline corrector";
@@ -80,6 +80,84 @@ public class RubberBandCorrector extends BaselineCorrector {
     return baseline;
   }
 
+  /**
+   * Rubber band as in spc.rubberband: the support points are the lower convex hull of the bent
+   * chromatogram and all scans within the noise above it. The baseline is a smoothing spline with df
+   * degrees of freedom through the support points, or their linear interpolation.
+   */
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    // Rubber Band parameters.
+    double noise = parameters.getParameter(RubberBandCorrectorParameters.NOISE).getValue();
+    boolean autoNoise =
+        parameters.getParameter(RubberBandCorrectorParameters.AUTO_NOISE).getValue();
+    double df = parameters.getParameter(RubberBandCorrectorParameters.DF).getValue();
+    boolean spline = parameters.getParameter(RubberBandCorrectorParameters.SPLINE).getValue();
+    double bend = parameters.getParameter(RubberBandCorrectorParameters.BEND_FACTOR).getValue();
+    final int n = chromatogram.length;
+    if (n < 2) {
+      return chromatogram.clone();
+    }
+
+    // bend with the squared scan position normalized to [0, 1]
+    final double[] bent = new double[n];
+    double minimum = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      final double position = (double) i / (n - 1);
+      bent[i] = chromatogram[i] + bend * position * position;
+      minimum = Math.min(minimum, chromatogram[i]);
+    }
+    if (autoNoise) {
+      noise = minimum;
+    }
+
+    // lower convex hull by a monotone chain
+    final int[] hull = new int[n];
+    int hullSize = 0;
+    for (int i = 0; i < n; i++) {
+      while (hullSize >= 2 && cross(hull[hullSize - 2], hull[hullSize - 1], i, bent) <= 0) {
+        hullSize--;
+      }
+      hull[hullSize++] = i;
+    }
+    final double[] hullValues = new double[hullSize];
+    for (int k = 0; k < hullSize; k++) {
+      hullValues[k] = bent[hull[k]];
+    }
+    final double[] band = new double[n];
+    BaselineFunctions.interpolateLinear(hull, hullValues, hullSize, band, n);
+
+    final int[] supportScans = new int[n];
+    final double[] supportValues = new double[n];
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      if (bent[i] <= band[i] + noise) {
+        supportScans[count] = i;
+        supportValues[count++] = bent[i];
+      }
+    }
+
+    final double[] baseline = new double[n];
+    if (spline) {
+      BaselineFunctions.smoothingSpline(supportScans, supportValues, count, df, baseline, n);
+    } else {
+      BaselineFunctions.interpolateLinear(supportScans, supportValues, count, baseline, n);
+    }
+    for (int i = 0; i < n; i++) {
+      final double position = (double) i / (n - 1);
+      baseline[i] -= bend * position * position;
+    }
+    return baseline;
+  }
+
+  /**
+   * @return the z component of the cross product of (a, b) and (a, c), positive for a left turn
+   */
+  private static double cross(int a, int b, int c, double[] values) {
+    return (double) (b - a) * (values[c] - values[a]) - (values[b] - values[a]) * (c - a);
+  }
+
   @Override
   public @NotNull String getName() {
     return "RubberBand baseline corrector";
@@ -77,13 +77,32 @@ public class Gap {
     // Find top m/z peak in our range
     DataPoint basePeak = ScanUtils.findBasePeak(scan, mzRange);
 
-    GapDataPointImpl currentDataPoint;
     if (basePeak != null) {
-      currentDataPoint = new GapDataPointImpl(scan, basePeak.getMZ(), scanRT,
-          basePeak.getIntensity());
+      offerDataPoint(scan, basePeak.getMZ(), basePeak.getIntensity());
     } else {
-      currentDataPoint = new GapDataPointImpl(scan, RangeUtils.rangeCenter(mzRange), scanRT, 0);
+      offerDataPoint(scan, RangeUtils.rangeCenter(mzRange), 0);
     }
+  }
+
+  /**
+   * Offers the base peak of a scan within the RT range of this gap. The base peak has to be the
+   * same as {@link ScanUtils#findBasePeak(Scan, Range)} within the m/z range of this gap.
+   *
+   * @param scan          the scan within the RT range
+   * @param basePeakIndex the index of the base peak in the scan or -1 if there is no signal in the
+   *                      m/z range
+   */
+  public void offerBasePeak(Scan scan, int basePeakIndex) {
+    if (basePeakIndex >= 0) {
+      offerDataPoint(scan, scan.getMzValue(basePeakIndex), scan.getIntensityValue(basePeakIndex));
+    } else {
+      offerDataPoint(scan, RangeUtils.rangeCenter(mzRange), 0);
+    }
+  }
+
+  private void offerDataPoint(Scan scan, double mz, double intensity) {
+    GapDataPointImpl currentDataPoint = new GapDataPointImpl(scan, mz, scan.getRetentionTime(),
+        intensity);
 
     // If we have not yet started, just create a new peak
     if (currentPeakDataPoints == null) {
@@ -110,6 +129,22 @@ public class Gap {
 
   }
 
+  /**
+   * @param scanRT retention time of the current scan
+   * @return true if this gap does not change with scans at or after this retention time
+   */
+  public boolean isFinished(float scanRT) {
+    return scanRT > rtRange.upperEndpoint();
+  }
+
+  public Range<Double> getMzRange() {
+    return mzRange;
+  }
+
+  public Range<Float> getRtRange() {
+    return rtRange;
+  }
+
   /**
    * Finalizes the gap, adds a peak
    */
@@ -40,6 +40,7 @@ import io.github.mzmine.util.exceptions.MissingMassListException;
 import java.util.ArrayList;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A gap in an IMS Raw data file.
@@ -83,8 +84,17 @@ public class ImsGap extends Gap {
       return;
     }
 
-    DataPointIonMobilitySeries mobilogram = findDataPoint(access);
+    offerMobilogram(findDataPoint(access));
+  }
 
+  /**
+   * Offers the mobilogram of the current frame. Frames before the RT range and frames after the RT
+   * range, once this gap {@link #isFinished(float)}, are not offered.
+   *
+   * @param mobilogram the closest signals to the row m/z in all mobility scans within the mobility
+   *                   range or null if there are no signals
+   */
+  void offerMobilogram(@Nullable DataPointIonMobilitySeries mobilogram) {
     if (mobilogram == null) {
       return;
     }
@@ -106,11 +116,30 @@ public class ImsGap extends Gap {
 
   }
 
+  /**
+   * The last peak may be extended after the RT range
+   */
+  @Override
+  public boolean isFinished(float scanRT) {
+    return scanRT > rtRange.upperEndpoint() && currentPeakDataPoints == null;
+  }
+
+  public Range<Float> getMobilityRange() {
+    return mobilityRange;
+  }
+
+  /**
+   * @return the m/z of the row, signals closest to this m/z are used
+   */
+  double getFeatureMz() {
+    return peakListRow.getAverageMZ();
+  }
+
   private DataPointIonMobilitySeries findDataPoint(@NotNull final MobilityScanDataAccess access) {
 
     final Frame frame = access.getFrame();
     final MobilityType mobilityType = frame.getMobilityType();
-    final double featureMz = peakListRow.getAverageMZ();
+    final double featureMz = getFeatureMz();
 
     /*if (frame.getRetentionTime() < rtRange.lowerEndpoint()) {
       return null;
@@ -37,14 +37,16 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * The main task creates sub tasks to perform the PeakFinder algorithm on multiple threads. Each sub
- * task performs gap filling on a number of RawDataFiles.
+ * The main task creates sub tasks to perform the PeakFinder algorithm on multiple threads. The sub
+ * tasks perform gap filling on one RawDataFile after the other until all files are processed.
  *
  * @author Robin Schmid (robinschmid@wwu.de)
  */
@@ -149,13 +151,11 @@ class MultiThreadPeakFinderMainTask extends AbstractTask {
     // start
     MZmineCore.getTaskController().addTasks(tasks.toArray(AbstractTask[]::new));
 
-    // wait till finish
-    while (!(isCanceled() || isFinished())) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        logger.log(Level.SEVERE, "Error in GNPS export/submit task", e);
-      }
+    // wait till finish, the listener sets the final status of this task
+    try {
+      getCompletionFuture().get();
+    } catch (InterruptedException | ExecutionException e) {
+      logger.log(Level.SEVERE, "Error while waiting for gap-filling sub tasks", e);
     }
   }
 
@@ -179,29 +179,21 @@ class MultiThreadPeakFinderMainTask extends AbstractTask {
   }
 
   /**
-   * Distributes the RawDataFiles on different tasks
+   * Creates the tasks that share the RawDataFiles. Each task processes the next unprocessed file,
+   * so files with many gaps or scans do not delay the other files of a fixed group.
    */
   private List<AbstractTask> createSubTasks(int raw, int maxRunningThreads) {
-    int numPerTask = raw / maxRunningThreads;
-    int rest = raw % maxRunningThreads;
+    final AtomicInteger nextRawFile = new AtomicInteger(0);
+    final AtomicInteger processedScans = new AtomicInteger(0);
+    int totalScans = 0;
+    for (int i = 0; i < raw; i++) {
+      totalScans += peakList.getSeletedScans(peakList.getRawDataFile(i)).size();
+    }
+
     List<AbstractTask> tasks = new ArrayList<>();
     for (int i = 0; i < maxRunningThreads; i++) {
-      int start = numPerTask * i;
-      int endexcl = numPerTask * (i + 1);
-      // add one from the rest
-      if (rest > 0) {
-        start += Math.min(i, rest);
-        endexcl += Math.min(i + 1, rest);
-      }
-
-      if (i == maxRunningThreads - 1) {
-        endexcl = raw;
-      }
-
-      // create task
-      tasks.add(
-          new MultiThreadPeakFinderTask(peakList, processedPeakList, parameters, start, endexcl, i,
-              getModuleCallDate()));
+      tasks.add(new MultiThreadPeakFinderTask(peakList, processedPeakList, parameters, nextRawFile,
+          processedScans, totalScans, i, getModuleCallDate()));
     }
     return tasks;
   }
@@ -56,17 +56,23 @@ class MultiThreadPeakFinderTask extends AbstractTask {
   private final double intTolerance;
   private final MZTolerance mzTolerance;
   private final RTTolerance rtTolerance;
-  private final AtomicInteger processedScans = new AtomicInteger(0);
-  // start and end (exclusive) for raw data file processing
-  private final int start;
-  private final int endexcl;
+  // shared by all sub tasks: the next raw data file and the progress of all raw data files
+  private final AtomicInteger nextRawFile;
+  private final AtomicInteger processedScans;
+  private final int totalScans;
   private final int taskIndex;
   private final int minDataPoints;
-  private int totalScans;
 
+  /**
+   * All sub tasks take the next unprocessed raw data file until all files are processed
+   *
+   * @param nextRawFile    index of the next raw data file, shared by all sub tasks
+   * @param processedScans processed scans of all sub tasks
+   * @param totalScans     the selected scans in all raw data files
+   */
   MultiThreadPeakFinderTask(ModularFeatureList peakList, ModularFeatureList processedPeakList,
-      ParameterSet parameters, int start, int endexcl, int taskIndex,
-      @NotNull Instant moduleCallDate) {
+      ParameterSet parameters, AtomicInteger nextRawFile, AtomicInteger processedScans,
+      int totalScans, int taskIndex, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
 
     this.taskIndex = taskIndex;
@@ -79,28 +85,23 @@ class MultiThreadPeakFinderTask extends AbstractTask {
     rtTolerance = parameters.getValue(MultiThreadPeakFinderParameters.RTTolerance);
     minDataPoints = parameters.getValue(MultiThreadPeakFinderParameters.minDataPoints);
 
-    this.start = start;
-    this.endexcl = endexcl;
+    this.nextRawFile = nextRawFile;
+    this.processedScans = processedScans;
+    this.totalScans = totalScans;
   }
 
   public void run() {
 
     setStatus(TaskStatus.PROCESSING);
-    logger.info(
-        "Running multithreaded gap filler " + taskIndex + " on raw files " + (start + 1) + "-"
-        + endexcl + " of pkl:" + peakList);
-
-    int totalDataFiles = endexcl - start;
-    // Calculate total number of scans in all files
-    for (int i = start; i < endexcl; i++) {
-      RawDataFile dataFile = peakList.getRawDataFile(i);
-      totalScans += peakList.getSeletedScans(dataFile).size();
-    }
+    logger.info("Running multithreaded gap filler " + taskIndex + " on pkl:" + peakList);
 
+    final int totalDataFiles = peakList.getNumberOfRawDataFiles();
     int filled = 0;
+    int processedDataFiles = 0;
 
-    // Process all raw data files
-    for (int i = start; i < endexcl; i++) {
+    // Process the next raw data file until all are processed
+    for (int i = nextRawFile.getAndIncrement(); i < totalDataFiles;
+        i = nextRawFile.getAndIncrement()) {
       RawDataFile dataFile = peakList.getRawDataFile(i);
       final BinningMobilogramDataAccess mobilogramAccess = // todo how to determine previous bin width for an aligned list?
           dataFile instanceof IMSRawDataFile ? EfficientDataAccess.of((IMSRawDataFile) dataFile,
@@ -141,7 +142,7 @@ class MultiThreadPeakFinderTask extends AbstractTask {
 
       // Stop processing this file if there are no gaps
       if (gaps.isEmpty()) {
-        processedScans.addAndGet(dataFile.getNumOfScans());
+        processedScans.addAndGet(peakList.getSeletedScans(dataFile).size());
         continue;
       }
 
@@ -159,23 +160,20 @@ class MultiThreadPeakFinderTask extends AbstractTask {
       }
 
       // log progress for long running tasks, different levels
-      final int processedDataFiles = i - start + 1;
+      processedDataFiles++;
+      final String message = String.format(
+          "Multithreaded gap filler (%d): processed raw file %d of %d (%d by this task)", taskIndex,
+          i + 1, totalDataFiles, processedDataFiles);
       if (processedDataFiles % 5 == 0) {
-        logger.fine(() -> String.format(
-            "Multithreaded gap filler (%d): %d of %d raw files processed (%.1f %%)", taskIndex,
-            processedDataFiles, totalDataFiles,
-            (processedDataFiles / (float) totalDataFiles) * 100));
+        logger.fine(message);
       } else {
-        logger.finest(() -> String.format(
-            "Multithreaded gap filler (%d): %d of %d raw files processed (%.1f %%)", taskIndex,
-            processedDataFiles, totalDataFiles,
-            (processedDataFiles / (float) totalDataFiles) * 100));
+        logger.finest(message);
       }
     }
 
     logger.info(String.format(
-        "Finished sub task: Multithreaded gap filler %d on raw files %d-%d in feature list %s. (Gaps filled: %d)",
-        taskIndex, (start + 1), endexcl, peakList.toString(), filled));
+        "Finished sub task: Multithreaded gap filler %d on %d raw files in feature list %s. (Gaps filled: %d)",
+        taskIndex, processedDataFiles, peakList.toString(), filled));
     setStatus(TaskStatus.FINISHED);
   }
 
@@ -196,8 +194,7 @@ class MultiThreadPeakFinderTask extends AbstractTask {
   }
 
   public String getTaskDescription() {
-    return "Sub task " + taskIndex + ": Gap filling on raw files " + (start + 1) + "-" + endexcl
-           + " of pkl:" + peakList;
+    return "Sub task " + taskIndex + ": Gap filling on raw files of pkl:" + peakList;
   }
 
   private void processFile(RawDataFile file, List<Gap> gaps) {
@@ -205,37 +202,14 @@ class MultiThreadPeakFinderTask extends AbstractTask {
       final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
           MobilityScanDataType.CENTROID, (List<Frame>) peakList.getSeletedScans(file));
       List<ImsGap> imsGaps = (List<ImsGap>) (List<? extends Gap>) gaps;
-
-      while (access.hasNextFrame()) {
-        if (isCanceled()) {
-          return;
-        }
-
-        final Frame frame = access.nextFrame();
-        for (ImsGap gap : imsGaps) {
-          access.resetMobilityScan();
-          gap.offerNextScan(access);
-        }
-        processedScans.incrementAndGet();
-      }
-
+      ScanSweepGapFiller.fillImsGaps(access, imsGaps, this, processedScans);
     } else {
       // no IMS dimension
 
       final ScanDataAccess scanAccess = EfficientDataAccess.of(file, ScanDataType.CENTROID,
           peakList.getSeletedScans(file));
-      while (scanAccess.hasNextScan()) {
-        if (isCanceled()) {
-          return;
-        }
-        scanAccess.nextScan();
-        // Feed this scan to all gaps
-        for (Gap gap : gaps) {
-          gap.offerNextScan(scanAccess);
-        }
-
-        processedScans.incrementAndGet();
-      }
+      // Feed all scans to all gaps
+      ScanSweepGapFiller.fillGaps(scanAccess, gaps, this, processedScans);
     }
   }
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.multithreaded;
+
+import com.google.common.collect.Range;
+import gnu.trove.list.array.TDoubleArrayList;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import io.github.mzmine.datamodel.data_access.ScanDataAccess;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.util.exceptions.MissingMassListException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Offers the scans of one raw data file to all gaps of this file in a single sweep. The gaps are
+ * sorted by the start of their RT range and only the gaps that overlap the current scan RT are
+ * active. The active gaps are sorted by their m/z range, so the signals of all active gaps are
+ * found in one pass over the sorted m/z values of each scan. The results are the same as offering
+ * every scan to every gap with {@link Gap#offerNextScan}.
+ */
+public class ScanSweepGapFiller {
+
+  private static final Logger logger = Logger.getLogger(ScanSweepGapFiller.class.getName());
+
+  private static final Comparator<Gap> RT_START = Comparator.comparingDouble(
+      gap -> gap.getRtRange().lowerEndpoint());
+  private static final Comparator<Gap> MZ_START = Comparator.comparingDouble(
+      gap -> gap.getMzRange().lowerEndpoint());
+
+  private ScanSweepGapFiller() {
+  }
+
+  /**
+   * Offers all scans to the gaps
+   *
+   * @param access         access to the scans of the data file, sorted by retention time
+   * @param gaps           all gaps of the data file
+   * @param task           stops the sweep if cancelled
+   * @param processedScans incremented for every scan
+   */
+  public static void fillGaps(@NotNull ScanDataAccess access, @NotNull List<Gap> gaps,
+      @NotNull AbstractTask task, @NotNull AtomicInteger processedScans) {
+    final ActiveGaps<Gap> activeGaps = new ActiveGaps<>(gaps);
+    while (access.hasNextScan()) {
+      if (task.isCanceled()) {
+        return;
+      }
+      access.nextScan();
+      final float rt = access.getRetentionTime();
+      final List<Gap> active = activeGaps.update(rt);
+      if (!active.isEmpty()) {
+        offerScan(access, rt, active);
+      }
+      processedScans.incrementAndGet();
+    }
+  }
+
+  private static void offerScan(ScanDataAccess access, float rt, List<Gap> active) {
+    final int numDp = access.getNumberOfDataPoints();
+    final Integer basePeak = access.getBasePeakIndex();
+    final int basePeakIndex = basePeak == null ? -1 : basePeak;
+    final double basePeakMz = basePeakIndex >= 0 ? access.getMzValue(basePeakIndex) : Double.NaN;
+
+    // first data point at or above the lower m/z of the current gap
+    int first = 0;
+    for (final Gap gap : active) {
+      if (!gap.getRtRange().contains(rt)) {
+        continue;
+      }
+      final Range<Double> mzRange = gap.getMzRange();
+      final double lower = mzRange.lowerEndpoint();
+      final double upper = mzRange.upperEndpoint();
+      while (first < numDp && access.getMzValue(first) < lower) {
+        first++;
+      }
+
+      // same as ScanUtils.findBasePeak
+      if (basePeakIndex >= 0 && mzRange.contains(basePeakMz)) {
+        gap.offerBasePeak(access, basePeakIndex);
+        continue;
+      }
+      int best = -1;
+      double bestIntensity = 0d;
+      for (int i = first; i < numDp && access.getMzValue(i) <= upper; i++) {
+        final double intensity = access.getIntensityValue(i);
+        if (intensity > bestIntensity) {
+          bestIntensity = intensity;
+          best = i;
+        }
+      }
+      gap.offerBasePeak(access, best);
+    }
+  }
+
+  /**
+   * Offers all frames to the gaps
+   *
+   * @param access         access to the frames of the data file, sorted by retention time
+   * @param gaps           all gaps of the data file
+   * @param task           stops the sweep if cancelled
+   * @param processedScans incremented for every frame
+   */
+  public static void fillImsGaps(@NotNull MobilityScanDataAccess access,
+      @NotNull List<ImsGap> gaps, @NotNull AbstractTask task,
+      @NotNull AtomicInteger processedScans) {
+    final ActiveGaps<ImsGap> activeGaps = new ActiveGaps<>(gaps);
+    final List<MobilogramBuilder> builders = new ArrayList<>();
+    while (access.hasNextFrame()) {
+      if (task.isCanceled()) {
+        return;
+      }
+      access.nextFrame();
+      final List<ImsGap> active = activeGaps.update(access.getRetentionTime());
+      if (!active.isEmpty()) {
+        offerFrame(access, active, builders);
+      }
+      processedScans.incrementAndGet();
+    }
+  }
+
+  private static void offerFrame(MobilityScanDataAccess access, List<ImsGap> active,
+      List<MobilogramBuilder> builders) {
+    while (builders.size() < active.size()) {
+      builders.add(new MobilogramBuilder());
+    }
+    // the same feature m/z as in ImsGap
+    final double[] featureMzs = new double[active.size()];
+    for (int g = 0; g < active.size(); g++) {
+      featureMzs[g] = active.get(g).getFeatureMz();
+      builders.get(g).clear();
+    }
+
+    access.resetMobilityScan();
+    try {
+      while (access.hasNextMobilityScan()) {
+        final MobilityScan scan = access.nextMobilityScan();
+        final double mobility = scan.getMobility();
+        final int numDp = access.getNumberOfDataPoints();
+        int first = 0;
+        for (int g = 0; g < active.size(); g++) {
+          final ImsGap gap = active.get(g);
+          final Range<Float> mobilityRange = gap.getMobilityRange();
+          // mobility scans are sorted by mobility (ascending or descending for TIMS)
+          if (mobility < mobilityRange.lowerEndpoint()
+              || mobility > mobilityRange.upperEndpoint()) {
+            continue;
+          }
+          final double lower = gap.getMzRange().lowerEndpoint();
+          final double upper = gap.getMzRange().upperEndpoint();
+          while (first < numDp && access.getMzValue(first) < lower) {
+            first++;
+          }
+
+          int best = -1;
+          double bestDelta = Double.POSITIVE_INFINITY;
+          for (int i = first; i < numDp; i++) {
+            final double mz = access.getMzValue(i);
+            if (mz > upper) {
+              break;
+            }
+            final double delta = Math.abs(mz - featureMzs[g]);
+            if (delta < bestDelta) {
+              bestDelta = delta;
+              best = i;
+            }
+          }
+          if (best != -1) {
+            builders.get(g).add(access.getMzValue(best), access.getIntensityValue(best), scan);
+          }
+        }
+      }
+    } catch (MissingMassListException e) {
+      logger.log(Level.WARNING, e.getMessage(), e);
+      // same as ImsGap, nothing is offered for this frame
+      return;
+    }
+
+    for (int g = 0; g < active.size(); g++) {
+      active.get(g).offerMobilogram(builders.get(g).build());
+    }
+  }
+
+  /**
+   * Gaps sorted by their RT start are activated once the scan RT reaches their RT range and
+   * removed once they are finished. The active gaps are sorted by their m/z range.
+   */
+  private static class ActiveGaps<T extends Gap> {
+
+    private final List<T> pending;
+    private final List<T> active = new ArrayList<>();
+    private int next = 0;
+
+    private ActiveGaps(List<T> gaps) {
+      pending = new ArrayList<>(gaps);
+      pending.sort(RT_START);
+    }
+
+    private List<T> update(float rt) {
+      final int start = next;
+      while (next < pending.size() && pending.get(next).getRtRange().lowerEndpoint() <= rt) {
+        next++;
+      }
+      if (next > start) {
+        active.addAll(pending.subList(start, next));
+        // mostly sorted, merges the new gaps
+        active.sort(MZ_START);
+      }
+      active.removeIf(gap -> gap.isFinished(rt));
+      return active;
+    }
+  }
+
+  /**
+   * The signals of one gap in the mobility scans of a frame
+   */
+  private static class MobilogramBuilder {
+
+    private final TDoubleArrayList mzs = new TDoubleArrayList();
+    private final TDoubleArrayList intensities = new TDoubleArrayList();
+    private final List<MobilityScan> scans = new ArrayList<>();
+
+    private void add(double mz, double intensity, MobilityScan scan) {
+      mzs.add(mz);
+      intensities.add(intensity);
+      scans.add(scan);
+    }
+
+    private void clear() {
+      mzs.resetQuick();
+      intensities.resetQuick();
+      scans.clear();
+    }
+
+    private DataPointIonMobilitySeries build() {
+      if (scans.isEmpty()) {
+        return null;
+      }
+      return new DataPointIonMobilitySeries(null, mzs.toArray(), intensities.toArray(),
+          new ArrayList<>(scans));
+    }
+  }
+}
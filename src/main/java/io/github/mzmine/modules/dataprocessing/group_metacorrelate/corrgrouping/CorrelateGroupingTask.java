@@ -23,6 +23,7 @@ import io.github.msdk.MSDKRuntimeException;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.data_access.CachedFeatureDataAccess;
+import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.RowGroup;
@@ -47,9 +48,12 @@ import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.text.MessageFormat;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
@@ -276,18 +280,47 @@ public class CorrelateGroupingTask extends AbstractTask {
     // preload all intensity values
     CachedFeatureDataAccess data = new CachedFeatureDataAccess(rows, false, true);
 
-    // for all rows - do in parallel
-    IntStream.range(0, totalRows - 1).parallel().forEach(i -> {
-      if (!isCanceled()) {
+    // rows are only correlated if they have features within the RT tolerance (depends on the
+    // minimum feature filter). The rows are sorted by RT, so the comparison of a row can skip rows
+    // without features in RT range and stop at the first row after which all features are out of
+    // range.
+    final boolean sweep =
+        rtTolerance != null && minFFilter.isRequiringFeaturesInRTRange(raws.size()) && (
+            rtTolerance.isAbsolute() || rtTolerance.getTolerance() < 100f);
+    final float[] minRT = new float[totalRows];
+    final float[] maxRT = new float[totalRows];
+    final float[] lowerRT = new float[totalRows];
+    final float[] upperRT = new float[totalRows];
+    // the end (exclusive) of the comparisons for each row
+    final int[] lastRow = new int[totalRows];
+    if (sweep) {
+      findRTRanges(rows, raws, minRT, maxRT, lowerRT, upperRT, lastRow);
+    } else {
+      Arrays.fill(lastRow, totalRows);
+    }
+
+    // balance the work between the blocks of rows, especially without the sweep the first rows
+    // are compared to many more rows
+    final int[] blockStarts = createBalancedBlocks(lastRow,
+        Runtime.getRuntime().availableProcessors() * 4);
+
+    final LongAdder evaluatedPairs = new LongAdder();
+    IntStream.range(0, blockStarts.length - 1).parallel().forEach(block -> {
+      for (int i = blockStarts[block]; i < blockStarts[block + 1] && !isCanceled(); i++) {
         try {
           FeatureListRow row = rows[i];
           // compare to the rest of rows
-          for (int x = i + 1; x < totalRows; x++) {
+          for (int x = i + 1; x < lastRow[i]; x++) {
             if (isCanceled()) {
               break;
             }
+            if (sweep && (minRT[x] > upperRT[i] || maxRT[x] < lowerRT[i])) {
+              // no features in RT range
+              continue;
+            }
 
             FeatureListRow row2 = rows[x];
+            evaluatedPairs.increment();
 
             // has a minimum number/% of overlapping features in all samples / in at least one
             // groups
@@ -322,6 +355,10 @@ public class CorrelateGroupingTask extends AbstractTask {
       }
     });
 
+    logger.info(MessageFormat.format(
+        "Corr: evaluated {0} of {1} row pairs (RT sweep: {2}), kept {3} row pairs",
+        evaluatedPairs.sum(), (long) totalRows * (totalRows - 1) / 2, sweep, map.size()));
+
     // number of f2f correlations
     int nR2Rcorr = 0;
     int nF2F = 0;
@@ -339,4 +376,93 @@ public class CorrelateGroupingTask extends AbstractTask {
         nR2Rcorr, nF2F, map.size()));
   }
 
+  /**
+   * Finds the RT range of the features of each row and the tolerance range around it. The
+   * comparison of row i can stop at the first row x, after which all rows start after the upper
+   * tolerance of row i.
+   *
+   * @param rows    rows sorted by RT
+   * @param minRT   the minimum feature RT of each row (result)
+   * @param maxRT   the maximum feature RT of each row (result)
+   * @param lowerRT the lowest RT of the tolerance ranges of the features (result)
+   * @param upperRT the highest RT of the tolerance ranges of the features (result)
+   * @param lastRow the end (exclusive) of the comparisons for each row (result)
+   */
+  private void findRTRanges(FeatureListRow[] rows, List<RawDataFile> raws, float[] minRT,
+      float[] maxRT, float[] lowerRT, float[] upperRT, int[] lastRow) {
+    final int n = rows.length;
+    for (int i = 0; i < n; i++) {
+      float min = Float.POSITIVE_INFINITY;
+      float max = Float.NEGATIVE_INFINITY;
+      for (RawDataFile raw : raws) {
+        final Feature feature = rows[i].getFeature(raw);
+        if (feature != null && feature.getRT() != null) {
+          min = Math.min(min, feature.getRT());
+          max = Math.max(max, feature.getRT());
+        }
+      }
+      minRT[i] = min;
+      maxRT[i] = max;
+      if (min <= max) {
+        // the tolerance ranges grow monotonically with the RT
+        lowerRT[i] = rtTolerance.getToleranceRange(min).lowerEndpoint();
+        upperRT[i] = rtTolerance.getToleranceRange(max).upperEndpoint();
+      } else {
+        // no features, skip all rows
+        lowerRT[i] = Float.POSITIVE_INFINITY;
+        upperRT[i] = Float.NEGATIVE_INFINITY;
+      }
+    }
+
+    // the minimum RT of all following rows increases monotonically
+    final float[] suffixMinRT = new float[n + 1];
+    suffixMinRT[n] = Float.POSITIVE_INFINITY;
+    for (int i = n - 1; i >= 0; i--) {
+      suffixMinRT[i] = Math.min(minRT[i], suffixMinRT[i + 1]);
+    }
+    for (int i = 0; i < n; i++) {
+      // first row x > i with suffixMinRT[x] > upperRT[i]
+      int low = i + 1;
+      int high = n;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (suffixMinRT[mid] > upperRT[i]) {
+          high = mid;
+        } else {
+          low = mid + 1;
+        }
+      }
+      lastRow[i] = low;
+    }
+  }
+
+  /**
+   * Splits the rows into blocks with about the same number of comparisons
+   *
+   * @param lastRow   the end (exclusive) of the comparisons for each row
+   * @param numBlocks the targeted number of blocks
+   * @return the start of each block and the number of rows as the last element
+   */
+  private static int[] createBalancedBlocks(int[] lastRow, int numBlocks) {
+    final int n = lastRow.length;
+    long totalWork = 0;
+    for (int i = 0; i < n; i++) {
+      totalWork += Math.max(lastRow[i] - i - 1, 0) + 1;
+    }
+    final long workPerBlock = Math.max(totalWork / numBlocks, 1);
+
+    final IntArrayList starts = new IntArrayList(numBlocks + 1);
+    starts.add(0);
+    long work = 0;
+    for (int i = 0; i < n; i++) {
+      work += Math.max(lastRow[i] - i - 1, 0) + 1;
+      if (work >= workPerBlock && i + 1 < n) {
+        starts.add(i + 1);
+        work = 0;
+      }
+    }
+    starts.add(n);
+    return starts.toIntArray();
+  }
+
 }
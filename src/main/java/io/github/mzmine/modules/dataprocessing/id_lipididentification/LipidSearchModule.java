@@ -18,8 +18,11 @@
 
 package io.github.mzmine.modules.dataprocessing.id_lipididentification;
 
+import com.google.common.base.Suppliers;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.function.Supplier;
 import org.jetbrains.annotations.NotNull;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.features.FeatureList;
@@ -58,8 +61,11 @@ public class LipidSearchModule implements MZmineProcessingModule {
     FeatureList[] featureLists = parameters.getParameter(LipidSearchParameters.featureLists)
         .getValue().getMatchingFeatureLists();
 
+    // the lipid database is built once by the first task and shared by all feature lists
+    final Supplier<LipidIonIndex> ionIndex = Suppliers.memoize(
+        () -> LipidSearchTask.buildIonIndex(parameters));
     for (FeatureList featureList : featureLists) {
-      Task newTask = new LipidSearchTask(parameters, featureList, moduleCallDate);
+      Task newTask = new LipidSearchTask(parameters, featureList, ionIndex, moduleCallDate);
       tasks.add(newTask);
     }
 
@@ -17,9 +17,11 @@
 
 package io.github.mzmine.modules.dataprocessing.id_lipididentification;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -32,6 +34,8 @@ import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidident
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.*;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.customlipidclass.CustomLipidClass;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidFactory;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex.LipidIon;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.MatchedLipid;
 import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoper;
 import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoperParameters;
@@ -46,10 +50,9 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
 
 /**
  * Task to search and annotate lipids in feature list
@@ -64,12 +67,7 @@ public class LipidSearchTask extends AbstractTask {
   private double finishedSteps;
   private double totalSteps;
   private final FeatureList featureList;
-  private final LipidClasses[] selectedLipids;
-  private CustomLipidClass[] customLipidClasses;
-  private final int minChainLength;
-  private final int maxChainLength;
-  private final int maxDoubleBonds;
-  private final int minDoubleBonds;
+  private final Supplier<LipidIonIndex> ionIndex;
   private final MZTolerance mzTolerance;
   private MZTolerance mzToleranceMS2;
   private final Boolean searchForMSMSFragments;
@@ -80,21 +78,22 @@ public class LipidSearchTask extends AbstractTask {
 
   public LipidSearchTask(ParameterSet parameters, FeatureList featureList,
       @NotNull Instant moduleCallDate) {
+    this(parameters, featureList, Suppliers.memoize(() -> buildIonIndex(parameters)),
+        moduleCallDate);
+  }
+
+  /**
+   * @param ionIndex supplies the ion index of the lipid database. The tasks of multiple feature
+   *                 lists with the same parameters can share the index.
+   */
+  public LipidSearchTask(ParameterSet parameters, FeatureList featureList,
+      @NotNull Supplier<LipidIonIndex> ionIndex, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.featureList = featureList;
     this.parameters = parameters;
+    this.ionIndex = ionIndex;
 
-    this.minChainLength =
-        parameters.getParameter(LipidSearchParameters.chainLength).getValue().lowerEndpoint();
-    this.maxChainLength =
-        parameters.getParameter(LipidSearchParameters.chainLength).getValue().upperEndpoint();
-    this.minDoubleBonds =
-        parameters.getParameter(LipidSearchParameters.doubleBonds).getValue().lowerEndpoint();
-    this.maxDoubleBonds =
-        parameters.getParameter(LipidSearchParameters.doubleBonds).getValue().upperEndpoint();
     this.mzTolerance = parameters.getParameter(LipidSearchParameters.mzTolerance).getValue();
-    Object[] selectedObjects = parameters.getParameter(LipidSearchParameters.lipidClasses)
-        .getValue();
     this.searchForMSMSFragments =
         parameters.getParameter(LipidSearchParameters.searchForMSMSFragments).getValue();
     if (searchForMSMSFragments.booleanValue()) {
@@ -110,15 +109,6 @@ public class LipidSearchTask extends AbstractTask {
     } else {
       this.keepUnconfirmedAnnotations = true;
     }
-    Boolean searchForCustomLipidClasses = parameters.getParameter(
-        LipidSearchParameters.customLipidClasses).getValue();
-    if (searchForCustomLipidClasses.booleanValue()) {
-      this.customLipidClasses =
-          LipidSearchParameters.customLipidClasses.getEmbeddedParameter().getChoices();
-    }
-    // Convert Objects to LipidClasses
-    this.selectedLipids = Arrays.stream(selectedObjects).filter(o -> o instanceof LipidClasses)
-        .map(o -> (LipidClasses) o).toArray(LipidClasses[]::new);
   }
 
   /**
@@ -155,14 +145,12 @@ public class LipidSearchTask extends AbstractTask {
     }
     totalSteps = rows.size();
 
-    // build lipid species database
-    Set<ILipidAnnotation> lipidDatabase = buildLipidDatabase();
+    // build lipid species database and the ion m/z index
+    final LipidIonIndex index = ionIndex.get();
 
     // start lipid annotation
     rows.parallelStream().forEach(row -> {
-      for (ILipidAnnotation lipidAnnotation : lipidDatabase) {
-        findPossibleLipid(lipidAnnotation, row);
-      }
+      findPossibleLipids(index, row);
       finishedSteps++;
     });
 
@@ -175,28 +163,50 @@ public class LipidSearchTask extends AbstractTask {
     logger.info("Finished lipid annotation task in " + featureList);
   }
 
-  private Set<ILipidAnnotation> buildLipidDatabase() {
+  /**
+   * Builds the species level lipids of the selected lipid classes and chain ranges and computes
+   * their ion m/z values.
+   */
+  @NotNull
+  public static LipidIonIndex buildIonIndex(ParameterSet parameters) {
+    final Range<Integer> chainLength = parameters.getParameter(LipidSearchParameters.chainLength)
+        .getValue();
+    final Range<Integer> doubleBonds = parameters.getParameter(LipidSearchParameters.doubleBonds)
+        .getValue();
+    Object[] selectedObjects = parameters.getParameter(LipidSearchParameters.lipidClasses)
+        .getValue();
+    // Convert Objects to LipidClasses
+    final LipidClasses[] selectedLipids = Arrays.stream(selectedObjects)
+        .filter(o -> o instanceof LipidClasses).map(o -> (LipidClasses) o)
+        .toArray(LipidClasses[]::new);
 
     Set<ILipidAnnotation> lipidDatabase = new LinkedHashSet<>();
 
     // add selected lipids
-    buildLipidCombinations(lipidDatabase, selectedLipids);
+    buildLipidCombinations(lipidDatabase, selectedLipids, chainLength, doubleBonds);
 
     // add custom lipids
-    if (customLipidClasses != null && customLipidClasses.length > 0) {
-      buildLipidCombinations(lipidDatabase, customLipidClasses);
+    Boolean searchForCustomLipidClasses = parameters.getParameter(
+        LipidSearchParameters.customLipidClasses).getValue();
+    if (searchForCustomLipidClasses.booleanValue()) {
+      CustomLipidClass[] customLipidClasses =
+          LipidSearchParameters.customLipidClasses.getEmbeddedParameter().getChoices();
+      if (customLipidClasses != null && customLipidClasses.length > 0) {
+        buildLipidCombinations(lipidDatabase, customLipidClasses, chainLength, doubleBonds);
+      }
     }
 
-    return lipidDatabase;
+    return LipidIonIndex.build(lipidDatabase);
   }
 
-  private void buildLipidCombinations(Set<ILipidAnnotation> lipidDatabase,
-      ILipidClass[] lipidClasses) {
+  private static void buildLipidCombinations(Set<ILipidAnnotation> lipidDatabase,
+      ILipidClass[] lipidClasses, Range<Integer> chainLengths, Range<Integer> doubleBonds) {
     // Try all combinations of fatty acid lengths and double bonds
     for (ILipidClass lipidClass : lipidClasses) {
-      for (int chainLength = minChainLength; chainLength <= maxChainLength; chainLength++) {
-        for (int chainDoubleBonds =
-            minDoubleBonds; chainDoubleBonds <= maxDoubleBonds; chainDoubleBonds++) {
+      for (int chainLength = chainLengths.lowerEndpoint();
+          chainLength <= chainLengths.upperEndpoint(); chainLength++) {
+        for (int chainDoubleBonds = doubleBonds.lowerEndpoint();
+            chainDoubleBonds <= doubleBonds.upperEndpoint(); chainDoubleBonds++) {
 
           if (chainLength / 2 < chainDoubleBonds || chainLength == 0) {
             continue;
@@ -214,30 +224,25 @@ public class LipidSearchTask extends AbstractTask {
   }
 
   /**
-   * Check if candidate peak may be a possible adduct of a given main peak
+   * Annotates the row with all lipid ions within the m/z tolerance. Only these candidates are
+   * checked for MS/MS fragments.
    */
-  private void findPossibleLipid(ILipidAnnotation lipid, FeatureListRow row) {
+  private void findPossibleLipids(LipidIonIndex index, FeatureListRow row) {
     if (isCanceled()) {
       return;
     }
-    Set<MatchedLipid> possibleRowAnnotations = new HashSet<>();
-    Set<IonizationType> ionizationTypeList = new HashSet<>();
-    LipidFragmentationRule[] fragmentationRules = lipid.getLipidClass().getFragmentationRules();
-    for (LipidFragmentationRule fragmentationRule : fragmentationRules) {
-      ionizationTypeList.add(fragmentationRule.getIonizationType());
-    }
-    for (IonizationType ionization : ionizationTypeList) {
-      if (!Objects.requireNonNull(row.getBestFeature().getRepresentativeScan()).getPolarity()
-          .equals(ionization.getPolarity())) {
-        continue;
-      }
-      double lipidIonMass = MolecularFormulaManipulator.getMass(lipid.getMolecularFormula(),
-          AtomContainerManipulator.MonoIsotopic) + ionization.getAddedMass();
-      Range<Double> mzTolRange12C = mzTolerance.getToleranceRange(row.getAverageMZ());
-
-      // MS1 check
-      if (mzTolRange12C.contains(lipidIonMass)) {
-
+    final PolarityType polarity = Objects.requireNonNull(
+        row.getBestFeature().getRepresentativeScan()).getPolarity();
+    Range<Double> mzTolRange12C = mzTolerance.getToleranceRange(row.getAverageMZ());
+    final List<LipidIon> ions = index.findIons(mzTolRange12C, polarity);
+
+    // the ions of a lipid are consecutive, annotations are added lipid by lipid
+    int i = 0;
+    while (i < ions.size()) {
+      final ILipidAnnotation lipid = ions.get(i).lipid();
+      Set<MatchedLipid> possibleRowAnnotations = new HashSet<>();
+      for (; i < ions.size() && ions.get(i).lipid() == lipid; i++) {
+        final IonizationType ionization = ions.get(i).ionization();
         // If search for MSMS fragments is selected search for fragments
         if (searchForMSMSFragments.booleanValue()) {
           possibleRowAnnotations.addAll(searchMsmsFragments(row, ionization, lipid));
@@ -248,9 +253,8 @@ public class LipidSearchTask extends AbstractTask {
               .add(new MatchedLipid(lipid, row.getAverageMZ(), ionization, null, 0.0));
         }
       }
-
+      addAnnotationsToFeatureList(row, possibleRowAnnotations);
     }
-    addAnnotationsToFeatureList(row, possibleRowAnnotations);
   }
 
   private void addAnnotationsToFeatureList(FeatureListRow row,
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ * USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidAnnotation;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+/**
+ * The ion m/z values of a lipid database, computed once for every lipid and every ionization type
+ * of its fragmentation rules and sorted for a binary search. The index is immutable and can be
+ * searched by multiple threads.
+ */
+public class LipidIonIndex {
+
+  private final ILipidAnnotation[] lipids;
+  // sorted by m/z, ties in database order
+  private final double[] mzs;
+  // position of the ion in database order, lipid by lipid
+  private final int[] ionIds;
+  private final int[] lipidIndices;
+  private final IonizationType[] ionizations;
+
+  private LipidIonIndex(ILipidAnnotation[] lipids, double[] mzs, int[] ionIds,
+      int[] lipidIndices, IonizationType[] ionizations) {
+    this.lipids = lipids;
+    this.mzs = mzs;
+    this.ionIds = ionIds;
+    this.lipidIndices = lipidIndices;
+    this.ionizations = ionizations;
+  }
+
+  /**
+   * @param lipidDatabase the lipids in the order of the annotation
+   * @return the index of all ions of the lipids
+   */
+  @NotNull
+  public static LipidIonIndex build(@NotNull Collection<ILipidAnnotation> lipidDatabase) {
+    final ILipidAnnotation[] lipids = lipidDatabase.toArray(ILipidAnnotation[]::new);
+    final DoubleArrayList ionMzs = new DoubleArrayList();
+    final IntArrayList ionLipids = new IntArrayList();
+    final List<IonizationType> ionIonizations = new ArrayList<>();
+
+    for (int i = 0; i < lipids.length; i++) {
+      final ILipidAnnotation lipid = lipids[i];
+      final LipidFragmentationRule[] rules = lipid.getLipidClass().getFragmentationRules();
+      if (rules == null || rules.length == 0) {
+        continue;
+      }
+      final Set<IonizationType> lipidIonizations = new LinkedHashSet<>();
+      for (LipidFragmentationRule rule : rules) {
+        lipidIonizations.add(rule.getIonizationType());
+      }
+
+      final double lipidMass = MolecularFormulaManipulator.getMass(lipid.getMolecularFormula(),
+          AtomContainerManipulator.MonoIsotopic);
+      for (IonizationType ionization : lipidIonizations) {
+        ionMzs.add(lipidMass + ionization.getAddedMass());
+        ionLipids.add(i);
+        ionIonizations.add(ionization);
+      }
+    }
+
+    final int numIons = ionMzs.size();
+    final int[] order = new int[numIons];
+    for (int i = 0; i < numIons; i++) {
+      order[i] = i;
+    }
+    IntArrays.quickSort(order, (a, b) -> {
+      final int compare = Double.compare(ionMzs.getDouble(a), ionMzs.getDouble(b));
+      return compare != 0 ? compare : Integer.compare(a, b);
+    });
+
+    final double[] mzs = new double[numIons];
+    final int[] lipidIndices = new int[numIons];
+    final IonizationType[] ionizations = new IonizationType[numIons];
+    for (int i = 0; i < numIons; i++) {
+      mzs[i] = ionMzs.getDouble(order[i]);
+      lipidIndices[i] = ionLipids.getInt(order[i]);
+      ionizations[i] = ionIonizations.get(order[i]);
+    }
+    return new LipidIonIndex(lipids, mzs, order, lipidIndices, ionizations);
+  }
+
+  /**
+   * Finds the ions within the m/z range that have the given polarity.
+   *
+   * @param mzRange  the m/z tolerance range of a feature
+   * @param polarity the polarity of the feature
+   * @return the ions in database order, the ions of one lipid are consecutive
+   */
+  @NotNull
+  public List<LipidIon> findIons(@NotNull Range<Double> mzRange, @NotNull PolarityType polarity) {
+    final double lower = mzRange.lowerEndpoint();
+    final double upper = mzRange.upperEndpoint();
+
+    // first ion with an m/z >= lower
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < lower) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    final IntArrayList matches = new IntArrayList();
+    for (int i = low; i < mzs.length && mzs[i] <= upper; i++) {
+      if (ionizations[i].getPolarity() == polarity && mzRange.contains(mzs[i])) {
+        matches.add(i);
+      }
+    }
+    if (matches.isEmpty()) {
+      return List.of();
+    }
+
+    final int[] found = matches.toIntArray();
+    IntArrays.quickSort(found, (a, b) -> Integer.compare(ionIds[a], ionIds[b]));
+    final List<LipidIon> ions = new ArrayList<>(found.length);
+    for (int i : found) {
+      ions.add(new LipidIon(lipids[lipidIndices[i]], ionizations[i], mzs[i]));
+    }
+    return ions;
+  }
+
+  /**
+   * @return the number of ions in the index
+   */
+  public int getNumberOfIons() {
+    return mzs.length;
+  }
+
+  /**
+   * An ion of a lipid in the index
+   *
+   * @param lipid      the lipid
+   * @param ionization the ionization type of a fragmentation rule of the lipid class
+   * @param mz         the ion m/z
+   */
+  public record LipidIon(@NotNull ILipidAnnotation lipid, @NotNull IonizationType ionization,
+                         double mz) {
+
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
+
+import io.github.mzmine.datamodel.features.compoundannotations.CompoundDBAnnotation;
+import io.github.mzmine.util.CompoundDatabaseIndex;
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the loaded CSV databases for the session, so that a database is only parsed once for
+ * multiple feature lists and runs. The databases are softly referenced and loaded again if the
+ * memory was needed. A database is loaded again if the file changed.
+ */
+class LocalCSVDatabaseCache {
+
+  private static final Map<Key, Entry> databases = new HashMap<>();
+
+  private LocalCSVDatabaseCache() {
+  }
+
+  /**
+   * @param key    identifies the file and all settings that change the loaded entries
+   * @param loader loads the database if it is not cached
+   * @return the cached or loaded database or null if the loader returned null
+   */
+  @Nullable
+  static CompoundDatabaseIndex<CompoundDBAnnotation> getOrLoad(@NotNull Key key,
+      @NotNull Loader loader) throws Exception {
+    final Entry entry;
+    synchronized (databases) {
+      // remove older versions of the file
+      databases.keySet().removeIf(k -> k.file().equals(key.file()) && (
+          k.lastModified() != key.lastModified() || k.length() != key.length()));
+      entry = databases.computeIfAbsent(key, k -> new Entry());
+    }
+
+    // other tasks that need the same database wait for the first one to load it
+    synchronized (entry) {
+      CompoundDatabaseIndex<CompoundDBAnnotation> database = entry.database.get();
+      if (database == null) {
+        database = loader.load();
+        if (database != null) {
+          entry.database = new SoftReference<>(database);
+        }
+      }
+      return database;
+    }
+  }
+
+  /**
+   * @param file           the database file
+   * @param lastModified   last modification time of the file
+   * @param length         the file size
+   * @param fieldSeparator the field separator
+   * @param columns        the selected columns and their data types
+   * @param adducts        the adducts of the ion library or an empty list
+   */
+  record Key(File file, long lastModified, long length, String fieldSeparator,
+             List<String> columns, List<String> adducts) {
+
+  }
+
+  /**
+   * Loads a database
+   */
+  @FunctionalInterface
+  interface Loader {
+
+    /**
+     * @return the database or null if it cannot be loaded or loading was canceled
+     */
+    @Nullable
+    CompoundDatabaseIndex<CompoundDBAnnotation> load() throws Exception;
+  }
+
+  private static class Entry {
+
+    private SoftReference<CompoundDatabaseIndex<CompoundDBAnnotation>> database =
+        new SoftReference<>(null);
+  }
+}
@@ -19,6 +19,7 @@
 package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
 
 import com.Ostermiller.util.CSVParser;
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
@@ -54,9 +55,11 @@ import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.CompoundDatabaseIndex;
 import io.github.mzmine.util.MathUtils;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -65,9 +68,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
@@ -84,8 +89,10 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   private final IonLibraryParameterSet ionLibraryParameterSet;
   private IonNetworkLibrary ionNetworkLibrary;
 
-  private String[][] databaseValues;
+  private int totalLines = 0;
   private int finishedLines = 0;
+  private int totalRows = 0;
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
   private FeatureList peakList;
 
   LocalCSVDatabaseSearchTask(FeatureList peakList, ParameterSet parameters,
@@ -117,10 +124,10 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
    */
   @Override
   public double getFinishedPercentage() {
-    if (databaseValues == null) {
-      return 0;
-    }
-    return ((double) finishedLines) / databaseValues.length;
+    // reading the database is the first half, if it was not cached
+    final double lines = totalLines == 0 ? 0 : (double) finishedLines / totalLines;
+    final double rows = totalRows == 0 ? 0 : (double) finishedRows.get() / totalRows;
+    return totalLines == 0 ? rows : (lines + rows) / 2;
   }
 
   /**
@@ -139,37 +146,56 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
     setStatus(TaskStatus.PROCESSING);
 
+    final CompoundDatabaseIndex<CompoundDBAnnotation> database;
     try {
       ionNetworkLibrary =
           ionLibraryParameterSet != null ? new IonNetworkLibrary(ionLibraryParameterSet,
               mzTolerance) : null;
-      // read database contents in memory
-      FileReader dbFileReader = new FileReader(dataBaseFile);
-      databaseValues = CSVParser.parse(dbFileReader, fieldSeparator.charAt(0));
-
-      List<ImportType> lineIds = findLineIds(importTypes, databaseValues[0]);
-
-//      peakList.addRowType(new CompoundDatabaseMatchesType());
-      finishedLines++;
-      for (; finishedLines < databaseValues.length; finishedLines++) {
-        if (isCanceled()) {
-          dbFileReader.close();
-          return;
-        }
-        try {
-          processOneLine(databaseValues[finishedLines], lineIds);
-        } catch (Exception e) {
-          logger.log(Level.FINE, "Exception while processing csv line " + finishedLines, e);
-        }
-      }
-      dbFileReader.close();
-
+      final List<String> columns = importTypes.stream().filter(ImportType::isSelected)
+          .map(t -> t.getCsvColumnName() + ":" + t.getDataType().getUniqueID()).toList();
+      final List<String> adducts = ionNetworkLibrary != null ? ionNetworkLibrary.getAllAdducts()
+          .stream().map(IonType::toString).toList() : List.of();
+      final LocalCSVDatabaseCache.Key key = new LocalCSVDatabaseCache.Key(
+          dataBaseFile.getAbsoluteFile(), dataBaseFile.lastModified(), dataBaseFile.length(),
+          fieldSeparator, columns, adducts);
+      database = LocalCSVDatabaseCache.getOrLoad(key, this::loadDatabase);
     } catch (Exception e) {
       logger.log(Level.WARNING, "Could not read file " + dataBaseFile, e);
       setStatus(TaskStatus.ERROR);
       setErrorMessage(e.toString());
       return;
     }
+    if (database == null || isCanceled() || getStatus() == TaskStatus.ERROR) {
+      return;
+    }
+
+    // match the rows in parallel and add the annotations in row order
+    final List<FeatureListRow> rows = new ArrayList<>(peakList.getRows());
+    totalRows = rows.size();
+    final List<List<CompoundDBAnnotation>> matches = rows.parallelStream().map(row -> {
+      if (isCanceled()) {
+        return List.<CompoundDBAnnotation>of();
+      }
+      final List<CompoundDBAnnotation> rowMatches = matchRow(database, row);
+      finishedRows.incrementAndGet();
+      return rowMatches;
+    }).toList();
+    if (isCanceled()) {
+      return;
+    }
+
+    for (int i = 0; i < rows.size(); i++) {
+      final FeatureListRow peakRow = rows.get(i);
+      final List<CompoundDBAnnotation> rowMatches = matches.get(i);
+      if (rowMatches.isEmpty()) {
+        continue;
+      }
+      for (CompoundDBAnnotation clone : rowMatches) {
+        peakRow.addCompoundAnnotation(clone);
+      }
+      peakRow.getCompoundAnnotations()
+          .sort(Comparator.comparingDouble(a -> Objects.requireNonNullElse(a.getScore(), 0f)));
+    }
 
     // Add task description to peakList
     peakList.addDescriptionOfAppliedTask(
@@ -180,44 +206,102 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
   }
 
-  private void processOneLine(String values[], List<ImportType> linesWithIndices) {
+  /**
+   * Reads the database file and creates the annotations of every line (and adduct, if an ion
+   * library is selected).
+   *
+   * @return the database or null if the task was canceled or the columns were not found
+   */
+  @Nullable
+  private CompoundDatabaseIndex<CompoundDBAnnotation> loadDatabase() throws IOException {
+    // read database contents in memory
+    final String[][] databaseValues;
+    try (FileReader dbFileReader = new FileReader(dataBaseFile)) {
+      databaseValues = CSVParser.parse(dbFileReader, fieldSeparator.charAt(0));
+    }
+
+    List<ImportType> lineIds = findLineIds(importTypes, databaseValues[0]);
+    if (getStatus() == TaskStatus.ERROR) {
+      return null;
+    }
+
+    totalLines = databaseValues.length;
+    final List<CompoundDBAnnotation> annotations = new ArrayList<>();
+    finishedLines++;
+    for (; finishedLines < databaseValues.length; finishedLines++) {
+      if (isCanceled()) {
+        return null;
+      }
+      try {
+        annotations.addAll(processOneLine(databaseValues[finishedLines], lineIds));
+      } catch (Exception e) {
+        logger.log(Level.FINE, "Exception while processing csv line " + finishedLines, e);
+      }
+    }
+
+    return new CompoundDatabaseIndex<>(annotations, CompoundDBAnnotation::getPrecursorMZ,
+        CompoundDBAnnotation::getRT, CompoundDBAnnotation::getMobility, true);
+  }
+
+  private List<CompoundDBAnnotation> processOneLine(String values[],
+      List<ImportType> linesWithIndices) {
 
     final CompoundDBAnnotation baseAnnotation = getCompoundFromLine(values, linesWithIndices);
-    final List<CompoundDBAnnotation> annotations = new ArrayList<>();
     if (ionNetworkLibrary != null) {
-      annotations.addAll(
-          CompoundDBAnnotation.buildCompoundsWithAdducts(baseAnnotation, ionNetworkLibrary));
+      return CompoundDBAnnotation.buildCompoundsWithAdducts(baseAnnotation, ionNetworkLibrary);
     } else {
-      annotations.add(baseAnnotation);
+      return List.of(baseAnnotation);
     }
+  }
 
-    for (CompoundDBAnnotation annotation : annotations) {
-      for (FeatureListRow peakRow : peakList.getRows()) {
-        if (annotation.matches(peakRow, mzTolerance, rtTolerance, mobTolerance, ccsTolerance)) {
-          final CompoundDBAnnotation clone = annotation.clone();
-          final Float score = clone.getScore(peakRow, mzTolerance, rtTolerance, mobTolerance,
-              ccsTolerance);
-          clone.put(CompoundAnnotationScoreType.class, score);
-          clone.put(MzPpmDifferenceType.class,
-              (float) MathUtils.getPpmDiff(Objects.requireNonNullElse(clone.getPrecursorMZ(), 0d),
-                  peakRow.getAverageMZ()));
-          if (annotation.get(CCSType.class) != null && peakRow.getAverageCCS() != null) {
-            clone.put(CCSRelativeErrorType.class,
-                PercentTolerance.getPercentError(annotation.get(CCSType.class),
-                    peakRow.getAverageCCS()));
-          }
-          if (annotation.get(RTType.class) != null && peakRow.getAverageRT() != null) {
-            clone.put(RtRelativeErrorType.class,
-                PercentTolerance.getPercentError(annotation.get(RTType.class),
-                    peakRow.getAverageRT()));
-          }
+  /**
+   * @return the matching annotations of the row in database order, cloned and scored
+   */
+  private List<CompoundDBAnnotation> matchRow(CompoundDatabaseIndex<CompoundDBAnnotation> database,
+      FeatureListRow peakRow) {
+    final Double rowMz = peakRow.getAverageMZ();
+    final Float rowRt = peakRow.getAverageRT();
+    final Float rowMobility = peakRow.getAverageMobility();
+
+    // rows without m/z only match database entries without m/z
+    final Range<Double> mzRange =
+        rowMz != null ? mzTolerance.getToleranceRange(rowMz) : Range.closedOpen(0d, 0d);
+    final Range<Float> rtRange =
+        rtTolerance != null && rowRt != null ? rtTolerance.getToleranceRange(rowRt) : null;
+    // the mobility tolerance is centered on the database value, slightly wider to be safe
+    final Range<Float> mobilityRange;
+    if (mobTolerance != null && rowMobility != null) {
+      final float tolerance = mobTolerance.getTolerance() * 1.001f;
+      mobilityRange = Range.closed(rowMobility - tolerance, rowMobility + tolerance);
+    } else {
+      mobilityRange = null;
+    }
 
-          peakRow.addCompoundAnnotation(clone);
-          peakRow.getCompoundAnnotations()
-              .sort(Comparator.comparingDouble(a -> Objects.requireNonNullElse(a.getScore(), 0f)));
+    final List<CompoundDBAnnotation> matches = new ArrayList<>();
+    for (CompoundDBAnnotation annotation : database.getCandidates(mzRange, rtRange,
+        mobilityRange)) {
+      if (annotation.matches(peakRow, mzTolerance, rtTolerance, mobTolerance, ccsTolerance)) {
+        final CompoundDBAnnotation clone = annotation.clone();
+        final Float score = clone.getScore(peakRow, mzTolerance, rtTolerance, mobTolerance,
+            ccsTolerance);
+        clone.put(CompoundAnnotationScoreType.class, score);
+        clone.put(MzPpmDifferenceType.class,
+            (float) MathUtils.getPpmDiff(Objects.requireNonNullElse(clone.getPrecursorMZ(), 0d),
+                peakRow.getAverageMZ()));
+        if (annotation.get(CCSType.class) != null && peakRow.getAverageCCS() != null) {
+          clone.put(CCSRelativeErrorType.class,
+              PercentTolerance.getPercentError(annotation.get(CCSType.class),
+                  peakRow.getAverageCCS()));
+        }
+        if (annotation.get(RTType.class) != null && peakRow.getAverageRT() != null) {
+          clone.put(RtRelativeErrorType.class,
+              PercentTolerance.getPercentError(annotation.get(RTType.class),
+                  peakRow.getAverageRT()));
         }
+        matches.add(clone);
       }
     }
+    return matches;
   }
 
   @NotNull
@@ -18,20 +18,20 @@
 
 package io.github.mzmine.modules.dataprocessing.id_precursordbsearch;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
-import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.CompoundDatabaseIndex;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
 import io.github.mzmine.util.spectraldb.entry.PrecursorDBFeatureIdentity;
 import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
 import io.github.mzmine.util.spectraldb.parser.AutoLibraryParser;
-import io.github.mzmine.util.spectraldb.parser.LibraryEntryProcessor;
 import io.github.mzmine.util.spectraldb.parser.UnsupportedFormatException;
 import java.io.File;
 import java.io.IOException;
@@ -42,6 +42,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Search for possible precursor m/z . All rows average m/z against local spectral libraries
@@ -60,9 +61,10 @@ class PrecursorDBSearchTask extends AbstractTask {
   private boolean useRT;
   private RTTolerance rtTol;
 
-  private List<AbstractTask> tasks;
-  private int totalTasks;
-  private AtomicInteger matches = new AtomicInteger(0);
+  private AutoLibraryParser parser;
+  private int totalRows;
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
+  private final AtomicInteger matches = new AtomicInteger(0);
 
   public PrecursorDBSearchTask(FeatureList peakList, ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // no new data stored -> null
@@ -81,9 +83,11 @@ class PrecursorDBSearchTask extends AbstractTask {
    */
   @Override
   public double getFinishedPercentage() {
-    if (totalTasks == 0 || tasks == null)
+    if (parser == null)
       return 0;
-    return ((double) totalTasks - tasks.size()) / totalTasks;
+    // parsing is the first half
+    final double rows = totalRows == 0 ? 0 : finishedRows.get() / (double) totalRows;
+    return (parser.getProgress() + rows) / 2;
   }
 
   /**
@@ -101,38 +105,52 @@ class PrecursorDBSearchTask extends AbstractTask {
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
-    int count = 0;
+    final List<SpectralDBEntry> entries;
     try {
-      tasks = parseFile(dataBaseFile);
-      totalTasks = tasks.size();
-      if (!tasks.isEmpty()) {
-        // wait for the tasks to finish
-        while (!isCanceled() && !tasks.isEmpty()) {
-          for (int i = 0; i < tasks.size(); i++) {
-            if (tasks.get(i).isFinished() || tasks.get(i).isCanceled()) {
-              tasks.remove(i);
-              i--;
-            }
-          }
-          // wait for all sub tasks to finish
-          try {
-            Thread.sleep(100);
-          } catch (Exception e) {
-            cancel();
-          }
-        }
-        // cancelled
-        if (isCanceled()) {
-          tasks.stream().forEach(AbstractTask::cancel);
-        }
-      } else {
-        setStatus(TaskStatus.ERROR);
-        setErrorMessage("DB file was empty - or error while parsing " + dataBaseFile);
-      }
+      entries = parseFile(dataBaseFile);
     } catch (Exception e) {
       logger.log(Level.SEVERE, "Could not read file " + dataBaseFile, e);
       setStatus(TaskStatus.ERROR);
       setErrorMessage(e.toString());
+      return;
+    }
+    if (isCanceled()) {
+      return;
+    }
+    if (entries.isEmpty()) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("DB file was empty - or error while parsing " + dataBaseFile);
+      return;
+    }
+
+    // entries without RT are used for all rows
+    final CompoundDatabaseIndex<SpectralDBEntry> database = new CompoundDatabaseIndex<>(entries,
+        SpectralDBEntry::getPrecursorMZ,
+        useRT && rtTol != null ? PrecursorDBSearchTask::getRT : null, null, false);
+
+    // match the rows in parallel and add the identities in row order
+    final List<FeatureListRow> rows = new ArrayList<>(peakList.getRows());
+    totalRows = rows.size();
+    final List<List<SpectralDBEntry>> rowMatches = rows.parallelStream().map(row -> {
+      if (isCanceled()) {
+        return List.<SpectralDBEntry>of();
+      }
+      final List<SpectralDBEntry> candidates = findMatches(database, row);
+      finishedRows.incrementAndGet();
+      return candidates;
+    }).toList();
+    if (isCanceled()) {
+      return;
+    }
+
+    for (int i = 0; i < rows.size(); i++) {
+      final FeatureListRow row = rows.get(i);
+      for (SpectralDBEntry db : rowMatches.get(i)) {
+        // add identity
+        row.addFeatureIdentity(
+            new PrecursorDBFeatureIdentity(db, PrecursorDBSearchModule.MODULE_NAME), false);
+        matches.getAndIncrement();
+      }
     }
     logger.info("Added " + matches.get() + " matches to possible precursors in library: "
         + dataBaseFile.getAbsolutePath());
@@ -145,71 +163,57 @@ class PrecursorDBSearchTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * @return the library entries that match the row in library order
+   */
+  private List<SpectralDBEntry> findMatches(CompoundDatabaseIndex<SpectralDBEntry> database,
+      FeatureListRow row) {
+    final Double mz = row.getAverageMZ();
+    if (mz == null) {
+      return List.of();
+    }
+    final Float rt = row.getAverageRT();
+    final Range<Float> rtRange = useRT && rtTol != null && rt != null ? rtTol.getToleranceRange(rt)
+        : null;
+
+    final List<SpectralDBEntry> matching = new ArrayList<>();
+    for (SpectralDBEntry db : database.getCandidates(mzTol.getToleranceRange(mz), rtRange, null)) {
+      if (checkRT(row, getRT(db)) && checkMZ(row, db.getPrecursorMZ())) {
+        matching.add(db);
+      }
+    }
+    return matching;
+  }
+
+  @Nullable
+  private static Float getRT(SpectralDBEntry entry) {
+    return entry.getField(DBEntryField.RT).orElse(null) instanceof Number rt ? rt.floatValue()
+        : null;
+  }
+
   /**
    * Load all library entries from data base file
-   * 
+   *
    * @param dataBaseFile
-   * @return
+   * @return all entries in library order
    */
-  private List<AbstractTask> parseFile(File dataBaseFile)
+  private List<SpectralDBEntry> parseFile(File dataBaseFile)
       throws UnsupportedFormatException, IOException {
-    //
-    List<AbstractTask> tasks = new ArrayList<>();
-    AutoLibraryParser parser = new AutoLibraryParser(100, new LibraryEntryProcessor() {
-      @Override
-      public void processNextEntries(List<SpectralDBEntry> list, int alreadyProcessed) {
-
-        AbstractTask task = new AbstractTask(null, Instant.now()) {
-          private int total = peakList.getNumberOfRows();
-          private int done = 0;
-
-          @Override
-          public void run() {
-            for (FeatureListRow row : peakList.getRows()) {
-              if (this.isCanceled())
-                break;
-              for (SpectralDBEntry db : list) {
-                if (this.isCanceled())
-                  break;
-
-                if (checkRT(row, (Float) db.getField(DBEntryField.RT).orElse(null))
-                    && checkMZ(row, db.getPrecursorMZ())) {
-                  // add identity
-                  row.addFeatureIdentity(
-                      new PrecursorDBFeatureIdentity(db, PrecursorDBSearchModule.MODULE_NAME), false);
-                  matches.getAndIncrement();
-                }
-              }
-              done++;
-            }
-
-            if (!this.isCanceled())
-              setStatus(TaskStatus.FINISHED);
-          }
-
-          @Override
-          public String getTaskDescription() {
-            return "Checking for precursors: " + alreadyProcessed + 1 + " - " + alreadyProcessed
-                + list.size();
-          }
-
-          @Override
-          public double getFinishedPercentage() {
-            if (total == 0)
-              return 0;
-            return done / (double) total;
-          }
-        };
-
-        // start last task
-        MZmineCore.getTaskController().addTask(task);
-        tasks.add(task);
+    final List<SpectralDBEntry> entries = new ArrayList<>();
+    parser = new AutoLibraryParser(100, (list, alreadyProcessed) -> {
+      synchronized (entries) {
+        // the first batch of a parser, json files are tried with multiple parsers
+        if (alreadyProcessed == 0) {
+          entries.clear();
+        }
+        entries.addAll(list);
       }
     });
 
-    // return tasks
-    parser.parse(this, dataBaseFile);
-    return tasks;
+    if (!parser.parse(this, dataBaseFile)) {
+      return List.of();
+    }
+    return entries;
   }
 
   protected boolean checkMZ(FeatureListRow row, Double mz) {
@@ -218,7 +222,8 @@ class PrecursorDBSearchTask extends AbstractTask {
 
   protected boolean checkRT(FeatureListRow row, Float rt) {
     // if no rt is in the library still use
-    return !useRT || rtTol == null || rtTol.checkWithinTolerance(row.getAverageRT(), rt);
+    return !useRT || rtTol == null || rt == null || row.getAverageRT() == null
+        || rtTol.checkWithinTolerance(row.getAverageRT(), rt);
   }
 
 }
@@ -54,6 +54,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -66,10 +67,15 @@ public class RowsSpectralMatchTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(RowsSpectralMatchTask.class.getName());
   private static final String METHOD = "Spectral library search";
+  // reusable arrays of the primitive pre-check of each thread
+  private static final ThreadLocal<MatchBuffers> MATCH_BUFFERS = ThreadLocal.withInitial(
+      MatchBuffers::new);
   protected final List<FeatureListRow> rows;
   protected final AtomicInteger finishedRows = new AtomicInteger(0);
   protected final ParameterSet parameters;
   protected final List<SpectralLibrary> libraries;
+  // combined entries of all libraries
+  protected final List<SpectralDBEntry> entries;
   protected final String librariesJoined;
   // in some cases this task is only going to run on one scan
   protected final Scan scan;
@@ -79,6 +85,8 @@ public class RowsSpectralMatchTask extends AbstractTask {
   protected final RTTolerance rtTolerance;
   protected final PercentTolerance ccsTolerance;
   private final AtomicInteger errorCounter = new AtomicInteger(0);
+  // number of library entries that passed the precursor index and were compared
+  private final AtomicLong comparedCandidates = new AtomicLong(0);
   private final boolean useRT;
   private final int totalRows;
   private final int msLevel;
@@ -108,6 +116,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
     this.rows = null;
     this.libraries = parameters.getValue(SingleSpectrumLibrarySearchParameters.libraries)
         .getMatchingLibraries();
+    this.entries = combineEntries(libraries);
     this.librariesJoined = libraries.stream().map(SpectralLibrary::getName)
         .collect(Collectors.joining(", "));
     this.description = String.format("Spectral library matching for Scan %s in %d libraries: %s",
@@ -158,6 +167,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
     this.scan = null;
     this.libraries = parameters.getValue(SpectralLibrarySearchParameters.libraries)
         .getMatchingLibraries();
+    this.entries = combineEntries(libraries);
     this.librariesJoined = libraries.stream().map(SpectralLibrary::getName)
         .collect(Collectors.joining(", "));
     this.description = String.format("Spectral library matching for %d rows in %d libraries: %s",
@@ -257,18 +267,12 @@ public class RowsSpectralMatchTask extends AbstractTask {
   @Override
   public void run() {
 
-    // combine libraries
-    List<SpectralDBEntry> entries = new ArrayList<>();
-    for (var lib : libraries) {
-      entries.addAll(lib.getEntries());
-    }
-
     // run on spectra
     if (scan != null) {
       logger.info(
           () -> String.format("Comparing %d library spectra to scan: %s", entries.size(), scan));
 
-      matchScan(entries, scan);
+      matchScan(scan);
 
       logger.info(
           () -> String.format("library matches=%d (Errors:%d); library entries=%d; for scan: %s",
@@ -279,34 +283,43 @@ public class RowsSpectralMatchTask extends AbstractTask {
     if (rows != null) {
       logger.info(() -> String.format("Comparing %d library spectra to %d feature list rows",
           entries.size(), totalRows));
+      final long start = System.currentTimeMillis();
       rows.stream().parallel().forEach(row -> {
         if (!isCanceled()) {
-          matchRowToLibraries(entries, row);
+          matchRowToLibraries(row);
           finishedRows.incrementAndGet();
         }
       });
 
       logger.info(() -> String.format("library matches=%d (Errors:%d); rows=%d; library entries=%d",
           getCount(), getErrorCount(), totalRows, entries.size()));
+      if (usePrecursorIndex() && finishedRows.get() > 0) {
+        final double candidatesPerRow = comparedCandidates.get() / (double) finishedRows.get();
+        logger.info(() -> String.format(
+            "Precursor index: %.1f library candidates per row instead of %d library entries "
+            + "(%.0f-fold fewer comparisons) in %d ms", candidatesPerRow, entries.size(),
+            entries.size() / Math.max(candidatesPerRow, 1d), System.currentTimeMillis() - start));
+      }
     }
 
   }
 
   /**
-   * Match row against all entries, add matches, sort them by score
+   * Match scan against all entries of the libraries of this task, add matches, sort them by score.
+   * Only the precursor candidates of the library indices are compared if a precursor m/z tolerance
+   * is applied.
    *
-   * @param entries combined library entries
-   * @param scan    target scan
+   * @param scan target scan
    */
-  public void matchScan(List<SpectralDBEntry> entries, Scan scan) {
+  public void matchScan(Scan scan) {
     try {
       // get mass list and perform deisotoping if active
-      DataPoint[] masses = getDataPoints(scan, true);
+      QuerySpectrum masses = new QuerySpectrum(getDataPoints(scan, true));
 
       // get a ccs for the precursor of this scan
       final Float precursorCCS = getPrecursorCCSFromMsMs(scan);
 
-      for (var entry : entries) {
+      for (var entry : getCandidates(scanPrecursorMZ)) {
         final SpectralSimilarity sim = matchSpectrum(scan.getRetentionTime(), scanPrecursorMZ,
             precursorCCS, masses, entry);
         if (sim != null) {
@@ -355,28 +368,29 @@ public class RowsSpectralMatchTask extends AbstractTask {
   }
 
   /**
-   * Match row against all entries, add matches, sort them by score
+   * Match row against all entries of the libraries of this task, add matches, sort them by score.
+   * Only the precursor candidates of the library indices are compared if a precursor m/z tolerance
+   * is applied.
    *
-   * @param entries combined library entries
-   * @param row     target row
+   * @param row target row
    */
-  public void matchRowToLibraries(List<SpectralDBEntry> entries, FeatureListRow row) {
+  public void matchRowToLibraries(FeatureListRow row) {
     try {
       // All MS2 or only best MS2 scan
       // best MS1 scan
       // check for MS1 or MSMS scan
       List<Scan> scans = getScans(row);
-      List<DataPoint[]> rowMassLists = new ArrayList<>();
+      List<QuerySpectrum> rowMassLists = new ArrayList<>();
       for (Scan scan : scans) {
         // get mass list and perform deisotoping if active
         DataPoint[] rowMassList = getDataPoints(scan, true);
-        rowMassLists.add(rowMassList);
+        rowMassLists.add(new QuerySpectrum(rowMassList));
       }
 
       final Float rowCCS = row.getAverageCCS();
       List<SpectralDBAnnotation> ids = null;
-      // match against all library entries
-      for (SpectralDBEntry ident : entries) {
+      // match against all library entries with a matching precursor m/z
+      for (SpectralDBEntry ident : getCandidates(row.getAverageMZ())) {
         final Float libCCS = ident.getOrElse(DBEntryField.CCS, null);
         SpectralDBAnnotation best = null;
         // match all scans against this ident to find best match
@@ -414,6 +428,43 @@ public class RowsSpectralMatchTask extends AbstractTask {
     }
   }
 
+  private static List<SpectralDBEntry> combineEntries(List<SpectralLibrary> libraries) {
+    List<SpectralDBEntry> entries = new ArrayList<>();
+    for (var lib : libraries) {
+      entries.addAll(lib.getEntries());
+    }
+    return entries;
+  }
+
+  /**
+   * The precursor index is used for MS2 matching, where library entries need a matching precursor
+   * m/z
+   */
+  private boolean usePrecursorIndex() {
+    return msLevel > 1 && mzTolerancePrecursor != null;
+  }
+
+  /**
+   * Filters the library entries by their precursor m/z before any spectral similarity is
+   * calculated. The candidates keep the order of the combined library entries, so the results
+   * equal a comparison to all entries.
+   *
+   * @param precursorMZ the precursor m/z of the query
+   * @return the candidates of all libraries or all entries if no precursor m/z is required
+   */
+  private List<SpectralDBEntry> getCandidates(double precursorMZ) {
+    if (!usePrecursorIndex()) {
+      return entries;
+    }
+    final List<SpectralDBEntry> candidates = new ArrayList<>();
+    for (SpectralLibrary library : libraries) {
+      candidates.addAll(
+          library.getPrecursorIndex().getPrecursorCandidates(precursorMZ, mzTolerancePrecursor));
+    }
+    comparedCandidates.addAndGet(candidates.size());
+    return candidates;
+  }
+
   /**
    * Remove 13C isotopes from masslist
    */
@@ -431,11 +482,11 @@ public class RowsSpectralMatchTask extends AbstractTask {
    * @return spectral similarity or null if no match
    */
   private SpectralSimilarity matchSpectrum(Float rowRT, double rowMZ, Float rowCCS,
-      DataPoint[] rowMassList, SpectralDBEntry ident) {
+      QuerySpectrum rowMassList, SpectralDBEntry ident) {
     // retention time
     // MS level 1 or check precursorMZ
     if (checkRT(rowRT, ident) && (msLevel == 1 || checkPrecursorMZ(rowMZ, ident)) && checkCCS(
-        rowCCS, ident)) {
+        rowCCS, ident) && isPotentialMatch(rowMassList, ident)) {
       DataPoint[] library = ident.getDataPoints();
       if (removeIsotopes) {
         library = removeIsotopes(library);
@@ -444,7 +495,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
       // crop the spectra to their overlapping mz range
       // helpful when comparing spectra, acquired with different
       // fragmentation energy
-      DataPoint[] query = rowMassList;
+      DataPoint[] query = rowMassList.dataPoints;
       if (cropSpectraToOverlap) {
         DataPoint[][] cropped = ScanAlignment.cropToOverlap(mzToleranceSpectra, library, query);
         library = cropped[0];
@@ -466,6 +517,95 @@ public class RowsSpectralMatchTask extends AbstractTask {
     return null;
   }
 
+  /**
+   * Checks the spectra on the primitive values before the data points of the library entry are
+   * created and aligned. Applies the same cropping and precursor removal as
+   * {@link #matchSpectrum(Float, double, Float, QuerySpectrum, SpectralDBEntry)}. Deisotoping works
+   * on data points and spectra that are not sorted by m/z are sorted by the similarity function,
+   * both are left to the full comparison.
+   *
+   * @return false if the spectra cannot match
+   */
+  private boolean isPotentialMatch(QuerySpectrum query, SpectralDBEntry ident) {
+    if (removeIsotopes || !query.sorted) {
+      return true;
+    }
+    int libraryN = ident.getNumberOfDataPoints();
+    int queryN = query.mzs.length;
+    final MatchBuffers buffers = MATCH_BUFFERS.get();
+    buffers.ensureCapacity(Math.max(libraryN, queryN));
+    final double[] libraryMzs = ident.getMzValues(buffers.libraryMzs);
+    for (int i = 1; i < libraryN; i++) {
+      if (libraryMzs[i - 1] > libraryMzs[i]) {
+        return true;
+      }
+    }
+    final double[] libraryIntensities = ident.getIntensityValues(buffers.libraryIntensities);
+    final double[] queryMzs = buffers.queryMzs;
+    final double[] queryIntensities = buffers.queryIntensities;
+    System.arraycopy(query.mzs, 0, queryMzs, 0, queryN);
+    System.arraycopy(query.intensities, 0, queryIntensities, 0, queryN);
+
+    if (cropSpectraToOverlap) {
+      // no overlap is left to the full comparison, see ScanAlignment#getOverlapMZ
+      if (libraryN == 0 || queryN == 0 || libraryMzs[0] > queryMzs[queryN - 1]
+          || queryMzs[0] > libraryMzs[libraryN - 1]) {
+        return true;
+      }
+      double lower = Math.max(libraryMzs[0], queryMzs[0]);
+      double upper = Math.min(libraryMzs[libraryN - 1], queryMzs[queryN - 1]);
+      lower = mzToleranceSpectra.getToleranceRange(lower).lowerEndpoint();
+      upper = mzToleranceSpectra.getToleranceRange(upper).upperEndpoint();
+      libraryN = cropToRange(libraryMzs, libraryIntensities, libraryN, lower, upper);
+      queryN = cropToRange(queryMzs, queryIntensities, queryN, lower, upper);
+    }
+
+    if (msLevel > 1 && removePrecursor && ident.getPrecursorMZ() != null) {
+      double precursorMZ = ident.getPrecursorMZ();
+      libraryN = removePrecursor(libraryMzs, libraryIntensities, libraryN, precursorMZ);
+      queryN = removePrecursor(queryMzs, queryIntensities, queryN, precursorMZ);
+    }
+
+    return simFunction.getModule()
+        .isPotentialMatch(simFunction.getParameterSet(), mzToleranceSpectra, minMatch, libraryMzs,
+            libraryIntensities, libraryN, queryMzs, queryIntensities, queryN);
+  }
+
+  /**
+   * Keeps the signals within [lower, upper] at the start of the arrays
+   *
+   * @return the number of remaining signals
+   */
+  private static int cropToRange(double[] mzs, double[] intensities, int n, double lower,
+      double upper) {
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      if (mzs[i] >= lower && mzs[i] <= upper) {
+        mzs[size] = mzs[i];
+        intensities[size] = intensities[i];
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Keeps the signals outside the precursor tolerance at the start of the arrays
+   *
+   * @return the number of remaining signals
+   */
+  private int removePrecursor(double[] mzs, double[] intensities, int n, double precursorMZ) {
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      if (!mzTolerancePrecursor.checkWithinTolerance(mzs[i], precursorMZ)) {
+        mzs[size] = mzs[i];
+        intensities[size] = intensities[i];
+        size++;
+      }
+    }
+    return size;
+  }
+
   private boolean checkCCS(Float rowCCS, SpectralDBEntry ident) {
     return ccsTolerance == null || ccsTolerance.matches(rowCCS,
         ident.getOrElse(DBEntryField.CCS, null));
@@ -568,4 +708,48 @@ public class RowsSpectralMatchTask extends AbstractTask {
   public int getErrorCount() {
     return errorCounter.get();
   }
+
+  /**
+   * Mass list of a query scan with its primitive values for the pre-check of library entries
+   */
+  private static class QuerySpectrum {
+
+    private final DataPoint[] dataPoints;
+    private final double[] mzs;
+    private final double[] intensities;
+    private final boolean sorted;
+
+    private QuerySpectrum(DataPoint[] dataPoints) {
+      this.dataPoints = dataPoints;
+      mzs = new double[dataPoints.length];
+      intensities = new double[dataPoints.length];
+      boolean sorted = true;
+      for (int i = 0; i < dataPoints.length; i++) {
+        mzs[i] = dataPoints[i].getMZ();
+        intensities[i] = dataPoints[i].getIntensity();
+        sorted = sorted && (i == 0 || mzs[i - 1] <= mzs[i]);
+      }
+      this.sorted = sorted;
+    }
+  }
+
+  /**
+   * Library and query values of the pre-check, grown to the largest spectrum of a thread
+   */
+  private static class MatchBuffers {
+
+    private double[] libraryMzs = new double[0];
+    private double[] libraryIntensities = new double[0];
+    private double[] queryMzs = new double[0];
+    private double[] queryIntensities = new double[0];
+
+    private void ensureCapacity(int n) {
+      if (libraryMzs.length < n) {
+        libraryMzs = new double[n];
+        libraryIntensities = new double[n];
+        queryMzs = new double[n];
+        queryIntensities = new double[n];
+      }
+    }
+  }
 }
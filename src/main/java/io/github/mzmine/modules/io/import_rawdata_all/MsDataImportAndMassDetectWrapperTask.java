@@ -137,6 +137,10 @@ public class MsDataImportAndMassDetectWrapperTask extends AbstractTask {
       return;
     }
 
+    if (storage != null) {
+      // the storage is shared by all files of the import
+      storage.logSpectraCompression("mass lists (" + newMZmineFile.getName() + " finished)");
+    }
     this.setStatus(TaskStatus.FINISHED);
   }
 }
@@ -41,6 +41,7 @@ import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetecto
 import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.MzMLFileImportMethod;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.impl.IMSRawDataFileImpl;
 import io.github.mzmine.project.impl.RawDataFileImpl;
@@ -55,12 +56,18 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -87,6 +94,19 @@ public class MSDKmzMLImportTask extends AbstractTask {
   private MZmineProcessingStep<MassDetector> ms1Detector = null;
   private MZmineProcessingStep<MassDetector> ms2Detector = null;
 
+  private static final int SCANS_PER_CHUNK = 32;
+  private static final int DECODE_THREADS = Runtime.getRuntime().availableProcessors();
+  private static final int MAX_WAITING_CHUNKS = DECODE_THREADS * 2;
+  private static final AtomicInteger threadCounter = new AtomicInteger(0);
+  // shared by all imports, so that many files imported in parallel do not oversubscribe the cores
+  private static final ExecutorService decodeExecutor = Executors.newFixedThreadPool(
+      DECODE_THREADS, r -> {
+        final Thread thread = new Thread(r,
+            "mzML decode thread " + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
   public static final Pattern watersPattern = Pattern.compile(
       "function=([1-9]+) process=[\\d]+ scan=[\\d]+");
 
@@ -172,6 +192,10 @@ public class MSDKmzMLImportTask extends AbstractTask {
       return;
     }
 
+    if (isCanceled()) {
+      return;
+    }
+
     if (parsedScans == 0) {
       setStatus(TaskStatus.ERROR);
       setErrorMessage("No scans found");
@@ -203,44 +227,103 @@ public class MSDKmzMLImportTask extends AbstractTask {
     super.cancel();
   }
 
+  /**
+   * Decodes the scans in chunks on the decode threads and adds them to the new file in scan
+   * order. The number of decoded chunks that wait to be added is limited to keep the memory of the
+   * decoded data points low.
+   */
   public void buildLCMSFile(io.github.msdk.datamodel.RawDataFile file, RawDataFile newMZmineFile)
       throws IOException {
-    for (MsScan scan : file.getScans()) {
-      MzMLMsScan mzMLScan = (MzMLMsScan) scan;
-
-      Scan newScan = null;
-
-      if (applyMassDetection) {
-        // wrap scan
-        MsdkScanWrapper wrapper = new MsdkScanWrapper(scan);
-        double[][] mzIntensities = null;
+    final List<MsScan> scans = file.getScans();
+    final ArrayDeque<CompletableFuture<Scan[]>> chunks = new ArrayDeque<>();
+    int nextChunkStart = 0;
+    try {
+      while (nextChunkStart < scans.size() || !chunks.isEmpty()) {
+        while (nextChunkStart < scans.size() && chunks.size() < MAX_WAITING_CHUNKS) {
+          final List<MsScan> chunk = scans.subList(nextChunkStart,
+              Math.min(nextChunkStart + SCANS_PER_CHUNK, scans.size()));
+          chunks.add(CompletableFuture.supplyAsync(() -> convertScans(chunk, newMZmineFile),
+              decodeExecutor));
+          nextChunkStart += chunk.size();
+        }
+        if (isCanceled()) {
+          return;
+        }
 
-        // apply mass detection
-        if (ms1Detector != null && wrapper.getMSLevel() == 1) {
-          mzIntensities = applyMassDetection(ms1Detector, wrapper);
-        } else if (ms2Detector != null && wrapper.getMSLevel() >= 2) {
-          mzIntensities = applyMassDetection(ms2Detector, wrapper);
+        for (Scan newScan : joinChunk(chunks.poll())) {
+          newMZmineFile.addScan(newScan);
+          parsedScans++;
         }
+        description =
+            "Importing " + this.file.getName() + ", parsed " + parsedScans + "/" + totalScans
+                + " scans";
+      }
+    } finally {
+      // only if canceled or failed
+      chunks.forEach(chunk -> chunk.cancel(false));
+    }
+  }
+
+  private static Scan[] joinChunk(CompletableFuture<Scan[]> chunk) {
+    try {
+      return chunk.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw e;
+    }
+  }
 
-        if (mzIntensities != null) {
-          // create mass list and scan. Override data points and spectrum type
-          newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan, mzIntensities[0],
-              mzIntensities[1], MassSpectrumType.CENTROIDED);
-          ScanPointerMassList newMassList = new ScanPointerMassList(newScan);
-          newScan.addMassList(newMassList);
+  /**
+   * Runs on a decode thread. The scans of a memory mapped file share one input stream that keeps
+   * the read position, so every chunk reads from its own copy of the stream.
+   */
+  private Scan[] convertScans(List<MsScan> chunk, RawDataFile newMZmineFile) {
+    final Scan[] newScans = new Scan[chunk.size()];
+    ByteBufferInputStream source = null;
+    ByteBufferInputStream copy = null;
+    for (int i = 0; i < newScans.length; i++) {
+      final MzMLMsScan mzMLScan = (MzMLMsScan) chunk.get(i);
+      if (mzMLScan.getInputStream() instanceof ByteBufferInputStream stream) {
+        if (stream != source && stream != copy) {
+          source = stream;
+          copy = stream.copy();
         }
+        mzMLScan.setInputStream(copy);
       }
 
-      if (newScan == null) {
-        newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan);
+      newScans[i] = convertScan(mzMLScan, newMZmineFile);
+      // the data points are stored in the new scan
+      mzMLScan.releaseDecodedValues();
+    }
+    return newScans;
+  }
+
+  private Scan convertScan(MzMLMsScan mzMLScan, RawDataFile newMZmineFile) {
+    if (applyMassDetection) {
+      // wrap scan
+      MsdkScanWrapper wrapper = new MsdkScanWrapper(mzMLScan);
+      double[][] mzIntensities = null;
+
+      // apply mass detection
+      if (ms1Detector != null && wrapper.getMSLevel() == 1) {
+        mzIntensities = applyMassDetection(ms1Detector, wrapper);
+      } else if (ms2Detector != null && wrapper.getMSLevel() >= 2) {
+        mzIntensities = applyMassDetection(ms2Detector, wrapper);
       }
 
-      newMZmineFile.addScan(newScan);
-      parsedScans++;
-      description =
-          "Importing " + this.file.getName() + ", parsed " + parsedScans + "/" + totalScans
-              + " scans";
+      if (mzIntensities != null) {
+        // create mass list and scan. Override data points and spectrum type
+        Scan newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan,
+            mzIntensities[0], mzIntensities[1], MassSpectrumType.CENTROIDED);
+        ScanPointerMassList newMassList = new ScanPointerMassList(newScan);
+        newScan.addMassList(newMassList);
+        return newScan;
+      }
     }
+
+    return ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan);
   }
 
   public void buildIonMobilityFile(io.github.msdk.datamodel.RawDataFile file,
@@ -27,6 +27,7 @@ import io.github.msdk.spectra.centroidprofiledetection.SpectrumTypeDetectionAlgo
 import io.github.msdk.util.MsSpectrumUtil;
 import io.github.msdk.util.tolerances.MzTolerance;
 import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -288,6 +289,20 @@ public class MzMLMsScan implements MsScan {
     return array;
   }
 
+  /**
+   * <p>
+   * Releases the decoded m/z and intensity values of a scan that is read from a memory mapped
+   * file. The values are decoded again on the next access. Values that were decoded from a stream
+   * during parsing are kept, because they cannot be read again.
+   * </p>
+   */
+  public void releaseDecodedValues() {
+    if (inputStream instanceof ByteBufferInputStream) {
+      mzValues = null;
+      intensityValues = null;
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
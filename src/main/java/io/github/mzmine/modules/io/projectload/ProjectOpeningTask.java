@@ -19,14 +19,18 @@
 package io.github.mzmine.modules.io.projectload;
 
 import com.google.common.io.CountingInputStream;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.version_3_0.FeatureListLoadTask;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileSnapshot;
 import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
 import io.github.mzmine.modules.io.projectsave.RawDataFileSaveHandler;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.ProjectManager;
 import io.github.mzmine.project.impl.MZmineProjectImpl;
 import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ExceptionUtils;
@@ -40,7 +44,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -154,6 +165,29 @@ public class ProjectOpeningTask extends AbstractTask {
       final Pattern peakListPattern = Pattern.compile("Peak list #([\\d]+) (.*)\\.xml$");
       boolean versionInformationLoaded = false;
 
+      // feature lists only depend on the raw data files once they are parsed, extract them while
+      // the raw data files are imported
+      final long startTime = System.currentTimeMillis();
+      final CompletableFuture<File[]> featureListFiles = CompletableFuture.supplyAsync(() -> {
+        try {
+          final File[] files = FeatureListLoadTask.extractFeatureLists(zipFile);
+          logger.info(() -> "Extracted " + files.length + " feature lists in " + (
+              System.currentTimeMillis() - startTime) + " ms");
+          return files;
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      });
+
+      // snapshots of raw data files are mapped from the extracted files
+      final CompletableFuture<File[]> snapshotFiles = CompletableFuture.supplyAsync(() -> {
+        try {
+          return RawDataFileSnapshot.extractSnapshots(zipFile);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      });
+
       // Iterate over the entries and read them
       entries = zipFile.entries();
 
@@ -176,7 +210,10 @@ public class ProjectOpeningTask extends AbstractTask {
         } else if (entryName.equals(ProjectSavingTask.PARAMETERS_FILENAME)) {
           loadUserParameters(cis);
         } else if (entryName.equals(RawDataFileSaveHandler.RAW_DATA_IMPORT_BATCH_FILENAME)) {
+          final long rawStartTime = System.currentTimeMillis();
           loadRawDataFiles(cis, zipFile);
+          logger.info(() -> "Imported " + newProject.getDataFiles().length + " raw data files in "
+                             + (System.currentTimeMillis() - rawStartTime) + " ms");
         } else if(entryName.equals(ProjectSavingTask.STANDALONE_FILENAME)) {
           newProject.setStandalone(true);
         }
@@ -192,7 +229,22 @@ public class ProjectOpeningTask extends AbstractTask {
 
       }
 
-      loadFeatureList(zipFile);
+      final long snapshotStartTime = System.currentTimeMillis();
+      final int loadedSnapshots = loadRawDataSnapshots(snapshotFiles.join());
+      if (isCanceled()) {
+        zipFile.close();
+        return;
+      }
+      if (loadedSnapshots > 0) {
+        logger.info(() -> "Loaded " + loadedSnapshots + " raw data file snapshots in " + (
+            System.currentTimeMillis() - snapshotStartTime) + " ms");
+      }
+
+      final long flistStartTime = System.currentTimeMillis();
+      final File[] files = featureListFiles.join();
+      final int loadedFeatureLists = loadFeatureLists(files);
+      logger.info(() -> "Loaded " + loadedFeatureLists + " feature lists in " + (
+          System.currentTimeMillis() - flistStartTime) + " ms");
 
       // Finish and close the project ZIP file
       zipFile.close();
@@ -207,7 +259,8 @@ public class ProjectOpeningTask extends AbstractTask {
         return;
       }
 
-      logger.info("Finished opening project " + openFile);
+      logger.info(() -> "Finished opening project " + openFile + " in " + (
+          System.currentTimeMillis() - startTime) + " ms");
       setStatus(TaskStatus.FINISHED);
 
       // add to last loaded projects
@@ -343,17 +396,84 @@ public class ProjectOpeningTask extends AbstractTask {
     tempConfigFile.delete();
   }
 
-  private void loadFeatureList(ZipFile zipFile) {
+  /**
+   * Loads the raw data files that were saved as snapshot and inserts them at their saved index.
+   * The snapshots are sorted by their index and the other files were imported in their saved order
+   * before, so the project keeps the order of the saved files.
+   *
+   * @return the number of loaded raw data files
+   */
+  private int loadRawDataSnapshots(File[] files) throws IOException {
+    currentLoadedObjectName = "MS data file snapshots";
+    for (int i = 0; i < files.length; i++) {
+      if (isCanceled()) {
+        return i;
+      }
+      final RawDataFile file = RawDataFileSnapshot.load(files[i],
+          MemoryMapStorage.forRawDataFile());
+      newProject.addFile(RawDataFileSnapshot.getIndex(files[i]), file);
+    }
+    return files.length;
+  }
 
-    FeatureListLoadTask task = new FeatureListLoadTask(MemoryMapStorage.forFeatureList(), newProject, zipFile);
-    MZmineCore.getTaskController().addTask(task);
+  /**
+   * Loads the feature lists in parallel, each into its own storage. The feature lists are added to
+   * the project in the order of the files, the same as loading them one after another.
+   *
+   * @return the number of loaded feature lists
+   */
+  private int loadFeatureLists(File[] files)
+      throws InterruptedException, ExecutionException {
     currentLoadedObjectName = "Feature lists";
-    while(task.getStatus() != TaskStatus.FINISHED && !task.isCanceled() && ! isCanceled()) {
-      try {
-        Thread.sleep(50);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+    if (files.length == 0) {
+      logger.info("Did not find feature lists to load.");
+      return 0;
+    }
+
+    // enable caching of mobility scans during project import.
+    newProject.setProjectLoadImsImportCaching(true);
+    if (!MZmineCore.isHeadLessMode()) {
+      // the cached files are set on the fx thread, all feature lists need to use them
+      MZmineCore.runOnFxThreadAndWait(() -> {
+      });
+    }
+
+    try {
+      final List<FeatureListLoadTask> tasks = Arrays.stream(files)
+          .map(file -> new FeatureListLoadTask(MemoryMapStorage.forFeatureList(), newProject, file))
+          .toList();
+      MZmineCore.getTaskController().addTasks(tasks.toArray(Task[]::new));
+
+      final CompletableFuture<Void> allFinished = CompletableFuture.allOf(
+          tasks.stream().map(AbstractTask::getCompletionFuture).toArray(CompletableFuture[]::new));
+      while (true) {
+        try {
+          allFinished.get(100, TimeUnit.MILLISECONDS);
+          break;
+        } catch (TimeoutException e) {
+          if (isCanceled()) {
+            tasks.forEach(AbstractTask::cancel);
+            return 0;
+          }
+        }
+      }
+
+      int loaded = 0;
+      for (FeatureListLoadTask task : tasks) {
+        final ModularFeatureList flist = task.getFeatureList();
+        if (flist == null) {
+          if (task.getStatus() == TaskStatus.ERROR) {
+            MZmineCore.getDesktop().displayErrorMessage(task.getErrorMessage());
+          }
+          continue;
+        }
+        newProject.addFeatureList(flist);
+        loaded++;
       }
+      return loaded;
+    } finally {
+      // disable caching on project level
+      newProject.setProjectLoadImsImportCaching(false);
     }
   }
 
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import io.github.mzmine.util.ParsingUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the feature list xml and resolves the binary blocks written by {@link
+ * BlockXMLStreamWriter}. The block file is mapped lazily in segments of {@link #SEGMENT_SIZE}
+ * bytes once the first block of a segment is read. Double values of uncompressed blocks are
+ * returned as views of the mapped file, so they are only paged in on access. Compressed blocks are
+ * inflated into arrays.
+ * <p></p>
+ * The static read methods also accept elements that contain their values as text, so projects
+ * saved without block files can still be loaded.
+ */
+public class BlockXMLStreamReader extends StreamReaderDelegate {
+
+  public static final long SEGMENT_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final long size;
+  private final MappedByteBuffer[] segments;
+  private final Inflater inflater = new Inflater();
+  // shuffled bytes of the current compressed block
+  private byte[] shuffled = new byte[0];
+
+  /**
+   * @param reader    the xml reader
+   * @param blockFile the block file. The mapped blocks stay valid after this reader was closed.
+   */
+  public BlockXMLStreamReader(@NotNull XMLStreamReader reader, @NotNull File blockFile)
+      throws IOException {
+    super(reader);
+    channel = FileChannel.open(blockFile.toPath(), StandardOpenOption.READ);
+    size = channel.size();
+    segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+  }
+
+  /**
+   * Reads the values of the current element and moves the reader to the end of the element.
+   *
+   * @return a read only view of the block or the values parsed from the text.
+   */
+  @NotNull
+  public static DoubleBuffer readDoubleBuffer(@NotNull XMLStreamReader reader)
+      throws XMLStreamException {
+    final String offset = reader.getAttributeValue(null, CONST.XML_BLOCK_OFFSET_ATTR);
+    final String length = reader.getAttributeValue(null, CONST.XML_BLOCK_LENGTH_ATTR);
+    final String bytes = reader.getAttributeValue(null, CONST.XML_BLOCK_BYTES_ATTR);
+    final String text = reader.getElementText();
+    if (offset == null) {
+      return DoubleBuffer.wrap(ParsingUtils.stringToDoubleArray(text));
+    }
+
+    final int numValues = Integer.parseInt(length);
+    final DoubleBuffer values = getValues(reader, Long.parseLong(offset), numValues, bytes,
+        Double.BYTES).asDoubleBuffer();
+    if (bytes == null) {
+      return values;
+    }
+    // the inflated values are not mapped
+    final double[] array = new double[numValues];
+    values.get(0, array);
+    return DoubleBuffer.wrap(array);
+  }
+
+  /**
+   * Reads the values of the current element and moves the reader to the end of the element.
+   */
+  @NotNull
+  public static double[] readDoubles(@NotNull XMLStreamReader reader) throws XMLStreamException {
+    final DoubleBuffer buffer = readDoubleBuffer(reader);
+    if (buffer.hasArray() && buffer.arrayOffset() == 0
+        && buffer.capacity() == buffer.array().length) {
+      return buffer.array();
+    }
+    final double[] values = new double[buffer.capacity()];
+    buffer.get(0, values);
+    return values;
+  }
+
+  /**
+   * Reads the values of the current element and moves the reader to the end of the element.
+   */
+  @NotNull
+  public static int[] readInts(@NotNull XMLStreamReader reader) throws XMLStreamException {
+    final String offset = reader.getAttributeValue(null, CONST.XML_BLOCK_OFFSET_ATTR);
+    final String length = reader.getAttributeValue(null, CONST.XML_BLOCK_LENGTH_ATTR);
+    final String bytes = reader.getAttributeValue(null, CONST.XML_BLOCK_BYTES_ATTR);
+    final String text = reader.getElementText();
+    if (offset == null) {
+      return ParsingUtils.stringToIntArray(text);
+    }
+
+    final int numValues = Integer.parseInt(length);
+    final int[] values = new int[numValues];
+    getValues(reader, Long.parseLong(offset), numValues, bytes, Integer.BYTES).asIntBuffer()
+        .get(0, values);
+    return values;
+  }
+
+  /**
+   * @param compressedBytes the size of a compressed block or null if the block is not compressed
+   * @return the little endian values of the block
+   */
+  private static ByteBuffer getValues(XMLStreamReader reader, long offset, int numValues,
+      @Nullable String compressedBytes, int valueBytes) throws XMLStreamException {
+    if (!(reader instanceof BlockXMLStreamReader blockReader)) {
+      throw new XMLStreamException(
+          "Element " + reader.getLocalName() + " references a binary block, but no block file "
+          + "was opened.");
+    }
+    if (compressedBytes == null) {
+      return blockReader.getBlock(offset, numValues * valueBytes);
+    }
+    final ByteBuffer block = blockReader.getBlock(offset, Integer.parseInt(compressedBytes));
+    return blockReader.inflate(block, numValues, valueBytes);
+  }
+
+  /**
+   * Restores the order of the bytes that was changed by the writer to group the n-th bytes of all
+   * values.
+   */
+  private static void unshuffle(byte[] shuffled, byte[] values, int length, int valueBytes) {
+    for (int b = 0; b < valueBytes; b++) {
+      final int start = b * length;
+      for (int i = 0; i < length; i++) {
+        values[i * valueBytes + b] = shuffled[start + i];
+      }
+    }
+  }
+
+  private synchronized ByteBuffer inflate(ByteBuffer block, int numValues, int valueBytes)
+      throws XMLStreamException {
+    final int bytes = numValues * valueBytes;
+    if (shuffled.length < bytes) {
+      shuffled = new byte[bytes];
+    }
+    inflater.reset();
+    inflater.setInput(block);
+    int inflated = 0;
+    try {
+      while (inflated < bytes) {
+        final int n = inflater.inflate(shuffled, inflated, bytes - inflated);
+        if (n == 0) {
+          // finished or truncated
+          break;
+        }
+        inflated += n;
+      }
+    } catch (DataFormatException e) {
+      throw new XMLStreamException("Cannot decompress binary block.", e);
+    }
+    if (inflated != bytes) {
+      throw new XMLStreamException(
+          "Compressed block contains " + inflated + " instead of " + bytes + " bytes.");
+    }
+    final byte[] values = new byte[bytes];
+    unshuffle(shuffled, values, numValues, valueBytes);
+    return ByteBuffer.wrap(values).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private ByteBuffer getBlock(long offset, int bytes) throws XMLStreamException {
+    if (offset < 0 || bytes < 0 || offset + bytes > size) {
+      throw new XMLStreamException(
+          "Block at " + offset + " with " + bytes + " bytes is outside of the block file.");
+    }
+    if (bytes == 0) {
+      return ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    final int index = (int) (offset / SEGMENT_SIZE);
+    final ByteBuffer segment;
+    try {
+      segment = getSegment(index);
+    } catch (IOException e) {
+      throw new XMLStreamException("Cannot map block file.", e);
+    }
+    return segment.slice((int) (offset - index * SEGMENT_SIZE), bytes)
+        .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private synchronized ByteBuffer getSegment(int index) throws IOException {
+    if (segments[index] == null) {
+      final long start = index * SEGMENT_SIZE;
+      segments[index] = channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE,
+          size - start));
+    }
+    return segments[index];
+  }
+
+  /**
+   * Closes the xml reader and the block file. Blocks that were already read stay valid.
+   */
+  @Override
+  public void close() throws XMLStreamException {
+    super.close();
+    inflater.end();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new XMLStreamException("Cannot close block file.", e);
+    }
+  }
+}
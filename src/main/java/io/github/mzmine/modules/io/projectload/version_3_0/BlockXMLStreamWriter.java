@@ -0,0 +1,281 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import com.sun.xml.txw2.output.IndentingXMLStreamWriter;
+import io.github.mzmine.util.ParsingUtils;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes the numeric arrays of series and spectra into a separate binary block file instead of the
+ * xml text. The array elements in the xml only reference the offset and length of their block.
+ * <p></p>
+ * The values are copied in bulk from their buffers (e.g., the mapped buffers of a {@link
+ * io.github.mzmine.util.MemoryMapStorage}). Uncompressed blocks hold little endian values and are
+ * aligned to 8 bytes, so they can be used as views of the mapped file on load. Compressed blocks
+ * group the n-th bytes of all values before they are deflated, because neighboring values of a
+ * series mostly share their high bytes. Compressed blocks also reference their size in bytes. No
+ * block crosses a multiple of {@link BlockXMLStreamReader#SEGMENT_SIZE}, so the file can be mapped
+ * in segments.
+ *
+ * @see BlockXMLStreamReader
+ */
+public class BlockXMLStreamWriter extends IndentingXMLStreamWriter {
+
+  private final OutputStream blockStream;
+  private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+  // null if the blocks are not compressed
+  @Nullable
+  private final Deflater deflater;
+  // values, shuffled values and compressed bytes of the current compressed block
+  private byte[] values = new byte[0];
+  private byte[] shuffled = new byte[0];
+  private byte[] compressed = new byte[1 << 10];
+  // bytes written to the block stream, excluding the buffer
+  private long flushed = 0;
+
+  /**
+   * Writes uncompressed blocks.
+   *
+   * @param writer      the xml writer
+   * @param blockStream the stream of the block file. Is not closed by this writer.
+   */
+  public BlockXMLStreamWriter(@NotNull XMLStreamWriter writer, @NotNull OutputStream blockStream) {
+    this(writer, blockStream, false);
+  }
+
+  /**
+   * @param writer      the xml writer
+   * @param blockStream the stream of the block file. Is not closed by this writer.
+   * @param compress    deflate the blocks. Compressed blocks are copied into memory on load.
+   */
+  public BlockXMLStreamWriter(@NotNull XMLStreamWriter writer, @NotNull OutputStream blockStream,
+      boolean compress) {
+    super(writer);
+    this.blockStream = blockStream;
+    this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+  }
+
+  /**
+   * Writes all values of the buffer (up to its capacity) to the current element. Needs to be
+   * called after the attributes of the element were written. If the writer is a {@link
+   * BlockXMLStreamWriter}, the values are written to a binary block. Otherwise, they are written
+   * as text.
+   */
+  public static void writeDoubles(@NotNull XMLStreamWriter writer, @NotNull DoubleBuffer values)
+      throws XMLStreamException {
+    if (!(writer instanceof BlockXMLStreamWriter blockWriter)) {
+      writer.writeCharacters(ParsingUtils.doubleBufferToString(values));
+      return;
+    }
+
+    blockWriter.writeBlock(values.capacity(), Double.BYTES,
+        (target, from, length) -> target.asDoubleBuffer().put(0, values, from, length));
+  }
+
+  /**
+   * Same as {@link #writeDoubles(XMLStreamWriter, DoubleBuffer)}.
+   */
+  public static void writeDoubles(@NotNull XMLStreamWriter writer, @NotNull double[] values)
+      throws XMLStreamException {
+    writeDoubles(writer, DoubleBuffer.wrap(values));
+  }
+
+  /**
+   * Writes all values to the current element. Needs to be called after the attributes of the
+   * element were written. If the writer is a {@link BlockXMLStreamWriter}, the values are written
+   * to a binary block. Otherwise, they are written as text.
+   */
+  public static void writeInts(@NotNull XMLStreamWriter writer, @NotNull int[] values)
+      throws XMLStreamException {
+    if (!(writer instanceof BlockXMLStreamWriter blockWriter)) {
+      writer.writeCharacters(ParsingUtils.intArrayToString(values, values.length));
+      return;
+    }
+
+    blockWriter.writeBlock(values.length, Integer.BYTES,
+        (target, from, length) -> target.asIntBuffer().put(0, values, from, length));
+  }
+
+  /**
+   * Groups the n-th bytes of all values.
+   */
+  private static void shuffle(byte[] values, byte[] shuffled, int length, int valueBytes) {
+    for (int b = 0; b < valueBytes; b++) {
+      final int start = b * length;
+      for (int i = 0; i < length; i++) {
+        shuffled[start + i] = values[i * valueBytes + b];
+      }
+    }
+  }
+
+  private void writeBlock(int length, int valueBytes, ValueCopy copy) throws XMLStreamException {
+    try {
+      if (deflater == null) {
+        final long offset = startBlock((long) length * valueBytes);
+        for (int i = 0; i < length; ) {
+          ensureRemaining(valueBytes);
+          final int n = Math.min(length - i, buffer.remaining() / valueBytes);
+          copy.copy(buffer.slice().order(ByteOrder.LITTLE_ENDIAN), i, n);
+          buffer.position(buffer.position() + n * valueBytes);
+          i += n;
+        }
+        endBlock(offset, length);
+      } else {
+        final int compressedBytes = compress(length, valueBytes, copy);
+        final long offset = startBlock(compressedBytes);
+        flushBuffer();
+        blockStream.write(compressed, 0, compressedBytes);
+        flushed += compressedBytes;
+        endBlock(offset, length);
+        writeAttribute(CONST.XML_BLOCK_BYTES_ATTR, String.valueOf(compressedBytes));
+      }
+    } catch (IOException e) {
+      throw new XMLStreamException("Cannot write binary block.", e);
+    }
+  }
+
+  /**
+   * @return the number of compressed bytes in {@link #compressed}
+   */
+  private int compress(int length, int valueBytes, ValueCopy copy) throws IOException {
+    assert deflater != null;
+    final long bytes = (long) length * valueBytes;
+    if (bytes > BlockXMLStreamReader.SEGMENT_SIZE) {
+      throw new IOException("Block of " + bytes + " bytes exceeds the segment size.");
+    }
+    if (values.length < bytes) {
+      values = new byte[(int) bytes];
+      shuffled = new byte[(int) bytes];
+    }
+    copy.copy(ByteBuffer.wrap(values, 0, (int) bytes).order(ByteOrder.LITTLE_ENDIAN), 0, length);
+    shuffle(values, shuffled, length, valueBytes);
+
+    deflater.reset();
+    deflater.setInput(shuffled, 0, (int) bytes);
+    deflater.finish();
+    int compressedBytes = 0;
+    while (!deflater.finished()) {
+      if (compressedBytes == compressed.length) {
+        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+      }
+      compressedBytes += deflater.deflate(compressed, compressedBytes,
+          compressed.length - compressedBytes);
+    }
+    return compressedBytes;
+  }
+
+  /**
+   * @return the offset of the new block
+   */
+  private long startBlock(long bytes) throws IOException {
+    if (bytes > BlockXMLStreamReader.SEGMENT_SIZE) {
+      throw new IOException("Block of " + bytes + " bytes exceeds the segment size.");
+    }
+    final long position = getPosition();
+    final long segmentEnd =
+        (position / BlockXMLStreamReader.SEGMENT_SIZE + 1) * BlockXMLStreamReader.SEGMENT_SIZE;
+    if (position + bytes > segmentEnd) {
+      pad(segmentEnd - position);
+    }
+    return getPosition();
+  }
+
+  private void endBlock(long offset, int length) throws IOException, XMLStreamException {
+    // keep the next block aligned to 8 bytes
+    pad((Long.BYTES - getPosition() % Long.BYTES) % Long.BYTES);
+    writeAttribute(CONST.XML_BLOCK_OFFSET_ATTR, String.valueOf(offset));
+    writeAttribute(CONST.XML_BLOCK_LENGTH_ATTR, String.valueOf(length));
+  }
+
+  private void pad(long bytes) throws IOException {
+    long remaining = bytes;
+    while (remaining > 0) {
+      ensureRemaining(1);
+      final int n = (int) Math.min(remaining, buffer.remaining());
+      Arrays.fill(buffer.array(), buffer.position(), buffer.position() + n, (byte) 0);
+      buffer.position(buffer.position() + n);
+      remaining -= n;
+    }
+  }
+
+  private void ensureRemaining(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flushBuffer();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    blockStream.write(buffer.array(), 0, buffer.position());
+    flushed += buffer.position();
+    buffer.clear();
+  }
+
+  private long getPosition() {
+    return flushed + buffer.position();
+  }
+
+  /**
+   * Flushes the xml and the block stream.
+   */
+  @Override
+  public void flush() throws XMLStreamException {
+    super.flush();
+    try {
+      flushBuffer();
+      blockStream.flush();
+    } catch (IOException e) {
+      throw new XMLStreamException("Cannot write binary block.", e);
+    }
+  }
+
+  /**
+   * Closes the xml writer and releases the compressor. The block stream is not closed.
+   */
+  @Override
+  public void close() throws XMLStreamException {
+    super.close();
+    if (deflater != null) {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Copies values in bulk into a little endian target buffer.
+   */
+  @FunctionalInterface
+  private interface ValueCopy {
+
+    /**
+     * @param target the buffer starting at the first value
+     * @param from   index of the first value
+     * @param length number of values
+     */
+    void copy(ByteBuffer target, int from, int length);
+  }
+}
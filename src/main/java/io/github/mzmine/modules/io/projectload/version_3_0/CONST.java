@@ -33,6 +33,9 @@ public class CONST {
   public static final String XML_MOBILITY_VALUES_ELEMENT = "mobilities";
   public static final String XML_SCAN_LIST_ELEMENT = "scans";
   public static final String XML_NUM_VALUES_ATTR = "numvalues";
+  public static final String XML_BLOCK_OFFSET_ATTR = "blockoffset";
+  public static final String XML_BLOCK_LENGTH_ATTR = "blocklength";
+  public static final String XML_BLOCK_BYTES_ATTR = "blockbytes";
 
   public static final String XML_NUM_ROWS_ATTR = "numberofrows";
   public static final String XML_FLIST_NAME_ATTR = "featurelistname";
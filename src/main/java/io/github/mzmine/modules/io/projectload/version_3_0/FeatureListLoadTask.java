@@ -29,7 +29,6 @@ import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.DataTypes;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
-import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
 import io.github.mzmine.modules.io.projectsave.FeatureListSaveTask;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -80,20 +79,46 @@ public class FeatureListLoadTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(FeatureListLoadTask.class.getName());
   final String idTypeUniqueID = new IDType().getUniqueID();
-  private final ZipFile zip;
   private final MZmineProject project;
+  private final File flistFile;
   private final AtomicInteger rowCounter = new AtomicInteger(0);
   private int totalRows = 1;
   private int processedRows = 0;
   private String currentFlist = "";
-  private int numFlists = 1;
-  private int processedFlists;
+  private ModularFeatureList featureList;
 
+  /**
+   * Loads a single feature list from the files extracted by {@link #extractFeatureLists(ZipFile)}.
+   * The feature list is not added to the project, see {@link #getFeatureList()}. All raw data
+   * files of the feature list need to be loaded to the project before.
+   *
+   * @param storage   the storage of the feature list
+   * @param flistFile the data file of the feature list
+   */
   public FeatureListLoadTask(@Nullable MemoryMapStorage storage, @NotNull MZmineProject project,
-      ZipFile zip) {
+      @NotNull File flistFile) {
     super(storage, Instant.now());
     this.project = project;
-    this.zip = zip;
+    this.flistFile = flistFile;
+  }
+
+  /**
+   * Extracts all feature lists of the project to a temporary directory. Does not depend on the raw
+   * data files and can run while they are loaded.
+   *
+   * @return the data files of the feature lists in the temporary directory.
+   */
+  @NotNull
+  public static File[] extractFeatureLists(@NotNull ZipFile zip) throws IOException {
+    Path tempDirectory = Files.createTempDirectory(TEMP_FLIST_DATA_FOLDER);
+
+    logger.info(() -> "Unzipping feature lists of project to " + tempDirectory.toString());
+    ZipUtils.unzipDirectory(FeatureListSaveTask.FLIST_FOLDER, zip, tempDirectory.toFile());
+    logger.info(() -> "Unzipping feature lists done.");
+
+    File[] files = new File(tempDirectory.toFile(), FeatureListSaveTask.FLIST_FOLDER)
+        .listFiles((dir, name) -> fileNamePattern.matcher(name).matches());
+    return files != null ? files : new File[0];
   }
 
   public static Object parseDataType(XMLStreamReader reader, DataType<?> type,
@@ -116,77 +141,55 @@ public class FeatureListLoadTask extends AbstractTask {
 
   @Override
   public String getTaskDescription() {
-    return "Importing feature list " + currentFlist + (processedFlists + 1) + "/" + numFlists
-           + ". Parsing row " + processedRows + "/" + totalRows;
+    return "Importing feature list " + currentFlist + ". Parsing row " + processedRows + "/"
+           + totalRows;
   }
 
   @Override
   public double getFinishedPercentage() {
-    return (double) processedFlists / numFlists // overall progress finished flists
-           + (double) processedRows / totalRows / numFlists; // current flist progress
+    return (double) processedRows / totalRows;
+  }
+
+  /**
+   * @return the loaded feature list or null if the task did not finish.
+   */
+  @Nullable
+  public ModularFeatureList getFeatureList() {
+    return getStatus() == TaskStatus.FINISHED ? featureList : null;
   }
 
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
     try {
-      Path tempDirectory = Files.createTempDirectory(TEMP_FLIST_DATA_FOLDER);
-
-      logger.info(() -> "Unzipping feature lists of project to " + tempDirectory.toString());
-      ZipUtils.unzipDirectory(FeatureListSaveTask.FLIST_FOLDER, zip, tempDirectory.toFile());
-      logger.info(() -> "Unzipping feature lists done.");
-
-      File[] files = new File(tempDirectory.toFile(), FeatureListSaveTask.FLIST_FOLDER)
-          .listFiles((dir, name) -> fileNamePattern.matcher(name).matches());
-      if (files == null) {
-        logger.info("Did not find feature lists to load.");
-        setStatus(TaskStatus.FINISHED);
+      final File metadataFile = new File(flistFile.toString()
+          .replace(FeatureListSaveTask.DATA_FILE_SUFFIX,
+              FeatureListSaveTask.METADATA_FILE_SUFFIX));
+      ModularFeatureList flist = createRows(storage, flistFile, metadataFile);
+
+      if (flist == null) {
+        logger.severe(
+            () -> "Cannot load feature list from files " + flistFile.getAbsolutePath() + " and "
+                  + metadataFile.getAbsolutePath());
+        setErrorMessage("Cannot load feature list from file " + flistFile.getName());
+        setStatus(TaskStatus.ERROR);
         return;
       }
-
-      numFlists = files.length;
-
-      final MemoryMapStorage storage = MemoryMapStorage.forFeatureList();
-
-      // enable caching of mobility scans during project import.
-      project.setProjectLoadImsImportCaching(true);
-
-      for (File flistFile : files) {
-        if (isCanceled()) {
-          return;
-        }
-        rowCounter.set(0);
-
-        final File metadataFile = new File(flistFile.toString()
-            .replace(FeatureListSaveTask.DATA_FILE_SUFFIX,
-                FeatureListSaveTask.METADATA_FILE_SUFFIX));
-        ModularFeatureList flist = createRows(storage, flistFile, metadataFile);
-
-        if (flist == null) {
-          logger.severe(
-              () -> "Cannot load feature list from files " + flistFile.getAbsolutePath() + " and "
-                    + metadataFile.getAbsolutePath());
-          continue;
-        }
-        parseFeatureList(storage, flist, flistFile);
-
-        // disable buffering after the import (replace references to CachedIMSRawDataFiles with IMSRawDataFiles
-        flist.replaceCachedFilesAndScans();
-
-        project.addFeatureList(flist);
-        processedFlists++;
+      parseFeatureList(storage, flist, flistFile);
+      if (isCanceled()) {
+        return;
       }
+
+      // disable buffering after the import (replace references to CachedIMSRawDataFiles with IMSRawDataFiles
+      flist.replaceCachedFilesAndScans();
+      featureList = flist;
     } catch (Exception e) {
-      e.printStackTrace();
       logger.log(Level.SEVERE, e.getMessage(), e);
+      setErrorMessage(e.getMessage());
       setStatus(TaskStatus.ERROR);
-      project.setProjectLoadImsImportCaching(false);
-      MZmineCore.getDesktop().displayErrorMessage(e.getMessage());
       return;
     }
 
-    // disable caching on project level
-    project.setProjectLoadImsImportCaching(false);
     setStatus(TaskStatus.FINISHED);
   }
 
@@ -196,12 +199,22 @@ public class FeatureListLoadTask extends AbstractTask {
     processedRows = 0;
     totalRows = flist.getNumberOfRows();
 
+    // projects saved before the binary blocks were introduced contain all values in the xml
+    final File blockFile = new File(flistFile.toString()
+        .replace(FeatureListSaveTask.DATA_FILE_SUFFIX, FeatureListSaveTask.BLOCK_FILE_SUFFIX));
+
     try (InputStream fis = new FileInputStream(flistFile)) {
       final XMLInputFactory xif = XMLInputFactory.newInstance();
-      final XMLStreamReader reader = xif.createXMLStreamReader(fis);
+      XMLStreamReader reader = xif.createXMLStreamReader(fis);
+      if (blockFile.exists()) {
+        // series of uncompressed blocks keep views of the mapped file
+        blockFile.deleteOnExit();
+        reader = new BlockXMLStreamReader(reader, blockFile);
+      }
 
       while (reader.hasNext()) {
         if (isCanceled()) {
+          reader.close();
           return;
         }
 
@@ -222,6 +235,7 @@ public class FeatureListLoadTask extends AbstractTask {
           }
         }
       }
+      reader.close();
 
     } catch (IOException | XMLStreamException e) {
       logger.log(Level.WARNING, "Error opening file " + flistFile.getAbsolutePath(), e);
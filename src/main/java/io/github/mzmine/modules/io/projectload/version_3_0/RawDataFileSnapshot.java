@@ -0,0 +1,531 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.ParsingUtils;
+import io.github.mzmine.util.StreamCopy;
+import io.github.mzmine.util.ZipUtils;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import javafx.scene.paint.Color;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Saves the scans and mass lists of a raw data file to the project, so the file can be loaded
+ * without importing it again. The data points are written to a binary block file (see {@link
+ * BlockXMLStreamWriter}), which is mapped on load. The loaded scans and mass lists use views of the
+ * mapped file.
+ * <p></p>
+ * Only {@link RawDataFileImpl} is supported. Other files (e.g. ion mobility or imaging files) are
+ * imported by the raw data import batch.
+ */
+public class RawDataFileSnapshot {
+
+  public static final String SNAPSHOT_FOLDER = "rawdatafiles/";
+  public static final String METADATA_FILE_SUFFIX = "_metadata.xml";
+  public static final String DATA_FILE_SUFFIX = "_data.xml";
+  public static final String BLOCK_FILE_SUFFIX = "_blocks.bin";
+  public static final String TEMP_SNAPSHOT_FOLDER = "mzmine_rawdatafiles_temp";
+  public static final Pattern fileNamePattern = Pattern.compile(
+      CONST.XML_RAW_FILE_ELEMENT + "_(\\d+)" + METADATA_FILE_SUFFIX);
+
+  private static final Logger logger = Logger.getLogger(RawDataFileSnapshot.class.getName());
+
+  private static final String XML_COLOR_ELEMENT = "color";
+  private static final String XML_SCAN_NUMBER_ATTR = "scannumber";
+  private static final String XML_MS_LEVEL_ATTR = "mslevel";
+  private static final String XML_RT_ATTR = "rt";
+  private static final String XML_POLARITY_ATTR = "polarity";
+  private static final String XML_SPECTRUM_TYPE_ATTR = "spectrumtype";
+  private static final String XML_SCAN_DEFINITION_ATTR = "scandefinition";
+  private static final String XML_SCAN_MZ_RANGE_ATTR = "scanmzrange";
+  // m/z range, base peak and TIC of the data points, so the mapped values are not read on load
+  private static final String XML_DATA_MZ_RANGE_ATTR = "datamzrange";
+  private static final String XML_BASE_PEAK_ATTR = "basepeakindex";
+  private static final String XML_TIC_ATTR = "tic";
+  private static final String XML_MASS_LIST_ELEMENT = "masslist";
+  private static final String XML_MASS_LIST_TYPE_ATTR = "type";
+  private static final String XML_SCAN_POINTER_MASS_LIST = "scanpointer";
+  private static final String XML_STORED_MASS_LIST = "stored";
+
+  private RawDataFileSnapshot() {
+  }
+
+  /**
+   * @return true if a snapshot of the file can be saved.
+   */
+  public static boolean isSupported(@NotNull RawDataFile file) {
+    return file.getClass() == RawDataFileImpl.class && file.getScans().stream()
+        .allMatch(scan -> scan.getClass() == SimpleScan.class && (scan.getMassList() == null
+            || scan.getMassList() instanceof SimpleMassList
+            || scan.getMassList() instanceof ScanPointerMassList));
+  }
+
+  public static String getMetadataFileName(int index) {
+    return SNAPSHOT_FOLDER + CONST.XML_RAW_FILE_ELEMENT + "_" + index + METADATA_FILE_SUFFIX;
+  }
+
+  public static String getDataFileName(int index) {
+    return SNAPSHOT_FOLDER + CONST.XML_RAW_FILE_ELEMENT + "_" + index + DATA_FILE_SUFFIX;
+  }
+
+  public static String getBlockFileName(int index) {
+    return SNAPSHOT_FOLDER + CONST.XML_RAW_FILE_ELEMENT + "_" + index + BLOCK_FILE_SUFFIX;
+  }
+
+  /**
+   * Saves the snapshot of a file to the project.
+   *
+   * @param file  the raw data file, see {@link #isSupported(RawDataFile)}
+   * @param index the index of the file in the project. The file is inserted at this index on load,
+   *              after the other files were imported by the batch.
+   * @param zos   the project zip stream
+   */
+  public static void save(@NotNull RawDataFile file, int index, @NotNull ZipOutputStream zos,
+      @NotNull StreamCopy copy) throws IOException {
+    final File tempMetadataFile = File.createTempFile("mzmine_rawdatafile_metadata", ".tmp");
+    final File tempFile = File.createTempFile("mzmine_rawdatafile_data", ".tmp");
+    final File tempBlockFile = File.createTempFile("mzmine_rawdatafile_blocks", ".tmp");
+    try {
+      try (OutputStream os = new FileOutputStream(tempMetadataFile)) {
+        writeMetadata(file, os);
+      }
+
+      try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile));
+          OutputStream bos = new BufferedOutputStream(new FileOutputStream(tempBlockFile))) {
+        final XMLOutputFactory xof = XMLOutputFactory.newInstance();
+        final XMLStreamWriter writer = new BlockXMLStreamWriter(xof.createXMLStreamWriter(os),
+            bos);
+        writer.writeStartDocument("UTF-8", "1.0");
+        writeScans(file, writer);
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+      } catch (XMLStreamException e) {
+        throw new IOException("Cannot write scans of raw data file " + file.getName(), e);
+      }
+
+      try (InputStream is = new FileInputStream(tempMetadataFile)) {
+        zos.putNextEntry(new ZipEntry(getMetadataFileName(index)));
+        copy.copy(is, zos);
+      }
+      try (InputStream is = new FileInputStream(tempFile)) {
+        zos.putNextEntry(new ZipEntry(getDataFileName(index)));
+        copy.copy(is, zos);
+      }
+      try (InputStream is = new FileInputStream(tempBlockFile)) {
+        zos.putNextEntry(new ZipEntry(getBlockFileName(index)));
+        copy.copy(is, zos);
+      }
+    } finally {
+      tempMetadataFile.delete();
+      tempFile.delete();
+      tempBlockFile.delete();
+    }
+  }
+
+  /**
+   * Writes the name, path, color and applied methods of the file.
+   */
+  private static void writeMetadata(RawDataFile file, OutputStream os) throws IOException {
+    try {
+      final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .newDocument();
+      final Element root = document.createElement(CONST.XML_ROOT_ELEMENT);
+      document.appendChild(root);
+
+      final Element fileElement = document.createElement(CONST.XML_RAW_FILE_ELEMENT);
+      root.appendChild(fileElement);
+      final Element nameElement = document.createElement(CONST.XML_RAW_FILE_NAME_ELEMENT);
+      nameElement.setTextContent(file.getName());
+      fileElement.appendChild(nameElement);
+      final Element pathElement = document.createElement(CONST.XML_RAW_FILE_PATH_ELEMENT);
+      pathElement.setTextContent(ParsingUtils.parseNullableString(file.getAbsolutePath()));
+      fileElement.appendChild(pathElement);
+      final Element colorElement = document.createElement(XML_COLOR_ELEMENT);
+      colorElement.setTextContent(file.getColor().toString());
+      fileElement.appendChild(colorElement);
+
+      final Element appliedMethodsList = document.createElement(
+          CONST.XML_FLIST_APPLIED_METHODS_LIST_ELEMENT);
+      for (FeatureListAppliedMethod appliedMethod : file.getAppliedMethods()) {
+        final Element methodElement = document.createElement(
+            CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+        appliedMethod.saveValueToXML(methodElement);
+        appliedMethodsList.appendChild(methodElement);
+      }
+      fileElement.appendChild(appliedMethodsList);
+
+      final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+      transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+      transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+      transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+      transformer.transform(new DOMSource(document), new StreamResult(os));
+    } catch (ParserConfigurationException | TransformerException e) {
+      throw new IOException("Cannot write metadata of raw data file " + file.getName(), e);
+    }
+  }
+
+  /**
+   * Writes all scans and their mass lists to the current element.
+   */
+  public static void writeScans(@NotNull RawDataFile file, @NotNull XMLStreamWriter writer)
+      throws XMLStreamException {
+    writer.writeStartElement(CONST.XML_SCAN_LIST_ELEMENT);
+    writer.writeAttribute(CONST.XML_NUM_VALUES_ATTR, String.valueOf(file.getNumOfScans()));
+
+    // the arrays are reallocated for larger scans
+    double[] mzs = new double[Math.max(0, file.getMaxRawDataPoints())];
+    double[] intensities = new double[mzs.length];
+    for (Scan scan : file.getScans()) {
+      writer.writeStartElement(CONST.XML_RAW_FILE_SCAN_ELEMENT);
+      writer.writeAttribute(XML_SCAN_NUMBER_ATTR, String.valueOf(scan.getScanNumber()));
+      writer.writeAttribute(XML_MS_LEVEL_ATTR, String.valueOf(scan.getMSLevel()));
+      writer.writeAttribute(XML_RT_ATTR, String.valueOf(scan.getRetentionTime()));
+      writer.writeAttribute(XML_POLARITY_ATTR, scan.getPolarity().name());
+      writer.writeAttribute(XML_SPECTRUM_TYPE_ATTR, scan.getSpectrumType().name());
+      writer.writeAttribute(XML_SCAN_DEFINITION_ATTR, scan.getScanDefinition());
+      final Range<Double> scanMzRange = scan.getScanningMZRange();
+      if (scanMzRange != null) {
+        writer.writeAttribute(XML_SCAN_MZ_RANGE_ATTR,
+            ParsingUtils.rangeToString((Range) scanMzRange));
+      }
+      writeSpectrumStatistics(writer, scan);
+
+      mzs = scan.getMzValues(mzs);
+      intensities = scan.getIntensityValues(intensities);
+      writeDataPoints(writer, mzs, intensities, scan.getNumberOfDataPoints());
+
+      final MassList massList = scan.getMassList();
+      if (massList instanceof ScanPointerMassList) {
+        writer.writeStartElement(XML_MASS_LIST_ELEMENT);
+        writer.writeAttribute(XML_MASS_LIST_TYPE_ATTR, XML_SCAN_POINTER_MASS_LIST);
+        writer.writeEndElement();
+      } else if (massList != null) {
+        writer.writeStartElement(XML_MASS_LIST_ELEMENT);
+        writer.writeAttribute(XML_MASS_LIST_TYPE_ATTR, XML_STORED_MASS_LIST);
+        writeSpectrumStatistics(writer, massList);
+        mzs = massList.getMzValues(mzs);
+        intensities = massList.getIntensityValues(intensities);
+        writeDataPoints(writer, mzs, intensities, massList.getNumberOfDataPoints());
+        writer.writeEndElement();
+      }
+
+      final MsMsInfo msMsInfo = scan.getMsMsInfo();
+      if (msMsInfo != null) {
+        msMsInfo.writeToXML(writer);
+      }
+      writer.writeEndElement();
+    }
+    writer.writeEndElement();
+  }
+
+  private static void writeSpectrumStatistics(XMLStreamWriter writer, MassSpectrum spectrum)
+      throws XMLStreamException {
+    final Range<Double> mzRange = spectrum.getDataPointMZRange();
+    if (mzRange != null) {
+      writer.writeAttribute(XML_DATA_MZ_RANGE_ATTR, ParsingUtils.rangeToString((Range) mzRange));
+    }
+    final Integer basePeakIndex = spectrum.getBasePeakIndex();
+    if (basePeakIndex != null) {
+      writer.writeAttribute(XML_BASE_PEAK_ATTR, String.valueOf(basePeakIndex));
+    }
+    writer.writeAttribute(XML_TIC_ATTR, String.valueOf(spectrum.getTIC()));
+  }
+
+  /**
+   * The statistics written by {@link #writeSpectrumStatistics(XMLStreamWriter, MassSpectrum)}
+   */
+  private record SpectrumStatistics(@Nullable Range<Double> mzRange,
+                                    @Nullable Integer basePeakIndex, double totalIonCurrent) {
+
+    private static SpectrumStatistics read(XMLStreamReader reader) throws XMLStreamException {
+      final String tic = reader.getAttributeValue(null, XML_TIC_ATTR);
+      if (tic == null) {
+        throw new XMLStreamException(
+            "No TIC in element " + reader.getLocalName() + " of the raw data file snapshot.");
+      }
+      final String mzRange = reader.getAttributeValue(null, XML_DATA_MZ_RANGE_ATTR);
+      final String basePeakIndex = reader.getAttributeValue(null, XML_BASE_PEAK_ATTR);
+      return new SpectrumStatistics(
+          mzRange != null ? ParsingUtils.stringToDoubleRange(mzRange) : null,
+          basePeakIndex != null ? Integer.valueOf(basePeakIndex) : null, Double.parseDouble(tic));
+    }
+  }
+
+  private static void writeDataPoints(XMLStreamWriter writer, double[] mzs, double[] intensities,
+      int numValues) throws XMLStreamException {
+    writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
+    writer.writeAttribute(CONST.XML_NUM_VALUES_ATTR, String.valueOf(numValues));
+    BlockXMLStreamWriter.writeDoubles(writer, DoubleBuffer.wrap(mzs, 0, numValues).slice());
+    writer.writeEndElement();
+    writer.writeStartElement(CONST.XML_INTENSITY_VALUES_ELEMENT);
+    writer.writeAttribute(CONST.XML_NUM_VALUES_ATTR, String.valueOf(numValues));
+    BlockXMLStreamWriter.writeDoubles(writer,
+        DoubleBuffer.wrap(intensities, 0, numValues).slice());
+    writer.writeEndElement();
+  }
+
+  /**
+   * Extracts all snapshots of the project to a temporary directory.
+   *
+   * @return the metadata files of the snapshots in the order of the saved files.
+   */
+  @NotNull
+  public static File[] extractSnapshots(@NotNull ZipFile zip) throws IOException {
+    final Path tempDirectory = Files.createTempDirectory(TEMP_SNAPSHOT_FOLDER);
+
+    logger.info(() -> "Unzipping raw data file snapshots of project to " + tempDirectory);
+    ZipUtils.unzipDirectory(SNAPSHOT_FOLDER, zip, tempDirectory.toFile());
+
+    final File[] files = new File(tempDirectory.toFile(), SNAPSHOT_FOLDER).listFiles(
+        (dir, name) -> fileNamePattern.matcher(name).matches());
+    if (files == null) {
+      return new File[0];
+    }
+    Arrays.sort(files, Comparator.comparingInt(RawDataFileSnapshot::getIndex));
+    return files;
+  }
+
+  /**
+   * @param metadataFile the metadata file of a snapshot
+   * @return the index of the file in the saved project
+   */
+  public static int getIndex(@NotNull File metadataFile) {
+    final Matcher matcher = fileNamePattern.matcher(metadataFile.getName());
+    return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+  }
+
+  /**
+   * Loads a raw data file from the files extracted by {@link #extractSnapshots(ZipFile)}. The file
+   * is not added to the project.
+   *
+   * @param metadataFile the metadata file of the snapshot
+   * @param storage      the storage of the raw data file
+   * @return the raw data file
+   */
+  @NotNull
+  public static RawDataFile load(@NotNull File metadataFile, @Nullable MemoryMapStorage storage)
+      throws IOException {
+    final RawDataFileImpl file;
+    try {
+      final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .parse(metadataFile);
+      final Element fileElement = (Element) document.getElementsByTagName(
+          CONST.XML_RAW_FILE_ELEMENT).item(0);
+      final String name = getChildText(fileElement, CONST.XML_RAW_FILE_NAME_ELEMENT);
+      final String path = ParsingUtils.readNullableString(
+          getChildText(fileElement, CONST.XML_RAW_FILE_PATH_ELEMENT));
+      final Color color = Color.web(getChildText(fileElement, XML_COLOR_ELEMENT));
+      file = new RawDataFileImpl(name, path, storage, color);
+
+      final NodeList methodElements = fileElement.getElementsByTagName(
+          CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+      for (int i = 0; i < methodElements.getLength(); i++) {
+        file.getAppliedMethods()
+            .add(SimpleFeatureListAppliedMethod.loadValueFromXML((Element) methodElements.item(i)));
+      }
+    } catch (ParserConfigurationException | SAXException | NullPointerException e) {
+      throw new IOException("Cannot read raw data file metadata " + metadataFile, e);
+    }
+
+    final String prefix = metadataFile.getAbsolutePath().substring(0,
+        metadataFile.getAbsolutePath().length() - METADATA_FILE_SUFFIX.length());
+    final File dataFile = new File(prefix + DATA_FILE_SUFFIX);
+    final File blockFile = new File(prefix + BLOCK_FILE_SUFFIX);
+    // the scans keep views of the mapped file
+    blockFile.deleteOnExit();
+    try (InputStream is = new FileInputStream(dataFile)) {
+      final XMLStreamReader reader = new BlockXMLStreamReader(
+          XMLInputFactory.newInstance().createXMLStreamReader(is), blockFile);
+      readScans(reader, file);
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot read scans of raw data file " + file.getName(), e);
+    }
+    dataFile.delete();
+    return file;
+  }
+
+  private static String getChildText(Element element, String childName) {
+    return element.getElementsByTagName(childName).item(0).getTextContent();
+  }
+
+  /**
+   * Reads all scans written by {@link #writeScans(RawDataFile, XMLStreamWriter)} and adds them to
+   * the file.
+   */
+  public static void readScans(@NotNull XMLStreamReader reader, @NotNull RawDataFile file)
+      throws XMLStreamException, IOException {
+    while (reader.hasNext()) {
+      final int next = reader.next();
+      if (next == XMLEvent.END_ELEMENT && reader.getLocalName()
+          .equals(CONST.XML_SCAN_LIST_ELEMENT)) {
+        break;
+      }
+      if (next == XMLEvent.START_ELEMENT && reader.getLocalName()
+          .equals(CONST.XML_RAW_FILE_SCAN_ELEMENT)) {
+        readScan(reader, file);
+      }
+    }
+  }
+
+  private static void readScan(XMLStreamReader reader, RawDataFile file)
+      throws XMLStreamException, IOException {
+    final int scanNumber = Integer.parseInt(reader.getAttributeValue(null, XML_SCAN_NUMBER_ATTR));
+    final int msLevel = Integer.parseInt(reader.getAttributeValue(null, XML_MS_LEVEL_ATTR));
+    final float rt = Float.parseFloat(reader.getAttributeValue(null, XML_RT_ATTR));
+    final PolarityType polarity = PolarityType.valueOf(
+        reader.getAttributeValue(null, XML_POLARITY_ATTR));
+    final MassSpectrumType spectrumType = MassSpectrumType.valueOf(
+        reader.getAttributeValue(null, XML_SPECTRUM_TYPE_ATTR));
+    final String scanDefinition = reader.getAttributeValue(null, XML_SCAN_DEFINITION_ATTR);
+    final String scanMzRangeValue = reader.getAttributeValue(null, XML_SCAN_MZ_RANGE_ATTR);
+    final Range<Double> scanMzRange =
+        scanMzRangeValue != null ? ParsingUtils.stringToDoubleRange(scanMzRangeValue) : null;
+    final SpectrumStatistics statistics = SpectrumStatistics.read(reader);
+
+    SimpleScan scan = null;
+    DoubleBuffer mzs = null;
+    while (reader.hasNext()) {
+      final int next = reader.next();
+      if (next == XMLEvent.END_ELEMENT && reader.getLocalName()
+          .equals(CONST.XML_RAW_FILE_SCAN_ELEMENT)) {
+        break;
+      }
+      if (next != XMLEvent.START_ELEMENT) {
+        continue;
+      }
+      switch (reader.getLocalName()) {
+        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = BlockXMLStreamReader.readDoubleBuffer(reader);
+        case CONST.XML_INTENSITY_VALUES_ELEMENT -> {
+          final DoubleBuffer intensities = BlockXMLStreamReader.readDoubleBuffer(reader);
+          if (mzs == null) {
+            throw new XMLStreamException("Scan " + scanNumber + " has no m/z values.");
+          }
+          // values of a binary block are a view of the mapped project file, text values are stored
+          scan = mzs.hasArray() ? new SimpleScan(file, scanNumber, msLevel, rt, null, mzs.array(),
+              intensities.array(), spectrumType, polarity, scanDefinition, scanMzRange)
+              : new SimpleScan(file, scanNumber, msLevel, rt, null, mzs, intensities,
+                  statistics.mzRange(), statistics.basePeakIndex(), statistics.totalIonCurrent(),
+                  spectrumType, polarity, scanDefinition, scanMzRange);
+          // the ms ms info references the scan by its index
+          file.addScan(scan);
+        }
+        case XML_MASS_LIST_ELEMENT -> {
+          if (scan == null) {
+            throw new XMLStreamException("Mass list before data points of scan " + scanNumber);
+          }
+          scan.addMassList(readMassList(reader, scan, file.getMemoryMapStorage()));
+        }
+        case MsMsInfo.XML_ELEMENT -> {
+          if (scan == null) {
+            throw new XMLStreamException("MS/MS info before data points of scan " + scanNumber);
+          }
+          scan.setMsMsInfo(MsMsInfo.loadFromXML(reader, file));
+        }
+      }
+    }
+  }
+
+  private static MassList readMassList(XMLStreamReader reader, Scan scan,
+      @Nullable MemoryMapStorage storage) throws XMLStreamException {
+    if (XML_SCAN_POINTER_MASS_LIST.equals(
+        reader.getAttributeValue(null, XML_MASS_LIST_TYPE_ATTR))) {
+      return new ScanPointerMassList(scan);
+    }
+    final SpectrumStatistics statistics = SpectrumStatistics.read(reader);
+
+    DoubleBuffer mzs = null;
+    DoubleBuffer intensities = null;
+    while (reader.hasNext()) {
+      final int next = reader.next();
+      if (next == XMLEvent.END_ELEMENT && reader.getLocalName().equals(XML_MASS_LIST_ELEMENT)) {
+        break;
+      }
+      if (next != XMLEvent.START_ELEMENT) {
+        continue;
+      }
+      switch (reader.getLocalName()) {
+        case CONST.XML_MZ_VALUES_ELEMENT -> mzs = BlockXMLStreamReader.readDoubleBuffer(reader);
+        case CONST.XML_INTENSITY_VALUES_ELEMENT -> intensities =
+            BlockXMLStreamReader.readDoubleBuffer(reader);
+      }
+    }
+    if (mzs == null || intensities == null) {
+      throw new XMLStreamException("Incomplete " + XML_MASS_LIST_ELEMENT + " element.");
+    }
+    if (mzs.hasArray()) {
+      return new SimpleMassList(storage, mzs.array(), intensities.array());
+    }
+    return new SimpleMassList(mzs, intensities, statistics.mzRange(),
+        statistics.basePeakIndex(), statistics.totalIonCurrent());
+  }
+}
@@ -17,7 +17,6 @@
 
 package io.github.mzmine.modules.io.projectsave;
 
-import com.sun.xml.txw2.output.IndentingXMLStreamWriter;
 import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
@@ -29,11 +28,13 @@ import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.FeaturesType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamWriter;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ParsingUtils;
 import io.github.mzmine.util.StreamCopy;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -45,6 +46,8 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
@@ -68,6 +71,7 @@ public class FeatureListSaveTask extends AbstractTask {
 
   public static final String METADATA_FILE_SUFFIX = "_metadata.xml";
   public static final String DATA_FILE_SUFFIX = "_data.xml";
+  public static final String BLOCK_FILE_SUFFIX = "_blocks.bin";
   public static final String FLIST_FOLDER = "featurelists/";
   private static final Logger logger = Logger.getLogger(FeatureListSaveTask.class.getName());
   private static final IDType idType = new IDType();
@@ -90,6 +94,10 @@ public class FeatureListSaveTask extends AbstractTask {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + DATA_FILE_SUFFIX;
   }
 
+  public static String getBlockFileName(String flistname) {
+    return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + BLOCK_FILE_SUFFIX;
+  }
+
   public static String getMetadataFileName(String flistname) {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + METADATA_FILE_SUFFIX;
   }
@@ -218,20 +226,30 @@ public class FeatureListSaveTask extends AbstractTask {
     root.appendChild(dataFilesListElement);
   }
 
+  /**
+   * Writes the rows to an xml file. The arrays of series and spectra are written to a separate
+   * file of compressed binary blocks, see {@link BlockXMLStreamWriter}.
+   */
   private boolean saveFeatureData() {
     logger.finest(() -> "Creating temporary file for feature list " + flist.getName() + ".");
     File tempFile;
+    File tempBlockFile;
     try {
       tempFile = File.createTempFile("mzmine_featurelist_data", ".tmp");
+      tempBlockFile = File.createTempFile("mzmine_featurelist_blocks", ".tmp");
     } catch (IOException e) {
       logger.log(Level.SEVERE, "Cannot create temporary file.", e);
       setStatus(TaskStatus.ERROR);
       return false;
     }
 
-    try (OutputStream os = new FileOutputStream(tempFile)) {
+    final CRC32 blockCrc = new CRC32();
+    try (OutputStream os = new FileOutputStream(tempFile);
+        OutputStream bos = new CheckedOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tempBlockFile)), blockCrc)) {
       final XMLOutputFactory xof = XMLOutputFactory.newInstance();
-      final XMLStreamWriter writer = new IndentingXMLStreamWriter(xof.createXMLStreamWriter(os));
+      final XMLStreamWriter writer = new BlockXMLStreamWriter(xof.createXMLStreamWriter(os), bos,
+          true);
       writer.writeStartDocument("UTF-8", "1.0");
 
       writer.writeStartElement("featurelist");
@@ -256,21 +274,34 @@ public class FeatureListSaveTask extends AbstractTask {
     } catch (IOException | XMLStreamException e) {
       logger.log(Level.SEVERE, e.getMessage(), e);
       setStatus(TaskStatus.ERROR);
+      tempBlockFile.delete();
       return false;
     }
 
     if (isCanceled()) {
       tempFile.delete();
+      tempBlockFile.delete();
       return false;
     }
 
-    try (FileInputStream is = new FileInputStream(tempFile)) {
+    try (FileInputStream is = new FileInputStream(tempFile);
+        FileInputStream bis = new FileInputStream(tempBlockFile)) {
       zos.putNextEntry(new ZipEntry(getDataFileName(flist.getName())));
       copy.copy(is, zos);
+      // the blocks are already compressed
+      final ZipEntry blockEntry = new ZipEntry(getBlockFileName(flist.getName()));
+      blockEntry.setMethod(ZipEntry.STORED);
+      blockEntry.setSize(tempBlockFile.length());
+      blockEntry.setCompressedSize(tempBlockFile.length());
+      blockEntry.setCrc(blockCrc.getValue());
+      zos.putNextEntry(blockEntry);
+      copy.copy(bis, zos);
     } catch (IOException e) {
       logger.log(Level.SEVERE, e.getMessage(), e);
       setStatus(TaskStatus.ERROR);
       return false;
+    } finally {
+      tempBlockFile.delete();
     }
 
 //    tempFile.delete();
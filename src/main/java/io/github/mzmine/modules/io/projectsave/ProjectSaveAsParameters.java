@@ -23,6 +23,7 @@ import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.dialogs.ParameterSetupDialog;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileSelectionType;
@@ -51,12 +52,19 @@ public class ProjectSaveAsParameters extends SimpleParameterSet {
       + "files should not be moved or renamed). Standalone copies the raw data files into the project, "
       + "creating a large but flexible project that can be shared.", ProjectSaveOption.values(),
       ProjectSaveOption.REFERENCING);
+  public static final BooleanParameter rawDataSnapshots = new BooleanParameter(
+      "Save raw data snapshots",
+      "Saves the scans and mass lists of the raw data files to the project, so they are loaded "
+      + "directly instead of importing the raw data files again. Creates larger projects that open "
+      + "faster. Ion mobility and imaging files are always imported again, they are listed when "
+      + "the project is saved. Standalone projects do not copy the files saved as snapshot.",
+      false);
   public static final FileNameParameter projectFile = new FileNameParameter("Project file",
       "File name of project to be saved", extensions, FileSelectionType.SAVE);
   private static final Logger logger = Logger.getLogger(ProjectSaveAsParameters.class.getName());
 
   public ProjectSaveAsParameters() {
-    super(new Parameter[]{projectFile, option});
+    super(new Parameter[]{projectFile, option, rawDataSnapshots});
   }
 
   @Override
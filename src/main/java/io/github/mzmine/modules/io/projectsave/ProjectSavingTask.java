@@ -54,6 +54,7 @@ public class ProjectSavingTask extends AbstractTask {
   public static final String PARAMETERS_FILENAME = "User parameters.xml";
   private static final Logger logger = Logger.getLogger(ProjectSavingTask.class.getName());
   private final ProjectSaveOption projectType;
+  private final boolean saveRawDataSnapshots;
 
   private final File saveFile;
   private final MZmineProjectImpl savedProject;
@@ -75,6 +76,7 @@ public class ProjectSavingTask extends AbstractTask {
     this.savedProject = (MZmineProjectImpl) project;
     this.saveFile = parameters.getValue(ProjectSaveAsParameters.projectFile);
     this.projectType = parameters.getValue(ProjectSaveAsParameters.option);
+    this.saveRawDataSnapshots = parameters.getValue(ProjectSaveAsParameters.rawDataSnapshots);
     dataFilesIDMap = new Hashtable<>();
     this.totalSaveItems = project.getDataFiles().length + project.getCurrentFeatureLists().size();
   }
@@ -311,7 +313,8 @@ public class ProjectSavingTask extends AbstractTask {
 
     AtomicBoolean finished = new AtomicBoolean(false);
     rawDataFileSaveHandler = new RawDataFileSaveHandler(savedProject, zipStream,
-        Objects.requireNonNullElse(savedProject.isStandalone(), true), getModuleCallDate());
+        Objects.requireNonNullElse(savedProject.isStandalone(), true), saveRawDataSnapshots,
+        getModuleCallDate());
     rawDataFileSaveHandler.addTaskStatusListener((task, newStatus, oldStatus) -> {
       switch (newStatus) {
         case WAITING, PROCESSING -> {
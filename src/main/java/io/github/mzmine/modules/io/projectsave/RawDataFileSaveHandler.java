@@ -20,9 +20,11 @@ package io.github.mzmine.modules.io.projectsave;
 
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.batchmode.BatchQueue;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileSnapshot;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNamesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilePlaceholder;
@@ -42,13 +44,17 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
@@ -84,6 +90,11 @@ public class RawDataFileSaveHandler extends AbstractTask {
   private double progress = 0;
   private final List<RawDataFile> files;
   private final boolean saveFilesInProject;
+  private final List<RawDataFile> snapshotFiles;
+  // files without a snapshot that are imported by the batch on load
+  private final List<RawDataFile> importedFiles;
+  // files that were requested as snapshot but are not supported
+  private final List<RawDataFile> unsupportedSnapshotFiles;
   private final String prefix = "Saving raw data files: ";
   private String description;
   private final int numSteps;
@@ -95,20 +106,32 @@ public class RawDataFileSaveHandler extends AbstractTask {
   }
 
   public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
-      boolean saveFilesInProject, @NotNull Instant moduleCallDate) {
+      boolean saveFilesInProject, boolean saveSnapshots, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.project = project;
     this.zipStream = zipOutputStream;
     this.saveFilesInProject = saveFilesInProject;
     files = List.of(project.getDataFiles());
-    numSteps = 1 /*dissect + merge */ + (saveFilesInProject ? files.size() : 0) /*save files*/
-        + 1 /*save batch file*/;
+    snapshotFiles = saveSnapshots ? files.stream().filter(RawDataFileSnapshot::isSupported).toList()
+        : List.of();
+    importedFiles = files.stream().filter(file -> !snapshotFiles.contains(file)).toList();
+    unsupportedSnapshotFiles = saveSnapshots ? importedFiles : List.of();
+    numSteps = 1 /*dissect + merge */
+        + (saveFilesInProject ? importedFiles.size() : 0) /*save files*/
+        + 1 /*save batch file*/ + snapshotFiles.size() /*save snapshots*/;
     stepProgress = 1 / (double) numSteps;
   }
 
   public boolean saveRawDataFilesAsBatch() throws IOException, ParserConfigurationException {
 
-    List<BatchQueue> cleanedBatchQueues = List.of(RawDataSavingUtils.makeBatchQueue(files));
+    if (!unsupportedSnapshotFiles.isEmpty()) {
+      showUnsupportedSnapshotFiles();
+    }
+
+    // files with a snapshot are not imported on load
+    List<BatchQueue> cleanedBatchQueues = List.of(
+        RawDataSavingUtils.makeBatchQueue(importedFiles));
+    removeSnapshotFiles(cleanedBatchQueues);
     progress += stepProgress;
 
     if (saveFilesInProject) {
@@ -161,9 +184,76 @@ public class RawDataFileSaveHandler extends AbstractTask {
     }
     progress += stepProgress;
 
+    for (int i = 0; i < snapshotFiles.size(); i++) {
+      final RawDataFile file = snapshotFiles.get(i);
+      description = prefix + "Saving snapshot of " + file.getName();
+      logger.finest(() -> "Saving snapshot of raw data file " + file.getName());
+      // the index in the project restores the order of all files on load
+      RawDataFileSnapshot.save(file, files.indexOf(file), zipStream, new StreamCopy());
+      progress += stepProgress;
+    }
+
     return true;
   }
 
+  /**
+   * Tells the user which files are imported again when the project is opened, e.g., ion mobility or
+   * imaging files.
+   */
+  private void showUnsupportedSnapshotFiles() {
+    final String names = unsupportedSnapshotFiles.stream().map(RawDataFile::getName)
+        .collect(Collectors.joining("\n"));
+    logger.warning(() -> "No snapshot saved for raw data files (imported on load): " + names);
+    MZmineCore.getDesktop().displayMessage("Raw data snapshots",
+        "Snapshots are not supported for ion mobility and imaging files. The following files are "
+        + "saved for the raw data import and are imported again when the project is opened:\n"
+        + names);
+  }
+
+  /**
+   * Removes the files with a snapshot from the batch queues, they are loaded from the snapshot.
+   * Steps that do not process any other file are removed.
+   *
+   * @param queues The batch queues.
+   */
+  private void removeSnapshotFiles(List<BatchQueue> queues) {
+    if (snapshotFiles.isEmpty()) {
+      return;
+    }
+    final Set<String> paths = snapshotFiles.stream().map(RawDataFile::getAbsolutePath)
+        .filter(Objects::nonNull).collect(Collectors.toSet());
+    final Set<String> names = snapshotFiles.stream().map(RawDataFile::getName)
+        .collect(Collectors.toSet());
+
+    for (final BatchQueue queue : queues) {
+      queue.removeIf(step -> {
+        boolean noFilesLeft = false;
+        for (Parameter<?> parameter : step.getParameterSet().getParameters()) {
+          if (parameter instanceof FileNamesParameter fnp && fnp.getValue() != null) {
+            final File[] oldValue = fnp.getValue();
+            final File[] newValue = Arrays.stream(oldValue)
+                .filter(file -> !paths.contains(file.getAbsolutePath())).toArray(File[]::new);
+            fnp.setValue(newValue);
+            noFilesLeft |= newValue.length == 0 && oldValue.length > 0;
+          } else if (parameter instanceof RawDataFilesParameter rfp
+              && rfp.getValue().getSelectionType() == RawDataFilesSelectionType.SPECIFIC_FILES) {
+            final RawDataFilePlaceholder[] oldValue = rfp.getValue().getSpecificFilesPlaceholders();
+            final RawDataFilePlaceholder[] newValue = Arrays.stream(oldValue)
+                .filter(file -> !names.contains(file.getName()))
+                .toArray(RawDataFilePlaceholder[]::new);
+            rfp.getValue().setSpecificFiles(newValue);
+            noFilesLeft |= newValue.length == 0 && oldValue.length > 0;
+          }
+        }
+        if (noFilesLeft) {
+          logger.finest(() -> "Removed step " + step.getModule().getName()
+                              + " from raw file batch queue, all files are saved as snapshot.");
+        }
+        return noFilesLeft;
+      });
+    }
+  }
+
   /**
    * Replaces the raw data file paths in case an independent project is saved to an MZmine project
    * file.
@@ -205,9 +295,13 @@ public class RawDataFileSaveHandler extends AbstractTask {
           } else if (parameter instanceof RawDataFilesParameter rfp && saveFilesInProject) {
             // if we save files in project, we have to adjust the paths and file selections
             RawDataFilesSelection selection = rfp.getValue();
-            final RawDataFile[] files =
+            // files with a snapshot are not imported from the project
+            final RawDataFile[] files = Arrays.stream(
                 selection.getSelectionType() == RawDataFilesSelectionType.SPECIFIC_FILES ? selection
-                    .getSpecificFilesPlaceholders() : selection.getEvaluationResult();
+                    .getSpecificFilesPlaceholders() : selection.getEvaluationResult())
+                .filter(file -> snapshotFiles.stream()
+                    .noneMatch(snapshot -> snapshot.getName().equals(file.getName())))
+                .toArray(RawDataFile[]::new);
             final RawDataFilePlaceholder[] placeholders = new RawDataFilePlaceholder[files.length];
             for (int i = 0; i < files.length; i++) {
               final RawDataFile file = files[i];
@@ -224,13 +318,14 @@ public class RawDataFileSaveHandler extends AbstractTask {
   }
 
   /**
-   * Copies the raw data files to the zip folder (MZmine project file).
+   * Copies the raw data files to the zip folder (MZmine project file). Files with a snapshot are
+   * not copied.
    *
    * @throws IOException
    */
   private void copyRawDataFilesToZip() throws IOException {
 
-    for (final RawDataFile file : files) {
+    for (final RawDataFile file : importedFiles) {
       if (file.getAbsolutePath() == null || !Files.exists(Paths.get(file.getAbsolutePath()))) {
         progress += stepProgress;
         continue;
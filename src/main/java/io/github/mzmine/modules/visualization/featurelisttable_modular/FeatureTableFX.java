@@ -50,6 +50,7 @@ import io.github.mzmine.datamodel.features.types.annotations.iin.MsMsMultimerVer
 import io.github.mzmine.datamodel.features.types.annotations.iin.PartnerIdsType;
 import io.github.mzmine.datamodel.features.types.fx.ColumnID;
 import io.github.mzmine.datamodel.features.types.fx.ColumnType;
+import io.github.mzmine.datamodel.features.types.graphicalnodes.ThumbnailRenderer;
 import io.github.mzmine.datamodel.features.types.modifiers.ExpandableType;
 import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
 import io.github.mzmine.datamodel.features.types.numbers.CCSRelativeErrorType;
@@ -297,6 +298,18 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
    * Listens to update the table if a row is added/removed to/from the feature list.
    */
   public void onChanged(final Change<? extends FeatureListRow> c) {
+    // the cached thumbnails of removed rows are not shown again
+    final List<FeatureListRow> removed = new ArrayList<>();
+    while (c.next()) {
+      if (c.wasRemoved()) {
+        removed.addAll(c.getRemoved());
+      }
+    }
+    if (!removed.isEmpty()) {
+      ThumbnailRenderer.getInstance().invalidate(removed);
+    }
+    c.reset();
+
     c.next();
     if (!(c.wasAdded() || c.wasRemoved())) {
       return;
@@ -719,6 +732,7 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
         // remove the old listener
         if (oldValue != null) {
           oldValue.getRows().removeListener(this);
+          ThumbnailRenderer.getInstance().invalidate(oldValue.getRows());
         }
         addColumns(newValue);
         // first check if feature list is too large
@@ -778,6 +792,7 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     flist.getRows().removeListener(this);
     flist.modularStream().forEach(ModularFeatureListRow::clearBufferedColCharts);
     flist.streamFeatures().forEach(ModularFeature::clearBufferedColCharts);
+    ThumbnailRenderer.getInstance().invalidate(flist.getRows());
   }
 
   public DataTypeCheckListParameter getRowTypesParameter() {
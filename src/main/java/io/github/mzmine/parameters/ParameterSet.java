@@ -21,6 +21,7 @@ package io.github.mzmine.parameters;
 import io.github.mzmine.parameters.impl.IonMobilitySupport;
 import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.util.ExitCode;
+import java.util.Arrays;
 import java.util.Collection;
 import javafx.beans.property.BooleanProperty;
 import org.jetbrains.annotations.NotNull;
@@ -37,6 +38,14 @@ public interface ParameterSet extends ParameterContainer {
 
   public <T extends Parameter<?>> T getParameter(T parameter);
 
+  /**
+   * @param parameter the parameter
+   * @return true if this set contains a parameter with the same name
+   */
+  default boolean hasParameter(@NotNull Parameter<?> parameter) {
+    return Arrays.stream(getParameters()).anyMatch(p -> p.getName().equals(parameter.getName()));
+  }
+
   default <V, T extends Parameter<V>> V getValue(T parameter) {
     final T actualParam = getParameter(parameter);
     return actualParam == null ? null : actualParam.getValue();
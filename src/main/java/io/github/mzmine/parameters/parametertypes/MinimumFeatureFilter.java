@@ -155,6 +155,23 @@ public class MinimumFeatureFilter {
            && (!excludeEstimatedFeatures || !f.getFeatureStatus().equals(FeatureStatus.ESTIMATED));
   }
 
+  /**
+   * Checks if {@link #filterMinFeaturesOverlap(CachedFeatureDataAccess, List, FeatureListRow,
+   * FeatureListRow, RTTolerance)} can only return {@link OverlapResult#TRUE} for two rows that have
+   * at least one pair of features (in the same raw data file) within the retention time tolerance.
+   * Otherwise, rows without any overlap may still pass, e.g., if no minimum number of samples is
+   * set.
+   *
+   * @param totalSamples the number of raw data files
+   * @return true if an overlap of features within the retention time tolerance is required
+   */
+  public boolean isRequiringFeaturesInRTRange(int totalSamples) {
+    if (minFInSamples.isGreaterZero() && minFInSamples.getMaximumValue(totalSamples) > 0) {
+      return true;
+    }
+    return filterGroups && sgroupSize != null && minFInGroups.isGreaterZero();
+  }
+
   /**
    * Check for overlapping features in two rows (features in the same RawDataFile with
    * height>minHeight and within rtTolerance)
@@ -28,6 +28,7 @@ import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
 import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.project.impl.ProjectChangeEvent.Type;
 import io.github.mzmine.project.parameterssetup.MetadataTable;
+import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import java.io.File;
@@ -184,6 +185,17 @@ public class MZmineProjectImpl implements MZmineProject {
 
   @Override
   public void addFile(@NotNull final RawDataFile newFile) {
+    addFile(-1, newFile);
+  }
+
+  /**
+   * Adds a file at a position of the raw data files, e.g., to restore the order of a saved
+   * project.
+   *
+   * @param index the index of the new file. The file is appended if the index is negative or larger
+   *              than the number of files.
+   */
+  public void addFile(int index, @NotNull final RawDataFile newFile) {
     try {
       rawLock.writeLock().lock();
       // avoid duplicate file names and check the actual names of the files of the raw data files
@@ -207,11 +219,18 @@ public class MZmineProjectImpl implements MZmineProject {
 
       logger.finest("Adding a new file to the project: " + newFile.getName());
 
-      rawDataFiles.add(newFile);
+      rawDataFiles.add(index < 0 || index > rawDataFiles.size() ? rawDataFiles.size() : index,
+          newFile);
       fireDataFilesChangeEvent(List.of(newFile), Type.ADDED);
     } finally {
       rawLock.writeLock().unlock();
     }
+
+    // the file is added after all scans were imported
+    final MemoryMapStorage storage = newFile.getMemoryMapStorage();
+    if (storage != null) {
+      storage.logSpectraCompression(newFile.getName());
+    }
   }
 
   @Override
@@ -225,6 +244,7 @@ public class MZmineProjectImpl implements MZmineProject {
       // Close the data file, which also removed the temporary data
       for (RawDataFile f : file) {
         f.close();
+        MemoryMapStorage.releaseOwner(f);
       }
     } finally {
       rawLock.writeLock().unlock();
@@ -271,6 +291,11 @@ public class MZmineProjectImpl implements MZmineProject {
 
       featureLists.removeAll(featureList);
       fireFeatureListsChangeEvent(List.of(featureList), Type.REMOVED);
+
+      // release the temporary data
+      for (FeatureList flist : featureList) {
+        MemoryMapStorage.releaseOwner(flist);
+      }
     } finally {
       featureLock.writeLock().unlock();
     }
@@ -304,6 +329,11 @@ public class MZmineProjectImpl implements MZmineProject {
 
       this.featureLists.removeAll(featureLists);
       fireFeatureListsChangeEvent(List.copyOf(featureLists), Type.REMOVED);
+
+      // release the temporary data
+      for (FeatureList flist : featureLists) {
+        MemoryMapStorage.releaseOwner(flist);
+      }
     } finally {
       featureLock.writeLock().unlock();
     }
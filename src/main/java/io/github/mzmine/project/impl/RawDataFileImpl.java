@@ -98,6 +98,9 @@ public class RawDataFileImpl implements RawDataFile {
       @Nullable final MemoryMapStorage storage, @NotNull Color color) {
     setName(dataFileName);
     this.storageMemoryMap = storage;
+    if (storage != null) {
+      storage.registerOwner(this);
+    }
     this.absolutePath = absolutePath;
 
     scans = FXCollections.observableArrayList();
@@ -25,6 +25,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import org.jetbrains.annotations.NotNull;
@@ -45,6 +46,8 @@ public abstract class AbstractTask implements Task {
   // listener to control status changes
   private List<TaskStatusListener> listener;
   private StringProperty name = new SimpleStringProperty("Task name");
+  // completes with the first final status (finished, canceled, error)
+  private final CompletableFuture<TaskStatus> completionFuture = new CompletableFuture<>();
 
   public final String getName() {
     return name.get();
@@ -88,6 +91,22 @@ public abstract class AbstractTask implements Task {
     if (listener != null && !status.equals(old))
       for (int i = 0; i < listener.size(); i++)
         listener.get(i).taskStatusChanged(this, status, old);
+    if (newStatus == TaskStatus.FINISHED || newStatus == TaskStatus.CANCELED
+        || newStatus == TaskStatus.ERROR) {
+      completionFuture.complete(newStatus);
+    }
+  }
+
+  /**
+   * The future completes as soon as this task reaches the status {@link TaskStatus#FINISHED},
+   * {@link TaskStatus#CANCELED}, or {@link TaskStatus#ERROR} (the first of these statuses is the
+   * result). Use it to react on the end of a task instead of polling its status. The future should
+   * not be completed from outside.
+   *
+   * @return a future that completes with the final status of this task
+   */
+  public CompletableFuture<TaskStatus> getCompletionFuture() {
+    return completionFuture;
   }
 
   /**
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.taskcontrol;
+
+/**
+ * Defines how the task controller starts queued tasks.
+ */
+public enum TaskSchedulerMode {
+  /**
+   * The task controller thread checks the queue periodically and starts a new thread for each
+   * task.
+   */
+  POLLING("Polling (new thread per task)"),
+  /**
+   * Tasks are started as soon as they are submitted or a thread becomes available. NORMAL priority
+   * tasks run on a bounded work-stealing pool, HIGH priority tasks on reused threads.
+   */
+  WORK_STEALING("Event driven (thread pool)");
+
+  private final String label;
+
+  TaskSchedulerMode(String label) {
+    this.label = label;
+  }
+
+  @Override
+  public String toString() {
+    return label;
+  }
+}
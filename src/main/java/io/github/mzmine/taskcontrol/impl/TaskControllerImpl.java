@@ -28,11 +28,19 @@ import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskControlListener;
 import io.github.mzmine.taskcontrol.TaskController;
 import io.github.mzmine.taskcontrol.TaskPriority;
+import io.github.mzmine.taskcontrol.TaskSchedulerMode;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -56,6 +64,23 @@ public class TaskControllerImpl implements TaskController, Runnable {
    */
   private Vector<WorkerThread> runningThreads;
 
+  /**
+   * Bounded work-stealing pool for NORMAL priority tasks in {@link TaskSchedulerMode#WORK_STEALING}
+   * mode. Parallelism follows the maximum number of threads in the preferences.
+   */
+  private ForkJoinPool normalPriorityPool;
+
+  /**
+   * HIGH priority tasks are always started immediately in {@link TaskSchedulerMode#WORK_STEALING}
+   * mode, but idle threads are reused.
+   */
+  private ExecutorService highPriorityPool;
+
+  /**
+   * Tasks that are currently processed by one of the thread pools
+   */
+  private final Set<WrappedTask> runningPooledTasks = ConcurrentHashMap.newKeySet();
+
   /**
    * Initialize the task controller
    */
@@ -66,6 +91,14 @@ public class TaskControllerImpl implements TaskController, Runnable {
 
     runningThreads = new Vector<WorkerThread>();
 
+    final AtomicInteger highPriorityThreadCounter = new AtomicInteger(0);
+    highPriorityPool = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r,
+          "High priority task thread " + highPriorityThreadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
     // Create a low-priority thread that will manage the queue and start
     // worker threads for tasks
     taskControllerThread = new Thread(this, "Task controller thread");
@@ -122,6 +155,13 @@ public class TaskControllerImpl implements TaskController, Runnable {
       // task.getTaskDescription());
     }
 
+    // start the tasks right away, the controller thread only updates the task view
+    if (getSchedulerMode() == TaskSchedulerMode.WORK_STEALING) {
+      for (WrappedTask wrappedTask : wrappedTasks) {
+        scheduleOnPool(wrappedTask);
+      }
+    }
+
     // Wake up the task controller thread
     synchronized (this) {
       this.notifyAll();
@@ -170,48 +210,16 @@ public class TaskControllerImpl implements TaskController, Runnable {
         continue;
       }
 
-      // Remove already finished threads from runningThreads
-      Iterator<WorkerThread> threadIterator = runningThreads.iterator();
-      while (threadIterator.hasNext()) {
-        WorkerThread thread = threadIterator.next();
-        if (thread.isFinished()) {
-          threadIterator.remove();
-        }
-      }
-
-      // Get a snapshot of the queue
-      WrappedTask[] queueSnapshot = taskQueue.getQueueSnapshot();
-
-      // Obtain the settings of max concurrent threads
-      NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
-          .getParameter(MZminePreferences.numOfThreads);
-      int maxRunningThreads;
-      if (parameter.isAutomatic() || (parameter.getValue() == null)) {
-        maxRunningThreads = Runtime.getRuntime().availableProcessors();
-      } else {
-        maxRunningThreads = parameter.getValue();
-      }
-
-      // Check all tasks in the queue
-      for (WrappedTask task : queueSnapshot) {
-
-        // Skip assigned and canceled tasks
-        if (task.isAssigned() || (task.getActualTask().getStatus() == TaskStatus.CANCELED)) {
-          continue;
-        }
-
-        // Create a new thread if the task is high-priority or if we
-        // have less then maximum # of threads running
-        if ((task.getPriority() == TaskPriority.HIGH) || (runningThreads.size()
-            < maxRunningThreads)) {
-          WorkerThread newThread = new WorkerThread(task);
-
-          if (task.getPriority() == TaskPriority.NORMAL) {
-            runningThreads.add(newThread);
+      if (getSchedulerMode() == TaskSchedulerMode.WORK_STEALING) {
+        // tasks are started on submission. Only catch tasks that were queued while the
+        // polling mode was active
+        for (WrappedTask task : taskQueue.getQueueSnapshot()) {
+          if (!task.isAssigned() && !task.isScheduled()) {
+            scheduleOnPool(task);
           }
-
-          newThread.start();
         }
+      } else {
+        startWaitingTasks();
       }
 
       // Refresh the tasks window
@@ -231,6 +239,137 @@ public class TaskControllerImpl implements TaskController, Runnable {
 
   }
 
+  /**
+   * Starts new worker threads for waiting tasks in {@link TaskSchedulerMode#POLLING} mode.
+   */
+  private void startWaitingTasks() {
+    // Remove already finished threads from runningThreads
+    Iterator<WorkerThread> threadIterator = runningThreads.iterator();
+    while (threadIterator.hasNext()) {
+      WorkerThread thread = threadIterator.next();
+      if (thread.isFinished()) {
+        threadIterator.remove();
+      }
+    }
+
+    // Get a snapshot of the queue
+    WrappedTask[] queueSnapshot = taskQueue.getQueueSnapshot();
+
+    // Obtain the settings of max concurrent threads
+    final int maxRunningThreads = getMaxRunningThreads();
+
+    // Check all tasks in the queue
+    for (WrappedTask task : queueSnapshot) {
+
+      // Skip assigned and canceled tasks
+      if (task.isAssigned() || (task.getActualTask().getStatus() == TaskStatus.CANCELED)) {
+        continue;
+      }
+
+      // Create a new thread if the task is high-priority or if we
+      // have less then maximum # of threads running
+      if ((task.getPriority() == TaskPriority.HIGH) || (runningThreads.size()
+          < maxRunningThreads)) {
+        WorkerThread newThread = new WorkerThread(task);
+        // a thread pool may have claimed the task after switching the scheduler mode
+        if (!task.tryAssignTo(newThread)) {
+          continue;
+        }
+
+        if (task.getPriority() == TaskPriority.NORMAL) {
+          runningThreads.add(newThread);
+        }
+
+        newThread.start();
+      }
+    }
+  }
+
+  /**
+   * Submits a task to the high or normal priority pool in {@link TaskSchedulerMode#WORK_STEALING}
+   * mode. The task is started as soon as a thread of the pool is available.
+   */
+  private void scheduleOnPool(WrappedTask task) {
+    task.setScheduled(true);
+    if (task.getPriority() == TaskPriority.HIGH) {
+      highPriorityPool.execute(() -> runPooledTask(task));
+    } else {
+      getNormalPriorityPool().execute(() -> runPooledTask(task));
+    }
+  }
+
+  /**
+   * Runs the task on the current pool thread, if it was not canceled or claimed by another thread
+   * (e.g., after a priority change to HIGH).
+   */
+  private void runPooledTask(WrappedTask task) {
+    if (task.getActualTask().getStatus() == TaskStatus.CANCELED) {
+      return;
+    }
+    final Thread thread = Thread.currentThread();
+    if (!task.tryAssignTo(thread)) {
+      return;
+    }
+
+    runningPooledTasks.add(task);
+    try {
+      thread.setPriority(
+          task.getPriority() == TaskPriority.HIGH ? Thread.MAX_PRIORITY : Thread.NORM_PRIORITY);
+      WorkerThread.executeTask(task);
+    } finally {
+      runningPooledTasks.remove(task);
+      // pool threads are reused
+      thread.setPriority(Thread.NORM_PRIORITY);
+    }
+  }
+
+  /**
+   * The pool is recreated if the number of threads was changed in the preferences. Tasks that were
+   * already submitted to the old pool are still processed.
+   *
+   * @return the bounded pool for NORMAL priority tasks
+   */
+  private synchronized ForkJoinPool getNormalPriorityPool() {
+    final int maxRunningThreads = getMaxRunningThreads();
+    if (normalPriorityPool == null || normalPriorityPool.getParallelism() != maxRunningThreads) {
+      if (normalPriorityPool != null) {
+        logger.finest(() -> "Changing number of task threads from "
+            + normalPriorityPool.getParallelism() + " to " + maxRunningThreads);
+        normalPriorityPool.shutdown();
+      }
+      normalPriorityPool = new ForkJoinPool(maxRunningThreads, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(
+            pool);
+        thread.setName("Task worker thread " + thread.getPoolIndex());
+        return thread;
+        // async mode processes tasks in FIFO order
+      }, null, true);
+    }
+    return normalPriorityPool;
+  }
+
+  /**
+   * @return the maximum number of concurrently running NORMAL priority tasks
+   */
+  private int getMaxRunningThreads() {
+    NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    if (parameter.isAutomatic() || (parameter.getValue() == null)) {
+      return Runtime.getRuntime().availableProcessors();
+    } else {
+      return parameter.getValue();
+    }
+  }
+
+  /**
+   * @return the scheduler mode selected in the preferences
+   */
+  public TaskSchedulerMode getSchedulerMode() {
+    final TaskSchedulerMode mode = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.taskSchedulerMode).getValue();
+    return mode == null ? TaskSchedulerMode.POLLING : mode;
+  }
+
   @Override
   public void setTaskPriority(Task task, TaskPriority priority) {
 
@@ -244,6 +383,12 @@ public class TaskControllerImpl implements TaskController, Runnable {
         logger.finest(
             "Setting priority of task \"" + task.getTaskDescription() + "\" to " + priority);
         wrappedTask.setPriority(priority);
+
+        // HIGH priority tasks should not wait for a free thread of the normal pool
+        if (priority == TaskPriority.HIGH && !wrappedTask.isAssigned()
+            && getSchedulerMode() == TaskSchedulerMode.WORK_STEALING) {
+          highPriorityPool.execute(() -> runPooledTask(wrappedTask));
+        }
       }
     }
 
@@ -275,6 +420,12 @@ public class TaskControllerImpl implements TaskController, Runnable {
       }
     }
 
+    for (WrappedTask pooledTask : runningPooledTasks) {
+      if (clazz.isInstance(pooledTask.getActualTask())) {
+        return true;
+      }
+    }
+
     return false;
   }
 
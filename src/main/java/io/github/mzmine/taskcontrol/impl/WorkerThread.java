@@ -19,6 +19,7 @@
 package io.github.mzmine.taskcontrol.impl;
 
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ExceptionUtils;
@@ -30,21 +31,39 @@ import java.util.logging.Logger;
  */
 class WorkerThread extends Thread {
 
-  private Logger logger = Logger.getLogger(this.getClass().getName());
+  private static final Logger logger = Logger.getLogger(WorkerThread.class.getName());
 
-  private WrappedTask wrappedTask;
+  private final WrappedTask wrappedTask;
   private boolean finished = false;
 
+  /**
+   * The thread still needs to be assigned to the task by {@link WrappedTask#tryAssignTo(Thread)}
+   * before it is started.
+   */
   WorkerThread(WrappedTask wrappedTask) {
     super("Thread executing task " + wrappedTask);
     this.wrappedTask = wrappedTask;
-    wrappedTask.assignTo(this);
   }
 
   /**
    * @see java.lang.Runnable#run()
    */
   public void run() {
+    executeTask(wrappedTask);
+
+    /*
+     * Mark this thread as finished
+     */
+    finished = true;
+  }
+
+  /**
+   * Runs the task on the current thread, logs the result and reports unhandled errors. Used by
+   * {@link WorkerThread} and the pooled threads of the {@link TaskControllerImpl}.
+   *
+   * @param wrappedTask the task to process
+   */
+  static void executeTask(WrappedTask wrappedTask) {
 
     Task actualTask = wrappedTask.getActualTask();
 
@@ -79,6 +98,11 @@ class WorkerThread extends Thread {
        */
       wrappedTask.removeTaskReference();
 
+      // abstract tasks complete the future on their final status, which may be set later
+      if (!(actualTask instanceof AbstractTask)) {
+        wrappedTask.complete(actualTask.getStatus());
+      }
+
     } catch (Throwable e) {
 
       /*
@@ -95,13 +119,8 @@ class WorkerThread extends Thread {
       MZmineCore.getDesktop().displayErrorMessage("Unhandled exception in task "
           + actualTask.getTaskDescription() + ": " + ExceptionUtils.exceptionToString(e));
 
+      wrappedTask.completeExceptionally(e);
     }
-
-    /*
-     * Mark this thread as finished
-     */
-    finished = true;
-
   }
 
   boolean isFinished() {
@@ -19,8 +19,11 @@
 package io.github.mzmine.taskcontrol.impl;
 
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.util.concurrent.CompletableFuture;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -47,11 +50,45 @@ public class WrappedTask {
 
   private Task task;
   private Property<TaskPriority> priority;
-  private WorkerThread assignedTo;
+  private volatile Thread assignedTo;
+  /**
+   * Marks tasks that were already handed to a thread pool of the task controller
+   */
+  private volatile boolean scheduled = false;
+  private final CompletableFuture<TaskStatus> completionFuture = new CompletableFuture<>();
 
   public WrappedTask(Task task, TaskPriority priority) {
     this.task = task;
     this.priority = new SimpleObjectProperty<>(priority);
+    if (task instanceof AbstractTask abstractTask) {
+      abstractTask.getCompletionFuture().thenAccept(completionFuture::complete);
+    }
+  }
+
+  /**
+   * Completes with the final status of the task ({@link TaskStatus#FINISHED}, {@link
+   * TaskStatus#CANCELED}, {@link TaskStatus#ERROR}). Tasks that are no {@link AbstractTask}
+   * complete after their run method returned. Completes exceptionally if the task threw an
+   * unhandled exception.
+   *
+   * @return a future that completes when the task is done
+   */
+  public CompletableFuture<TaskStatus> getCompletionFuture() {
+    return completionFuture;
+  }
+
+  /**
+   * Called by the worker thread after the task was processed
+   */
+  void complete(TaskStatus status) {
+    completionFuture.complete(status);
+  }
+
+  /**
+   * Called by the worker thread if the task threw an unhandled exception
+   */
+  void completeExceptionally(Throwable throwable) {
+    completionFuture.completeExceptionally(throwable);
   }
 
   /**
@@ -66,10 +103,11 @@ public class WrappedTask {
    */
   void setPriority(TaskPriority priority) {
     MZmineCore.runLater(() -> this.priority.setValue(priority));
-    if (assignedTo != null) {
+    final Thread thread = assignedTo;
+    if (thread != null) {
       switch (priority) {
-        case HIGH -> assignedTo.setPriority(Thread.MAX_PRIORITY);
-        case NORMAL -> assignedTo.setPriority(Thread.NORM_PRIORITY);
+        case HIGH -> thread.setPriority(Thread.MAX_PRIORITY);
+        case NORMAL -> thread.setPriority(Thread.NORM_PRIORITY);
       }
     }
   }
@@ -85,8 +123,29 @@ public class WrappedTask {
     return assignedTo != null;
   }
 
-  void assignTo(WorkerThread thread) {
+  /**
+   * Assigns this task to a thread. Only the first thread to claim the task is allowed to run it.
+   *
+   * @param thread the thread that will process the task
+   * @return true if the task was assigned to this thread, false if it was already assigned
+   */
+  synchronized boolean tryAssignTo(Thread thread) {
+    if (assignedTo != null) {
+      return false;
+    }
     assignedTo = thread;
+    return true;
+  }
+
+  /**
+   * @return true if this task was already submitted to a thread pool
+   */
+  boolean isScheduled() {
+    return scheduled;
+  }
+
+  void setScheduled(boolean scheduled) {
+    this.scheduled = scheduled;
   }
 
   /**
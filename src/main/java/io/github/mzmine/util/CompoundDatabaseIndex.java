@@ -0,0 +1,186 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util;
+
+import com.google.common.collect.Range;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Candidate lookup for compound databases. The (neutral or ion) m/z values of the entries are
+ * sorted in a primitive array, the optional RT and mobility values are kept in the same order. A
+ * query finds the m/z window by a binary search and filters it by the RT and mobility windows.
+ * Entries without RT or mobility pass these filters. The index is immutable and can be queried by
+ * multiple threads.
+ *
+ * @param <T> the database entry
+ */
+public class CompoundDatabaseIndex<T> {
+
+  private final List<T> entries;
+  /**
+   * sorted m/z values
+   */
+  private final double[] mzs;
+  /**
+   * the index of the entry for each m/z
+   */
+  private final int[] entryIndices;
+  /**
+   * RT and mobility for each m/z, NaN if the entry has no value. Null if no entry has a value.
+   */
+  private final float[] rts;
+  private final float[] mobilities;
+  /**
+   * entries without m/z, candidates of every query if missing m/z values match
+   */
+  private final int[] entriesWithoutMz;
+
+  /**
+   * @param entries        the database entries
+   * @param mz             the m/z of an entry or null
+   * @param rt             the RT of an entry or null. Null if the database has no RT values.
+   * @param mobility       the mobility of an entry or null. Null if the database has no mobility
+   *                       values.
+   * @param matchMissingMz true if entries without m/z are candidates of every query, e.g., for a
+   *                       compound that is only matched by RT. These candidates are not filtered
+   *                       by RT and mobility. False if entries without m/z never match.
+   */
+  public CompoundDatabaseIndex(@NotNull List<T> entries, @NotNull Function<T, Double> mz,
+      @Nullable Function<T, Float> rt, @Nullable Function<T, Float> mobility,
+      boolean matchMissingMz) {
+    this.entries = entries;
+
+    final int size = entries.size();
+    final double[] allMzs = new double[size];
+    final IntArrayList indexed = new IntArrayList(size);
+    final IntArrayList withoutMz = new IntArrayList();
+    for (int i = 0; i < size; i++) {
+      final Double entryMz = mz.apply(entries.get(i));
+      if (entryMz != null && !entryMz.isNaN()) {
+        allMzs[i] = entryMz;
+        indexed.add(i);
+      } else if (matchMissingMz) {
+        withoutMz.add(i);
+      }
+    }
+    entriesWithoutMz = withoutMz.toIntArray();
+
+    entryIndices = indexed.toIntArray();
+    IntArrays.quickSort(entryIndices, (a, b) -> {
+      final int result = Double.compare(allMzs[a], allMzs[b]);
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+    mzs = new double[entryIndices.length];
+    for (int i = 0; i < entryIndices.length; i++) {
+      mzs[i] = allMzs[entryIndices[i]];
+    }
+    rts = createColumn(rt, entries, entryIndices);
+    mobilities = createColumn(mobility, entries, entryIndices);
+  }
+
+  /**
+   * @return the values in the order of the sorted m/z values or null if no entry has a value
+   */
+  @Nullable
+  private static <T> float[] createColumn(@Nullable Function<T, Float> function, List<T> entries,
+      int[] entryIndices) {
+    if (function == null) {
+      return null;
+    }
+    final float[] values = new float[entryIndices.length];
+    boolean hasValues = false;
+    for (int i = 0; i < entryIndices.length; i++) {
+      final Float value = function.apply(entries.get(entryIndices[i]));
+      values[i] = value != null ? value : Float.NaN;
+      hasValues |= value != null;
+    }
+    return hasValues ? values : null;
+  }
+
+  /**
+   * All entries within the m/z window that also fall within the RT and mobility windows, if the
+   * entries have these values.
+   *
+   * @param mzRange       the m/z window
+   * @param rtRange       the RT window or null to not filter by RT
+   * @param mobilityRange the mobility window or null to not filter by mobility
+   * @return the candidates in the order of the database entries
+   */
+  @NotNull
+  public List<T> getCandidates(@NotNull Range<Double> mzRange, @Nullable Range<Float> rtRange,
+      @Nullable Range<Float> mobilityRange) {
+    final IntArrayList matches = new IntArrayList(entriesWithoutMz);
+    for (int i = firstIndexNotBelow(mzRange.lowerEndpoint());
+        i < mzs.length && mzs[i] <= mzRange.upperEndpoint(); i++) {
+      if (mzRange.contains(mzs[i]) && contains(rts, i, rtRange) && contains(mobilities, i,
+          mobilityRange)) {
+        matches.add(entryIndices[i]);
+      }
+    }
+
+    final int[] sorted = matches.toIntArray();
+    IntArrays.quickSort(sorted);
+    final List<T> candidates = new ArrayList<>(sorted.length);
+    for (int index : sorted) {
+      candidates.add(entries.get(index));
+    }
+    return candidates;
+  }
+
+  private static boolean contains(@Nullable float[] values, int i, @Nullable Range<Float> range) {
+    return range == null || values == null || Float.isNaN(values[i]) || range.contains(values[i]);
+  }
+
+  /**
+   * @return the number of entries with an m/z value
+   */
+  public int getNumberOfIndexedEntries() {
+    return mzs.length;
+  }
+
+  /**
+   * @return the number of all entries
+   */
+  public int getNumberOfEntries() {
+    return entries.size();
+  }
+
+  /**
+   * @return the first index with an m/z >= mz
+   */
+  private int firstIndexNotBelow(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -26,12 +26,13 @@ import io.github.mzmine.datamodel.features.correlation.CorrelationRowGroup;
 import io.github.mzmine.datamodel.features.correlation.R2RCorrelationData;
 import io.github.mzmine.datamodel.features.correlation.R2RMap;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -75,45 +76,34 @@ public class CorrelationGroupingUtils {
       }
 
       List<RowGroup> groups = new ArrayList<>();
-      HashMap<FeatureListRow, CorrelationRowGroup> used = new HashMap<>();
+      IntSet used = new IntOpenHashSet();
+      IntArrayList queue = new IntArrayList();
 
-      int c = 0;
       ObservableList<RawDataFile> raw = flist.getRawDataFiles();
-      // add all connections
-      for (Entry<Integer, RowsRelationship> e : corrMap.entrySet()) {
-        RowsRelationship r2r = e.getValue();
-        FeatureListRow rowA = r2r.getRowA();
-        FeatureListRow rowB = r2r.getRowB();
-        if (r2r instanceof R2RCorrelationData data) {
-          // already added?
-          CorrelationRowGroup group = used.get(rowA);
-          CorrelationRowGroup group2 = used.get(rowB);
-          // merge groups if both present
-          if (group != null && group2 != null && group.getGroupID() != group2.getGroupID()) {
-            // copy all to group1 and remove g2
-            for (FeatureListRow r : group2.getRows()) {
-              group.add(r);
-              used.put(r, group);
+      // each group holds all rows that are connected by correlations
+      for (FeatureListRow row : flist.getRows()) {
+        if (!used.add(row.getID())) {
+          continue;
+        }
+        CorrelationRowGroup group = null;
+        queue.add(row.getID());
+        while (!queue.isEmpty()) {
+          final int id = queue.popInt();
+          for (int partner : corrMap.getPartners(id)) {
+            if (used.contains(partner) || !(corrMap.get(R2RMap.toKey(id, partner))
+                instanceof R2RCorrelationData r2r)) {
+              continue;
+            }
+            if (group == null) {
+              group = new CorrelationRowGroup(raw, groups.size());
+              group.add(row);
+              groups.add(group);
             }
-            groups.remove(group2);
-          } else if (group == null && group2 == null) {
-            // create new group with both rows
-            group = new CorrelationRowGroup(raw, groups.size());
-            group.addAll(rowA, rowB);
-            groups.add(group);
-            // mark as used
-            used.put(rowA, group);
-            used.put(rowB, group);
-          } else if (group2 == null) {
-            group.add(rowB);
-            used.put(rowB, group);
-          } else if (group == null) {
-            group2.add(rowA);
-            used.put(rowA, group2);
+            group.add(r2r.getRowA().getID() == partner ? r2r.getRowA() : r2r.getRowB());
+            used.add(partner);
+            queue.add(partner);
           }
         }
-        // report back progress
-        c++;
       }
       // sort by retention time
       Collections.sort(groups);
@@ -123,7 +113,9 @@ public class CorrelationGroupingUtils {
         groups.get(i).setGroupID(i);
       }
 
-      logger.info("Corr: DONE: Creating correlation groups");
+      logger.info(() -> String.format(
+          "Corr: DONE: Creating %d correlation groups (correlation map uses %d KB)",
+          groups.size(), corrMap.getMemoryUsage() / 1024));
       return groups;
     } catch (Exception e) {
       logger.log(Level.SEVERE, "Error while creating groups", e);
@@ -22,6 +22,7 @@ import io.github.mzmine.main.MZmineCore;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
@@ -29,9 +30,15 @@ import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -49,8 +56,18 @@ import sun.misc.Unsafe;
  * the disk, depending on the amount of stored data (this can be examined using the 'du -hs' Linux
  * command.
  * <p>
- * There is no support for removing data from the file - we assume such operation is rare and
- * therefore the data can be left on the disk until the whole temporary file is discarded.
+ * storeData() may be called concurrently. The space for each array is reserved by atomically
+ * advancing the position in the current file, the data is copied without holding a lock. Only the
+ * creation of a new file is synchronized.
+ * <p>
+ * There is no support for removing single arrays from the file. Instead, objects that keep their
+ * data in a storage (e.g., feature lists and raw data files) register as owners with {@link
+ * #registerOwner(Object)}. Once all owners were released with {@link #releaseOwner(Object)} (e.g.,
+ * when they are removed from the project), the storage is released: its temporary files are
+ * deleted and the mapped buffers are no longer referenced by the storage. The memory mapping and
+ * the disk space are reclaimed as soon as the garbage collector removes the last buffer slice,
+ * which keeps buffers that are still in use (e.g., in a chart) valid. A released storage creates a
+ * new temporary file if more data is stored.
  * <p>
  * There is a limit on the number of open file descriptors (e.g. 1024 by default on Linux). With 1
  * GB per temporary file, this would give us about 1 TB of storage space, so perhaps it is okay.
@@ -72,9 +89,39 @@ public class MemoryMapStorage {
   private final Set<File> temporaryFiles = new HashSet<>();
   private final List<MappedByteBuffer> mappedByteBufferList = new ArrayList<>();
 
+  /**
+   * Segments of released storages that are still mapped, because buffer slices are still
+   * referenced. The mapping is removed by the garbage collector.
+   */
+  private static final List<ReleasedSegment> releasedSegments = Collections.synchronizedList(
+      new ArrayList<>());
+
+  /**
+   * Objects that keep data in this storage. Weak references, so owners that were never added to
+   * the project do not leak.
+   */
+  private final Set<Object> owners = Collections.newSetFromMap(new WeakHashMap<>());
+  /**
+   * Bytes stored in the current (not released) temporary files
+   */
+  private final AtomicLong storedBytes = new AtomicLong(0);
+
   private static boolean storeFeaturesInRam = false;
   private static boolean storeRawFilesInRam = false;
   private static boolean storeMassListsInRam = false;
+  private static boolean compressRawFileSpectra = false;
+  private static boolean compressMassListSpectra = false;
+
+  /**
+   * Spectra (m/z and intensity values) in this storage are compressed
+   */
+  private final boolean compressSpectra;
+  /**
+   * Size of the spectra in this storage as double values and as stored, only counted if spectra are
+   * compressed
+   */
+  private final LongAdder uncompressedSpectraBytes = new LongAdder();
+  private final LongAdder compressedSpectraBytes = new LongAdder();
 
   /**
    * @return The {@link MemoryMapStorage} or null, if the data shall be stored in ram.
@@ -89,7 +136,7 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forRawDataFile() {
-    return storeRawFilesInRam ? null : new MemoryMapStorage();
+    return storeRawFilesInRam ? null : new MemoryMapStorage(compressRawFileSpectra);
   }
 
   /**
@@ -97,7 +144,7 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forMassList() {
-    return storeMassListsInRam ? null : new MemoryMapStorage();
+    return storeMassListsInRam ? null : new MemoryMapStorage(compressMassListSpectra);
   }
 
   @NotNull
@@ -106,14 +153,20 @@ public class MemoryMapStorage {
   }
 
   private MemoryMapStorage() {
+    this(false);
+  }
+
+  private MemoryMapStorage(boolean compressSpectra) {
+    this.compressSpectra = compressSpectra;
     // register this storage to MZmineCore, so we can delete all temp files later.
     MZmineCore.registerStorage(this);
   }
 
   /**
-   * The file that we are currently writing into.
+   * The segment (file) that we are currently writing into. Space is reserved with an atomic
+   * position, so concurrent writers only synchronize when a new file has to be created.
    */
-  private MappedByteBuffer currentMappedFile = null;
+  private volatile Segment currentSegment = null;
 
   /**
    * Creates a new temporary file, maps it into memory, and returns the corresponding
@@ -123,6 +176,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   private MappedByteBuffer createNewMappedFile() throws IOException {
+    assert Thread.holdsLock(this);
 
     // Create the temporary storage file
     File storageFileName = File.createTempFile("mzmine", ".tmp");
@@ -158,7 +212,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized DoubleBuffer storeData(@NotNull final double data[])
+  public DoubleBuffer storeData(@NotNull final double data[])
       throws IOException {
     return storeData(data, 0, data.length);
   }
@@ -174,21 +228,11 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized DoubleBuffer storeData(@NotNull final double data[], int offset,
+  public DoubleBuffer storeData(@NotNull final double data[], int offset,
       int length) throws IOException {
 
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Double.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Double.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
+    // Reserve the space in the current storage file and create a buffer slice
+    final ByteBuffer slice = allocate(length * Double.BYTES);
 
     // Create a double view of the memory-mapped byte buffer
     DoubleBuffer sliceDoubleView = slice.asDoubleBuffer();
@@ -196,14 +240,8 @@ public class MemoryMapStorage {
     // Copy the data to the memory mapped storage
     sliceDoubleView.put(data, offset, length);
 
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Double.BYTES);
-
     // Create a read-only version of the new buffer slice
-    final DoubleBuffer readOnlySlice = sliceDoubleView.asReadOnlyBuffer();
-
-    return readOnlySlice;
-
+    return sliceDoubleView.asReadOnlyBuffer();
   }
 
   /**
@@ -215,7 +253,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized FloatBuffer storeData(@NotNull final float data[])
+  public FloatBuffer storeData(@NotNull final float data[])
       throws IOException {
     return storeData(data, 0, data.length);
   }
@@ -231,21 +269,11 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized FloatBuffer storeData(@NotNull final float data[], int offset,
+  public FloatBuffer storeData(@NotNull final float data[], int offset,
       int length) throws IOException {
 
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Float.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Float.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
+    // Reserve the space in the current storage file and create a buffer slice
+    final ByteBuffer slice = allocate(length * Float.BYTES);
 
     // Create a float view of the memory-mapped byte buffer
     FloatBuffer sliceFloatView = slice.asFloatBuffer();
@@ -253,14 +281,8 @@ public class MemoryMapStorage {
     // Copy the data to the memory mapped storage
     sliceFloatView.put(data, offset, length);
 
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Float.BYTES);
-
     // Create a read-only version of the new buffer slice
-    final FloatBuffer readOnlySlice = sliceFloatView.asReadOnlyBuffer();
-
-    return readOnlySlice;
-
+    return sliceFloatView.asReadOnlyBuffer();
   }
 
   /**
@@ -272,7 +294,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized IntBuffer storeData(@NotNull final int data[]) throws IOException {
+  public IntBuffer storeData(@NotNull final int data[]) throws IOException {
     return storeData(data, 0, data.length);
   }
 
@@ -287,21 +309,11 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized IntBuffer storeData(@NotNull final int data[], int offset,
+  public IntBuffer storeData(@NotNull final int data[], int offset,
       int length) throws IOException {
 
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Integer.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Integer.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
+    // Reserve the space in the current storage file and create a buffer slice
+    final ByteBuffer slice = allocate(length * Integer.BYTES);
 
     // Create an int view of the memory-mapped byte buffer
     IntBuffer sliceIntView = slice.asIntBuffer();
@@ -309,14 +321,44 @@ public class MemoryMapStorage {
     // Copy the data to the memory mapped storage
     sliceIntView.put(data, offset, length);
 
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Integer.BYTES);
-
     // Create a read-only version of the new buffer slice
-    final IntBuffer readOnlySlice = sliceIntView.asReadOnlyBuffer();
+    return sliceIntView.asReadOnlyBuffer();
+  }
 
-    return readOnlySlice;
+  /**
+   * Reserves the given number of bytes in the current storage file. The position is advanced with
+   * a CAS, so concurrent writers do not block each other. Only the roll over to a new file is
+   * synchronized.
+   *
+   * @param bytes the number of bytes
+   * @return a buffer slice of the given size, independent of the position of the mapped file
+   * @throws IOException if the new storage file cannot be created
+   */
+  @NotNull
+  private ByteBuffer allocate(final int bytes) throws IOException {
+    if (bytes > STORAGE_FILE_CAPACITY) {
+      throw new IllegalArgumentException(
+          "Cannot store " + bytes + " bytes, the maximum is " + STORAGE_FILE_CAPACITY);
+    }
+
+    while (true) {
+      final Segment segment = currentSegment;
+      if (segment != null) {
+        final int position = segment.reserve(bytes);
+        if (position >= 0) {
+          storedBytes.addAndGet(bytes);
+          // absolute slice, does not modify the position or limit of the shared buffer
+          return segment.buffer().slice(position, bytes);
+        }
+      }
 
+      // If we have no storage file or if the current file is full, create a new one
+      synchronized (this) {
+        if (currentSegment == segment) {
+          currentSegment = new Segment(createNewMappedFile());
+        }
+      }
+    }
   }
 
   /**
@@ -337,7 +379,118 @@ public class MemoryMapStorage {
     }
 
     temporaryFiles.clear();
-    currentMappedFile = null;
+    mappedByteBufferList.clear();
+    currentSegment = null;
+    storedBytes.set(0);
+  }
+
+  /**
+   * Registers an object that keeps data in this storage, e.g., a feature list or a raw data file.
+   * The storage is released as soon as all registered owners were released.
+   *
+   * @param owner the owner
+   */
+  public synchronized void registerOwner(@NotNull Object owner) {
+    owners.add(owner);
+  }
+
+  /**
+   * Releases the owner from all storages (e.g., after a feature list was removed from the
+   * project). Storages without remaining owners are released.
+   *
+   * @param owner the owner
+   * @see #release()
+   */
+  public static void releaseOwner(@NotNull Object owner) {
+    for (MemoryMapStorage storage : MZmineCore.getStorageList()
+        .toArray(MemoryMapStorage[]::new)) {
+      storage.removeOwner(owner);
+    }
+  }
+
+  private synchronized void removeOwner(@NotNull Object owner) {
+    if (owners.remove(owner) && owners.isEmpty()) {
+      release();
+    }
+  }
+
+  /**
+   * Deletes the temporary files of this storage and drops the references to the mapped buffers.
+   * Buffers that were returned by storeData remain valid, the mapping and disk space are reclaimed
+   * once the garbage collector removed them. On systems that do not allow deletion of mapped files
+   * (Windows), the files are deleted on exit.
+   */
+  public synchronized void release() {
+    if (mappedByteBufferList.isEmpty()) {
+      return;
+    }
+
+    final long released = (long) mappedByteBufferList.size() * STORAGE_FILE_CAPACITY;
+    // only count the stored bytes once
+    long stored = storedBytes.getAndSet(0);
+    for (MappedByteBuffer buffer : mappedByteBufferList) {
+      releasedSegments.add(new ReleasedSegment(new WeakReference<>(buffer), stored));
+      stored = 0;
+    }
+
+    for (File tmpFile : temporaryFiles) {
+      if (!tmpFile.delete()) {
+        logger.finest(() -> "Temporary file " + tmpFile.getAbsolutePath()
+                            + " is still mapped and will be deleted on exit");
+      }
+    }
+
+    temporaryFiles.clear();
+    mappedByteBufferList.clear();
+    currentSegment = null;
+    storedBytes.set(0);
+
+    logger.finest(() -> "Released memory map storage with " + released + " bytes.");
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine(getUsage().toString());
+    }
+  }
+
+  /**
+   * @return the mapped capacity of the temporary files of this storage in bytes
+   */
+  public synchronized long getAllocatedBytes() {
+    return (long) mappedByteBufferList.size() * STORAGE_FILE_CAPACITY;
+  }
+
+  /**
+   * @return the number of bytes stored in the current temporary files of this storage
+   */
+  public long getStoredBytes() {
+    return storedBytes.get();
+  }
+
+  /**
+   * The usage of all storages.
+   *
+   * @return allocated (mapped) bytes, live bytes in storages that were not released and
+   * reclaimable bytes of released storages that are still mapped until the garbage collector
+   * removed all buffers.
+   */
+  public static MemoryMapStorageUsage getUsage() {
+    long allocated = 0;
+    long live = 0;
+    for (MemoryMapStorage storage : MZmineCore.getStorageList()
+        .toArray(MemoryMapStorage[]::new)) {
+      allocated += storage.getAllocatedBytes();
+      live += storage.getStoredBytes();
+    }
+
+    long reclaimable = 0;
+    synchronized (releasedSegments) {
+      // remove segments that were unmapped already
+      releasedSegments.removeIf(segment -> segment.buffer().get() == null);
+      for (ReleasedSegment segment : releasedSegments) {
+        allocated += STORAGE_FILE_CAPACITY;
+        reclaimable += segment.storedBytes();
+      }
+    }
+    return new MemoryMapStorageUsage(allocated, live, reclaimable);
   }
 
 
@@ -364,6 +517,101 @@ public class MemoryMapStorage {
   public static void setStoreMassListsInRam(boolean storeMassListsInRam) {
     MemoryMapStorage.storeMassListsInRam = storeMassListsInRam;
   }
+
+  /**
+   * A mapped storage file with an atomic write position.
+   */
+  private static final class Segment {
+
+    private final MappedByteBuffer buffer;
+    private final AtomicInteger position = new AtomicInteger(0);
+
+    private Segment(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * @param bytes the number of bytes
+     * @return the start position of the reserved bytes or -1 if the segment is full
+     */
+    private int reserve(int bytes) {
+      while (true) {
+        final int start = position.get();
+        if ((long) start + bytes > buffer.capacity()) {
+          return -1;
+        }
+        if (position.compareAndSet(start, start + bytes)) {
+          return start;
+        }
+      }
+    }
+
+    private MappedByteBuffer buffer() {
+      return buffer;
+    }
+  }
+
+  /**
+   * A segment of a released storage that may still be mapped
+   */
+  private record ReleasedSegment(WeakReference<MappedByteBuffer> buffer, long storedBytes) {
+
+  }
+
+  /**
+   * @return true if spectra shall be stored compressed in this storage. The compression is lossy
+   * (see {@link io.github.mzmine.datamodel.impl.CompressedSpectrumValues}).
+   */
+  public boolean isCompressSpectra() {
+    return compressSpectra;
+  }
+
+  /**
+   * Counts a spectrum for the compression ratio of this storage
+   *
+   * @param uncompressedBytes size of the m/z and intensity values as doubles
+   * @param storedBytes       size of the stored values, equal to uncompressedBytes if the spectrum
+   *                          could not be compressed
+   */
+  public void addSpectrumBytes(long uncompressedBytes, long storedBytes) {
+    uncompressedSpectraBytes.add(uncompressedBytes);
+    compressedSpectraBytes.add(storedBytes);
+  }
+
+  /**
+   * @return the compression ratio (uncompressed size / stored size) of all spectra in this storage.
+   * 1 if no spectra were compressed.
+   */
+  public double getSpectraCompressionRatio() {
+    final long stored = compressedSpectraBytes.sum();
+    return stored == 0 ? 1d : (double) uncompressedSpectraBytes.sum() / stored;
+  }
+
+  /**
+   * Logs the compression ratio of the spectra in this storage, if spectra are compressed. Called
+   * when the spectra of a data file were stored, e.g., after import or mass detection.
+   *
+   * @param description the content of this storage, e.g., the data file name
+   */
+  public void logSpectraCompression(@NotNull String description) {
+    final long stored = compressedSpectraBytes.sum();
+    if (!compressSpectra || stored == 0) {
+      return;
+    }
+    logger.info(() -> String.format(
+        "Compressed spectra of %s: %.1f MB instead of %.1f MB (compression ratio %.2f)",
+        description, stored / 1E6, uncompressedSpectraBytes.sum() / 1E6,
+        getSpectraCompressionRatio()));
+  }
+
+  public static void setCompressRawFileSpectra(boolean compressRawFileSpectra) {
+    MemoryMapStorage.compressRawFileSpectra = compressRawFileSpectra;
+  }
+
+  public static void setCompressMassListSpectra(boolean compressMassListSpectra) {
+    MemoryMapStorage.compressMassListSpectra = compressMassListSpectra;
+  }
+
   /**
    * Store everything in RAM instead of using MemoryMapStorage
    *
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util;
+
+/**
+ * Usage of all {@link MemoryMapStorage}s in bytes
+ *
+ * @param allocatedBytes   mapped capacity of all temporary files
+ * @param liveBytes        bytes stored in storages that were not released
+ * @param reclaimableBytes bytes of released storages that are still mapped, because buffers are
+ *                         still referenced. Reclaimed by the garbage collector.
+ */
+public record MemoryMapStorageUsage(long allocatedBytes, long liveBytes, long reclaimableBytes) {
+
+  @Override
+  public String toString() {
+    return String.format("Memory map storage: %.1f MB allocated, %.1f MB live, %.1f MB reclaimable",
+        allocatedBytes / 1E6, liveBytes / 1E6, reclaimableBytes / 1E6);
+  }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.scans.similarity;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.ScanAlignment;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Calculates the weighted and composite cosine similarity of two spectra on primitive arrays
+ * without creating the aligned data point pairs of {@link ScanAlignment#align(MZTolerance,
+ * DataPoint[], DataPoint[])}. Both spectra are sorted by m/z and the m/z tolerance windows are
+ * found in one merge-like sweep. Signals are matched the same way as in the alignment: within a
+ * group of overlapping windows, signals are matched in order of decreasing intensity to the most
+ * intense unmatched signal. Unique matches outside of such groups need no sorting. The weighted
+ * intensities and their norms are calculated once per spectrum.
+ * <p>
+ * The scores equal the scores of the aligned data points up to floating point rounding, as the
+ * sums are added in a different order.
+ * <p>
+ * A kernel reuses its buffers and is not thread safe, use {@link #get()} for the kernel of the
+ * current thread.
+ */
+public final class CosineSimilarityKernel {
+
+  /**
+   * Maximum difference to the score of the aligned data points caused by rounding
+   */
+  public static final double SCORE_TOLERANCE = 1E-9;
+
+  private static final ThreadLocal<CosineSimilarityKernel> KERNEL = ThreadLocal.withInitial(
+      CosineSimilarityKernel::new);
+
+  private final Spectrum library = new Spectrum();
+  private final Spectrum query = new Spectrum();
+  // tolerance window of each library signal in the query signals [windowStart, windowEnd)
+  private int[] windowStart = new int[0];
+  private int[] windowEnd = new int[0];
+  // library signals of a group of overlapping windows
+  private int[] group = new int[0];
+  // matched pairs
+  private int[] pairLibrary = new int[0];
+  private int[] pairQuery = new int[0];
+  private double[] pairMinMz = new double[0];
+  private int[] pairOrder = new int[0];
+  private int overlap;
+
+  /**
+   * @return the kernel of the current thread
+   */
+  public static CosineSimilarityKernel get() {
+    return KERNEL.get();
+  }
+
+  /**
+   * @return the number of matched signals of the last calculation
+   */
+  public int getOverlap() {
+    return overlap;
+  }
+
+  /**
+   * Weighted cosine similarity, see
+   * {@link io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity}
+   *
+   * @param library library data points (any order)
+   * @param query   query data points (any order)
+   * @return the cosine similarity or NaN if one of the spectra has no signals
+   */
+  public double calcWeightedCosine(@NotNull MZTolerance mzTol, @NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched, @NotNull DataPoint[] library,
+      @NotNull DataPoint[] query) {
+    this.library.load(library, weights);
+    this.query.load(query, weights);
+    match(mzTol);
+    return cosine(handleUnmatched);
+  }
+
+  /**
+   * Weighted cosine similarity, see
+   * {@link io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity}
+   *
+   * @param libraryMzs library m/z values sorted ascending
+   * @param queryMzs   query m/z values sorted ascending
+   * @return the cosine similarity or NaN if one of the spectra has no signals
+   */
+  public double calcWeightedCosine(@NotNull MZTolerance mzTol, @NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched, double[] libraryMzs,
+      double[] libraryIntensities, int libraryN, double[] queryMzs, double[] queryIntensities,
+      int queryN) {
+    library.load(libraryMzs, libraryIntensities, libraryN, weights);
+    query.load(queryMzs, queryIntensities, queryN, weights);
+    match(mzTol);
+    return cosine(handleUnmatched);
+  }
+
+  /**
+   * Composite cosine identity score, see
+   * {@link io.github.mzmine.util.scans.similarity.impl.composite.CompositeCosineSpectralSimilarity}
+   *
+   * @param library library data points (any order)
+   * @param query   query data points (any order)
+   * @return the composite score or NaN if one of the spectra has no signals
+   */
+  public double calcCompositeCosine(@NotNull MZTolerance mzTol, @NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched, @NotNull DataPoint[] library,
+      @NotNull DataPoint[] query) {
+    this.library.load(library, weights);
+    this.query.load(query, weights);
+    return composite(mzTol, handleUnmatched);
+  }
+
+  /**
+   * Composite cosine identity score, see
+   * {@link io.github.mzmine.util.scans.similarity.impl.composite.CompositeCosineSpectralSimilarity}
+   *
+   * @param libraryMzs library m/z values sorted ascending
+   * @param queryMzs   query m/z values sorted ascending
+   * @return the composite score or NaN if one of the spectra has no signals
+   */
+  public double calcCompositeCosine(@NotNull MZTolerance mzTol, @NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched, double[] libraryMzs,
+      double[] libraryIntensities, int libraryN, double[] queryMzs, double[] queryIntensities,
+      int queryN) {
+    library.load(libraryMzs, libraryIntensities, libraryN, weights);
+    query.load(queryMzs, queryIntensities, queryN, weights);
+    return composite(mzTol, handleUnmatched);
+  }
+
+  private double composite(MZTolerance mzTol, HandleUnmatchedSignalOptions handleUnmatched) {
+    match(mzTol);
+    final double cosine = cosine(handleUnmatched);
+    final double relativeFactor = relativeNeighbourFactor();
+    final int queryN = query.n;
+    return (queryN * cosine + overlap * relativeFactor) / (queryN + overlap);
+  }
+
+  /**
+   * Matches the library signals to the query signals within the m/z tolerance
+   */
+  private void match(MZTolerance mzTol) {
+    final int libraryN = library.n;
+    final int queryN = query.n;
+    if (windowStart.length < libraryN) {
+      windowStart = new int[libraryN];
+      windowEnd = new int[libraryN];
+      group = new int[libraryN];
+    }
+    final int capacity = Math.min(libraryN, queryN);
+    if (pairLibrary.length < capacity) {
+      pairLibrary = new int[capacity];
+      pairQuery = new int[capacity];
+      pairMinMz = new double[capacity];
+      pairOrder = new int[capacity];
+    }
+
+    // both window bounds increase with the m/z
+    int start = 0;
+    int end = 0;
+    for (int a = 0; a < libraryN; a++) {
+      final double mz = library.mzs[a];
+      // same as MZTolerance.checkWithinTolerance without creating the range
+      final double tolerance = mzTol.getMzToleranceForMass(mz);
+      final double lower = mz - tolerance;
+      final double upper = mz + tolerance;
+      while (start < queryN && query.mzs[start] < lower) {
+        start++;
+      }
+      end = Math.max(end, start);
+      while (end < queryN && query.mzs[end] <= upper) {
+        end++;
+      }
+      windowStart[a] = start;
+      windowEnd[a] = end;
+    }
+
+    overlap = 0;
+    for (int first = 0; first < libraryN; ) {
+      // group of library signals with overlapping windows
+      int last = first + 1;
+      while (last < libraryN && windowStart[last] < windowEnd[last - 1]) {
+        last++;
+      }
+      if (last - first == 1) {
+        matchSignal(first);
+      } else {
+        // match by decreasing intensity like the alignment
+        final int size = last - first;
+        for (int i = 0; i < size; i++) {
+          group[i] = first + i;
+        }
+        sortByIntensity(group, size);
+        for (int i = 0; i < size; i++) {
+          matchSignal(group[i]);
+        }
+      }
+      first = last;
+    }
+  }
+
+  /**
+   * Matches the library signal to the most intense unmatched query signal in its window
+   */
+  private void matchSignal(int a) {
+    int best = -1;
+    for (int b = windowStart[a]; b < windowEnd[a]; b++) {
+      if (query.partner[b] == -1 && (best == -1 || query.isMoreIntense(b, best))) {
+        best = b;
+      }
+    }
+    if (best != -1) {
+      library.partner[a] = best;
+      query.partner[best] = a;
+      pairLibrary[overlap] = a;
+      pairQuery[overlap] = best;
+      overlap++;
+    }
+  }
+
+  /**
+   * Insertion sort of library signals by decreasing intensity, groups are small
+   */
+  private void sortByIntensity(int[] signals, int size) {
+    for (int i = 1; i < size; i++) {
+      final int signal = signals[i];
+      int j = i - 1;
+      while (j >= 0 && library.isMoreIntense(signal, signals[j])) {
+        signals[j + 1] = signals[j];
+        j--;
+      }
+      signals[j + 1] = signal;
+    }
+  }
+
+  /**
+   * Cosine of the weighted intensities
+   */
+  private double cosine(HandleUnmatchedSignalOptions handleUnmatched) {
+    double dot = 0;
+    double matchedNormLibrary = 0;
+    double matchedNormQuery = 0;
+    for (int i = 0; i < overlap; i++) {
+      final double wa = library.weighted[pairLibrary[i]];
+      final double wb = query.weighted[pairQuery[i]];
+      dot += wa * wb;
+      matchedNormLibrary += wa * wa;
+      matchedNormQuery += wb * wb;
+    }
+
+    // unmatched signals are matched against zero intensity or removed
+    final double normLibrary = switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_LIBRARY_SIGNALS -> library.norm;
+      case REMOVE_ALL, KEEP_EXPERIMENTAL_SIGNALS -> matchedNormLibrary;
+    };
+    final double normQuery = switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_EXPERIMENTAL_SIGNALS -> query.norm;
+      case REMOVE_ALL, KEEP_LIBRARY_SIGNALS -> matchedNormQuery;
+    };
+    return dot / (Math.sqrt(normLibrary) * Math.sqrt(normQuery));
+  }
+
+  /**
+   * Sum of the relative intensity ratios of neighbouring matched signals (sorted by m/z) divided by
+   * the overlap
+   */
+  private double relativeNeighbourFactor() {
+    // pairs are found in order of the library m/z, so they are almost sorted by the minimum m/z
+    for (int i = 0; i < overlap; i++) {
+      pairMinMz[i] = Math.min(library.mzs[pairLibrary[i]], query.mzs[pairQuery[i]]);
+      final int pair = i;
+      int j = i - 1;
+      while (j >= 0 && isBefore(pair, pairOrder[j])) {
+        pairOrder[j + 1] = pairOrder[j];
+        j--;
+      }
+      pairOrder[j + 1] = pair;
+    }
+
+    double factor = 0;
+    for (int i = 1; i < overlap; i++) {
+      final int p1 = pairOrder[i - 1];
+      final int p2 = pairOrder[i];
+      final double ratioLibrary =
+          library.intensities[pairLibrary[p2]] / library.intensities[pairLibrary[p1]];
+      final double ratioQuery = query.intensities[pairQuery[p2]] / query.intensities[pairQuery[p1]];
+      factor += Math.min(ratioLibrary, ratioQuery) / Math.max(ratioLibrary, ratioQuery);
+    }
+    return factor / (overlap);
+  }
+
+  /**
+   * Order of the pairs by minimum m/z. Equal m/z values keep the order of the alignment (by
+   * decreasing library intensity).
+   */
+  private boolean isBefore(int pairA, int pairB) {
+    final int result = Double.compare(pairMinMz[pairA], pairMinMz[pairB]);
+    return result < 0 || (result == 0 && library.isMoreIntense(pairLibrary[pairA],
+        pairLibrary[pairB]));
+  }
+
+  /**
+   * Reusable buffers of one spectrum sorted by m/z
+   */
+  private static final class Spectrum {
+
+    private int n;
+    private double[] mzs = new double[0];
+    private double[] intensities = new double[0];
+    private double[] weighted = new double[0];
+    // sum of all squared weighted intensities
+    private double norm;
+    // matched signal of the other spectrum or -1
+    private int[] partner = new int[0];
+    // used to sort unsorted data points by m/z
+    private int[] indices = new int[0];
+    private DataPoint[] unsorted;
+    private final IntComparator mzComparator = (a, b) -> Double.compare(unsorted[a].getMZ(),
+        unsorted[b].getMZ());
+
+    private void ensureCapacity(int size) {
+      n = size;
+      if (mzs.length < size) {
+        mzs = new double[size];
+        intensities = new double[size];
+        weighted = new double[size];
+        partner = new int[size];
+        indices = new int[size];
+      }
+    }
+
+    private void load(DataPoint[] dps, Weights weights) {
+      ensureCapacity(dps.length);
+      boolean sorted = true;
+      for (int i = 0; i < n; i++) {
+        mzs[i] = dps[i].getMZ();
+        intensities[i] = dps[i].getIntensity();
+        sorted = sorted && (i == 0 || mzs[i - 1] <= mzs[i]);
+      }
+      if (!sorted) {
+        for (int i = 0; i < n; i++) {
+          indices[i] = i;
+        }
+        unsorted = dps;
+        IntArrays.quickSort(indices, 0, n, mzComparator);
+        unsorted = null;
+        for (int i = 0; i < n; i++) {
+          mzs[i] = dps[indices[i]].getMZ();
+          intensities[i] = dps[indices[i]].getIntensity();
+        }
+      }
+      prepare(weights);
+    }
+
+    private void load(double[] sortedMzs, double[] intensities, int size, Weights weights) {
+      ensureCapacity(size);
+      System.arraycopy(sortedMzs, 0, mzs, 0, size);
+      System.arraycopy(intensities, 0, this.intensities, 0, size);
+      prepare(weights);
+    }
+
+    private void prepare(Weights weights) {
+      final double weightIntensity = weights.getIntensity();
+      final double weightMz = weights.getMz();
+      norm = 0;
+      for (int i = 0; i < n; i++) {
+        // same as ScanAlignment.toIntensityMatrixWeighted
+        weighted[i] = Math.pow(intensities[i], weightIntensity) * Math.pow(mzs[i], weightMz);
+        norm += weighted[i] * weighted[i];
+        partner[i] = -1;
+      }
+    }
+
+    /**
+     * Order of the alignment: by decreasing intensity and m/z
+     */
+    private boolean isMoreIntense(int a, int b) {
+      return intensities[a] > intensities[b] || (intensities[a] == intensities[b]
+                                                  && mzs[a] > mzs[b]);
+    }
+  }
+}
@@ -57,6 +57,22 @@ public abstract class SpectralSimilarityFunction implements MZmineModule {
   public abstract SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol,
       int minMatch, DataPoint[] library, DataPoint[] query);
 
+  /**
+   * Fast check on primitive arrays before the data points of a library entry are created and
+   * aligned. Override if the requirements of
+   * {@link #getSimilarity(ParameterSet, MZTolerance, int, DataPoint[], DataPoint[])} can be checked
+   * on the values directly.
+   *
+   * @param libraryMzs library m/z values sorted ascending
+   * @param queryMzs   query m/z values sorted ascending
+   * @return false if the spectra cannot match, true if they might match
+   */
+  public boolean isPotentialMatch(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      double[] libraryMzs, double[] libraryIntensities, int libraryN, double[] queryMzs,
+      double[] queryIntensities, int queryN) {
+    return true;
+  }
+
   /**
    * Align two mass lists. Override if alignement is changed in a specific spectral similarity
    * function.
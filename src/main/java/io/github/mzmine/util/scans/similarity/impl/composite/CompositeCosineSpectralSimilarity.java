@@ -28,6 +28,7 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.CosineSimilarityKernel;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
@@ -56,6 +57,14 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
         .getParameter(CompositeCosineSpectralSimilarityParameters.handleUnmatched)
         .getValue();
 
+    // score on primitive arrays first, only align the data points of potential matches
+    CosineSimilarityKernel kernel = CosineSimilarityKernel.get();
+    double score = kernel.calcCompositeCosine(mzTol, weights, handleUnmatched, library, query);
+    if (kernel.getOverlap() < minMatch
+        || !(score >= minCos - CosineSimilarityKernel.SCORE_TOLERANCE)) {
+      return null;
+    }
+
     // align
     List<DataPoint[]> aligned = alignDataPoints(mzTol, library, query);
     // removes all signals which were not found in both masslists
@@ -135,6 +144,24 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
     return Arrays.stream(dp).filter(Objects::nonNull).mapToDouble(DataPoint::getMZ).min().orElse(0);
   }
 
+  @Override
+  public boolean isPotentialMatch(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      double[] libraryMzs, double[] libraryIntensities, int libraryN, double[] queryMzs,
+      double[] queryIntensities, int queryN) {
+    Weights weights =
+        parameters.getParameter(CompositeCosineSpectralSimilarityParameters.weight).getValue();
+    double minCos =
+        parameters.getParameter(CompositeCosineSpectralSimilarityParameters.minCosine).getValue();
+    HandleUnmatchedSignalOptions handleUnmatched = parameters
+        .getParameter(CompositeCosineSpectralSimilarityParameters.handleUnmatched).getValue();
+
+    CosineSimilarityKernel kernel = CosineSimilarityKernel.get();
+    double score = kernel.calcCompositeCosine(mzTol, weights, handleUnmatched, libraryMzs,
+        libraryIntensities, libraryN, queryMzs, queryIntensities, queryN);
+    return kernel.getOverlap() >= minMatch
+        && score >= minCos - CosineSimilarityKernel.SCORE_TOLERANCE;
+  }
+
   @Override
   @NotNull
   public String getName() {
@@ -28,6 +28,7 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.CosineSimilarityKernel;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
@@ -53,6 +54,14 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
     HandleUnmatchedSignalOptions handleUnmatched = parameters
         .getParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched).getValue();
 
+    // score on primitive arrays first, only align the data points of potential matches
+    CosineSimilarityKernel kernel = CosineSimilarityKernel.get();
+    double score = kernel.calcWeightedCosine(mzTol, weights, handleUnmatched, library, query);
+    if (kernel.getOverlap() < minMatch
+        || !(score >= minCos - CosineSimilarityKernel.SCORE_TOLERANCE)) {
+      return null;
+    }
+
     // align
     List<DataPoint[]> aligned = alignDataPoints(mzTol, library, query);
     // removes all signals which were not found in both masslists
@@ -74,6 +83,24 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
     return null;
   }
 
+  @Override
+  public boolean isPotentialMatch(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      double[] libraryMzs, double[] libraryIntensities, int libraryN, double[] queryMzs,
+      double[] queryIntensities, int queryN) {
+    Weights weights =
+        parameters.getParameter(WeightedCosineSpectralSimilarityParameters.weight).getValue();
+    double minCos =
+        parameters.getParameter(WeightedCosineSpectralSimilarityParameters.minCosine).getValue();
+    HandleUnmatchedSignalOptions handleUnmatched = parameters
+        .getParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched).getValue();
+
+    CosineSimilarityKernel kernel = CosineSimilarityKernel.get();
+    double score = kernel.calcWeightedCosine(mzTol, weights, handleUnmatched, libraryMzs,
+        libraryIntensities, libraryN, queryMzs, queryIntensities, queryN);
+    return kernel.getOverlap() >= minMatch
+        && score >= minCos - CosineSimilarityKernel.SCORE_TOLERANCE;
+  }
+
   @Override
   @NotNull
   public String getName() {
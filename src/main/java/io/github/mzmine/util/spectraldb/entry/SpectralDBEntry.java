@@ -21,7 +21,9 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.ParsingUtils;
-import java.util.Arrays;
+import java.lang.ref.SoftReference;
+import java.nio.DoubleBuffer;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -40,10 +42,33 @@ public class SpectralDBEntry {
 
   private final Map<DBEntryField, Object> fields;
   private final DataPoint[] dps;
+  // read-only peak buffers (e.g., mapped from the library cache) if dps is null
+  private final DoubleBuffer mzs;
+  private final DoubleBuffer intensities;
+  // data points created from the buffers, may be collected and created again
+  private volatile SoftReference<DataPoint[]> bufferDataPoints;
 
   public SpectralDBEntry(Map<DBEntryField, Object> fields, DataPoint[] dps) {
     this.fields = fields;
     this.dps = dps;
+    this.mzs = null;
+    this.intensities = null;
+  }
+
+  /**
+   * Entry with peaks stored in buffers. The data points are created on demand and softly
+   * referenced.
+   *
+   * @param mzs         m/z values
+   * @param intensities intensity values
+   */
+  public SpectralDBEntry(Map<DBEntryField, Object> fields, DoubleBuffer mzs,
+      DoubleBuffer intensities) {
+    assert mzs.limit() == intensities.limit();
+    this.fields = fields;
+    this.dps = null;
+    this.mzs = mzs;
+    this.intensities = intensities;
   }
 
   public static SpectralDBEntry loadFromXML(XMLStreamReader reader) throws XMLStreamException {
@@ -124,15 +149,84 @@ public class SpectralDBEntry {
     return value == null ? defaultValue : (T) value;
   }
 
+  /**
+   * @return the data points. Entries with peak buffers create the data points on demand and keep
+   * them softly referenced. Use {@link #getMzValue(int)} and {@link #getIntensityValue(int)} or
+   * {@link #getMzValues(double[])} and {@link #getIntensityValues(double[])} to read the values
+   * without data points.
+   */
   public DataPoint[] getDataPoints() {
-    return dps;
+    if (dps != null) {
+      return dps;
+    }
+    final SoftReference<DataPoint[]> ref = bufferDataPoints;
+    DataPoint[] dataPoints = ref == null ? null : ref.get();
+    if (dataPoints == null) {
+      dataPoints = new DataPoint[mzs.limit()];
+      for (int i = 0; i < dataPoints.length; i++) {
+        dataPoints[i] = new SimpleDataPoint(mzs.get(i), intensities.get(i));
+      }
+      bufferDataPoints = new SoftReference<>(dataPoints);
+    }
+    return dataPoints;
+  }
+
+  public int getNumberOfDataPoints() {
+    return dps != null ? dps.length : mzs.limit();
+  }
+
+  public double getMzValue(int index) {
+    return dps != null ? dps[index].getMZ() : mzs.get(index);
+  }
+
+  public double getIntensityValue(int index) {
+    return dps != null ? dps[index].getIntensity() : intensities.get(index);
+  }
+
+  /**
+   * @param dst array with at least {@link #getNumberOfDataPoints()} elements
+   * @return dst filled with the m/z values
+   */
+  public double[] getMzValues(double[] dst) {
+    if (dps != null) {
+      for (int i = 0; i < dps.length; i++) {
+        dst[i] = dps[i].getMZ();
+      }
+    } else {
+      // absolute bulk get, the buffer position is shared by all threads
+      mzs.get(0, dst, 0, mzs.limit());
+    }
+    return dst;
+  }
+
+  /**
+   * @param dst array with at least {@link #getNumberOfDataPoints()} elements
+   * @return dst filled with the intensity values
+   */
+  public double[] getIntensityValues(double[] dst) {
+    if (dps != null) {
+      for (int i = 0; i < dps.length; i++) {
+        dst[i] = dps[i].getIntensity();
+      }
+    } else {
+      intensities.get(0, dst, 0, intensities.limit());
+    }
+    return dst;
+  }
+
+  /**
+   * @return an unmodifiable view of the fields of this entry
+   */
+  public Map<DBEntryField, Object> getFields() {
+    return Collections.unmodifiableMap(fields);
   }
 
   public void saveToXML(XMLStreamWriter writer) throws XMLStreamException {
     writer.writeStartElement(XML_ELEMENT);
 
-    double[] mzs = Arrays.stream(dps).mapToDouble(DataPoint::getMZ).toArray();
-    double[] intensities = Arrays.stream(dps).mapToDouble(DataPoint::getIntensity).toArray();
+    final int n = getNumberOfDataPoints();
+    double[] mzs = getMzValues(new double[n]);
+    double[] intensities = getIntensityValues(new double[n]);
 
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
     writer.writeCharacters(ParsingUtils.doubleArrayToString(mzs, mzs.length));
@@ -164,15 +258,33 @@ public class SpectralDBEntry {
       return false;
     }
     SpectralDBEntry that = (SpectralDBEntry) o;
-    boolean b1 = Arrays.equals(dps, that.dps);
-    boolean b2 = Objects.equals(fields, that.fields);
-    return b1 && b2;
+    return Objects.equals(fields, that.fields) && equalDataPoints(that);
+  }
+
+  /**
+   * Compares the values directly to avoid creating data points of buffer-backed entries
+   */
+  private boolean equalDataPoints(SpectralDBEntry that) {
+    final int n = getNumberOfDataPoints();
+    if (n != that.getNumberOfDataPoints()) {
+      return false;
+    }
+    for (int i = 0; i < n; i++) {
+      if (Double.compare(getMzValue(i), that.getMzValue(i)) != 0
+          || Double.compare(getIntensityValue(i), that.getIntensityValue(i)) != 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public int hashCode() {
     int result = Objects.hash(fields);
-    result = 31 * result + Arrays.hashCode(dps);
+    for (int i = 0; i < getNumberOfDataPoints(); i++) {
+      result = 31 * result + Double.hashCode(getMzValue(i));
+      result = 31 * result + Double.hashCode(getIntensityValue(i));
+    }
     return result;
   }
 }
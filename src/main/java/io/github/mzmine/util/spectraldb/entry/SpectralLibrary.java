@@ -29,6 +29,8 @@ public class SpectralLibrary {
   private final @NotNull String name;
   private final @NotNull File path;
   private final @NotNull List<SpectralDBEntry> entries;
+  // created on demand
+  private volatile SpectralLibraryIndex precursorIndex;
 
   public SpectralLibrary(@NotNull File path, @NotNull List<SpectralDBEntry> entries) {
     this(path.getName(), path, entries);
@@ -60,6 +62,26 @@ public class SpectralLibrary {
     return entries.size();
   }
 
+  /**
+   * The precursor m/z index of this library, created on first access.
+   *
+   * @return the precursor index
+   */
+  @NotNull
+  public SpectralLibraryIndex getPrecursorIndex() {
+    SpectralLibraryIndex index = precursorIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = precursorIndex;
+        if (index == null) {
+          index = new SpectralLibraryIndex(entries);
+          precursorIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
   @Override
   public String toString() {
     return getName();
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Precursor m/z index of the entries of a spectral library. The precursor m/z values are sorted in
+ * a primitive array, the candidates for a query m/z are found by a binary search and a tolerance
+ * window. Entries without precursor m/z are not indexed.
+ */
+public class SpectralLibraryIndex {
+
+  private static final double MILLION = 1_000_000d;
+
+  private final List<SpectralDBEntry> entries;
+  /**
+   * sorted precursor m/z values
+   */
+  private final double[] precursorMzs;
+  /**
+   * the index of the entry for each precursor m/z
+   */
+  private final int[] entryIndices;
+
+  /**
+   * @param entries the library entries
+   */
+  public SpectralLibraryIndex(@NotNull List<SpectralDBEntry> entries) {
+    this.entries = entries;
+
+    final int size = entries.size();
+    final double[] mzs = new double[size];
+    final IntArrayList indexed = new IntArrayList(size);
+    for (int i = 0; i < size; i++) {
+      final Double precursorMz = entries.get(i).getPrecursorMZ();
+      if (precursorMz != null && !precursorMz.isNaN()) {
+        mzs[i] = precursorMz;
+        indexed.add(i);
+      }
+    }
+
+    entryIndices = indexed.toIntArray();
+    IntArrays.quickSort(entryIndices, (a, b) -> {
+      final int result = Double.compare(mzs[a], mzs[b]);
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+    precursorMzs = new double[entryIndices.length];
+    for (int i = 0; i < entryIndices.length; i++) {
+      precursorMzs[i] = mzs[entryIndices[i]];
+    }
+  }
+
+  /**
+   * All entries with a precursor m/z that matches the query m/z. An entry matches if the query m/z
+   * is within the tolerance range of the entry's precursor m/z, see {@link
+   * MZTolerance#checkWithinTolerance(double, double)}.
+   *
+   * @param mz        the query precursor m/z
+   * @param tolerance the precursor m/z tolerance
+   * @return the matching entries in the order of the library
+   */
+  @NotNull
+  public List<SpectralDBEntry> getPrecursorCandidates(double mz, @NotNull MZTolerance tolerance) {
+    // the tolerance is applied to the library precursor m/z, use the maximum tolerance within
+    // the search window
+    final double ppm = tolerance.getPpmTolerance();
+    final double maxTolerance = ppm >= MILLION ? Double.POSITIVE_INFINITY
+        : Math.max(tolerance.getMzTolerance(), mz * ppm / (MILLION - ppm));
+    // widen the window slightly to not miss entries due to rounding, all candidates are checked
+    final double window = maxTolerance * 1.001;
+
+    final IntArrayList matches = new IntArrayList();
+    for (int i = firstIndexNotBelow(mz - window);
+        i < precursorMzs.length && precursorMzs[i] <= mz + window; i++) {
+      if (tolerance.checkWithinTolerance(precursorMzs[i], mz)) {
+        matches.add(entryIndices[i]);
+      }
+    }
+
+    final int[] sorted = matches.toIntArray();
+    IntArrays.quickSort(sorted);
+    final List<SpectralDBEntry> candidates = new ArrayList<>(sorted.length);
+    for (int index : sorted) {
+      candidates.add(entries.get(index));
+    }
+    return candidates;
+  }
+
+  /**
+   * @return the number of indexed entries (entries with a precursor m/z)
+   */
+  public int getNumberOfIndexedEntries() {
+    return precursorMzs.length;
+  }
+
+  /**
+   * @return the first index with a precursor m/z >= mz
+   */
+  private int firstIndexNotBelow(double mz) {
+    int low = 0;
+    int high = precursorMzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (precursorMzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
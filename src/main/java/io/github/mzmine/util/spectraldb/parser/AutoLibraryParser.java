@@ -20,13 +20,17 @@ package io.github.mzmine.util.spectraldb.parser;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.files.FileTypeFilter;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Auto detects library format
+ * Auto detects library format. Parsed libraries are written to a {@link SpectralLibraryCache}
+ * which is used instead of parsing as long as the library file does not change.
  *
  * @author Robin Schmid
  */
@@ -34,6 +38,7 @@ public class AutoLibraryParser extends SpectralDBParser {
 
   private static final Logger logger = Logger.getLogger(AutoLibraryParser.class.getName());
   private SpectralDBParser subParser;
+  private boolean loadedFromCache = false;
 
   public AutoLibraryParser(int bufferEntries, LibraryEntryProcessor processor) {
     super(bufferEntries, processor);
@@ -42,6 +47,43 @@ public class AutoLibraryParser extends SpectralDBParser {
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile)
       throws UnsupportedFormatException, IOException {
+    final List<SpectralDBEntry> cached = SpectralLibraryCache.load(dataBaseFile);
+    if (cached != null) {
+      for (int i = 0; i < cached.size() && !mainTask.isCanceled(); i += bufferEntries) {
+        // processors may keep the list
+        processor.processNextEntries(
+            new ArrayList<>(cached.subList(i, Math.min(i + bufferEntries, cached.size()))), i);
+      }
+      loadedFromCache = true;
+      return !mainTask.isCanceled();
+    }
+
+    // collect all entries for the cache
+    final List<SpectralDBEntry> entries = new ArrayList<>();
+    final LibraryEntryProcessor collector = (list, alreadyProcessed) -> {
+      synchronized (entries) {
+        entries.addAll(list);
+      }
+      processor.processNextEntries(list, alreadyProcessed);
+    };
+    if (parse(mainTask, dataBaseFile, collector, entries) && !mainTask.isCanceled()) {
+      try {
+        SpectralLibraryCache.write(dataBaseFile, entries);
+      } catch (IOException | RuntimeException e) {
+        logger.log(Level.WARNING,
+            "Cannot write library cache for " + dataBaseFile.getAbsolutePath(), e);
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param processor receives all entries and collects them in entries
+   * @param entries   cleared before each try of a sub parser
+   */
+  private boolean parse(AbstractTask mainTask, File dataBaseFile, LibraryEntryProcessor processor,
+      List<SpectralDBEntry> entries) throws UnsupportedFormatException, IOException {
     FileTypeFilter json = new FileTypeFilter("json", "");
     FileTypeFilter msp = new FileTypeFilter("msp", "");
     FileTypeFilter mgf = new FileTypeFilter("mgf", "");
@@ -65,6 +107,9 @@ public class AutoLibraryParser extends SpectralDBParser {
           return false;
         }
         try {
+          synchronized (entries) {
+            entries.clear();
+          }
           subParser = p;
           if (subParser instanceof SpectralDBTextParser txtParser) {
             txtParser.setTotalLines(totalLines);
@@ -113,6 +158,9 @@ public class AutoLibraryParser extends SpectralDBParser {
 
   @Override
   public double getProgress() {
+    if (loadedFromCache) {
+      return 1d;
+    }
     return subParser == null ? 0 : subParser.getProgress();
   }
 }
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary cache of a parsed spectral library. The cache is written after the first import of a
+ * library file and is valid as long as the size and the last modification time of the library file
+ * do not change.
+ * <p>
+ * The cache stores columns of primitive values that are memory mapped when loading: the precursor
+ * m/z of all entries, the peak offsets of all entries and the m/z and intensity values of all
+ * peaks. The entries read their peaks directly from the mapped buffers. All other field values are
+ * stored as indices into a table of distinct strings, so equal values share the same instance after
+ * loading.
+ */
+public class SpectralLibraryCache {
+
+  private static final Logger logger = Logger.getLogger(SpectralLibraryCache.class.getName());
+
+  public static final String CACHE_FILE_EXTENSION = "mzlibcache";
+  private static final File CACHE_DIR = new File(System.getProperty("user.home"),
+      ".mzmine3_library_cache");
+
+  private static final long MAGIC = 0x4D5A4C4942434348L; // MZLIBCCH
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 64;
+
+  // field value types
+  private static final int TYPE_STRING = 0;
+  private static final int TYPE_DOUBLE = 1;
+  private static final int TYPE_FLOAT = 2;
+  private static final int TYPE_INTEGER = 3;
+  private static final int TYPE_BITS = 2;
+
+  private SpectralLibraryCache() {
+  }
+
+  /**
+   * @param library the library file
+   * @return the cache file of the library
+   */
+  @NotNull
+  public static File getCacheFile(@NotNull File library) {
+    final String name = FileAndPathUtil.safePathEncode(library.getName()) + "_"
+                        + Integer.toHexString(library.getAbsolutePath().hashCode());
+    return new File(CACHE_DIR, FileAndPathUtil.addFormat(name, CACHE_FILE_EXTENSION));
+  }
+
+  /**
+   * Loads the cached entries of a library
+   *
+   * @param library the library file
+   * @return the entries or null if there is no valid cache for the current library file
+   */
+  @Nullable
+  public static List<SpectralDBEntry> load(@NotNull File library) {
+    return load(library, getCacheFile(library));
+  }
+
+  /**
+   * Loads the cached entries of a library
+   *
+   * @param library   the library file
+   * @param cacheFile the cache file
+   * @return the entries or null if there is no valid cache for the current library file
+   */
+  @Nullable
+  public static List<SpectralDBEntry> load(@NotNull File library, @NotNull File cacheFile) {
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try {
+      return read(cacheFile, library);
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Cannot read library cache " + cacheFile.getAbsolutePath(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the cache of a library. Entries with field values that are not strings or numbers of
+   * the field class are not supported.
+   *
+   * @param library the library file
+   * @param entries all entries of the library
+   * @throws IOException if the cache cannot be written
+   */
+  public static void write(@NotNull File library, @NotNull List<SpectralDBEntry> entries)
+      throws IOException {
+    write(library, getCacheFile(library), entries);
+  }
+
+  /**
+   * Writes the cache of a library
+   *
+   * @param library   the library file
+   * @param cacheFile the cache file
+   * @param entries   all entries of the library
+   * @throws IOException if the cache cannot be written
+   * @see #write(File, List)
+   */
+  public static void write(@NotNull File library, @NotNull File cacheFile,
+      @NotNull List<SpectralDBEntry> entries) throws IOException {
+    FileAndPathUtil.createDirectory(cacheFile.getParentFile());
+    final Path tmp = Files.createTempFile(cacheFile.getParentFile().toPath(), "library", ".tmp");
+    try {
+      write(tmp, library, entries);
+      Files.move(tmp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+    logger.info(() -> String.format("Wrote library cache %s with %d entries",
+        cacheFile.getAbsolutePath(), entries.size()));
+  }
+
+  private static void write(Path path, File library, List<SpectralDBEntry> entries)
+      throws IOException {
+    final int numEntries = entries.size();
+    // intern all strings
+    final Object2IntMap<String> stringIndices = new Object2IntOpenHashMap<>();
+    final List<String> strings = new ArrayList<>();
+    long numPeaks = 0;
+    long numFieldValues = 0;
+    for (SpectralDBEntry entry : entries) {
+      numPeaks += entry.getNumberOfDataPoints();
+      for (Entry<DBEntryField, Object> field : entry.getFields().entrySet()) {
+        if (isPrecursorMz(field.getKey(), field.getValue())) {
+          continue;
+        }
+        intern(field.getKey().name(), stringIndices, strings);
+        intern(String.valueOf(field.getValue()), stringIndices, strings);
+        numFieldValues++;
+      }
+    }
+    final byte[][] stringBytes = new byte[strings.size()][];
+    long numStringBytes = 0;
+    for (int i = 0; i < stringBytes.length; i++) {
+      stringBytes[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+      numStringBytes += stringBytes[i].length;
+    }
+    checkSectionSize(numPeaks * Double.BYTES);
+    checkSectionSize(numFieldValues * Integer.BYTES);
+    checkSectionSize(numStringBytes);
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      final SectionWriter out = new SectionWriter(channel);
+      out.putLong(MAGIC);
+      out.putInt(VERSION);
+      out.putInt(numEntries);
+      out.putLong(library.length());
+      out.putLong(library.lastModified());
+      out.putLong(numPeaks);
+      out.putLong(numFieldValues);
+      out.putInt(strings.size());
+      out.putInt(0);
+      out.putLong(numStringBytes);
+      assert out.position() == HEADER_BYTES;
+
+      // precursor m/z
+      for (SpectralDBEntry entry : entries) {
+        final Double mz = entry.getPrecursorMZ();
+        out.putDouble(mz == null ? Double.NaN : mz);
+      }
+      // peak offsets, m/z and intensity values
+      long offset = 0;
+      out.putLong(offset);
+      for (SpectralDBEntry entry : entries) {
+        offset += entry.getNumberOfDataPoints();
+        out.putLong(offset);
+      }
+      for (SpectralDBEntry entry : entries) {
+        for (int i = 0; i < entry.getNumberOfDataPoints(); i++) {
+          out.putDouble(entry.getMzValue(i));
+        }
+      }
+      for (SpectralDBEntry entry : entries) {
+        for (int i = 0; i < entry.getNumberOfDataPoints(); i++) {
+          out.putDouble(entry.getIntensityValue(i));
+        }
+      }
+      // field offsets, keys (name and type) and values
+      offset = 0;
+      out.putLong(offset);
+      for (SpectralDBEntry entry : entries) {
+        for (Entry<DBEntryField, Object> field : entry.getFields().entrySet()) {
+          if (!isPrecursorMz(field.getKey(), field.getValue())) {
+            offset++;
+          }
+        }
+        out.putLong(offset);
+      }
+      for (SpectralDBEntry entry : entries) {
+        for (Entry<DBEntryField, Object> field : entry.getFields().entrySet()) {
+          if (!isPrecursorMz(field.getKey(), field.getValue())) {
+            final int type = getType(field.getKey(), field.getValue());
+            out.putInt(stringIndices.getInt(field.getKey().name()) << TYPE_BITS | type);
+          }
+        }
+      }
+      for (SpectralDBEntry entry : entries) {
+        for (Entry<DBEntryField, Object> field : entry.getFields().entrySet()) {
+          if (!isPrecursorMz(field.getKey(), field.getValue())) {
+            out.putInt(stringIndices.getInt(String.valueOf(field.getValue())));
+          }
+        }
+      }
+      out.alignLong();
+      // string table
+      offset = 0;
+      out.putLong(offset);
+      for (byte[] bytes : stringBytes) {
+        offset += bytes.length;
+        out.putLong(offset);
+      }
+      for (byte[] bytes : stringBytes) {
+        out.putBytes(bytes);
+      }
+      out.flush();
+    }
+  }
+
+  private static List<SpectralDBEntry> read(File cacheFile, File library) throws IOException {
+    try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer header = map(channel, 0, HEADER_BYTES);
+      if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+        logger.info(() -> "Outdated library cache " + cacheFile.getAbsolutePath());
+        return null;
+      }
+      final int numEntries = header.getInt();
+      if (header.getLong() != library.length() || header.getLong() != library.lastModified()) {
+        logger.info(() -> "Library file changed, ignoring cache " + cacheFile.getAbsolutePath());
+        return null;
+      }
+      final long numPeaks = header.getLong();
+      final long numFieldValues = header.getLong();
+      final int numStrings = header.getInt();
+      header.getInt();
+      final long numStringBytes = header.getLong();
+
+      long position = HEADER_BYTES;
+      final DoubleBuffer precursorMzs = map(channel, position,
+          (long) numEntries * Double.BYTES).asDoubleBuffer();
+      position += (long) numEntries * Double.BYTES;
+      final LongBuffer peakOffsets = map(channel, position,
+          (numEntries + 1L) * Long.BYTES).asLongBuffer();
+      position += (numEntries + 1L) * Long.BYTES;
+      final DoubleBuffer mzs = map(channel, position, numPeaks * Double.BYTES).asDoubleBuffer();
+      position += numPeaks * Double.BYTES;
+      final DoubleBuffer intensities = map(channel, position,
+          numPeaks * Double.BYTES).asDoubleBuffer();
+      position += numPeaks * Double.BYTES;
+      final LongBuffer fieldOffsets = map(channel, position,
+          (numEntries + 1L) * Long.BYTES).asLongBuffer();
+      position += (numEntries + 1L) * Long.BYTES;
+      final IntBuffer fieldKeys = map(channel, position,
+          numFieldValues * Integer.BYTES).asIntBuffer();
+      position += numFieldValues * Integer.BYTES;
+      final IntBuffer fieldValues = map(channel, position,
+          numFieldValues * Integer.BYTES).asIntBuffer();
+      position += numFieldValues * Integer.BYTES;
+      position = (position + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+      final LongBuffer stringOffsets = map(channel, position,
+          (numStrings + 1L) * Long.BYTES).asLongBuffer();
+      position += (numStrings + 1L) * Long.BYTES;
+      final ByteBuffer stringBytes = map(channel, position, numStringBytes);
+
+      // distinct strings and values are shared by all entries
+      final String[] strings = new String[numStrings];
+      for (int i = 0; i < numStrings; i++) {
+        final byte[] bytes = new byte[(int) (stringOffsets.get(i + 1) - stringOffsets.get(i))];
+        stringBytes.get((int) stringOffsets.get(i), bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      final DBEntryField[] fieldsByString = new DBEntryField[numStrings];
+      final Object[] values = new Object[numStrings << TYPE_BITS];
+
+      final List<SpectralDBEntry> entries = new ArrayList<>(numEntries);
+      for (int e = 0; e < numEntries; e++) {
+        final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+        final double precursorMz = precursorMzs.get(e);
+        if (!Double.isNaN(precursorMz)) {
+          fields.put(DBEntryField.MZ, precursorMz);
+        }
+        for (int f = (int) fieldOffsets.get(e); f < fieldOffsets.get(e + 1); f++) {
+          final int key = fieldKeys.get(f);
+          final int nameIndex = key >>> TYPE_BITS;
+          DBEntryField field = fieldsByString[nameIndex];
+          if (field == null) {
+            field = DBEntryField.valueOf(strings[nameIndex]);
+            fieldsByString[nameIndex] = field;
+          }
+          final int valueIndex = fieldValues.get(f) << TYPE_BITS | key & ((1 << TYPE_BITS) - 1);
+          Object value = values[valueIndex];
+          if (value == null) {
+            value = toValue(strings[fieldValues.get(f)], key & ((1 << TYPE_BITS) - 1));
+            values[valueIndex] = value;
+          }
+          fields.put(field, value);
+        }
+
+        final int from = (int) peakOffsets.get(e);
+        final int length = (int) (peakOffsets.get(e + 1) - from);
+        entries.add(new SpectralDBEntry(fields, mzs.slice(from, length),
+            intensities.slice(from, length)));
+      }
+      logger.info(() -> String.format("Loaded %d library entries from cache %s", numEntries,
+          cacheFile.getAbsolutePath()));
+      return entries;
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long bytes)
+      throws IOException {
+    checkSectionSize(bytes);
+    // the mapping remains valid after the channel was closed
+    final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, bytes);
+    return buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void checkSectionSize(long bytes) throws IOException {
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IOException("Library is too large for the cache");
+    }
+  }
+
+  /**
+   * The precursor m/z is stored in its own column
+   */
+  private static boolean isPrecursorMz(DBEntryField field, Object value) {
+    return field == DBEntryField.MZ && value instanceof Double;
+  }
+
+  private static void intern(String value, Object2IntMap<String> indices, List<String> strings) {
+    if (!indices.containsKey(value)) {
+      indices.put(value, strings.size());
+      strings.add(value);
+    }
+  }
+
+  private static int getType(DBEntryField field, Object value) throws IOException {
+    if (value instanceof String) {
+      return TYPE_STRING;
+    } else if (value instanceof Double) {
+      return TYPE_DOUBLE;
+    } else if (value instanceof Float) {
+      return TYPE_FLOAT;
+    } else if (value instanceof Integer) {
+      return TYPE_INTEGER;
+    }
+    throw new IOException(
+        "Unsupported value type " + value.getClass().getName() + " of field " + field);
+  }
+
+  private static Object toValue(String value, int type) {
+    return switch (type) {
+      case TYPE_DOUBLE -> Double.parseDouble(value);
+      case TYPE_FLOAT -> Float.parseFloat(value);
+      case TYPE_INTEGER -> Integer.parseInt(value);
+      default -> value;
+    };
+  }
+
+  /**
+   * Writes little endian values to a file channel
+   */
+  private static class SectionWriter {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    private long written = 0;
+
+    private SectionWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private long position() {
+      return written + buffer.position();
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    private void putLong(long value) throws IOException {
+      ensureRemaining(Long.BYTES);
+      buffer.putLong(value);
+    }
+
+    private void putInt(int value) throws IOException {
+      ensureRemaining(Integer.BYTES);
+      buffer.putInt(value);
+    }
+
+    private void putDouble(double value) throws IOException {
+      ensureRemaining(Double.BYTES);
+      buffer.putDouble(value);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+      for (int offset = 0; offset < bytes.length; ) {
+        ensureRemaining(1);
+        final int length = Math.min(buffer.remaining(), bytes.length - offset);
+        buffer.put(bytes, offset, length);
+        offset += length;
+      }
+    }
+
+    private void alignLong() throws IOException {
+      while (position() % Long.BYTES != 0) {
+        ensureRemaining(1);
+        buffer.put((byte) 0);
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        written += channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2006-2020 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ * USA
+ */
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import com.sun.management.ThreadMXBean;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogram;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderCore;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ExpandedDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.logging.Logger;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the primitive ADAP chromatogram builder core to the original object based algorithm.
+ */
+class ADAPChromatogramBuilderCoreTest {
+
+  private static final Logger logger = Logger.getLogger(
+      ADAPChromatogramBuilderCoreTest.class.getName());
+  private static final MZTolerance mzTolerance = new MZTolerance(0.002, 10);
+  private static final double minHighestPoint = 1E4;
+
+  /**
+   * Synthetic data: compounds with m/z jitter over many scans and random noise
+   *
+   * @return [scan][mzs or intensities][data point]
+   */
+  private static double[][][] makeData(Random rnd, int numScans, int pointsPerScan) {
+    final int numCompounds = pointsPerScan / 2;
+    final double[] compoundMzs = rnd.doubles(numCompounds, 100, 1000).toArray();
+    final double[][][] data = new double[numScans][][];
+    for (int s = 0; s < numScans; s++) {
+      final double[] mzs = new double[pointsPerScan];
+      final double[] intensities = new double[pointsPerScan];
+      for (int i = 0; i < pointsPerScan; i++) {
+        if (i < numCompounds) {
+          mzs[i] = compoundMzs[i] + rnd.nextGaussian() * 0.001;
+          // rounded intensities to create ties
+          intensities[i] = Math.round(rnd.nextDouble() * 100) * 1E3;
+        } else {
+          mzs[i] = rnd.nextDouble() * 900 + 100;
+          intensities[i] = rnd.nextDouble() * 2E4;
+        }
+      }
+      data[s] = new double[][]{mzs, intensities};
+    }
+    return data;
+  }
+
+  private static Scan[] makeScans(int numScans) {
+    final RawDataFile file = new RawDataFileImpl("test", null, null, Color.BLACK);
+    final Scan[] scans = new Scan[numScans];
+    for (int i = 0; i < numScans; i++) {
+      scans[i] = new SimpleScan(file, i, 1, i * 0.01f, null, null, null,
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d));
+    }
+    return scans;
+  }
+
+  private static List<ADAPChromatogram> buildPrimitive(Scan[] scans, double[][][] data) {
+    final ADAPChromatogramBuilderCore builder = new ADAPChromatogramBuilderCore(mzTolerance,
+        minHighestPoint, 0);
+    for (int s = 0; s < data.length; s++) {
+      for (int i = 0; i < data[s][0].length; i++) {
+        builder.addDataPoint(s, data[s][0][i], data[s][1][i]);
+      }
+    }
+    return builder.buildChromatograms(scans, () -> false);
+  }
+
+  /**
+   * The original algorithm of the ADAP chromatogram builder task
+   */
+  @SuppressWarnings("UnstableApiUsage")
+  private static List<ADAPChromatogram> buildLegacy(Scan[] scans, double[][][] data) {
+    final RangeMap<Double, ADAPChromatogram> rangeToChromMap = TreeRangeMap.create();
+    final List<ExpandedDataPoint> allMzValues = new ArrayList<>();
+    for (int s = 0; s < data.length; s++) {
+      for (int i = 0; i < data[s][0].length; i++) {
+        allMzValues.add(new ExpandedDataPoint(data[s][0][i], data[s][1][i], scans[s]));
+      }
+    }
+    allMzValues.sort(new DataPointSorter(SortingProperty.Intensity, SortingDirection.Descending));
+
+    for (ExpandedDataPoint mzFeature : allMzValues) {
+      final Entry<Range<Double>, ADAPChromatogram> existing = rangeToChromMap.getEntry(
+          mzFeature.getMZ());
+      if (existing != null) {
+        existing.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+      } else if (mzFeature.getIntensity() >= minHighestPoint) {
+        final Range<Double> toleranceRange = mzTolerance.getToleranceRange(mzFeature.getMZ());
+        final Entry<Range<Double>, ADAPChromatogram> minusRange = rangeToChromMap.getEntry(
+            toleranceRange.lowerEndpoint());
+        final Entry<Range<Double>, ADAPChromatogram> plusRange = rangeToChromMap.getEntry(
+            toleranceRange.upperEndpoint());
+        Double toBeLowerBound = minusRange == null ? toleranceRange.lowerEndpoint()
+            : minusRange.getKey().upperEndpoint();
+        Double toBeUpperBound = plusRange == null ? toleranceRange.upperEndpoint()
+            : plusRange.getKey().lowerEndpoint();
+
+        if (toBeLowerBound < toBeUpperBound) {
+          ADAPChromatogram newChrom = new ADAPChromatogram();
+          newChrom.addMzFeature(mzFeature.getScan(), mzFeature);
+          rangeToChromMap.put(Range.closedOpen(toBeLowerBound, toBeUpperBound), newChrom);
+        } else if (toBeLowerBound.equals(toBeUpperBound) && plusRange != null) {
+          plusRange.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+        }
+      }
+    }
+    return new ArrayList<>(rangeToChromMap.asMapOfRanges().values());
+  }
+
+  @Test
+  void testSameChromatograms() {
+    final Random rnd = new Random(42);
+    final int numScans = 300;
+    final double[][][] data = makeData(rnd, numScans, 400);
+    final Scan[] scans = makeScans(numScans);
+
+    final List<ADAPChromatogram> expected = buildLegacy(scans, data);
+    final List<ADAPChromatogram> actual = buildPrimitive(scans, data);
+
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      final List<Scan> expectedScans = new ArrayList<>(expected.get(i).getScanNumbers());
+      final List<DataPoint> expectedDps = new ArrayList<>(expected.get(i).getDataPoints());
+      final List<Scan> actualScans = new ArrayList<>(actual.get(i).getScanNumbers());
+      final List<DataPoint> actualDps = new ArrayList<>(actual.get(i).getDataPoints());
+      Assertions.assertEquals(expectedScans, actualScans);
+      for (int j = 0; j < expectedDps.size(); j++) {
+        Assertions.assertEquals(expectedDps.get(j).getMZ(), actualDps.get(j).getMZ());
+        Assertions.assertEquals(expectedDps.get(j).getIntensity(),
+            actualDps.get(j).getIntensity());
+      }
+    }
+  }
+
+  @Test
+  @Disabled("Benchmark, run manually")
+  void benchmarkBuilders() {
+    // 10M data points
+    final int numScans = 5000;
+    final double[][][] data = makeData(new Random(42), numScans, 2000);
+    final Scan[] scans = makeScans(numScans);
+
+    for (int round = 0; round < 3; round++) {
+      benchmark("legacy", () -> buildLegacy(scans, data));
+      benchmark("primitive", () -> buildPrimitive(scans, data));
+    }
+  }
+
+  private static void benchmark(String name, Runnable builder) {
+    final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    System.gc();
+    final long allocatedBefore = totalAllocatedBytes(threads);
+    final long start = System.nanoTime();
+    builder.run();
+    final long time = System.nanoTime() - start;
+    final long allocated = totalAllocatedBytes(threads) - allocatedBefore;
+    logger.info(String.format("%s: %.0f ms, %.1f MB allocated", name, time / 1E6,
+        allocated / 1E6));
+  }
+
+  /**
+   * @return the allocated bytes of all live threads (includes the fork join pool of the sort)
+   */
+  private static long totalAllocatedBytes(ThreadMXBean threads) {
+    long sum = 0;
+    for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      sum += Math.max(allocated, 0);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ * USA
+ */
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.BaselineProvider;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.AsymmetryCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.AsymmetryCorrectorParameters;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.LocMinLoessCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.LocMinLoessCorrectorParameters;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.PeakDetectionCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.PeakDetectionCorrectorParameters;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.RollingBallCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.RollingBallCorrectorParameters;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.RubberBandCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.RubberBandCorrectorParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Computes the baselines of a synthetic chromatogram with a known linear baseline by the Java
+ * implementations of the baseline correctors.
+ */
+class BaselineCorrectorTest {
+
+  private static final Logger logger = Logger.getLogger(BaselineCorrectorTest.class.getName());
+  private static final int NUM_SCANS = 3000;
+  private static final double NOISE = 20;
+  // [peak][apex scan, sigma in scans, height]
+  private static final double[][] PEAKS = {{500, 8, 5E4}, {1200, 12, 2E5}, {1250, 6, 3E4},
+      {2000, 10, 1E5}, {2600, 15, 8E4}};
+
+  private static double trueBaseline(int scan) {
+    return 1000 + 0.5 * scan;
+  }
+
+  private static double[] makeChromatogram(Random rnd) {
+    final double[] chromatogram = new double[NUM_SCANS];
+    for (int i = 0; i < NUM_SCANS; i++) {
+      chromatogram[i] = trueBaseline(i) + NOISE * rnd.nextGaussian();
+      for (double[] peak : PEAKS) {
+        chromatogram[i] += peak[2] * Math.exp(-0.5 * Math.pow((i - peak[0]) / peak[1], 2));
+      }
+    }
+    return chromatogram;
+  }
+
+  private static ParameterSet asymmetryParameters() {
+    final ParameterSet parameters = new AsymmetryCorrectorParameters().cloneParameterSet();
+    parameters.setParameter(AsymmetryCorrectorParameters.SMOOTHING, 1E7);
+    parameters.setParameter(AsymmetryCorrectorParameters.ASYMMETRY, 0.001);
+    return parameters;
+  }
+
+  private static ParameterSet rollingBallParameters() {
+    final ParameterSet parameters = new RollingBallCorrectorParameters().cloneParameterSet();
+    parameters.setParameter(RollingBallCorrectorParameters.MIN_MAX_WIDTH, 100);
+    parameters.setParameter(RollingBallCorrectorParameters.SMOOTHING, 50);
+    return parameters;
+  }
+
+  private static ParameterSet peakDetectionParameters() {
+    final ParameterSet parameters = new PeakDetectionCorrectorParameters().cloneParameterSet();
+    parameters.setParameter(PeakDetectionCorrectorParameters.LEFT, 10);
+    parameters.setParameter(PeakDetectionCorrectorParameters.RIGHT, 100);
+    parameters.setParameter(PeakDetectionCorrectorParameters.LWIN, 20);
+    parameters.setParameter(PeakDetectionCorrectorParameters.RWIN, 50);
+    parameters.setParameter(PeakDetectionCorrectorParameters.SNMINIMUM, 1d);
+    parameters.setParameter(PeakDetectionCorrectorParameters.MONO, 0d);
+    parameters.setParameter(PeakDetectionCorrectorParameters.MULTIPLIER, 2d);
+    return parameters;
+  }
+
+  private static ParameterSet locMinLoessParameters(String method) {
+    final ParameterSet parameters = new LocMinLoessCorrectorParameters().cloneParameterSet();
+    parameters.setParameter(LocMinLoessCorrectorParameters.METHOD, method);
+    parameters.setParameter(LocMinLoessCorrectorParameters.BW, 0.1);
+    parameters.setParameter(LocMinLoessCorrectorParameters.BREAKS, 100);
+    parameters.setParameter(LocMinLoessCorrectorParameters.BREAK_WIDTH, -1);
+    parameters.setParameter(LocMinLoessCorrectorParameters.QNTL, 0d);
+    return parameters;
+  }
+
+  private static ParameterSet rubberBandParameters(double df, boolean spline) {
+    final ParameterSet parameters = new RubberBandCorrectorParameters().cloneParameterSet();
+    parameters.setParameter(RubberBandCorrectorParameters.NOISE, 0d);
+    parameters.setParameter(RubberBandCorrectorParameters.AUTO_NOISE, false);
+    parameters.setParameter(RubberBandCorrectorParameters.DF, df);
+    parameters.setParameter(RubberBandCorrectorParameters.SPLINE, spline);
+    parameters.setParameter(RubberBandCorrectorParameters.BEND_FACTOR, 0d);
+    return parameters;
+  }
+
+  /**
+   * The baseline has to follow the true baseline away from the peaks and must not cut into the
+   * peak apexes.
+   */
+  private static void assertBaseline(String name, BaselineProvider corrector,
+      ParameterSet parameters) {
+    final double[] chromatogram = makeChromatogram(new Random(42));
+    final double[] original = chromatogram.clone();
+    final double[] baseline = corrector.computeBaseline(chromatogram, parameters);
+
+    Assertions.assertArrayEquals(original, chromatogram, name + " changed the chromatogram");
+    Assertions.assertEquals(NUM_SCANS, baseline.length, name);
+
+    double error = 0;
+    int numScans = 0;
+    for (int i = 0; i < NUM_SCANS; i++) {
+      final int scan = i;
+      if (Arrays.stream(PEAKS).noneMatch(peak -> Math.abs(scan - peak[0]) < 6 * peak[1])) {
+        error += Math.abs(baseline[i] - trueBaseline(i));
+        numScans++;
+      }
+    }
+    Assertions.assertTrue(error / numScans < 5 * NOISE,
+        name + ": mean deviation from the true baseline " + error / numScans);
+
+    for (double[] peak : PEAKS) {
+      final int apex = (int) peak[0];
+      Assertions.assertTrue(chromatogram[apex] - baseline[apex] > 0.95 * peak[2],
+          name + ": baseline at the apex of scan " + apex + " is " + baseline[apex]);
+    }
+  }
+
+  @Test
+  void asymmetryBaseline() {
+    assertBaseline("asymmetry", new AsymmetryCorrector(), asymmetryParameters());
+  }
+
+  @Test
+  void rollingBallBaseline() {
+    assertBaseline("rolling ball", new RollingBallCorrector(), rollingBallParameters());
+  }
+
+  @Test
+  void peakDetectionBaseline() {
+    assertBaseline("peak detection", new PeakDetectionCorrector(), peakDetectionParameters());
+  }
+
+  @Test
+  void locMinLoessBaseline() {
+    assertBaseline("loess", new LocMinLoessCorrector(), locMinLoessParameters("loess"));
+    assertBaseline("approx", new LocMinLoessCorrector(), locMinLoessParameters("approx"));
+  }
+
+  @Test
+  void rubberBandBaseline() {
+    assertBaseline("spline (GCV)", new RubberBandCorrector(), rubberBandParameters(0, true));
+    assertBaseline("spline (df 10)", new RubberBandCorrector(), rubberBandParameters(10, true));
+    assertBaseline("linear", new RubberBandCorrector(), rubberBandParameters(0, false));
+  }
+
+  @Test
+  @Disabled("Benchmark, run manually")
+  void benchmarkCorrectors() {
+    final Random rnd = new Random(42);
+    final int numChromatograms = 1000;
+    final double[][] data = new double[numChromatograms][];
+    for (int c = 0; c < numChromatograms; c++) {
+      data[c] = makeChromatogram(rnd);
+    }
+
+    final BaselineProvider[] correctors = {new AsymmetryCorrector(), new RollingBallCorrector(),
+        new PeakDetectionCorrector(), new LocMinLoessCorrector(), new RubberBandCorrector()};
+    final ParameterSet[] parameters = {asymmetryParameters(), rollingBallParameters(),
+        peakDetectionParameters(), locMinLoessParameters("loess"),
+        rubberBandParameters(0, true)};
+    for (int round = 0; round < 3; round++) {
+      for (int k = 0; k < correctors.length; k++) {
+        final BaselineProvider corrector = correctors[k];
+        final ParameterSet correctorParameters = parameters[k];
+        final long start = System.nanoTime();
+        // the chromatograms of the m/z bins are corrected in parallel, like in the module
+        IntStream.range(0, numChromatograms).parallel()
+            .forEach(c -> corrector.computeBaseline(data[c], correctorParameters));
+        final long time = System.nanoTime() - start;
+        logger.info(String.format("%s: %d chromatograms of %d scans: %.0f ms",
+            corrector.getClass().getSimpleName(), numChromatograms, NUM_SCANS, time / 1E6));
+      }
+    }
+  }
+}
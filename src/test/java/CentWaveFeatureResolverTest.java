@@ -0,0 +1,160 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ * USA
+ */
+
+import com.google.common.collect.Range;
+import com.sun.management.ThreadMXBean;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveFeatureResolver;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PeakIntegrationMethod;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Resolves synthetic chromatograms with known peaks by the Java implementation of centWave.
+ */
+class CentWaveFeatureResolverTest {
+
+  private static final Logger logger = Logger.getLogger(
+      CentWaveFeatureResolverTest.class.getName());
+  private static final int NUM_SCANS = 1200;
+  // 0.5 s per scan, in minutes
+  private static final double SCAN_TIME = 0.5 / 60;
+  private static final double START_RT = 5;
+
+  /**
+   * Gaussian peaks with 3 % multiplicative noise. Intensities below the noise level are missing,
+   * like in the chromatograms of the chromatogram builders.
+   *
+   * @param peaks [peak][apex scan, sigma in scans, height]
+   * @return [rts or intensities][scan]
+   */
+  private static double[][] makeChromatogram(Random rnd, double[][] peaks) {
+    final double[] rts = new double[NUM_SCANS];
+    final double[] intensities = new double[NUM_SCANS];
+    for (int i = 0; i < NUM_SCANS; i++) {
+      rts[i] = START_RT + i * SCAN_TIME;
+      double intensity = 0;
+      for (double[] peak : peaks) {
+        intensity += peak[2] * Math.exp(-0.5 * Math.pow((i - peak[0]) / peak[1], 2));
+      }
+      intensity *= 1 + 0.03 * rnd.nextGaussian();
+      intensities[i] = intensity > 500 ? intensity : 0;
+    }
+    return new double[][]{rts, intensities};
+  }
+
+  private static CentWaveFeatureResolver createResolver(PeakIntegrationMethod method)
+      throws IOException {
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, file);
+    final ParameterSet parameters = new CentWaveResolverParameters().cloneParameterSet();
+    parameters.setParameter(CentWaveResolverParameters.SN_THRESHOLD, 10d);
+    parameters.setParameter(CentWaveResolverParameters.PEAK_SCALES, Range.closed(0.05, 0.5));
+    parameters.setParameter(CentWaveResolverParameters.PEAK_DURATION, Range.closed(0d, 10d));
+    parameters.setParameter(CentWaveResolverParameters.INTEGRATION_METHOD, method);
+    parameters.setParameter(CentWaveResolverParameters.MIN_NUMBER_OF_DATAPOINTS, 3);
+    return new CentWaveFeatureResolver(parameters, flist);
+  }
+
+  @Test
+  void resolveSeparatedAndOverlappingPeaks() throws IOException {
+    // two overlapping peaks at 400 and 430
+    final double[][] peaks = {{150, 5, 1E5}, {400, 8, 5E4}, {430, 8, 3E4}, {700, 12, 2E5},
+        {1000, 6, 8E3}};
+    final double[][] data = makeChromatogram(new Random(1), peaks);
+
+    for (PeakIntegrationMethod method : PeakIntegrationMethod.values()) {
+      final CentWaveFeatureResolver resolver = createResolver(method);
+      final List<Range<Double>> ranges = resolver.resolve(data[0], data[1]);
+
+      Assertions.assertEquals(peaks.length, ranges.size(), method.toString());
+      for (int i = 0; i < peaks.length; i++) {
+        final double apexRt = START_RT + peaks[i][0] * SCAN_TIME;
+        Assertions.assertTrue(ranges.get(i).contains(apexRt), method + " " + ranges.get(i));
+      }
+      for (int i = 1; i < ranges.size(); i++) {
+        // adjacent peaks may share the border
+        Assertions.assertTrue(
+            ranges.get(i - 1).upperEndpoint() <= ranges.get(i).lowerEndpoint() + 1E-9);
+      }
+
+      // the buffers are reused for the next chromatogram
+      Assertions.assertEquals(ranges, resolver.resolve(data[0], data[1]));
+    }
+  }
+
+  @Test
+  void resolveNoPeaks() throws IOException {
+    final double[] rts = new double[NUM_SCANS];
+    final double[] intensities = new double[NUM_SCANS];
+    final double[] spikes = new double[NUM_SCANS];
+    for (int i = 0; i < NUM_SCANS; i++) {
+      rts[i] = START_RT + i * SCAN_TIME;
+      // too narrow for the smallest wavelet scale
+      spikes[i] = i % 50 == 0 ? 1E4 : 0;
+    }
+
+    for (PeakIntegrationMethod method : PeakIntegrationMethod.values()) {
+      final CentWaveFeatureResolver resolver = createResolver(method);
+      Assertions.assertTrue(resolver.resolve(rts, intensities).isEmpty());
+      Assertions.assertTrue(resolver.resolve(rts, spikes).isEmpty());
+    }
+  }
+
+  @Test
+  @Disabled("Benchmark, run manually")
+  void benchmarkResolver() throws IOException {
+    final Random rnd = new Random(42);
+    final int numChromatograms = 10000;
+    final double[][][] data = new double[numChromatograms][][];
+    for (int c = 0; c < numChromatograms; c++) {
+      final double[][] peaks = new double[1 + rnd.nextInt(4)][];
+      for (int p = 0; p < peaks.length; p++) {
+        peaks[p] = new double[]{rnd.nextInt(NUM_SCANS), 3 + rnd.nextDouble() * 15,
+            1E3 + rnd.nextDouble() * 1E6};
+      }
+      data[c] = makeChromatogram(rnd, peaks);
+    }
+
+    final CentWaveFeatureResolver resolver = createResolver(PeakIntegrationMethod.UseSmoothedData);
+    final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    for (int round = 0; round < 3; round++) {
+      final long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+      final long start = System.nanoTime();
+      int numPeaks = 0;
+      for (double[][] chromatogram : data) {
+        numPeaks += resolver.resolve(chromatogram[0], chromatogram[1]).size();
+      }
+      final long time = System.nanoTime() - start;
+      final long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+      logger.info(String.format("%d chromatograms, %d peaks: %.0f ms, %.1f MB allocated",
+          numChromatograms, numPeaks, time / 1E6, allocated / 1E6));
+    }
+  }
+}
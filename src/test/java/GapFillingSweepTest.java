@@ -0,0 +1,143 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
+import io.github.mzmine.datamodel.data_access.ScanDataAccess;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.multithreaded.ScanSweepGapFiller;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The scan sweep has to fill the same gaps as offering every scan to every gap
+ */
+class GapFillingSweepTest {
+
+  @Test
+  void testSweepEqualsOfferToAllGaps() throws IOException {
+    final Random rnd = new Random(5);
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    final double[] shared = rnd.doubles(50, 100, 1000).toArray();
+    final List<Scan> scans = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      final double[] mzs = new double[200];
+      final double[] intensities = new double[mzs.length];
+      for (int d = 0; d < mzs.length; d++) {
+        mzs[d] = d % 3 == 0 ? shared[rnd.nextInt(shared.length)] + rnd.nextGaussian() * 0.005
+            : 100 + rnd.nextDouble() * 900;
+        // zero and equal intensities
+        intensities[d] = rnd.nextInt(10) == 0 ? 0 : rnd.nextInt(10) == 0 ? 500 : rnd.nextInt(1000);
+      }
+      Arrays.sort(mzs);
+      final Scan scan = new SimpleScan(file, i, 1, 0.05f * i, null, mzs, intensities,
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(100d, 1000d));
+      file.addScan(scan);
+      scans.add(scan);
+    }
+
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, file);
+    final List<Gap> expectedGaps = new ArrayList<>();
+    final List<Gap> sweepGaps = new ArrayList<>();
+    final List<ModularFeatureListRow> expectedRows = new ArrayList<>();
+    final List<ModularFeatureListRow> sweepRows = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      final double mz = rnd.nextBoolean() ? shared[rnd.nextInt(shared.length)]
+          : 100 + rnd.nextDouble() * 900;
+      final Range<Double> mzRange = Range.closed(mz - 0.01, mz + 0.01);
+      final float rt = rnd.nextFloat() * 16f - 0.5f;
+      final Range<Float> rtRange = Range.closed(rt - 0.3f, rt + 0.3f);
+      expectedRows.add(new ModularFeatureListRow(flist, i));
+      sweepRows.add(new ModularFeatureListRow(flist, 1000 + i));
+      expectedGaps.add(new Gap(expectedRows.get(i), file, mzRange, rtRange, 0.2));
+      sweepGaps.add(new Gap(sweepRows.get(i), file, mzRange, rtRange, 0.2));
+    }
+
+    final ScanDataAccess access = EfficientDataAccess.of(file, ScanDataType.RAW, scans);
+    while (access.hasNextScan()) {
+      access.nextScan();
+      for (Gap gap : expectedGaps) {
+        gap.offerNextScan(access);
+      }
+    }
+    final AtomicInteger processedScans = new AtomicInteger(0);
+    ScanSweepGapFiller.fillGaps(EfficientDataAccess.of(file, ScanDataType.RAW, scans),
+        sweepGaps, new TestTask(), processedScans);
+    Assertions.assertEquals(scans.size(), processedScans.get());
+
+    int filled = 0;
+    for (int i = 0; i < expectedGaps.size(); i++) {
+      final boolean expected = expectedGaps.get(i).noMoreOffers(2);
+      Assertions.assertEquals(expected, sweepGaps.get(i).noMoreOffers(2));
+      if (expected) {
+        filled++;
+        final Feature expectedFeature = expectedRows.get(i).getFeature(file);
+        final Feature sweepFeature = sweepRows.get(i).getFeature(file);
+        final IonTimeSeries<? extends Scan> expectedData = expectedFeature.getFeatureData();
+        final IonTimeSeries<? extends Scan> sweepData = sweepFeature.getFeatureData();
+        Assertions.assertEquals(expectedData.getSpectra(), sweepData.getSpectra());
+        Assertions.assertArrayEquals(expectedData.getMzValues(new double[0]),
+            sweepData.getMzValues(new double[0]));
+        Assertions.assertArrayEquals(expectedData.getIntensityValues(new double[0]),
+            sweepData.getIntensityValues(new double[0]));
+      }
+    }
+    Assertions.assertTrue(filled > 0);
+  }
+
+  private static class TestTask extends AbstractTask {
+
+    private TestTask() {
+      super(null, Instant.now());
+    }
+
+    @Override
+    public String getTaskDescription() {
+      return "Test";
+    }
+
+    @Override
+    public double getFinishedPercentage() {
+      return 0;
+    }
+
+    @Override
+    public void run() {
+    }
+  }
+}
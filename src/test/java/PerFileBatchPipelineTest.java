@@ -0,0 +1,277 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ * USA
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchModeModule;
+import io.github.mzmine.modules.batchmode.BatchModeParameters;
+import io.github.mzmine.modules.batchmode.BatchQueue;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerModule;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvingDimension;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperModule;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperParameters;
+import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.import_spectral_library.SpectralLibraryImportParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.util.FeatureListRowSorter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the same batch queue (mass detection, ADAP chromatogram builder, local minimum resolver,
+ * isotope grouper, join aligner) step by step and as per-file pipeline. Both modes need to create
+ * the same feature lists.
+ */
+class PerFileBatchPipelineTest {
+
+  private static final Logger logger = Logger.getLogger(PerFileBatchPipelineTest.class.getName());
+  private static final String[] SAMPLES = {"rawdatafiles/DOM_a.mzML",
+      "rawdatafiles/DOM_b.mzXML"};
+
+  @BeforeAll
+  static void init() {
+    MZmineCore.main(new String[]{"-r", "-m", "all"});
+  }
+
+  @AfterAll
+  static void tearDown() {
+    MZmineTestUtil.cleanProject();
+  }
+
+  @Test
+  void perFilePipelineEqualsStepByStep() throws InterruptedException {
+    final List<FeatureList> stepByStep = runQueue(false);
+    final List<FeatureList> perFile = runQueue(true);
+
+    // chromatograms, resolved and deisotoped lists of each raw data file and the aligned list
+    assertEquals(SAMPLES.length * 3 + 1, stepByStep.size());
+    assertEquals(stepByStep.size(), perFile.size());
+
+    final Map<String, FeatureList> perFileByName = perFile.stream()
+        .collect(Collectors.toMap(FeatureList::getName, Function.identity()));
+    for (FeatureList expected : stepByStep) {
+      final FeatureList actual = perFileByName.get(expected.getName());
+      assertNotNull(actual, "Missing feature list " + expected.getName());
+      assertSameFeatureList(expected, actual);
+    }
+  }
+
+  /**
+   * Imports the test files to a new project and runs the queue.
+   *
+   * @return all feature lists of the project
+   */
+  private List<FeatureList> runQueue(boolean perFilePipeline) throws InterruptedException {
+    MZmineTestUtil.cleanProject();
+    final MZmineProject project = MZmineCore.getProjectManager().getCurrentProject();
+
+    final File[] files = new File[SAMPLES.length];
+    for (int i = 0; i < SAMPLES.length; i++) {
+      files[i] = new File(
+          PerFileBatchPipelineTest.class.getClassLoader().getResource(SAMPLES[i]).getFile());
+    }
+    final AllSpectralDataImportParameters paramImport = new AllSpectralDataImportParameters();
+    paramImport.setParameter(AllSpectralDataImportParameters.fileNames, files);
+    paramImport.setParameter(SpectralLibraryImportParameters.dataBaseFiles, new File[0]);
+    paramImport.setParameter(AllSpectralDataImportParameters.advancedImport, false);
+    assertEquals(TaskResult.FINISHED,
+        MZmineTestUtil.callModuleWithTimeout(30, AllSpectralDataImportModule.class, paramImport));
+    assertEquals(SAMPLES.length, project.getDataFiles().length);
+
+    final BatchQueue queue = createQueue(project.getDataFiles());
+    queue.setPerFilePipeline(perFilePipeline);
+    final BatchModeParameters paramBatch = new BatchModeParameters();
+    paramBatch.getParameter(BatchModeParameters.batchQueue).setValue(queue);
+
+    logger.info("Running batch " + (perFilePipeline ? "as per-file pipeline" : "step by step"));
+    assertEquals(TaskResult.FINISHED,
+        MZmineTestUtil.callModuleWithTimeout(120, BatchModeModule.class, paramBatch));
+    return new ArrayList<>(project.getCurrentFeatureLists());
+  }
+
+  private BatchQueue createQueue(RawDataFile[] dataFiles) {
+    final BatchQueue queue = new BatchQueue();
+
+    final ParameterSet paramDetector = new CentroidMassDetectorParameters().cloneParameterSet();
+    paramDetector.setParameter(CentroidMassDetectorParameters.noiseLevel, 1E5);
+    paramDetector.setParameter(CentroidMassDetectorParameters.detectIsotopes, false);
+    final ParameterSet paramMassDetection = new MassDetectionParameters().cloneParameterSet();
+    paramMassDetection.getParameter(MassDetectionParameters.dataFiles)
+        .setValue(RawDataFilesSelectionType.SPECIFIC_FILES, dataFiles);
+    paramMassDetection.setParameter(MassDetectionParameters.scanSelection, new ScanSelection(1));
+    paramMassDetection.setParameter(MassDetectionParameters.massDetector,
+        new MZmineProcessingStepImpl<>(
+            MZmineCore.getModuleInstance(CentroidMassDetector.class), paramDetector));
+    paramMassDetection.setParameter(MassDetectionParameters.outFilenameOption, false);
+    addStep(queue, MassDetectionModule.class, paramMassDetection);
+
+    final ParameterSet paramChrom = new ADAPChromatogramBuilderParameters().cloneParameterSet();
+    paramChrom.getParameter(ADAPChromatogramBuilderParameters.dataFiles)
+        .setValue(RawDataFilesSelectionType.BATCH_LAST_FILES);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.scanSelection, new ScanSelection(1));
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.minimumScanSpan, 4);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.mzTolerance,
+        new MZTolerance(0.002, 10));
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.minHighestPoint, 3E5);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.minGroupIntensity, 1E5);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.suffix, "chrom");
+    addStep(queue, ModularADAPChromatogramBuilderModule.class, paramChrom);
+
+    final ParameterSet paramResolver = new MinimumSearchFeatureResolverParameters()
+        .cloneParameterSet();
+    paramResolver.getParameter(MinimumSearchFeatureResolverParameters.PEAK_LISTS)
+        .setValue(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.handleOriginal,
+        OriginalFeatureListOption.KEEP);
+    paramResolver.setParameter(
+        MinimumSearchFeatureResolverParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL, 0.8);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.dimension,
+        ResolvingDimension.RETENTION_TIME);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.MIN_ABSOLUTE_HEIGHT, 3E5);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.MIN_NUMBER_OF_DATAPOINTS,
+        4);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.MIN_RATIO, 1.8);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.MIN_RELATIVE_HEIGHT, 0d);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.PEAK_DURATION,
+        Range.closed(0.02, 1d));
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.SEARCH_RT_RANGE, 0.15);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.groupMS2Parameters, false);
+    paramResolver.setParameter(MinimumSearchFeatureResolverParameters.SUFFIX, "decon");
+    addStep(queue, MinimumSearchFeatureResolverModule.class, paramResolver);
+
+    final ParameterSet paramIsotopes = new IsotopeGrouperParameters().cloneParameterSet();
+    paramIsotopes.getParameter(IsotopeGrouperParameters.peakLists)
+        .setValue(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS);
+    paramIsotopes.setParameter(IsotopeGrouperParameters.handleOriginal,
+        OriginalFeatureListOption.KEEP);
+    paramIsotopes.setParameter(IsotopeGrouperParameters.maximumCharge, 2);
+    paramIsotopes.setParameter(IsotopeGrouperParameters.mobilityTolerace, false);
+    paramIsotopes.setParameter(IsotopeGrouperParameters.monotonicShape, true);
+    paramIsotopes.setParameter(IsotopeGrouperParameters.keepAllMS2, false);
+    paramIsotopes.setParameter(IsotopeGrouperParameters.mzTolerance, new MZTolerance(0.003, 10));
+    paramIsotopes.setParameter(IsotopeGrouperParameters.rtTolerance,
+        new RTTolerance(0.1f, Unit.MINUTES));
+    paramIsotopes.setParameter(IsotopeGrouperParameters.representativeIsotope,
+        IsotopeGrouperParameters.ChooseTopIntensity);
+    paramIsotopes.setParameter(IsotopeGrouperParameters.suffix, "deiso");
+    addStep(queue, IsotopeGrouperModule.class, paramIsotopes);
+
+    final ParameterSet paramAlign = new JoinAlignerParameters().cloneParameterSet();
+    paramAlign.getParameter(JoinAlignerParameters.peakLists)
+        .setValue(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS);
+    paramAlign.setParameter(JoinAlignerParameters.compareIsotopePattern, false);
+    paramAlign.setParameter(JoinAlignerParameters.compareSpectraSimilarity, false);
+    paramAlign.setParameter(JoinAlignerParameters.mobilityTolerance, false);
+    paramAlign.setParameter(JoinAlignerParameters.mobilityWeight, 0d);
+    paramAlign.setParameter(JoinAlignerParameters.MZTolerance, new MZTolerance(0.003, 10));
+    paramAlign.setParameter(JoinAlignerParameters.MZWeight, 3d);
+    paramAlign.setParameter(JoinAlignerParameters.RTTolerance,
+        new RTTolerance(0.2f, Unit.MINUTES));
+    paramAlign.setParameter(JoinAlignerParameters.RTWeight, 1d);
+    paramAlign.setParameter(JoinAlignerParameters.SameChargeRequired, false);
+    paramAlign.setParameter(JoinAlignerParameters.SameIDRequired, false);
+    paramAlign.setParameter(JoinAlignerParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+    paramAlign.setParameter(JoinAlignerParameters.peakListName, "aligned");
+    addStep(queue, JoinAlignerModule.class, paramAlign);
+    return queue;
+  }
+
+  private static void addStep(BatchQueue queue, Class<? extends MZmineProcessingModule> module,
+      ParameterSet parameters) {
+    queue.add(new MZmineProcessingStepImpl<>(MZmineCore.getModuleInstance(module), parameters));
+  }
+
+  /**
+   * Compares rows and features. Features are compared by the name of their raw data file, the
+   * lists belong to different projects.
+   */
+  private static void assertSameFeatureList(FeatureList expected, FeatureList actual) {
+    final String name = expected.getName();
+    assertEquals(expected.getNumberOfRawDataFiles(), actual.getNumberOfRawDataFiles(), name);
+    assertEquals(expected.getAppliedMethods().size(), actual.getAppliedMethods().size(), name);
+    assertEquals(expected.getNumberOfRows(), actual.getNumberOfRows(), name);
+    assertTrue(expected.getNumberOfRows() > 0, name);
+
+    final List<FeatureListRow> expectedRows = new ArrayList<>(expected.getRows());
+    final List<FeatureListRow> actualRows = new ArrayList<>(actual.getRows());
+    expectedRows.sort(FeatureListRowSorter.DEFAULT_RT);
+    actualRows.sort(FeatureListRowSorter.DEFAULT_RT);
+    for (int i = 0; i < expectedRows.size(); i++) {
+      final FeatureListRow a = expectedRows.get(i);
+      final FeatureListRow b = actualRows.get(i);
+      final String rowName = name + ", row " + a.getID();
+      assertEquals(a.getID(), b.getID(), rowName);
+      assertEquals(a.getAverageMZ(), b.getAverageMZ(), rowName);
+      assertEquals(a.getAverageRT(), b.getAverageRT(), rowName);
+      assertEquals(a.getAverageHeight(), b.getAverageHeight(), rowName);
+      assertEquals(a.getAverageArea(), b.getAverageArea(), rowName);
+      assertEquals(a.getNumberOfFeatures(), b.getNumberOfFeatures(), rowName);
+
+      for (RawDataFile file : a.getRawDataFiles()) {
+        final Feature fa = a.getFeature(file);
+        final Feature fb = b.getRawDataFiles().stream()
+            .filter(f -> f.getName().equals(file.getName())).findFirst().map(b::getFeature)
+            .orElse(null);
+        assertNotNull(fb, rowName + ", " + file.getName());
+        assertEquals(fa.getMZ(), fb.getMZ(), rowName);
+        assertEquals(fa.getRT(), fb.getRT(), rowName);
+        assertEquals(fa.getHeight(), fb.getHeight(), rowName);
+        assertEquals(fa.getArea(), fb.getArea(), rowName);
+        assertEquals(fa.getNumberOfDataPoints(), fb.getNumberOfDataPoints(), rowName);
+        assertEquals(fa.getCharge(), fb.getCharge(), rowName);
+        assertEquals(fa.getIsotopePattern() == null, fb.getIsotopePattern() == null, rowName);
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2006-2020 The MZmine Development Team
+ *
+ *  This file is part of MZmine.
+ *
+ *  MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ *  General Public License as published by the Free Software Foundation; either version 2 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ *  the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ *  Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with MZmine; if not,
+ *  write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ *  USA
+ */
+
+package datamodel;
+
+import io.github.mzmine.datamodel.impl.CompressedSpectrumValues;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+public class CompressedSpectrumValuesTest {
+
+  private static final Logger logger = Logger.getLogger(
+      CompressedSpectrumValuesTest.class.getName());
+
+  @AfterEach
+  void reset() {
+    MemoryMapStorage.setCompressMassListSpectra(false);
+  }
+
+  private static double[][] randomSpectrum(Random rnd, int numDataPoints, double maxMz) {
+    final double[] mzs = rnd.doubles(numDataPoints, 50, maxMz).sorted().toArray();
+    final double[] intensities = rnd.doubles(numDataPoints, 0, 1E8).toArray();
+    return new double[][]{mzs, intensities};
+  }
+
+  @Test
+  void testCompressedMassList() {
+    MemoryMapStorage.setCompressMassListSpectra(true);
+    final MemoryMapStorage storage = MemoryMapStorage.forMassList();
+    Assertions.assertNotNull(storage);
+
+    final Random rnd = new Random(42);
+    final double[][] data = randomSpectrum(rnd, 1000, 2000);
+    final SimpleMassList massList = new SimpleMassList(storage, data[0], data[1]);
+
+    Assertions.assertEquals(data[0].length, massList.getNumberOfDataPoints());
+    final double[] mzs = massList.getMzValues(new double[0]);
+    final double[] intensities = massList.getIntensityValues(new double[data[0].length]);
+    for (int i = 0; i < data[0].length; i++) {
+      Assertions.assertEquals(data[0][i], mzs[i], CompressedSpectrumValues.MAX_MZ_ERROR);
+      Assertions.assertEquals(data[0][i], massList.getMzValue(i),
+          CompressedSpectrumValues.MAX_MZ_ERROR);
+      Assertions.assertEquals((float) data[1][i], intensities[i]);
+    }
+    Assertions.assertEquals(Arrays.stream(data[1]).sum(), massList.getTIC(),
+        1E-6 * massList.getTIC());
+    // 2 doubles vs. int and float per data point
+    Assertions.assertEquals(2d, storage.getSpectraCompressionRatio());
+
+    storage.release();
+  }
+
+  @Test
+  void testWideSpectrumNotCompressed() {
+    MemoryMapStorage.setCompressMassListSpectra(true);
+    final MemoryMapStorage storage = MemoryMapStorage.forMassList();
+
+    // span exceeds the maximum m/z error and is stored uncompressed
+    final double[] mzs = {100d, 100.123456789, 20000.123456789};
+    final double[] intensities = {1d, 2d, 3d};
+    final SimpleMassList massList = new SimpleMassList(storage, mzs, intensities);
+    Assertions.assertArrayEquals(mzs, massList.getMzValues(new double[3]));
+    Assertions.assertEquals(1d, storage.getSpectraCompressionRatio());
+
+    storage.release();
+  }
+
+  @Test
+  @Disabled("Benchmark, run manually")
+  void benchmarkDecode() {
+    MemoryMapStorage.setCompressMassListSpectra(true);
+    final MemoryMapStorage compressedStorage = MemoryMapStorage.forMassList();
+    MemoryMapStorage.setCompressMassListSpectra(false);
+    final MemoryMapStorage storage = MemoryMapStorage.forMassList();
+
+    final Random rnd = new Random(42);
+    final int numSpectra = 20_000;
+    final SimpleMassList[] compressed = new SimpleMassList[numSpectra];
+    final SimpleMassList[] uncompressed = new SimpleMassList[numSpectra];
+    long dataPoints = 0;
+    for (int i = 0; i < numSpectra; i++) {
+      final double[][] data = randomSpectrum(rnd, 500 + rnd.nextInt(2000), 2000);
+      compressed[i] = new SimpleMassList(compressedStorage, data[0], data[1]);
+      uncompressed[i] = new SimpleMassList(storage, data[0], data[1]);
+      dataPoints += data[0].length;
+    }
+
+    logger.info(() -> String.format("Compression ratio %.2f (%d vs %d bytes)",
+        compressedStorage.getSpectraCompressionRatio(), storage.getStoredBytes(),
+        compressedStorage.getStoredBytes()));
+
+    final double[] mzs = new double[2500];
+    final double[] intensities = new double[2500];
+    for (int round = 0; round < 5; round++) {
+      for (SimpleMassList[] spectra : new SimpleMassList[][]{uncompressed, compressed}) {
+        final long start = System.nanoTime();
+        for (SimpleMassList spectrum : spectra) {
+          spectrum.getMzValues(mzs);
+          spectrum.getIntensityValues(intensities);
+        }
+        final double seconds = (System.nanoTime() - start) / 1E9;
+        logger.info(String.format("%s: decoded %.1f M data points/s",
+            spectra == compressed ? "compressed" : "uncompressed", dataPoints / seconds / 1E6));
+      }
+    }
+
+    compressedStorage.release();
+    storage.release();
+  }
+}
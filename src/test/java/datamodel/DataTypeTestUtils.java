@@ -23,12 +23,17 @@ import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamReader;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamWriter;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.project.impl.RawDataFileImpl;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import javafx.scene.paint.Color;
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
@@ -96,25 +101,52 @@ public class DataTypeTestUtils {
     Assertions.assertEquals(value, loadedValue,
         () -> "Loaded value does not equal saved value." + (feature == null ? " (row type)"
             : " (feature type)"));
-
   }
 
   /**
    * Tests saving and loads a data type with the given parameters. Can be used to manually retrieve
    * the loaded value in case {@link Object#equals(Object)} does not work.
+   * <p></p>
+   * The value is saved to and loaded from xml text. The loaded value is then saved and loaded again
+   * with compressed binary blocks like the project save, so every data type that is tested covers
+   * both formats.
    *
    * @return The loaded value or null if an error occurred.
    */
   public static Object saveAndLoad(@NotNull DataType<?> type, @Nullable Object value,
       @NotNull ModularFeatureList flist, @NotNull ModularFeatureListRow row,
       @Nullable ModularFeature feature, @Nullable RawDataFile file) {
+    final Object loadedValue = saveAndLoad(type, value, flist, row, feature, file, false);
+    return saveAndLoad(type, loadedValue, flist, row, feature, file, true);
+  }
+
+  /**
+   * @param binaryBlocks write arrays to a binary block file like the project save
+   * @return The loaded value or null if an error occurred.
+   */
+  private static Object saveAndLoad(@NotNull DataType<?> type, @Nullable Object value,
+      @NotNull ModularFeatureList flist, @NotNull ModularFeatureListRow row,
+      @Nullable ModularFeature feature, @Nullable RawDataFile file, boolean binaryBlocks) {
+
+    File blockFile = null;
+    OutputStream blockStream = null;
+    if (binaryBlocks) {
+      try {
+        blockFile = File.createTempFile("mzmine_test_blocks", ".bin");
+        blockFile.deleteOnExit();
+        blockStream = new FileOutputStream(blockFile);
+      } catch (IOException e) {
+        Assertions.fail("Cannot create block file.");
+      }
+    }
 
     // test row save
     final ByteArrayOutputStream os = new ByteArrayOutputStream();
     final XMLOutputFactory xof = XMLOutputFactory.newInstance();
     XMLStreamWriter writer = null;
     try {
-      writer = new IndentingXMLStreamWriter(xof.createXMLStreamWriter(os, "UTF-8"));
+      writer = binaryBlocks ? new BlockXMLStreamWriter(xof.createXMLStreamWriter(os, "UTF-8"),
+          blockStream, true) : new IndentingXMLStreamWriter(xof.createXMLStreamWriter(os, "UTF-8"));
     } catch (XMLStreamException e) {
       Assertions.fail("Cannot initialise xml writer.");
     }
@@ -133,7 +165,10 @@ public class DataTypeTestUtils {
       writer.writeEndDocument();
       writer.flush();
       writer.close();
-    } catch (XMLStreamException e) {
+      if (blockStream != null) {
+        blockStream.close();
+      }
+    } catch (XMLStreamException | IOException e) {
       e.printStackTrace();
       Assertions.fail(() -> "Could not save data type " + type.getUniqueID() + ".");
     }
@@ -144,7 +179,10 @@ public class DataTypeTestUtils {
     XMLStreamReader reader = null;
     try {
       reader = xif.createXMLStreamReader(is);
-    } catch (XMLStreamException e) {
+      if (binaryBlocks) {
+        reader = new BlockXMLStreamReader(reader, blockFile);
+      }
+    } catch (XMLStreamException | IOException e) {
       Assertions.fail("Cannot initialise xml reader.");
     }
     Assertions.assertNotNull(reader);
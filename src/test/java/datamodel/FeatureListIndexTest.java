@@ -0,0 +1,179 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package datamodel;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the indexed range and id queries of a {@link ModularFeatureList} to a linear search.
+ */
+public class FeatureListIndexTest {
+
+  private static final Logger logger = Logger.getLogger(FeatureListIndexTest.class.getName());
+
+  @Test
+  void testRangeQueries() {
+    final Random rnd = new Random(42);
+    final ModularFeatureList flist = createFeatureList(2000, rnd);
+
+    for (int i = 0; i < 500; i++) {
+      final double mz = 100 + rnd.nextDouble() * 900;
+      final float rt = rnd.nextFloat() * 30f;
+      final Range<Double> mzRange = Range.closed(mz - 0.5, mz + 0.5);
+      final Range<Float> rtRange = i % 2 == 0 ? Range.closedOpen(rt - 2f, rt + 2f) : Range.all();
+      Assertions.assertEquals(linearSearch(flist, rtRange, mzRange),
+          flist.getRowsInsideScanAndMZRange(rtRange, mzRange));
+    }
+
+    // the index must reflect changes of the rows and values
+    flist.removeRow(flist.getRow(0));
+    final ModularFeatureListRow changed = (ModularFeatureListRow) flist.getRow(10);
+    changed.set(MZType.class, 555.5);
+    final Range<Double> mzRange = Range.closed(555.4, 555.6);
+    for (int i = 0; i < 2; i++) {
+      final List<FeatureListRow> rows = flist.getRowsInsideScanAndMZRange(Range.all(), mzRange);
+      Assertions.assertTrue(rows.contains(changed));
+      Assertions.assertEquals(linearSearch(flist, Range.all(), mzRange), rows);
+    }
+  }
+
+  @Test
+  void testFeatureRangeQueries() {
+    final Random rnd = new Random(7);
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, file);
+    flist.addRowType(new MZType(), new RTType());
+    flist.addFeatureType(new RawFileType(), new DetectionType(), new MZType(), new RTType());
+    for (int i = 0; i < 1000; i++) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, i);
+      final ModularFeature feature = new ModularFeature(flist);
+      feature.set(RawFileType.class, file);
+      // every third feature has an unknown status, e.g., a gap that was not filled
+      feature.set(DetectionType.class,
+          i % 3 == 0 ? FeatureStatus.UNKNOWN : FeatureStatus.DETECTED);
+      feature.set(MZType.class, 100 + rnd.nextDouble() * 900);
+      feature.set(RTType.class, rnd.nextFloat() * 30f);
+      row.addFeature(file, feature, false);
+      flist.addRow(row);
+    }
+
+    boolean foundUnknown = false;
+    for (int i = 0; i < 200; i++) {
+      final double mz = 100 + rnd.nextDouble() * 900;
+      final float rt = rnd.nextFloat() * 30f;
+      final Range<Double> mzRange = Range.closed(mz - 5, mz + 5);
+      final Range<Float> rtRange = i % 2 == 0 ? Range.closed(rt - 5f, rt + 5f) : Range.all();
+      final List<Feature> expected = linearFeatureSearch(flist, file, rtRange, mzRange);
+      foundUnknown |= expected.stream()
+          .anyMatch(f -> f.getFeatureStatus() == FeatureStatus.UNKNOWN);
+      // the first query builds the index
+      Assertions.assertEquals(expected,
+          flist.getFeaturesInsideScanAndMZRange(file, rtRange, mzRange));
+    }
+    Assertions.assertTrue(foundUnknown);
+  }
+
+  @Test
+  void testFindRowByID() {
+    final ModularFeatureList flist = createFeatureList(1000, new Random(1));
+    for (int i = 0; i < 2; i++) {
+      Assertions.assertEquals(5, flist.findRowByID(5).getID());
+      Assertions.assertNull(flist.findRowByID(5000));
+    }
+    flist.removeRow(flist.findRowByID(5));
+    Assertions.assertNull(flist.findRowByID(5));
+    Assertions.assertNull(flist.findRowByID(5));
+  }
+
+  @Disabled("Benchmark, run manually")
+  @Test
+  void benchmarkRangeQueries() {
+    final Random rnd = new Random(42);
+    final ModularFeatureList flist = createFeatureList(50_000, rnd);
+    final int queries = 100_000;
+    final double[] mzs = rnd.doubles(queries, 100, 1000).toArray();
+
+    long found = 0;
+    long start = System.nanoTime();
+    for (double mz : mzs) {
+      found += flist.getRowsInsideScanAndMZRange(Range.closed(5f, 15f),
+          Range.closed(mz - 0.005, mz + 0.005)).size();
+    }
+    logger.info(String.format("Index: %d queries in %d ms (%d rows found)", queries,
+        (System.nanoTime() - start) / 1_000_000, found));
+
+    // the linear search is too slow for all queries
+    found = 0;
+    start = System.nanoTime();
+    for (int i = 0; i < queries / 100; i++) {
+      found += linearSearch(flist, Range.closed(5f, 15f),
+          Range.closed(mzs[i] - 0.005, mzs[i] + 0.005)).size();
+    }
+    logger.info(String.format("Linear search: %d queries in %d ms (%d rows found)", queries / 100,
+        (System.nanoTime() - start) / 1_000_000, found));
+  }
+
+  private static ModularFeatureList createFeatureList(int numRows, Random rnd) {
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, file);
+    flist.addRowType(new MZType());
+    flist.addRowType(new RTType());
+    for (int i = 0; i < numRows; i++) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, i);
+      row.set(MZType.class, 100 + rnd.nextDouble() * 900);
+      row.set(RTType.class, rnd.nextFloat() * 30f);
+      flist.addRow(row);
+    }
+    return flist;
+  }
+
+  private static List<Feature> linearFeatureSearch(ModularFeatureList flist, RawDataFile file,
+      Range<Float> rtRange, Range<Double> mzRange) {
+    return flist.modularStream().map(row -> (Feature) row.getFilesFeatures().get(file))
+        .filter(f -> rtRange.contains(f.getRT()) && mzRange.contains(f.getMZ()))
+        .collect(Collectors.toList());
+  }
+
+  private static List<FeatureListRow> linearSearch(ModularFeatureList flist, Range<Float> rtRange,
+      Range<Double> mzRange) {
+    return flist.stream().filter(
+            row -> rtRange.contains(row.getAverageRT()) && mzRange.contains(row.getAverageMZ()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package datamodel;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.R2RMap;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MathUtils;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the undirected row-to-row map against a {@link HashMap} and compares the memory and lookup
+ * throughput to the former integer keyed map.
+ */
+public class R2RMapTest {
+
+  private static final Logger logger = Logger.getLogger(R2RMapTest.class.getName());
+
+  @Test
+  void testUndirectedMapping() {
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, file);
+    // IDs above 46341 overflow the int pairing function
+    final ModularFeatureListRow a = new ModularFeatureListRow(flist, 50_000);
+    final ModularFeatureListRow b = new ModularFeatureListRow(flist, 70_000);
+    final ModularFeatureListRow c = new ModularFeatureListRow(flist, 3);
+
+    final R2RMap<String> map = new R2RMap<>();
+    map.add(a, b, "ab");
+    map.put(c, a, "ca");
+    Assertions.assertEquals("ab", map.get(b, a));
+    Assertions.assertEquals("ca", map.get(a, c));
+    Assertions.assertNull(map.get(b, c));
+    Assertions.assertArrayEquals(new int[]{3, 70_000}, map.getPartners(a));
+    Assertions.assertArrayEquals(new int[]{50_000}, map.getPartners(b));
+
+    Assertions.assertEquals("ab", map.remove(a, b));
+    Assertions.assertEquals(1, map.size());
+    Assertions.assertArrayEquals(new int[0], map.getPartners(b));
+    Assertions.assertArrayEquals(new int[]{3}, map.getPartners(a));
+  }
+
+  @Test
+  void testRandomOperations() {
+    final Random rnd = new Random(11);
+    final R2RMap<Integer> map = new R2RMap<>();
+    final Map<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 200_000; i++) {
+      final long key = R2RMap.toKey(rnd.nextInt(2000), rnd.nextInt(2000));
+      if (rnd.nextInt(4) == 0) {
+        Assertions.assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        Assertions.assertEquals(expected.put(key, i), map.put(key, i));
+      }
+    }
+    Assertions.assertEquals(expected.size(), map.size());
+    expected.forEach((key, value) -> Assertions.assertEquals(value, map.get(key)));
+
+    final R2RMap<Integer> copy = new R2RMap<>();
+    copy.putAll(map);
+    Assertions.assertEquals(map.size(), copy.size());
+    Assertions.assertTrue(copy.getMemoryUsage() > 0);
+  }
+
+  @Disabled("Benchmark, run manually with -Xmx16g")
+  @Test
+  void benchmarkMaps() {
+    final int pairs = 50_000_000;
+    final int rows = 100_000;
+    final Random rnd = new Random(42);
+    final int[] idsA = rnd.ints(pairs, 0, rows).toArray();
+    final int[] idsB = rnd.ints(pairs, 0, rows).toArray();
+    final Object value = new Object();
+
+    long heap = usedHeap();
+    long start = System.nanoTime();
+    final R2RMap<Object> map = new R2RMap<>();
+    IntStream.range(0, pairs).parallel()
+        .forEach(i -> map.put(R2RMap.toKey(idsA[i], idsB[i]), value));
+    logger.info(String.format("R2RMap: %d entries, insert %d ms, heap %d MB, estimate %d MB",
+        map.size(), (System.nanoTime() - start) / 1_000_000, (usedHeap() - heap) >> 20,
+        map.getMemoryUsage() >> 20));
+    start = System.nanoTime();
+    final long found = IntStream.range(0, pairs).parallel()
+        .filter(i -> map.get(R2RMap.toKey(idsB[i], idsA[i])) != null).count();
+    logger.info(String.format("R2RMap: %d lookups (%d found) in %d ms", pairs, found,
+        (System.nanoTime() - start) / 1_000_000));
+    start = System.nanoTime();
+    map.getPartners(0);
+    logger.info(String.format("R2RMap: adjacency of %d rows in %d ms", rows,
+        (System.nanoTime() - start) / 1_000_000));
+
+    heap = usedHeap();
+    start = System.nanoTime();
+    final Map<Integer, Object> oldMap = new ConcurrentHashMap<>();
+    IntStream.range(0, pairs).parallel()
+        .forEach(i -> oldMap.put(MathUtils.undirectedPairing(idsA[i], idsB[i]), value));
+    logger.info(String.format(
+        "ConcurrentHashMap: %d entries (%d lost to key collisions), insert %d ms, heap %d MB",
+        oldMap.size(), map.size() - oldMap.size(), (System.nanoTime() - start) / 1_000_000,
+        (usedHeap() - heap) >> 20));
+    start = System.nanoTime();
+    final long oldFound = IntStream.range(0, pairs).parallel()
+        .filter(i -> oldMap.get(MathUtils.undirectedPairing(idsB[i], idsA[i])) != null).count();
+    logger.info(String.format("ConcurrentHashMap: %d lookups (%d found) in %d ms", pairs,
+        oldFound, (System.nanoTime() - start) / 1_000_000));
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package datamodel;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.DDAMsMsInfoImpl;
+import io.github.mzmine.datamodel.impl.MSnInfoImpl;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.ActivationMethod;
+import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamReader;
+import io.github.mzmine.modules.io.projectload.version_3_0.BlockXMLStreamWriter;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileSnapshot;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Saves and loads the scans of a raw data file with {@link RawDataFileSnapshot}.
+ */
+public class RawDataFileSnapshotTest {
+
+  @Test
+  void testSnapshotBlocks() throws IOException, XMLStreamException {
+    final RawDataFile file = createFile();
+    Assertions.assertTrue(RawDataFileSnapshot.isSupported(file));
+    assertScansEqual(file, saveAndLoad(file, true));
+  }
+
+  @Test
+  void testSnapshotText() throws IOException, XMLStreamException {
+    final RawDataFile file = createFile();
+    assertScansEqual(file, saveAndLoad(file, false));
+  }
+
+  @Test
+  void testSnapshotsKeepFileOrder() {
+    final RawDataFile[] files = new RawDataFile[4];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = new RawDataFileImpl("file" + i, null, null, Color.BLACK);
+    }
+    // files 1 and 2 are imported by the batch, files 0 and 3 are loaded from snapshots
+    final MZmineProjectImpl project = new MZmineProjectImpl();
+    project.addFile(files[1]);
+    project.addFile(files[2]);
+    project.addFile(0, files[0]);
+    project.addFile(3, files[3]);
+    Assertions.assertArrayEquals(files, project.getDataFiles());
+  }
+
+  private static RawDataFile saveAndLoad(RawDataFile file, boolean binaryBlocks)
+      throws IOException, XMLStreamException {
+    final File blockFile = File.createTempFile("mzmine_snapshot_test", ".bin");
+    blockFile.deleteOnExit();
+
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (OutputStream blockStream = new FileOutputStream(blockFile)) {
+      final XMLOutputFactory xof = XMLOutputFactory.newInstance();
+      final XMLStreamWriter writer =
+          binaryBlocks ? new BlockXMLStreamWriter(xof.createXMLStreamWriter(os, "UTF-8"),
+              blockStream) : xof.createXMLStreamWriter(os, "UTF-8");
+      writer.writeStartDocument();
+      RawDataFileSnapshot.writeScans(file, writer);
+      writer.writeEndDocument();
+      writer.flush();
+      writer.close();
+    }
+
+    final RawDataFile loaded = new RawDataFileImpl("loaded", null, null, Color.BLACK);
+    XMLStreamReader reader = XMLInputFactory.newInstance()
+        .createXMLStreamReader(new ByteArrayInputStream(os.toByteArray()));
+    if (binaryBlocks) {
+      reader = new BlockXMLStreamReader(reader, blockFile);
+    }
+    RawDataFileSnapshot.readScans(reader, loaded);
+    reader.close();
+    return loaded;
+  }
+
+  private static RawDataFile createFile() throws IOException {
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    final Random rnd = new Random(7);
+    for (int i = 0; i < 30; i++) {
+      final int msLevel = i % 3 == 0 ? 1 : 2;
+      final double[] mzs = rnd.doubles(i == 4 ? 0 : rnd.nextInt(200), 50, 1500).sorted().toArray();
+      final double[] intensities = rnd.doubles(mzs.length, 0, 1E6).toArray();
+      final SimpleScan scan = new SimpleScan(file, i, msLevel, 0.1f * i,
+          msLevel == 1 ? null : new DDAMsMsInfoImpl(300 + i, 1, 20f, null, null, 2,
+              ActivationMethod.CID, Range.closed(299d + i, 301d + i)), mzs, intensities,
+          msLevel == 1 ? MassSpectrumType.PROFILE : MassSpectrumType.CENTROIDED,
+          PolarityType.POSITIVE, "scan " + i, Range.closed(50d, 1500d));
+      file.addScan(scan);
+      if (msLevel == 1) {
+        scan.addMassList(new SimpleMassList(null, new double[]{mzs.length > 0 ? mzs[0] : 100},
+            new double[]{1000}));
+      } else if (i % 2 == 0) {
+        scan.addMassList(new ScanPointerMassList(scan));
+      }
+    }
+
+    final SimpleScan ms3Scan = new SimpleScan(file, file.getNumOfScans(), 3, 3.5f,
+        new MSnInfoImpl(List.of((DDAMsMsInfo) file.getScan(1).getMsMsInfo())),
+        new double[]{700, 800}, new double[]{1700, 1800}, MassSpectrumType.CENTROIDED,
+        PolarityType.NEGATIVE, "", Range.closed(0d, 1000d));
+    file.addScan(ms3Scan);
+    return file;
+  }
+
+  private static void assertScansEqual(RawDataFile expected, RawDataFile actual) {
+    Assertions.assertEquals(expected.getNumOfScans(), actual.getNumOfScans());
+    for (int i = 0; i < expected.getNumOfScans(); i++) {
+      final Scan e = expected.getScan(i);
+      final Scan a = actual.getScan(i);
+      Assertions.assertSame(actual, a.getDataFile());
+      Assertions.assertEquals(e.getScanNumber(), a.getScanNumber());
+      Assertions.assertEquals(e.getMSLevel(), a.getMSLevel());
+      Assertions.assertEquals(e.getRetentionTime(), a.getRetentionTime());
+      Assertions.assertEquals(e.getPolarity(), a.getPolarity());
+      Assertions.assertEquals(e.getSpectrumType(), a.getSpectrumType());
+      Assertions.assertEquals(e.getScanDefinition(), a.getScanDefinition());
+      Assertions.assertEquals(e.getScanningMZRange(), a.getScanningMZRange());
+      Assertions.assertEquals(e.getTIC(), a.getTIC());
+      Assertions.assertEquals(e.getDataPointMZRange(), a.getDataPointMZRange());
+      Assertions.assertEquals(e.getBasePeakIndex(), a.getBasePeakIndex());
+      Assertions.assertArrayEquals(e.getMzValues(new double[0]), a.getMzValues(new double[0]));
+      Assertions.assertArrayEquals(e.getIntensityValues(new double[0]),
+          a.getIntensityValues(new double[0]));
+      final MsMsInfo eInfo = e.getMsMsInfo();
+      final MsMsInfo aInfo = a.getMsMsInfo();
+      if (eInfo == null) {
+        Assertions.assertNull(aInfo);
+      } else {
+        // the infos reference the scans of their file
+        Assertions.assertNotNull(aInfo);
+        Assertions.assertEquals(expected.getScans().indexOf(eInfo.getMsMsScan()),
+            actual.getScans().indexOf(aInfo.getMsMsScan()));
+        Assertions.assertNotEquals(-1, actual.getScans().indexOf(aInfo.getMsMsScan()));
+        Assertions.assertEquals(eInfo.getClass(), aInfo.getClass());
+        Assertions.assertEquals(eInfo.getMsLevel(), aInfo.getMsLevel());
+        Assertions.assertEquals(eInfo.getActivationEnergy(), aInfo.getActivationEnergy());
+        Assertions.assertEquals(eInfo.getIsolationWindow(), aInfo.getIsolationWindow());
+      }
+
+      final MassList eMassList = e.getMassList();
+      final MassList aMassList = a.getMassList();
+      if (eMassList == null) {
+        Assertions.assertNull(aMassList);
+        continue;
+      }
+      Assertions.assertNotNull(aMassList);
+      Assertions.assertEquals(eMassList.getClass(), aMassList.getClass());
+      Assertions.assertEquals(eMassList.getTIC(), aMassList.getTIC());
+      Assertions.assertEquals(eMassList.getDataPointMZRange(), aMassList.getDataPointMZRange());
+      Assertions.assertEquals(eMassList.getBasePeakIndex(), aMassList.getBasePeakIndex());
+      Assertions.assertArrayEquals(eMassList.getMzValues(new double[0]),
+          aMassList.getMzValues(new double[0]));
+      Assertions.assertArrayEquals(eMassList.getIntensityValues(new double[0]),
+          aMassList.getIntensityValues(new double[0]));
+    }
+  }
+}
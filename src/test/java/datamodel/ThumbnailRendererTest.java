@@ -0,0 +1,241 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ * USA
+ */
+
+package datamodel;
+
+import fxinitializer.InitJavaFX;
+import io.github.mzmine.datamodel.features.types.graphicalnodes.ThumbnailRenderer;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the painting threads, the dropped requests of hidden cells and the cache of the
+ * {@link ThumbnailRenderer}.
+ */
+public class ThumbnailRendererTest {
+
+  private static final String COLUMN = "Shapes";
+  private static final int SIZE = 10;
+  // bytes of one image
+  private static final long IMAGE_BYTES = SIZE * SIZE * Integer.BYTES;
+  private static final long TIMEOUT_MS = 10_000;
+
+  // the renderer of the current test
+  private ThumbnailRenderer renderer;
+
+  @BeforeAll
+  static void initJavaFX() throws InterruptedException {
+    InitJavaFX.init();
+    // the toolkit is started on another thread
+    final long end = System.currentTimeMillis() + TIMEOUT_MS;
+    while (true) {
+      try {
+        final CountDownLatch started = new CountDownLatch(1);
+        Platform.runLater(started::countDown);
+        if (started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          return;
+        }
+      } catch (IllegalStateException e) {
+        // not initialized yet
+      }
+      Assertions.assertTrue(System.currentTimeMillis() < end, "JavaFX was not started");
+      Thread.sleep(50);
+    }
+  }
+
+  @AfterEach
+  void shutdownRenderer() {
+    if (renderer != null) {
+      renderer.shutdown();
+      renderer = null;
+    }
+  }
+
+  private static BufferedImage image() {
+    return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+  }
+
+  private static <T> T onFx(Callable<T> callable) throws Exception {
+    final FutureTask<T> task = new FutureTask<>(callable);
+    Platform.runLater(task);
+    return task.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private static Node getThumbnail(ThumbnailRenderer renderer, Object source, int version,
+      Supplier<BufferedImage> painter) throws Exception {
+    return onFx(() -> renderer.getThumbnail(source, COLUMN, version, painter));
+  }
+
+  private static void await(BooleanSupplier condition, String message)
+      throws InterruptedException {
+    final long end = System.currentTimeMillis() + TIMEOUT_MS;
+    while (!condition.getAsBoolean()) {
+      Assertions.assertTrue(System.currentTimeMillis() < end, message);
+      Thread.sleep(10);
+    }
+  }
+
+  private static void awaitImage(Node pane) throws Exception {
+    Assertions.assertInstanceOf(StackPane.class, pane);
+    final long end = System.currentTimeMillis() + TIMEOUT_MS;
+    while (onFx(() -> ((StackPane) pane).getChildren().isEmpty())) {
+      Assertions.assertTrue(System.currentTimeMillis() < end, "Thumbnail was not painted");
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void testFixedNumberOfThreads() throws Exception {
+    final int threads = 2;
+    renderer = new ThumbnailRenderer(threads, Long.MAX_VALUE);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Supplier<BufferedImage> painter = () -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      running.decrementAndGet();
+      return image();
+    };
+
+    final List<Node> panes = new ArrayList<>();
+    for (int i = 0; i < 4 * threads; i++) {
+      panes.add(getThumbnail(renderer, new Object(), 0, painter));
+    }
+    await(() -> running.get() == threads, "Not all threads are painting");
+    // the other requests wait for a free thread
+    Thread.sleep(200);
+    Assertions.assertEquals(threads, running.get());
+
+    release.countDown();
+    for (Node pane : panes) {
+      awaitImage(pane);
+    }
+    Assertions.assertEquals(threads, maxRunning.get());
+  }
+
+  @Test
+  void testDropRequestsOfHiddenCells() throws Exception {
+    renderer = new ThumbnailRenderer(1, Long.MAX_VALUE);
+    final CountDownLatch painting = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    // keeps the only thread busy
+    final Node first = getThumbnail(renderer, new Object(), 0, () -> {
+      painting.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return image();
+    });
+    Assertions.assertTrue(painting.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+    // the newest request is taken first, so the hidden request is handled before the visible one
+    final Node visible = getThumbnail(renderer, new Object(), 0, ThumbnailRendererTest::image);
+    final AtomicInteger hiddenPaints = new AtomicInteger();
+    final Node hidden = getThumbnail(renderer, new Object(), 0, () -> {
+      hiddenPaints.incrementAndGet();
+      return image();
+    });
+    // the cell is scrolled out of view
+    onFx(() -> {
+      final Group cell = new Group(hidden);
+      cell.getChildren().clear();
+      return null;
+    });
+
+    release.countDown();
+    awaitImage(first);
+    awaitImage(visible);
+    Assertions.assertEquals(0, hiddenPaints.get());
+    Assertions.assertTrue(onFx(() -> ((StackPane) hidden).getChildren().isEmpty()));
+  }
+
+  @Test
+  void testLeastRecentlyUsedCacheLimit() throws Exception {
+    // space for three images
+    renderer = new ThumbnailRenderer(1, 3 * IMAGE_BYTES);
+    final AtomicInteger paints = new AtomicInteger();
+    final Supplier<BufferedImage> painter = () -> {
+      paints.incrementAndGet();
+      return image();
+    };
+    final Object[] sources = {new Object(), new Object(), new Object(), new Object()};
+
+    for (int i = 0; i < 3; i++) {
+      awaitImage(getThumbnail(renderer, sources[i], 0, painter));
+    }
+    // the second image is now the least recently used
+    Assertions.assertInstanceOf(ImageView.class, getThumbnail(renderer, sources[0], 0, painter));
+    awaitImage(getThumbnail(renderer, sources[3], 0, painter));
+
+    Assertions.assertInstanceOf(ImageView.class, getThumbnail(renderer, sources[0], 0, painter));
+    Assertions.assertInstanceOf(ImageView.class, getThumbnail(renderer, sources[2], 0, painter));
+    Assertions.assertInstanceOf(ImageView.class, getThumbnail(renderer, sources[3], 0, painter));
+    Assertions.assertEquals(4, paints.get());
+    // removed from the cache and painted again
+    awaitImage(getThumbnail(renderer, sources[1], 0, painter));
+    Assertions.assertEquals(5, paints.get());
+  }
+
+  @Test
+  void testChangedDataIsPaintedAgain() throws Exception {
+    renderer = new ThumbnailRenderer(1, Long.MAX_VALUE);
+    final AtomicInteger paints = new AtomicInteger();
+    final Supplier<BufferedImage> painter = () -> {
+      paints.incrementAndGet();
+      return image();
+    };
+    final Object source = new Object();
+
+    awaitImage(getThumbnail(renderer, source, 1, painter));
+    Assertions.assertInstanceOf(ImageView.class, getThumbnail(renderer, source, 1, painter));
+
+    // new data version of the source
+    awaitImage(getThumbnail(renderer, source, 2, painter));
+    Assertions.assertInstanceOf(ImageView.class, getThumbnail(renderer, source, 2, painter));
+    Assertions.assertEquals(2, paints.get());
+
+    // the source was removed or changed
+    renderer.invalidate(List.of(source));
+    awaitImage(getThumbnail(renderer, source, 2, painter));
+    Assertions.assertEquals(3, paints.get());
+  }
+}
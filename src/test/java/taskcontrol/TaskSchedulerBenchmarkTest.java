@@ -0,0 +1,123 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package taskcontrol;
+
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskSchedulerMode;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the dispatch latency of the polling and the work-stealing task scheduler with many
+ * trivial tasks.
+ */
+@Disabled("Benchmark, run manually")
+public class TaskSchedulerBenchmarkTest {
+
+  private static final Logger logger = Logger.getLogger(
+      TaskSchedulerBenchmarkTest.class.getName());
+  private static final int NUM_TASKS = 10_000;
+
+  @BeforeAll
+  static void init() {
+    MZmineCore.main(new String[]{"-r", "-m", "all"});
+  }
+
+  @Test
+  void benchmarkSchedulers() throws InterruptedException {
+    // warm up
+    runTasks(TaskSchedulerMode.WORK_STEALING, 1_000);
+
+    for (TaskSchedulerMode mode : TaskSchedulerMode.values()) {
+      runTasks(mode, NUM_TASKS);
+    }
+  }
+
+  private void runTasks(TaskSchedulerMode mode, int numTasks) throws InterruptedException {
+    MZmineCore.getConfiguration().getPreferences()
+        .setParameter(MZminePreferences.taskSchedulerMode, mode);
+
+    final CountDownLatch latch = new CountDownLatch(numTasks);
+    final AtomicLong summedLatency = new AtomicLong(0);
+    final AtomicLong maxLatency = new AtomicLong(0);
+    final Task[] tasks = new Task[numTasks];
+    for (int i = 0; i < numTasks; i++) {
+      tasks[i] = new TrivialTask(latch, summedLatency, maxLatency);
+    }
+
+    final long start = System.nanoTime();
+    for (Task task : tasks) {
+      ((TrivialTask) task).submitted = System.nanoTime();
+    }
+    MZmineCore.getTaskController().addTasks(tasks);
+
+    Assertions.assertTrue(latch.await(10, TimeUnit.MINUTES), "Tasks did not finish in time");
+    final long end = System.nanoTime();
+
+    logger.info(String.format(
+        "%s scheduler: %d tasks finished after %.1f ms, mean dispatch latency %.3f ms, max %.1f ms",
+        mode.name(), numTasks, (end - start) / 1E6, summedLatency.get() / 1E6 / numTasks,
+        maxLatency.get() / 1E6));
+  }
+
+  private static class TrivialTask extends AbstractTask {
+
+    private final CountDownLatch latch;
+    private final AtomicLong summedLatency;
+    private final AtomicLong maxLatency;
+    private long submitted;
+
+    TrivialTask(CountDownLatch latch, AtomicLong summedLatency, AtomicLong maxLatency) {
+      super(null, Instant.now());
+      this.latch = latch;
+      this.summedLatency = summedLatency;
+      this.maxLatency = maxLatency;
+    }
+
+    @Override
+    public String getTaskDescription() {
+      return "Trivial benchmark task";
+    }
+
+    @Override
+    public double getFinishedPercentage() {
+      return isFinished() ? 1d : 0d;
+    }
+
+    @Override
+    public void run() {
+      final long latency = System.nanoTime() - submitted;
+      summedLatency.addAndGet(latency);
+      maxLatency.accumulateAndGet(latency, Math::max);
+      setStatus(TaskStatus.FINISHED);
+      latch.countDown();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package util;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.util.CompoundDatabaseIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the candidates of the {@link CompoundDatabaseIndex} to a brute force check of all
+ * database entries.
+ */
+public class CompoundDatabaseIndexTest {
+
+  private record Compound(Double mz, Float rt, Float mobility) {
+
+  }
+
+  @Test
+  void testCandidates() {
+    final Random rnd = new Random(11);
+    final List<Compound> compounds = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      // some compounds without m/z, RT or mobility and some duplicates
+      final Double mz = i % 40 == 0 ? null : i % 9 == 0 ? 300d : 50 + rnd.nextDouble() * 1450;
+      final Float rt = i % 3 == 0 ? null : rnd.nextFloat() * 30;
+      final Float mobility = i % 5 == 0 ? null : 0.5f + rnd.nextFloat();
+      compounds.add(new Compound(mz, rt, mobility));
+    }
+
+    for (boolean matchMissingMz : new boolean[]{true, false}) {
+      final CompoundDatabaseIndex<Compound> index = new CompoundDatabaseIndex<>(compounds,
+          Compound::mz, Compound::rt, Compound::mobility, matchMissingMz);
+      Assertions.assertEquals(compounds.size(), index.getNumberOfEntries());
+
+      final MZTolerance mzTolerance = new MZTolerance(0.005, 10);
+      final RTTolerance rtTolerance = new RTTolerance(0.5f, Unit.MINUTES);
+      for (int q = 0; q < 500; q++) {
+        final double mz = q % 10 == 0 ? 300d : 50 + rnd.nextDouble() * 1450;
+        final Range<Double> mzRange = mzTolerance.getToleranceRange(mz);
+        final Range<Float> rtRange =
+            q % 4 == 0 ? null : rtTolerance.getToleranceRange(rnd.nextFloat() * 30);
+        final float mobility = 0.5f + rnd.nextFloat();
+        final Range<Float> mobilityRange =
+            q % 3 == 0 ? null : Range.closed(mobility - 0.05f, mobility + 0.05f);
+
+        final List<Compound> expected = compounds.stream().filter(c -> c.mz() == null
+            ? matchMissingMz
+            : mzRange.contains(c.mz()) && (rtRange == null || c.rt() == null || rtRange.contains(
+                c.rt())) && (mobilityRange == null || c.mobility() == null
+                || mobilityRange.contains(c.mobility()))).toList();
+        final List<Compound> candidates = index.getCandidates(mzRange, rtRange, mobilityRange);
+        Assertions.assertEquals(expected.size(), candidates.size());
+        for (int i = 0; i < expected.size(); i++) {
+          // same instances in the same order
+          Assertions.assertSame(expected.get(i), candidates.get(i));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package util;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.CosineSimilarityKernel;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the {@link CosineSimilarityKernel} to the weighted cosine of the aligned data points.
+ */
+public class CosineSimilarityKernelTest {
+
+  private static final Logger logger = Logger.getLogger(
+      CosineSimilarityKernelTest.class.getName());
+
+  @Test
+  void testWeightedCosine() {
+    final Random rnd = new Random(3);
+    final CosineSimilarityKernel kernel = CosineSimilarityKernel.get();
+    for (int i = 0; i < 20_000; i++) {
+      // signals close to a few shared masses create conflicting matches
+      final double[] shared = rnd.doubles(5, 50, 550).toArray();
+      final DataPoint[] library = createSpectrum(rnd, rnd.nextInt(40), shared);
+      final DataPoint[] query = createSpectrum(rnd, rnd.nextInt(40), shared);
+      final MZTolerance mzTol = new MZTolerance(rnd.nextDouble() * 0.01, rnd.nextInt(20));
+      final Weights weights = Weights.VALUES[rnd.nextInt(Weights.VALUES.length)];
+      final HandleUnmatchedSignalOptions[] options = HandleUnmatchedSignalOptions.values();
+      final HandleUnmatchedSignalOptions handleUnmatched = options[rnd.nextInt(options.length)];
+
+      final double score = kernel.calcWeightedCosine(mzTol, weights, handleUnmatched, library,
+          query);
+      final int overlap = kernel.getOverlap();
+
+      final List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+          ScanAlignment.align(mzTol, library.clone(), query.clone()));
+      final double expected = Similarity.COSINE.calc(
+          ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(),
+              weights.getMz()));
+      Assertions.assertEquals(aligned.stream().filter(dp -> dp[0] != null && dp[1] != null).count(),
+          overlap);
+      if (Double.isNaN(expected)) {
+        Assertions.assertTrue(Double.isNaN(score));
+      } else {
+        Assertions.assertEquals(expected, score, CosineSimilarityKernel.SCORE_TOLERANCE);
+      }
+    }
+  }
+
+  @Disabled("Benchmark, run manually")
+  @Test
+  void benchmarkWeightedCosine() {
+    final int pairs = 1_000_000;
+    final Random rnd = new Random(42);
+    final double[] shared = rnd.doubles(20, 50, 550).toArray();
+    final DataPoint[][] spectra = new DataPoint[1000][];
+    for (int i = 0; i < spectra.length; i++) {
+      spectra[i] = createSpectrum(rnd, 50, shared);
+      Arrays.sort(spectra[i], Comparator.comparingDouble(DataPoint::getMZ));
+    }
+    final MZTolerance mzTol = new MZTolerance(0.005, 10);
+    final Weights weights = Weights.MASSBANK;
+    final HandleUnmatchedSignalOptions handleUnmatched =
+        HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO;
+
+    for (int run = 0; run < 3; run++) {
+      final CosineSimilarityKernel kernel = CosineSimilarityKernel.get();
+      double sum = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < pairs; i++) {
+        sum += kernel.calcWeightedCosine(mzTol, weights, handleUnmatched,
+            spectra[i % spectra.length], spectra[(i * 7 + 1) % spectra.length]);
+      }
+      logger.info(String.format("Kernel: %d pairs in %d ms (sum %.3f)", pairs,
+          (System.nanoTime() - start) / 1_000_000, sum));
+
+      sum = 0;
+      start = System.nanoTime();
+      for (int i = 0; i < pairs; i++) {
+        // the alignment sorts the library by intensity
+        final List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+            ScanAlignment.align(mzTol, spectra[i % spectra.length].clone(),
+                spectra[(i * 7 + 1) % spectra.length]));
+        sum += Similarity.COSINE.calc(
+            ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(),
+                weights.getMz()));
+      }
+      logger.info(String.format("Aligned data points: %d pairs in %d ms (sum %.3f)", pairs,
+          (System.nanoTime() - start) / 1_000_000, sum));
+    }
+  }
+
+  private static DataPoint[] createSpectrum(Random rnd, int signals, double[] shared) {
+    final DataPoint[] dps = new DataPoint[signals];
+    for (int i = 0; i < signals; i++) {
+      final double mz = rnd.nextInt(3) == 0 ? shared[rnd.nextInt(shared.length)]
+                                              + rnd.nextGaussian() * 0.004
+          : 50 + rnd.nextDouble() * 500;
+      // some equal intensities
+      final double intensity = rnd.nextInt(5) == 0 ? 100 : 1 + rnd.nextInt(1000);
+      dps[i] = new SimpleDataPoint(mz, intensity);
+    }
+    return dps;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package util;
+
+import io.github.mzmine.modules.dataanalysis.heatmaps.HeatMapLinkage;
+import io.github.mzmine.modules.dataanalysis.heatmaps.HierarchicalClustering;
+import io.github.mzmine.modules.dataanalysis.heatmaps.HierarchicalClustering.Dendrogram;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the merge heights of the {@link HierarchicalClustering} to a naive agglomerative
+ * clustering that recomputes the linkage of all cluster pairs in every step.
+ */
+public class HierarchicalClusteringTest {
+
+  private static final Logger logger = Logger.getLogger(
+      HierarchicalClusteringTest.class.getName());
+
+  @Test
+  void testMergeHeights() {
+    final Random rnd = new Random(1);
+    for (HeatMapLinkage linkage : HeatMapLinkage.values()) {
+      for (int rep = 0; rep < 30; rep++) {
+        final int n = 2 + rnd.nextInt(60);
+        final double[][] objects = createObjects(rnd, n, 1 + rnd.nextInt(5));
+        final float[] distances = HierarchicalClustering.euclideanDistances(objects);
+        final double[][] matrix = new double[n][n];
+        for (int i = 0; i < n; i++) {
+          for (int j = i + 1; j < n; j++) {
+            matrix[i][j] = distances[HierarchicalClustering.index(n, i, j)];
+            matrix[j][i] = matrix[i][j];
+          }
+        }
+
+        final Dendrogram dendrogram = HierarchicalClustering.cluster(distances, n, linkage);
+        final double[] expected = naiveMergeHeights(matrix, linkage);
+        for (int i = 0; i < expected.length; i++) {
+          Assertions.assertEquals(expected[i], dendrogram.heights()[i], 1e-4 * (1 + expected[i]));
+        }
+        final int[] order = dendrogram.order().clone();
+        Arrays.sort(order);
+        for (int i = 0; i < n; i++) {
+          Assertions.assertEquals(i, order[i]);
+        }
+      }
+    }
+  }
+
+  @Disabled("Benchmark, run manually")
+  @Test
+  void benchmarkClustering() {
+    final Random rnd = new Random(42);
+    final double[][] rows = new double[10_000][300];
+    for (double[] row : rows) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] = rnd.nextGaussian();
+      }
+    }
+
+    for (HeatMapLinkage linkage : HeatMapLinkage.values()) {
+      final long start = System.nanoTime();
+      final float[] distances = HierarchicalClustering.euclideanDistances(rows);
+      final long distanceEnd = System.nanoTime();
+      final Dendrogram dendrogram = HierarchicalClustering.cluster(distances, rows.length,
+          linkage);
+      final long end = System.nanoTime();
+      Assertions.assertEquals(rows.length, dendrogram.size());
+      logger.info(String.format("%s: %d rows, distances %.1f s, clustering %.1f s", linkage,
+          rows.length, (distanceEnd - start) / 1e9, (end - distanceEnd) / 1e9));
+    }
+  }
+
+  /**
+   * Random objects with some missing values, the first dimension is never missing
+   */
+  private static double[][] createObjects(Random rnd, int n, int dimensions) {
+    final double[][] objects = new double[n][dimensions];
+    for (double[] object : objects) {
+      for (int i = 0; i < dimensions; i++) {
+        object[i] = i > 0 && rnd.nextInt(4) == 0 ? Double.NaN : rnd.nextDouble();
+      }
+    }
+    return objects;
+  }
+
+  private static double[] naiveMergeHeights(double[][] matrix, HeatMapLinkage linkage) {
+    final List<List<Integer>> clusters = new ArrayList<>();
+    for (int i = 0; i < matrix.length; i++) {
+      clusters.add(new ArrayList<>(List.of(i)));
+    }
+    final double[] heights = new double[matrix.length - 1];
+    for (int merge = 0; merge < heights.length; merge++) {
+      double min = Double.MAX_VALUE;
+      int minA = 0;
+      int minB = 0;
+      for (int a = 0; a < clusters.size(); a++) {
+        for (int b = a + 1; b < clusters.size(); b++) {
+          final double d = linkage(matrix, clusters.get(a), clusters.get(b), linkage);
+          if (d < min) {
+            min = d;
+            minA = a;
+            minB = b;
+          }
+        }
+      }
+      heights[merge] = min;
+      clusters.get(minA).addAll(clusters.remove(minB));
+    }
+    return heights;
+  }
+
+  private static double linkage(double[][] matrix, List<Integer> a, List<Integer> b,
+      HeatMapLinkage linkage) {
+    double sum = 0;
+    double max = 0;
+    double squaredAB = 0;
+    for (int i : a) {
+      for (int j : b) {
+        sum += matrix[i][j];
+        max = Math.max(max, matrix[i][j]);
+        squaredAB += matrix[i][j] * matrix[i][j];
+      }
+    }
+    return switch (linkage) {
+      case COMPLETE -> max;
+      case AVERAGE -> sum / (a.size() * b.size());
+      case WARD -> {
+        // increase of the error sum of squares, from the squared distances
+        final double na = a.size();
+        final double nb = b.size();
+        final double squaredAA = sumOfSquares(matrix, a);
+        final double squaredBB = sumOfSquares(matrix, b);
+        yield Math.sqrt(na * nb / (na + nb) * (2 * squaredAB / (na * nb) - squaredAA / (na * na)
+            - squaredBB / (nb * nb)));
+      }
+    };
+  }
+
+  private static double sumOfSquares(double[][] matrix, List<Integer> cluster) {
+    double sum = 0;
+    for (int i : cluster) {
+      for (int j : cluster) {
+        sum += matrix[i][j] * matrix[i][j];
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package util;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stores many short double arrays from multiple threads into one {@link MemoryMapStorage}. The
+ * lock-free allocation is compared to storing the arrays while holding a lock on the storage, the
+ * way the synchronized storeData methods did before.
+ */
+@Disabled("Benchmark, run manually")
+public class MemoryMapStorageBenchmarkTest {
+
+  private static final Logger logger = Logger.getLogger(
+      MemoryMapStorageBenchmarkTest.class.getName());
+  private static final int NUM_ARRAYS = 10_000_000;
+  private static final int ARRAY_LENGTH = 16;
+
+  @Test
+  void benchmarkStoreData() throws Exception {
+    // warm up
+    storeArrays(8, NUM_ARRAYS / 10, false);
+    storeArrays(8, NUM_ARRAYS / 10, true);
+
+    for (int threads : new int[]{1, 8, 32}) {
+      storeArrays(threads, NUM_ARRAYS, true);
+      storeArrays(threads, NUM_ARRAYS, false);
+    }
+  }
+
+  private void storeArrays(int threads, int numArrays, boolean synchronizedStore)
+      throws InterruptedException, ExecutionException {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final int arraysPerThread = numArrays / threads;
+
+    final long start = System.nanoTime();
+    final List<Future<Double>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(executor.submit(() -> {
+        final double[] data = new double[ARRAY_LENGTH];
+        double sum = 0;
+        for (int i = 0; i < arraysPerThread; i++) {
+          data[0] = thread;
+          data[1] = i;
+          final DoubleBuffer buffer = synchronizedStore ? storeSynchronized(storage, data)
+              : storage.storeData(data);
+          sum += buffer.get(1);
+        }
+        return sum;
+      }));
+    }
+
+    for (Future<Double> future : futures) {
+      // make sure the data was written to the correct position
+      final double expected = (double) arraysPerThread * (arraysPerThread - 1) / 2;
+      Assertions.assertEquals(expected, future.get());
+    }
+    final long time = System.nanoTime() - start;
+    executor.shutdown();
+
+    logger.info(String.format("%s: %d threads stored %d arrays in %.1f ms (%.1f ns per array)",
+        synchronizedStore ? "synchronized" : "lock-free", threads, arraysPerThread * threads,
+        time / 1E6, (double) time / (arraysPerThread * threads)));
+
+    storage.release();
+  }
+
+  private static DoubleBuffer storeSynchronized(MemoryMapStorage storage, double[] data)
+      throws IOException {
+    synchronized (storage) {
+      return storage.storeData(data);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package util;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryCache;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes and loads the binary cache of a spectral library
+ */
+public class SpectralLibraryCacheTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void testWriteAndLoad() throws IOException {
+    final File library = dir.resolve("library.mgf").toFile();
+    Files.writeString(library.toPath(), "BEGIN IONS\nEND IONS\n");
+    final File cache = dir.resolve("library.mzlibcache").toFile();
+
+    final Random rnd = new Random(7);
+    final List<SpectralDBEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+      fields.put(DBEntryField.NAME, "Compound \u00fc " + (i % 50));
+      fields.put(DBEntryField.ENTRY_ID, "ID" + i);
+      if (i % 10 != 0) {
+        fields.put(DBEntryField.MZ, 100 + rnd.nextDouble() * 900);
+      }
+      fields.put(DBEntryField.RT, rnd.nextFloat() * 20f);
+      fields.put(DBEntryField.CHARGE, 1 + i % 3);
+      final DataPoint[] dps = new DataPoint[rnd.nextInt(30)];
+      for (int d = 0; d < dps.length; d++) {
+        dps[d] = new SimpleDataPoint(50 + rnd.nextDouble() * 950, 1 + rnd.nextInt(10000));
+      }
+      entries.add(new SpectralDBEntry(fields, dps));
+    }
+
+    SpectralLibraryCache.write(library, cache, entries);
+    final List<SpectralDBEntry> loaded = SpectralLibraryCache.load(library, cache);
+    Assertions.assertNotNull(loaded);
+    Assertions.assertEquals(entries, loaded);
+    for (int i = 0; i < entries.size(); i++) {
+      final SpectralDBEntry entry = entries.get(i);
+      final SpectralDBEntry cached = loaded.get(i);
+      Assertions.assertEquals(entry.getPrecursorMZ(), cached.getPrecursorMZ());
+      Assertions.assertEquals(entry.getNumberOfDataPoints(), cached.getNumberOfDataPoints());
+      for (int d = 0; d < entry.getNumberOfDataPoints(); d++) {
+        Assertions.assertEquals(entry.getMzValue(d), cached.getMzValue(d));
+        Assertions.assertEquals(entry.getIntensityValue(d), cached.getIntensityValue(d));
+      }
+    }
+    // equal values are shared
+    Assertions.assertSame(loaded.get(1).getField(DBEntryField.NAME).get(),
+        loaded.get(51).getField(DBEntryField.NAME).get());
+
+    // changed library files invalidate the cache
+    Files.writeString(library.toPath(), "BEGIN IONS\nPEPMASS=100\nEND IONS\n");
+    Assertions.assertNull(SpectralLibraryCache.load(library, cache));
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package util;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the candidates of the {@link SpectralLibraryIndex} to a brute force precursor m/z
+ * check of all library entries.
+ */
+public class SpectralLibraryIndexTest {
+
+  @Test
+  void testPrecursorCandidates() {
+    final Random rnd = new Random(7);
+    final List<SpectralDBEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      // some entries without precursor m/z and some duplicates
+      final Map<DBEntryField, Object> fields = i % 50 == 0 ? Map.of()
+          : Map.of(DBEntryField.MZ, i % 7 == 0 ? 500d : 50 + rnd.nextDouble() * 1450);
+      entries.add(new SpectralDBEntry(fields, new DataPoint[0]));
+    }
+    final SpectralLibraryIndex index = new SpectralLibraryIndex(entries);
+
+    for (MZTolerance tolerance : new MZTolerance[]{new MZTolerance(0.005, 10),
+        new MZTolerance(0.0, 20), new MZTolerance(0.5, 0)}) {
+      for (int q = 0; q < 500; q++) {
+        final double mz = q % 10 == 0 ? 500d : 50 + rnd.nextDouble() * 1450;
+        final List<SpectralDBEntry> expected = entries.stream()
+            .filter(e -> e.getPrecursorMZ() != null)
+            .filter(e -> tolerance.checkWithinTolerance(e.getPrecursorMZ(), mz)).toList();
+        final List<SpectralDBEntry> candidates = index.getPrecursorCandidates(mz, tolerance);
+        Assertions.assertEquals(expected.size(), candidates.size());
+        for (int i = 0; i < expected.size(); i++) {
+          // same instances in the same order
+          Assertions.assertSame(expected.get(i), candidates.get(i));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301
+ * USA
+ */
+
+package util.lipidannotationtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidAnnotation;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.LipidClasses;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidFactory;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex.LipidIon;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+class LipidIonIndexTest {
+
+  private static final LipidFactory LIPID_FACTORY = new LipidFactory();
+
+  @Test
+  void findIonsMatchesFullSearch() {
+    final Set<ILipidAnnotation> lipids = new LinkedHashSet<>();
+    for (LipidClasses lipidClass : LipidClasses.values()) {
+      for (int chainLength = 28; chainLength <= 40; chainLength++) {
+        for (int doubleBonds = 0; doubleBonds <= 4; doubleBonds++) {
+          final ILipidAnnotation lipid = LIPID_FACTORY.buildSpeciesLevelLipid(lipidClass,
+              chainLength, doubleBonds);
+          if (lipid != null) {
+            lipids.add(lipid);
+          }
+        }
+      }
+    }
+    final List<LipidIon> allIons = fullSearch(lipids, Range.all(), null);
+    final LipidIonIndex index = LipidIonIndex.build(lipids);
+    assertEquals(allIons.size(), index.getNumberOfIons());
+
+    final MZTolerance tolerance = new MZTolerance(0.002, 5);
+    int matches = 0;
+    for (int i = 0; i < allIons.size(); i += 7) {
+      // hit the ion itself and a feature between two ions
+      for (double mz : new double[]{allIons.get(i).mz(), allIons.get(i).mz() + 0.0015}) {
+        for (PolarityType polarity : new PolarityType[]{PolarityType.POSITIVE,
+            PolarityType.NEGATIVE}) {
+          final Range<Double> range = tolerance.getToleranceRange(mz);
+          final List<LipidIon> expected = fullSearch(lipids, range, polarity);
+          final List<LipidIon> actual = index.findIons(range, polarity);
+
+          assertEquals(expected.size(), actual.size());
+          for (int j = 0; j < expected.size(); j++) {
+            assertSame(expected.get(j).lipid(), actual.get(j).lipid());
+            assertSame(expected.get(j).ionization(), actual.get(j).ionization());
+            assertEquals(expected.get(j).mz(), actual.get(j).mz());
+          }
+          matches += actual.size();
+        }
+      }
+    }
+    assertTrue(matches > 0);
+  }
+
+  /**
+   * The search of the lipid annotation without the index
+   */
+  private static List<LipidIon> fullSearch(Set<ILipidAnnotation> lipids, Range<Double> mzRange,
+      PolarityType polarity) {
+    final List<LipidIon> ions = new ArrayList<>();
+    for (ILipidAnnotation lipid : lipids) {
+      final Set<IonizationType> ionizations = new LinkedHashSet<>();
+      for (LipidFragmentationRule rule : lipid.getLipidClass().getFragmentationRules()) {
+        ionizations.add(rule.getIonizationType());
+      }
+      for (IonizationType ionization : ionizations) {
+        final double mz = MolecularFormulaManipulator.getMass(lipid.getMolecularFormula(),
+            AtomContainerManipulator.MonoIsotopic) + ionization.getAddedMass();
+        if ((polarity == null || ionization.getPolarity().equals(polarity)) && mzRange.contains(
+            mz)) {
+          ions.add(new LipidIon(lipid, ionization, mz));
+        }
+      }
+    }
+    return ions;
+  }
+}